@@ -7,7 +7,48 @@ contract TrustRecord {
         uint256 trustScore;
     }
 
+    // Merkle root covering a batch of trust score history rows
+    struct Anchor {
+        bytes32 root;
+        uint256 leafCount;
+        uint256 timestamp;
+    }
+
     Event[] public events;
+    // Keyed by the engine's anchor batch id, so a resubmitted batch lands on the same entry
+    mapping(uint256 => Anchor) public anchors;
+    uint256 private anchorCount;
+
+    // Only the deployer and the accounts it authorises may anchor roots;
+    // anyone else could claim the engine's next batch id with a bogus root
+    address public owner;
+    mapping(address => bool) public submitters;
+
+    event RootAnchored(uint256 indexed batchId, bytes32 root, uint256 leafCount);
+    event SubmitterChanged(address indexed account, bool authorised);
+
+    modifier onlyOwner() {
+        require(msg.sender == owner, "caller is not the owner");
+        _;
+    }
+
+    modifier onlySubmitter() {
+        require(msg.sender == owner || submitters[msg.sender], "caller is not an authorised submitter");
+        _;
+    }
+
+    constructor(address[] memory initialSubmitters) {
+        owner = msg.sender;
+        for (uint256 i = 0; i < initialSubmitters.length; i++) {
+            submitters[initialSubmitters[i]] = true;
+            emit SubmitterChanged(initialSubmitters[i], true);
+        }
+    }
+
+    function setSubmitter(address account, bool authorised) public onlyOwner {
+        submitters[account] = authorised;
+        emit SubmitterChanged(account, authorised);
+    }
 
     function record(address device, uint256 trustScore) public {
         events.push(Event(device, block.timestamp, trustScore));
@@ -16,4 +57,20 @@ contract TrustRecord {
     function getEventCount() public view returns (uint256) {
         return events.length;
     }
+
+    function anchorRoot(uint256 batchId, bytes32 root, uint256 leafCount) public onlySubmitter {
+        Anchor storage existing = anchors[batchId];
+        if (existing.root != bytes32(0)) {
+            // Resubmission of a batch whose first transaction was mined after all
+            require(existing.root == root, "batch already anchored with a different root");
+            return;
+        }
+        anchors[batchId] = Anchor(root, leafCount, block.timestamp);
+        anchorCount++;
+        emit RootAnchored(batchId, root, leafCount);
+    }
+
+    function getAnchorCount() public view returns (uint256) {
+        return anchorCount;
+    }
 }
@@ -1,5 +1,11 @@
 const TrustRecord = artifacts.require("TrustRecord");
 
+// Accounts besides the deployer that may anchor roots, comma separated
+const submitters = (process.env.ANCHOR_SUBMITTERS || "")
+  .split(",")
+  .map((address) => address.trim())
+  .filter((address) => address.length > 0);
+
 module.exports = function (deployer) {
-  deployer.deploy(TrustRecord);
+  deployer.deploy(TrustRecord, submitters);
 };
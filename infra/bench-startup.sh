@@ -0,0 +1,52 @@
+#!/bin/bash
+# Measures time to first event: from launching the engine until it has
+# processed its first Event Hub batch, plus when its HTTP health endpoint
+# first answers. It watches the engine's debug log rather than an endpoint,
+# so a jar built from an earlier commit is measured the same way.
+#
+#   ./infra/bench-startup.sh default                                      # default settings
+#   ./infra/bench-startup.sh fast --spring.profiles.active=fast-startup   # startup-optimized mode
+#   JAR=/tmp/before.jar ./infra/bench-startup.sh before                   # an earlier build
+#
+# Telemetry must be flowing (e.g. from device-simulator) or no batch arrives.
+# The engine is started RUNS times per label; results go to startup-<label>.csv.
+
+LABEL=${1:?usage: bench-startup.sh <label> [engine args...]}
+shift
+JAR=${JAR:-zero-trust-engine/target/zero-trust-engine-1.0-SNAPSHOT.jar}
+BASE_URL=${BASE_URL:-http://localhost:8069}
+RUNS=${RUNS:-5}
+TIMEOUT_S=${TIMEOUT_S:-300}
+OUT="startup-$LABEL.csv"
+LOG="startup-$LABEL.log"
+
+now_ms() { date +%s%3N; }
+
+echo "run,http_up_ms,first_event_ms" > "$OUT"
+for run in $(seq 1 "$RUNS"); do
+  echo ">> $LABEL: run $run of $RUNS"
+  start=$(now_ms)
+  java -jar "$JAR" "$@" > "$LOG" 2>&1 &
+  pid=$!
+  up=""
+  first=""
+  while [ -z "$first" ]; do
+    elapsed=$(( $(now_ms) - start ))
+    if [ "$elapsed" -gt $((TIMEOUT_S * 1000)) ] || ! kill -0 "$pid" 2>/dev/null; then
+      echo ">> $LABEL: no event processed within ${TIMEOUT_S}s, see $LOG"
+      break
+    fi
+    if [ -z "$up" ] && curl -s -o /dev/null "$BASE_URL/actuator/health"; then
+      up=$elapsed
+    fi
+    # EventListenerService logs "Partition <id>: <n> processed, ..." per batch at DEBUG
+    if grep -qE "Partition [^:]+: [1-9][0-9]* processed" "$LOG"; then
+      first=$elapsed
+    fi
+    sleep 0.1
+  done
+  kill "$pid" 2>/dev/null
+  wait "$pid" 2>/dev/null
+  echo "$run,$up,$first" | tee -a "$OUT"
+done
+echo "Results written to $OUT"
@@ -0,0 +1,33 @@
+#!/bin/bash
+# Compares how the engine behaves under rising concurrency with platform
+# threads (default) and with the virtual-threads profile.
+#
+# Start the engine once per mode and run this script against it:
+#   java -jar target/zero-trust-engine-1.0-SNAPSHOT.jar                                         # platform
+#   java -jar target/zero-trust-engine-1.0-SNAPSHOT.jar --spring.profiles.active=virtual-threads # virtual
+#   ./infra/bench-threads.sh platform device-001
+#   ./infra/bench-threads.sh virtual  device-001
+#
+# Requires "hey" (https://github.com/rakyll/hey). Results go to bench-<label>.csv.
+
+LABEL=${1:?usage: bench-threads.sh <label> <deviceId> [baseUrl]}
+DEVICE=${2:?usage: bench-threads.sh <label> <deviceId> [baseUrl]}
+BASE_URL=${3:-http://localhost:8069}
+DURATION=${DURATION:-30s}
+LEVELS=${LEVELS:-"50 200 400 800 1600"}
+
+# trust-timeline is uncached and goes straight to MySQL on every request
+URL="$BASE_URL/api/analytics/device/$DEVICE/trust-timeline?days=1"
+OUT="bench-$LABEL.csv"
+
+echo "concurrency,requests_per_sec,p50_ms,p99_ms,errors" > "$OUT"
+for c in $LEVELS; do
+  echo ">> $LABEL: $c concurrent clients for $DURATION"
+  result=$(hey -z "$DURATION" -c "$c" "$URL")
+  rps=$(echo "$result" | awk '/Requests\/sec/ {print $2}')
+  p50=$(echo "$result" | awk '/ 50% in/ {print $3 * 1000}')
+  p99=$(echo "$result" | awk '/ 99% in/ {print $3 * 1000}')
+  errors=$(echo "$result" | awk '/\[[0-9]+\]/ && !/\[200\]/ {sum += $2} END {print sum + 0}')
+  echo "$c,$rps,$p50,$p99,$errors" | tee -a "$OUT"
+done
+echo "Results written to $OUT"
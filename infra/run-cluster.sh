@@ -0,0 +1,83 @@
+#!/bin/bash
+# Runs several engine nodes on this machine in clustering mode, for trying
+# out device sharding and rebalancing.
+#
+#   ./infra/run-cluster.sh 3                # start nodes 1..3 on ports 8071..8073
+#   ./infra/run-cluster.sh status           # members and device share seen by each node
+#   ./infra/run-cluster.sh owner device-001 # which node processes a device
+#   ./infra/run-cluster.sh stop 2           # stop node 2; the others take over its devices
+#   ./infra/run-cluster.sh stop             # stop every node
+#
+# Each node reads Event Hub under its own consumer group, <CONSUMER_GROUP_PREFIX>-<n>,
+# which must exist on the hub. All nodes share the MySQL database of the normal
+# configuration. Build the jar first (mvn -f zero-trust-engine/pom.xml package).
+
+JAR=${JAR:-zero-trust-engine/target/zero-trust-engine-1.0-SNAPSHOT.jar}
+BASE_PORT=${BASE_PORT:-8070}
+CONSUMER_GROUP_PREFIX=${CONSUMER_GROUP_PREFIX:-engine}
+RUN_DIR=${RUN_DIR:-cluster-run}
+
+node_port() { echo $((BASE_PORT + $1)); }
+
+start_node() {
+  local n=$1 port
+  port=$(node_port "$n")
+  mkdir -p "$RUN_DIR/node-$n"
+  java -jar "$JAR" \
+    --server.port="$port" \
+    --management.server.port="$port" \
+    --cluster.enabled=true \
+    --cluster.node-id="node-$n" \
+    --cluster.address="http://localhost:$port" \
+    --eventhubs.consumer-group="$CONSUMER_GROUP_PREFIX-$n" \
+    --telemetry.event-log.directory="$RUN_DIR/node-$n/event-log" \
+    --telemetry.archive.directory="$RUN_DIR/node-$n/telemetry-archive" \
+    --state.snapshot.directory="$RUN_DIR/node-$n/state-snapshots" \
+    > "$RUN_DIR/node-$n/engine.log" 2>&1 &
+  echo $! > "$RUN_DIR/node-$n/pid"
+  echo "node-$n: pid $!, http://localhost:$port, log $RUN_DIR/node-$n/engine.log"
+}
+
+stop_node() {
+  local pidfile="$RUN_DIR/node-$1/pid"
+  if [ -f "$pidfile" ]; then
+    # SIGTERM lets the node leave the ring instead of timing out
+    kill "$(cat "$pidfile")" 2>/dev/null && echo "stopped node-$1"
+    rm -f "$pidfile"
+  fi
+}
+
+running_nodes() {
+  for pidfile in "$RUN_DIR"/node-*/pid; do
+    [ -f "$pidfile" ] && basename "$(dirname "$pidfile")" | sed 's/node-//'
+  done
+}
+
+case "$1" in
+  status)
+    for n in $(running_nodes); do
+      echo "== node-$n"
+      curl -s "http://localhost:$(node_port "$n")/api/cluster"; echo
+    done
+    ;;
+  owner)
+    DEVICE=${2:?usage: run-cluster.sh owner <deviceId>}
+    n=$(running_nodes | head -1)
+    curl -s "http://localhost:$(node_port "$n")/api/cluster/owner/$DEVICE"; echo
+    ;;
+  stop)
+    if [ -n "$2" ]; then
+      stop_node "$2"
+    else
+      for n in $(running_nodes); do stop_node "$n"; done
+    fi
+    ;;
+  ''|*[!0-9]*)
+    echo "usage: run-cluster.sh <nodes> | status | owner <deviceId> | stop [n]"
+    exit 1
+    ;;
+  *)
+    for n in $(seq 1 "$1"); do start_node "$n"; done
+    echo "Nodes start in the background; run '$0 status' once they are up"
+    ;;
+esac
@@ -3,10 +3,12 @@ package edu.university.iot;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import edu.university.iot.config.ComplianceConfig;
 
 @SpringBootApplication
 @EnableConfigurationProperties(ComplianceConfig.class)
+@EnableScheduling
 public class Application {
     public static void main(String[] args) {
         SpringApplication.run(Application.class, args);
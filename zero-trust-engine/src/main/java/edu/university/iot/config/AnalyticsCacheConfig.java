@@ -0,0 +1,45 @@
+package edu.university.iot.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Bounds for the per-device analytics result cache.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "analytics.cache")
+public class AnalyticsCacheConfig {
+
+    private boolean enabled = true;
+
+    // Least recently used entries are evicted beyond this size
+    private int maxEntries = 2000;
+
+    // Upper bound on staleness for data not tied to telemetry (e.g. clock-based windows)
+    private long ttlSeconds = 60;
+
+    // Getters and Setters
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public long getTtlSeconds() {
+        return ttlSeconds;
+    }
+
+    public void setTtlSeconds(long ttlSeconds) {
+        this.ttlSeconds = ttlSeconds;
+    }
+}
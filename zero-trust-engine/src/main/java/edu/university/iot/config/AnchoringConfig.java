@@ -0,0 +1,95 @@
+package edu.university.iot.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.math.BigInteger;
+
+/**
+ * Settings for batching trust score history into Merkle roots anchored on
+ * the TrustRecord contract.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "anchoring")
+public class AnchoringConfig {
+
+    private boolean enabled = false;
+
+    // Address of the deployed TrustRecord contract
+    private String contractAddress;
+
+    // Signs transactions locally when set; otherwise the node's unlocked
+    // account (fromAddress or the first of eth_accounts) is used
+    private String privateKey;
+    private String fromAddress;
+    private long chainId = 1337;
+
+    private int maxBatchSize = 1024;
+    private BigInteger gasPrice = BigInteger.valueOf(20_000_000_000L);
+    private BigInteger gasLimit = BigInteger.valueOf(300_000);
+
+    // Getters and Setters
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getContractAddress() {
+        return contractAddress;
+    }
+
+    public void setContractAddress(String contractAddress) {
+        this.contractAddress = contractAddress;
+    }
+
+    public String getPrivateKey() {
+        return privateKey;
+    }
+
+    public void setPrivateKey(String privateKey) {
+        this.privateKey = privateKey;
+    }
+
+    public String getFromAddress() {
+        return fromAddress;
+    }
+
+    public void setFromAddress(String fromAddress) {
+        this.fromAddress = fromAddress;
+    }
+
+    public long getChainId() {
+        return chainId;
+    }
+
+    public void setChainId(long chainId) {
+        this.chainId = chainId;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public BigInteger getGasPrice() {
+        return gasPrice;
+    }
+
+    public void setGasPrice(BigInteger gasPrice) {
+        this.gasPrice = gasPrice;
+    }
+
+    public BigInteger getGasLimit() {
+        return gasLimit;
+    }
+
+    public void setGasLimit(BigInteger gasLimit) {
+        this.gasLimit = gasLimit;
+    }
+}
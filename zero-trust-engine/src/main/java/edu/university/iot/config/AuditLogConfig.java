@@ -0,0 +1,35 @@
+package edu.university.iot.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * How identity, firmware and compliance check logs are written.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "audit.logs")
+public class AuditLogConfig {
+
+    // Persist a row only when a device's verdict or reported input changes
+    private boolean changeOnly = false;
+
+    // In change-only mode, longest time an unchanged device goes without a row
+    private long heartbeatIntervalMs = 900_000;
+
+    // Getters and Setters
+    public boolean isChangeOnly() {
+        return changeOnly;
+    }
+
+    public void setChangeOnly(boolean changeOnly) {
+        this.changeOnly = changeOnly;
+    }
+
+    public long getHeartbeatIntervalMs() {
+        return heartbeatIntervalMs;
+    }
+
+    public void setHeartbeatIntervalMs(long heartbeatIntervalMs) {
+        this.heartbeatIntervalMs = heartbeatIntervalMs;
+    }
+}
@@ -0,0 +1,83 @@
+package edu.university.iot.config;
+
+import com.azure.messaging.eventhubs.CheckpointStore;
+import edu.university.iot.repository.EventHubCheckpointRepository;
+import edu.university.iot.repository.EventHubOwnershipRepository;
+import edu.university.iot.service.DatabaseCheckpointStore;
+import edu.university.iot.service.FileCheckpointStore;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Paths;
+
+/**
+ * Checkpointed Event Hub consumption: where partition positions are stored
+ * and how events are batched between checkpoints.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "eventhubs.checkpoint")
+public class CheckpointConfig {
+
+    // database | file
+    private String store = "database";
+
+    // Used by the file store only
+    private String directory = "./checkpoints";
+
+    // Events per processing batch; one checkpoint is written per batch
+    private int batchSize = 100;
+
+    // Longest wait for a batch to fill before processing what has arrived
+    private long maxWaitMs = 1000;
+
+    @Bean
+    @ConditionalOnProperty(name = "eventhubs.checkpoint.store", havingValue = "database", matchIfMissing = true)
+    public CheckpointStore databaseCheckpointStore(EventHubCheckpointRepository checkpointRepo,
+                                                   EventHubOwnershipRepository ownershipRepo) {
+        return new DatabaseCheckpointStore(checkpointRepo, ownershipRepo);
+    }
+
+    /**
+     * Local JSON file - single instance only, partitions are not shared.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "eventhubs.checkpoint.store", havingValue = "file")
+    public CheckpointStore fileCheckpointStore() {
+        return new FileCheckpointStore(Paths.get(directory));
+    }
+
+    // Getters and Setters
+    public String getStore() {
+        return store;
+    }
+
+    public void setStore(String store) {
+        this.store = store;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public long getMaxWaitMs() {
+        return maxWaitMs;
+    }
+
+    public void setMaxWaitMs(long maxWaitMs) {
+        this.maxWaitMs = maxWaitMs;
+    }
+}
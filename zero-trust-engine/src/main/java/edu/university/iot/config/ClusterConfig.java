@@ -0,0 +1,88 @@
+package edu.university.iot.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Clustering mode: devices are spread over engine nodes by consistent
+ * hashing, and each node processes only the devices it owns.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "cluster")
+public class ClusterConfig {
+
+    private boolean enabled = false;
+
+    // Unique per node; defaults to host name and process ID
+    private String nodeId;
+
+    // Base URL other nodes and clients use to reach this node, shown in ownership lookups
+    private String address;
+
+    // Points per node on the hash ring; a node with more takes a larger share
+    private int virtualNodes = 128;
+
+    // Membership heartbeat; a node missing heartbeats for member-timeout-ms leaves the ring
+    private long heartbeatIntervalMs = 5000;
+    private long memberTimeoutMs = 15000;
+
+    // After a rebalance, a node keeps processing the devices it gave away for this long
+    private long handoverGraceMs = 30000;
+
+    // Getters and Setters
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public void setAddress(String address) {
+        this.address = address;
+    }
+
+    public int getVirtualNodes() {
+        return virtualNodes;
+    }
+
+    public void setVirtualNodes(int virtualNodes) {
+        this.virtualNodes = virtualNodes;
+    }
+
+    public long getHeartbeatIntervalMs() {
+        return heartbeatIntervalMs;
+    }
+
+    public void setHeartbeatIntervalMs(long heartbeatIntervalMs) {
+        this.heartbeatIntervalMs = heartbeatIntervalMs;
+    }
+
+    public long getMemberTimeoutMs() {
+        return memberTimeoutMs;
+    }
+
+    public void setMemberTimeoutMs(long memberTimeoutMs) {
+        this.memberTimeoutMs = memberTimeoutMs;
+    }
+
+    public long getHandoverGraceMs() {
+        return handoverGraceMs;
+    }
+
+    public void setHandoverGraceMs(long handoverGraceMs) {
+        this.handoverGraceMs = handoverGraceMs;
+    }
+}
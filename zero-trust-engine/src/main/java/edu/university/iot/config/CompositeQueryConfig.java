@@ -0,0 +1,59 @@
+package edu.university.iot.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor and deadline for composite analytics endpoints that fan out to
+ * several independent sub-queries.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "analytics.composite")
+public class CompositeQueryConfig {
+
+    // Shared deadline for all sub-queries of one request
+    private long deadlineMs = 3000;
+
+    // Platform pool size when virtual threads are not available
+    private int maxThreads = 16;
+
+    @Bean(name = "analyticsExecutor", destroyMethod = "shutdownNow")
+    public ExecutorService analyticsExecutor() {
+        return VirtualThreadSupport.newVirtualThreadPerTaskExecutor().orElseGet(() -> {
+            AtomicInteger threadNo = new AtomicInteger();
+            int threads = Math.max(1, maxThreads);
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, "analytics-query-" + threadNo.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+            pool.allowCoreThreadTimeOut(true);
+            return pool;
+        });
+    }
+
+    // Getters and Setters
+    public long getDeadlineMs() {
+        return deadlineMs;
+    }
+
+    public void setDeadlineMs(long deadlineMs) {
+        this.deadlineMs = deadlineMs;
+    }
+
+    public int getMaxThreads() {
+        return maxThreads;
+    }
+
+    public void setMaxThreads(int maxThreads) {
+        this.maxThreads = maxThreads;
+    }
+}
@@ -0,0 +1,72 @@
+package edu.university.iot.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Settings for the ingestion dead-letter store and its retries.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ingestion.dead-letter")
+public class DeadLetterConfig {
+
+    private int batchSize = 50;
+    private int maxAttempts = 5;
+    private long initialBackoffMs = 5_000;
+    private long maxBackoffMs = 600_000;
+
+    // How long a claimed event stays invisible to other pollers
+    private long leaseMs = 60_000;
+
+    // At most one warning per device (or partition, for unparseable events) per interval
+    private long logIntervalMs = 60_000;
+
+    // Getters and Setters
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    public long getInitialBackoffMs() {
+        return initialBackoffMs;
+    }
+
+    public void setInitialBackoffMs(long initialBackoffMs) {
+        this.initialBackoffMs = initialBackoffMs;
+    }
+
+    public long getMaxBackoffMs() {
+        return maxBackoffMs;
+    }
+
+    public void setMaxBackoffMs(long maxBackoffMs) {
+        this.maxBackoffMs = maxBackoffMs;
+    }
+
+    public long getLeaseMs() {
+        return leaseMs;
+    }
+
+    public void setLeaseMs(long leaseMs) {
+        this.leaseMs = leaseMs;
+    }
+
+    public long getLogIntervalMs() {
+        return logIntervalMs;
+    }
+
+    public void setLogIntervalMs(long logIntervalMs) {
+        this.logIntervalMs = logIntervalMs;
+    }
+}
@@ -0,0 +1,89 @@
+package edu.university.iot.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Embedded append-only log for raw device telemetry.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "telemetry.event-log")
+public class EventLogConfig {
+
+    // Store raw telemetry in the log instead of the device_message table
+    private boolean enabled = false;
+
+    private String directory = "./event-log";
+
+    // A segment is rolled once it reaches this size; at most 1 GiB
+    private long segmentBytes = 256L * 1024 * 1024;
+
+    // Records per device between sparse index entries
+    private int indexInterval = 64;
+
+    // How long a commit waits for other appenders before syncing; 0 syncs at once
+    private long commitLingerMicros = 0;
+
+    // Sealed segments whose newest event is older than this are deleted
+    private int retentionDays = 30;
+
+    // Largest chunk one export request streams
+    private long maxExportBytes = 64L * 1024 * 1024;
+
+    // Getters and Setters
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public long getSegmentBytes() {
+        return segmentBytes;
+    }
+
+    public void setSegmentBytes(long segmentBytes) {
+        this.segmentBytes = segmentBytes;
+    }
+
+    public int getIndexInterval() {
+        return indexInterval;
+    }
+
+    public void setIndexInterval(int indexInterval) {
+        this.indexInterval = indexInterval;
+    }
+
+    public long getCommitLingerMicros() {
+        return commitLingerMicros;
+    }
+
+    public void setCommitLingerMicros(long commitLingerMicros) {
+        this.commitLingerMicros = commitLingerMicros;
+    }
+
+    public int getRetentionDays() {
+        return retentionDays;
+    }
+
+    public void setRetentionDays(int retentionDays) {
+        this.retentionDays = retentionDays;
+    }
+
+    public long getMaxExportBytes() {
+        return maxExportBytes;
+    }
+
+    public void setMaxExportBytes(long maxExportBytes) {
+        this.maxExportBytes = maxExportBytes;
+    }
+}
@@ -1,19 +1,47 @@
 package edu.university.iot.config;
 
 import com.microsoft.azure.sdk.iot.service.RegistryManager;
+import edu.university.iot.service.DeviceIdentityGateway;
+import edu.university.iot.service.IoTHubDeviceIdentityGateway;
+import edu.university.iot.service.LocalDeviceIdentityGateway;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 
 import java.io.IOException;
 
 @Configuration
 public class IoTHubConfig {
     
+    /**
+     * Created on the first quarantine rather than at startup; most runs never
+     * disable a device.
+     */
     @Bean
+    @Lazy
+    @ConditionalOnProperty(name = "quarantine.gateway", havingValue = "azure", matchIfMissing = true)
     public RegistryManager registryManager(
             @Value("${azure.iot.hub.connection-string}") String connectionString
     ) throws IOException {
         return RegistryManager.createFromConnectionString(connectionString);
     }
-}
\ No newline at end of file
+
+    @Bean
+    @ConditionalOnProperty(name = "quarantine.gateway", havingValue = "azure", matchIfMissing = true)
+    public DeviceIdentityGateway iotHubDeviceIdentityGateway(ObjectProvider<RegistryManager> registryManager) {
+        return new IoTHubDeviceIdentityGateway(registryManager::getObject);
+    }
+
+    /**
+     * Local fake registry - quarantine intent is still recorded and executed,
+     * but no calls leave the process.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "quarantine.gateway", havingValue = "local")
+    public DeviceIdentityGateway localDeviceIdentityGateway() {
+        return new LocalDeviceIdentityGateway();
+    }
+}
@@ -0,0 +1,67 @@
+package edu.university.iot.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Tolerances used by LocationService when deciding whether a device's
+ * location/network context has really changed.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "location.change")
+public class LocationChangeConfig {
+
+    // Coordinates closer than this are treated as GPS jitter
+    private double distanceThresholdMeters = 75.0;
+
+    // IPv4 addresses sharing this many leading bits are the same network
+    private int ipv4SubnetPrefix = 24;
+
+    // A new context must persist this long before it counts as a change
+    private long dwellSeconds = 30;
+
+    // Sliding window used for the "excessive changes" alert
+    private int alertWindowMinutes = 60;
+    private int alertThreshold = 3;
+
+    // Getters and Setters
+    public double getDistanceThresholdMeters() {
+        return distanceThresholdMeters;
+    }
+
+    public void setDistanceThresholdMeters(double distanceThresholdMeters) {
+        this.distanceThresholdMeters = distanceThresholdMeters;
+    }
+
+    public int getIpv4SubnetPrefix() {
+        return ipv4SubnetPrefix;
+    }
+
+    public void setIpv4SubnetPrefix(int ipv4SubnetPrefix) {
+        this.ipv4SubnetPrefix = ipv4SubnetPrefix;
+    }
+
+    public long getDwellSeconds() {
+        return dwellSeconds;
+    }
+
+    public void setDwellSeconds(long dwellSeconds) {
+        this.dwellSeconds = dwellSeconds;
+    }
+
+    public int getAlertWindowMinutes() {
+        return alertWindowMinutes;
+    }
+
+    public void setAlertWindowMinutes(int alertWindowMinutes) {
+        this.alertWindowMinutes = alertWindowMinutes;
+    }
+
+    public int getAlertThreshold() {
+        return alertThreshold;
+    }
+
+    public void setAlertThreshold(int alertThreshold) {
+        this.alertThreshold = alertThreshold;
+    }
+}
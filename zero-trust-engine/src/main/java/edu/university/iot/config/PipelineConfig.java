@@ -0,0 +1,58 @@
+package edu.university.iot.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Settings for the telemetry processing pipeline.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "pipeline")
+public class PipelineConfig {
+
+    // Evaluate identity, firmware, anomaly and compliance concurrently
+    private boolean parallelValidators = true;
+
+    // Platform pool size when virtual threads are not available
+    private int validatorThreads = 4;
+
+    @Bean(name = "validatorExecutor", destroyMethod = "shutdownNow")
+    public ExecutorService validatorExecutor() {
+        return VirtualThreadSupport.newVirtualThreadPerTaskExecutor().orElseGet(() -> {
+            AtomicInteger threadNo = new AtomicInteger();
+            int threads = Math.max(1, validatorThreads);
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, "pipeline-validator-" + threadNo.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+            pool.allowCoreThreadTimeOut(true);
+            return pool;
+        });
+    }
+
+    // Getters and Setters
+    public boolean isParallelValidators() {
+        return parallelValidators;
+    }
+
+    public void setParallelValidators(boolean parallelValidators) {
+        this.parallelValidators = parallelValidators;
+    }
+
+    public int getValidatorThreads() {
+        return validatorThreads;
+    }
+
+    public void setValidatorThreads(int validatorThreads) {
+        this.validatorThreads = validatorThreads;
+    }
+}
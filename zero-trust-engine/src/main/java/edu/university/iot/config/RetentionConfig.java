@@ -0,0 +1,65 @@
+package edu.university.iot.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Per-table retention policies for the time-partitioned log tables.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "retention")
+public class RetentionConfig {
+
+    private boolean enabled = true;
+
+    // Empty daily partitions kept ahead of today so inserts never hit p_future
+    private int precreateDays = 7;
+
+    // Row limit per DELETE when a table is not partitioned (fallback path)
+    private int deleteBatchSize = 5000;
+
+    // Table name -> days of data to keep
+    private Map<String, Integer> days = new LinkedHashMap<>(Map.of(
+            "device_message", 30,
+            "anomaly_log", 90,
+            "compliance_log", 90,
+            "firmware_logs", 90,
+            "identity_log", 90,
+            "trust_score_history", 365));
+
+    // Getters and Setters
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getPrecreateDays() {
+        return precreateDays;
+    }
+
+    public void setPrecreateDays(int precreateDays) {
+        this.precreateDays = precreateDays;
+    }
+
+    public int getDeleteBatchSize() {
+        return deleteBatchSize;
+    }
+
+    public void setDeleteBatchSize(int deleteBatchSize) {
+        this.deleteBatchSize = deleteBatchSize;
+    }
+
+    public Map<String, Integer> getDays() {
+        return days;
+    }
+
+    public void setDays(Map<String, Integer> days) {
+        this.days = days;
+    }
+}
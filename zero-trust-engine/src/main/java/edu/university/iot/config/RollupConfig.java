@@ -0,0 +1,58 @@
+package edu.university.iot.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Settings for the incremental trust score rollup job.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "rollup")
+public class RollupConfig {
+
+    private boolean enabled = true;
+
+    // History rows folded per transaction
+    private int batchSize = 5000;
+
+    // How long an id missing below the watermark is re-checked before it is
+    // taken for a rolled-back insert; must exceed the longest transaction
+    // that writes trust score history
+    private long gapTimeoutSeconds = 300;
+
+    // Cap on missing ids re-checked per run; the oldest are dropped beyond it
+    private int maxPendingGaps = 2000;
+
+    // Getters and Setters
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public long getGapTimeoutSeconds() {
+        return gapTimeoutSeconds;
+    }
+
+    public void setGapTimeoutSeconds(long gapTimeoutSeconds) {
+        this.gapTimeoutSeconds = gapTimeoutSeconds;
+    }
+
+    public int getMaxPendingGaps() {
+        return maxPendingGaps;
+    }
+
+    public void setMaxPendingGaps(int maxPendingGaps) {
+        this.maxPendingGaps = maxPendingGaps;
+    }
+}
@@ -0,0 +1,68 @@
+package edu.university.iot.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Periodic snapshots of in-memory device state, restored on startup.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "state.snapshot")
+public class StateSnapshotConfig {
+
+    private boolean enabled = false;
+
+    // Holds the latest snapshot only; use a separate directory per node
+    private String directory = "./state-snapshots";
+
+    // Time between snapshots; also bounds how much telemetry a restart replays
+    private long intervalMs = 60000;
+
+    // Event log records read per replay step on startup
+    private int replayBatchSize = 10000;
+
+    // Longest time a device_message insert stays uncommitted; with raw
+    // telemetry in MySQL, restores replay this much extra history
+    private long commitTimeoutSeconds = 300;
+
+    // Getters and Setters
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public long getIntervalMs() {
+        return intervalMs;
+    }
+
+    public void setIntervalMs(long intervalMs) {
+        this.intervalMs = intervalMs;
+    }
+
+    public int getReplayBatchSize() {
+        return replayBatchSize;
+    }
+
+    public void setReplayBatchSize(int replayBatchSize) {
+        this.replayBatchSize = replayBatchSize;
+    }
+
+    public long getCommitTimeoutSeconds() {
+        return commitTimeoutSeconds;
+    }
+
+    public void setCommitTimeoutSeconds(long commitTimeoutSeconds) {
+        this.commitTimeoutSeconds = commitTimeoutSeconds;
+    }
+}
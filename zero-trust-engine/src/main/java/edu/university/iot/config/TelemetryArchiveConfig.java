@@ -0,0 +1,109 @@
+package edu.university.iot.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Archiving of aged device telemetry into columnar segment files.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "telemetry.archive")
+public class TelemetryArchiveConfig {
+
+    private boolean enabled = false;
+
+    // Root directory; one subdirectory per archived UTC day
+    private String directory = "./telemetry-archive";
+
+    // Days of telemetry kept only in MySQL; must be below retention.days[device_message]
+    private int archiveAfterDays = 7;
+
+    // Segment files per day; devices are assigned to one by hash
+    private int buckets = 16;
+
+    // Most days archived by one run, oldest first
+    private int maxDaysPerRun = 7;
+
+    // Row limit per DELETE when removing archived rows from MySQL
+    private int deleteBatchSize = 5000;
+
+    // Longest window and most rows one telemetry query may return
+    private int maxQueryDays = 366;
+    private int maxQueryRows = 100_000;
+
+    // Open segment readers kept mapped between queries
+    private int maxOpenSegments = 256;
+
+    // Getters and Setters
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public int getArchiveAfterDays() {
+        return archiveAfterDays;
+    }
+
+    public void setArchiveAfterDays(int archiveAfterDays) {
+        this.archiveAfterDays = archiveAfterDays;
+    }
+
+    public int getBuckets() {
+        return buckets;
+    }
+
+    public void setBuckets(int buckets) {
+        this.buckets = buckets;
+    }
+
+    public int getMaxDaysPerRun() {
+        return maxDaysPerRun;
+    }
+
+    public void setMaxDaysPerRun(int maxDaysPerRun) {
+        this.maxDaysPerRun = maxDaysPerRun;
+    }
+
+    public int getDeleteBatchSize() {
+        return deleteBatchSize;
+    }
+
+    public void setDeleteBatchSize(int deleteBatchSize) {
+        this.deleteBatchSize = deleteBatchSize;
+    }
+
+    public int getMaxQueryDays() {
+        return maxQueryDays;
+    }
+
+    public void setMaxQueryDays(int maxQueryDays) {
+        this.maxQueryDays = maxQueryDays;
+    }
+
+    public int getMaxQueryRows() {
+        return maxQueryRows;
+    }
+
+    public void setMaxQueryRows(int maxQueryRows) {
+        this.maxQueryRows = maxQueryRows;
+    }
+
+    public int getMaxOpenSegments() {
+        return maxOpenSegments;
+    }
+
+    public void setMaxOpenSegments(int maxOpenSegments) {
+        this.maxOpenSegments = maxOpenSegments;
+    }
+}
@@ -0,0 +1,58 @@
+package edu.university.iot.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Where the trust policy is loaded from and how often it is checked for changes,
+ * and limits for what-if replays of candidate policies.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "trust.policy")
+public class TrustPolicyConfig {
+
+    // Spring resource location, e.g. file:./trust-policy.json to edit it without a rebuild
+    private String location = "classpath:trust-policy.json";
+
+    // How often a file-based policy is checked for changes; 0 disables the check
+    private long refreshIntervalMs = 10_000;
+
+    // Fork-join workers for policy replays; 0 uses one per CPU
+    private int replayParallelism = 0;
+
+    // Longest history window a replay may cover
+    private int replayMaxDays = 90;
+
+    // Getters and Setters
+    public String getLocation() {
+        return location;
+    }
+
+    public void setLocation(String location) {
+        this.location = location;
+    }
+
+    public long getRefreshIntervalMs() {
+        return refreshIntervalMs;
+    }
+
+    public void setRefreshIntervalMs(long refreshIntervalMs) {
+        this.refreshIntervalMs = refreshIntervalMs;
+    }
+
+    public int getReplayParallelism() {
+        return replayParallelism;
+    }
+
+    public void setReplayParallelism(int replayParallelism) {
+        this.replayParallelism = replayParallelism;
+    }
+
+    public int getReplayMaxDays() {
+        return replayMaxDays;
+    }
+
+    public void setReplayMaxDays(int replayMaxDays) {
+        this.replayMaxDays = replayMaxDays;
+    }
+}
@@ -0,0 +1,44 @@
+package edu.university.iot.config;
+
+import java.lang.reflect.Method;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Creates virtual-thread executors when the runtime provides them (Java 21+).
+ *
+ * The project compiles for Java 17, so the Java 21 API is looked up
+ * reflectively; on older runtimes callers fall back to a platform pool.
+ */
+public final class VirtualThreadSupport {
+
+    private static final Method NEW_VIRTUAL_EXECUTOR = lookupVirtualExecutorFactory();
+
+    private VirtualThreadSupport() {}
+
+    public static boolean isAvailable() {
+        return NEW_VIRTUAL_EXECUTOR != null;
+    }
+
+    /**
+     * A new thread-per-task executor on virtual threads, or empty on Java 17-20.
+     */
+    public static Optional<ExecutorService> newVirtualThreadPerTaskExecutor() {
+        if (NEW_VIRTUAL_EXECUTOR == null) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of((ExecutorService) NEW_VIRTUAL_EXECUTOR.invoke(null));
+        } catch (ReflectiveOperationException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static Method lookupVirtualExecutorFactory() {
+        try {
+            return java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
@@ -2,12 +2,15 @@ package edu.university.iot.config;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 import org.web3j.protocol.Web3j;
 import org.web3j.protocol.http.HttpService;
 
 @Configuration
 public class Web3jConfig {
+    // Only trust anchoring talks to the chain, and it is off by default
     @Bean
+    @Lazy
     public Web3j web3j() {
         return Web3j.build(new HttpService("http://localhost:8545"));
     }
@@ -7,11 +7,13 @@ import edu.university.iot.model.dtoModel.FirmwareLogDto;
 import edu.university.iot.service.LocationService;
 import edu.university.iot.service.FirmwareService;
 import edu.university.iot.service.AuditSummaryService;
+import edu.university.iot.service.ChangeOnlyLogFilter;
 import edu.university.iot.repository.QuarantineLogRepository;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/audit")
@@ -21,16 +23,27 @@ public class AuditController {
     private final QuarantineLogRepository quarantineLogRepo;
     private final FirmwareService firmwareService;
     private final AuditSummaryService auditSummaryService;
+    private final ChangeOnlyLogFilter logFilter;
 
     public AuditController(
             LocationService locationService,
             QuarantineLogRepository quarantineLogRepo,
             FirmwareService firmwareService,
-            AuditSummaryService auditSummaryService) {
+            AuditSummaryService auditSummaryService,
+            ChangeOnlyLogFilter logFilter) {
         this.locationService = locationService;
         this.quarantineLogRepo = quarantineLogRepo;
         this.firmwareService = firmwareService;
         this.auditSummaryService = auditSummaryService;
+        this.logFilter = logFilter;
+    }
+
+    /**
+     * Checks folded into change-only summary rows, per log type
+     */
+    @GetMapping("/log-suppression")
+    public ResponseEntity<Map<String, Object>> getLogSuppression() {
+        return ResponseEntity.ok(logFilter.getStatistics());
     }
 
     /**
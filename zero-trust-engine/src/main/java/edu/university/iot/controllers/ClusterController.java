@@ -0,0 +1,34 @@
+package edu.university.iot.controllers;
+
+import edu.university.iot.service.ClusterMembershipService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/cluster")
+public class ClusterController {
+
+    private final ClusterMembershipService cluster;
+
+    public ClusterController(ClusterMembershipService cluster) {
+        this.cluster = cluster;
+    }
+
+    /**
+     * Members, their share of devices and rebalance counters
+     */
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> getStatistics() {
+        return ResponseEntity.ok(cluster.getStatistics());
+    }
+
+    /**
+     * Node that processes a device, and so holds its in-memory state
+     */
+    @GetMapping("/owner/{deviceId}")
+    public ResponseEntity<Map<String, Object>> getOwner(@PathVariable String deviceId) {
+        return ResponseEntity.ok(cluster.describeOwner(deviceId));
+    }
+}
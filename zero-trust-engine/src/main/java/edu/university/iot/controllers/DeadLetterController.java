@@ -0,0 +1,66 @@
+package edu.university.iot.controllers;
+
+import edu.university.iot.model.DeadLetterEvent;
+import edu.university.iot.service.DeadLetterService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/dead-letters")
+public class DeadLetterController {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeadLetterController.class);
+
+    private final DeadLetterService deadLetterService;
+
+    public DeadLetterController(DeadLetterService deadLetterService) {
+        this.deadLetterService = deadLetterService;
+    }
+
+    /**
+     * Most recent dead-lettered events, optionally filtered by status
+     */
+    @GetMapping
+    public ResponseEntity<List<DeadLetterEvent>> getDeadLetters(
+            @RequestParam(required = false) DeadLetterEvent.Status status,
+            @RequestParam(defaultValue = "100") int limit) {
+        return ResponseEntity.ok(deadLetterService.getRecent(status, limit));
+    }
+
+    /**
+     * Counts per status and suppressed log warnings
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> getStatistics() {
+        return ResponseEntity.ok(deadLetterService.getStatistics());
+    }
+
+    /**
+     * Retry one event now with a fresh retry budget
+     */
+    @PostMapping("/{id}/replay")
+    public ResponseEntity<DeadLetterEvent> replay(@PathVariable Long id) {
+        try {
+            return deadLetterService.replay(id)
+                    .map(ResponseEntity::ok)
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (Exception e) {
+            logger.error("Error replaying dead-letter event {}: {}", id, e.getMessage());
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * Requeue all unresolved events, or only those of one device, for the retry poller
+     */
+    @PostMapping("/replay")
+    public ResponseEntity<Map<String, Object>> replayAll(@RequestParam(required = false) String deviceId) {
+        int requeued = deadLetterService.requeue(deviceId);
+        return ResponseEntity.ok(Map.of("requeued", requeued));
+    }
+}
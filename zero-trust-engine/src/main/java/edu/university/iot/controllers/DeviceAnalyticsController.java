@@ -1,5 +1,6 @@
 package edu.university.iot.controllers;
 
+import edu.university.iot.model.TrustScoreRollup;
 import edu.university.iot.model.dtoModel.*;
 import edu.university.iot.service.*;
 import org.slf4j.Logger;
@@ -8,9 +9,13 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * REST Controller for enhanced device analytics and risk assessment.
@@ -28,6 +33,13 @@ public class DeviceAnalyticsController {
     private final TrustScoreService trustScoreService;
     private final TelemetryProcessorService telemetryProcessorService;
     private final LocationService locationService;
+    private final RetentionService retentionService;
+    private final TrustRollupService rollupService;
+    private final AnalyticsResultCache resultCache;
+    private final CompositeQueryExecutor compositeExecutor;
+    private final TelemetryArchiveService archiveService;
+    private final StateSnapshotService stateSnapshotService;
+    private final StartupService startupService;
 
     public DeviceAnalyticsController(
             DeviceRiskAssessmentService riskAssessmentService,
@@ -35,7 +47,14 @@ public class DeviceAnalyticsController {
             TrustAnalysisService trustAnalysisService,
             TrustScoreService trustScoreService,
             TelemetryProcessorService telemetryProcessorService,
-            LocationService locationService) {
+            LocationService locationService,
+            RetentionService retentionService,
+            TrustRollupService rollupService,
+            AnalyticsResultCache resultCache,
+            CompositeQueryExecutor compositeExecutor,
+            TelemetryArchiveService archiveService,
+            StateSnapshotService stateSnapshotService,
+            StartupService startupService) {
         
         this.riskAssessmentService = riskAssessmentService;
         this.trustHistoryService = trustHistoryService;
@@ -43,6 +62,13 @@ public class DeviceAnalyticsController {
         this.trustScoreService = trustScoreService;
         this.telemetryProcessorService = telemetryProcessorService;
         this.locationService = locationService;
+        this.retentionService = retentionService;
+        this.rollupService = rollupService;
+        this.resultCache = resultCache;
+        this.compositeExecutor = compositeExecutor;
+        this.archiveService = archiveService;
+        this.stateSnapshotService = stateSnapshotService;
+        this.startupService = startupService;
     }
 
     // === DEVICE-SPECIFIC ANALYTICS ===
@@ -56,7 +82,8 @@ public class DeviceAnalyticsController {
             @PathVariable String deviceId) {
         try {
             logger.info("Getting risk assessment for device: {}", deviceId);
-            DeviceRiskAssessmentDto assessment = riskAssessmentService.getDeviceRiskAssessment(deviceId);
+            DeviceRiskAssessmentDto assessment = resultCache.get(deviceId, "risk-assessment",
+                () -> riskAssessmentService.getDeviceRiskAssessment(deviceId));
             return ResponseEntity.ok(assessment);
         } catch (Exception e) {
             logger.error("Error getting risk assessment for device [{}]: {}", deviceId, e.getMessage(), e);
@@ -75,16 +102,8 @@ public class DeviceAnalyticsController {
             logger.info("Getting trust analysis for device: {} over {} hours", deviceId, hours);
             
             // Get detailed trust factor analysis
-            TrustAnalysisDto analysis = trustAnalysisService.getTrustAnalysis(deviceId);
-            
-            // Add trust change analysis
-            TrustChangeAnalysisDto changeAnalysis = trustHistoryService.analyzeTrustChanges(deviceId, hours);
-            
-            // Enhance the response with change data
-            Map<String, Object> enhancedResponse = new HashMap<>();
-            enhancedResponse.put("trustAnalysis", analysis);
-            enhancedResponse.put("changeAnalysis", changeAnalysis);
-            enhancedResponse.put("analysisPeriod", hours + " hours");
+            TrustAnalysisDto analysis = resultCache.get(deviceId, "trust-analysis",
+                () -> trustAnalysisService.getTrustAnalysis(deviceId));
             
             return ResponseEntity.ok(analysis);
         } catch (Exception e) {
@@ -110,6 +129,23 @@ public class DeviceAnalyticsController {
         }
     }
 
+    /**
+     * Get hourly or daily trust score aggregates for charts
+     */
+    @GetMapping("/device/{deviceId}/trust-rollups")
+    public ResponseEntity<List<TrustScoreRollup>> getTrustRollups(
+            @PathVariable String deviceId,
+            @RequestParam(defaultValue = "24") int hours,
+            @RequestParam(defaultValue = "HOURLY") TrustScoreRollup.Granularity granularity) {
+        try {
+            Instant since = Instant.now().minus(hours, ChronoUnit.HOURS);
+            return ResponseEntity.ok(rollupService.getRollups(deviceId, granularity, since));
+        } catch (Exception e) {
+            logger.error("Error getting trust rollups for device [{}]: {}", deviceId, e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
     /**
      * Get what specifically changed recently for a device (for "What Changed?" feature)
      */
@@ -120,23 +156,32 @@ public class DeviceAnalyticsController {
         try {
             logger.info("Getting recent changes for device: {} in last {} hours", deviceId, hours);
             
-            Map<String, Object> changes = new HashMap<>();
+            // Independent sub-queries run concurrently under one deadline
+            Map<String, Supplier<?>> queries = new LinkedHashMap<>();
             
             // Trust score changes
-            TrustChangeAnalysisDto trustChanges = trustHistoryService.analyzeTrustChanges(deviceId, hours);
-            changes.put("trustChanges", trustChanges);
+            queries.put("trustChanges", () -> resultCache.get(deviceId, "trust-changes:" + hours,
+                () -> trustHistoryService.analyzeTrustChanges(deviceId, hours)));
             
             // Location changes
-            var locationChanges = locationService.getLocationHistory(deviceId, hours);
-            changes.put("locationChanges", locationChanges);
+            queries.put("locationChanges", () -> resultCache.get(deviceId, "location-history:" + hours,
+                () -> locationService.getLocationHistory(deviceId, hours)));
             
             // Location statistics
-            var locationStats = locationService.getLocationStatistics(deviceId);
-            changes.put("locationStatistics", locationStats);
+            queries.put("locationStatistics", () -> resultCache.get(deviceId, "location-stats",
+                () -> locationService.getLocationStatistics(deviceId)));
             
             // Current trust score breakdown
-            var trustBreakdown = trustScoreService.getTrustScoreBreakdown(deviceId);
-            changes.put("trustBreakdown", trustBreakdown);
+            queries.put("trustBreakdown", () -> resultCache.get(deviceId, "trust-breakdown",
+                () -> trustScoreService.getTrustScoreBreakdown(deviceId)));
+            
+            CompositeQueryExecutor.CompositeResult result = compositeExecutor.run(queries);
+            
+            Map<String, Object> changes = new HashMap<>();
+            for (String name : queries.keySet()) {
+                changes.put(name, result.get(name));
+            }
+            addPartialFailures(changes, result);
             
             changes.put("analysisPeriod", hours + " hours");
             changes.put("timestamp", System.currentTimeMillis());
@@ -148,6 +193,45 @@ public class DeviceAnalyticsController {
         }
     }
 
+    /**
+     * Raw telemetry of a device over the last days, read from MySQL and the
+     * telemetry archive; the newest {@code limit} messages, oldest first
+     */
+    @GetMapping("/device/{deviceId}/telemetry")
+    public ResponseEntity<?> getDeviceTelemetry(
+            @PathVariable String deviceId,
+            @RequestParam(defaultValue = "1") int days,
+            @RequestParam(defaultValue = "1000") int limit) {
+        try {
+            Instant to = Instant.now();
+            return ResponseEntity.ok(archiveService.findMessages(deviceId, to.minus(days, ChronoUnit.DAYS), to, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Error getting telemetry for device [{}]: {}", deviceId, e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * Telemetry aggregates of a device over long windows, including archived days
+     */
+    @GetMapping("/device/{deviceId}/telemetry-summary")
+    public ResponseEntity<?> getDeviceTelemetrySummary(
+            @PathVariable String deviceId,
+            @RequestParam(defaultValue = "90") int days) {
+        try {
+            Instant to = Instant.now();
+            return ResponseEntity.ok(resultCache.get(deviceId, "telemetry-summary:" + days,
+                () -> archiveService.summarize(deviceId, to.minus(days, ChronoUnit.DAYS), to)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Error summarizing telemetry for device [{}]: {}", deviceId, e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
     /**
      * Get device behavior patterns and anomalies
      */
@@ -158,24 +242,39 @@ public class DeviceAnalyticsController {
         try {
             logger.info("Getting behavior analysis for device: {} over {} hours", deviceId, hours);
             
-            Map<String, Object> analysis = new HashMap<>();
+            // Independent sub-queries run concurrently under one deadline
+            Map<String, Supplier<?>> queries = new LinkedHashMap<>();
             
             // Get trust analysis which includes behavioral factors
-            TrustAnalysisDto trustAnalysis = trustAnalysisService.getTrustAnalysis(deviceId);
-            analysis.put("behavioralFactors", trustAnalysis.getTrustFactors());
+            queries.put("trustAnalysis", () -> resultCache.get(deviceId, "trust-analysis",
+                () -> trustAnalysisService.getTrustAnalysis(deviceId)));
             
             // Get location patterns
-            var locationStats = locationService.getLocationStatistics(deviceId);
-            analysis.put("locationPatterns", locationStats);
+            queries.put("locationStatistics", () -> resultCache.get(deviceId, "location-stats",
+                () -> locationService.getLocationStatistics(deviceId)));
             
             // Get trust change patterns
-            TrustChangeAnalysisDto changeAnalysis = trustHistoryService.analyzeTrustChanges(deviceId, hours);
-            analysis.put("trustPatterns", changeAnalysis.getPatterns());
-            analysis.put("criticalEvents", changeAnalysis.getCriticalEvents());
+            queries.put("trustChanges", () -> resultCache.get(deviceId, "trust-changes:" + hours,
+                () -> trustHistoryService.analyzeTrustChanges(deviceId, hours)));
+            
+            CompositeQueryExecutor.CompositeResult result = compositeExecutor.run(queries);
+            
+            Map<String, Object> analysis = new HashMap<>();
+            
+            TrustAnalysisDto trustAnalysis = result.get("trustAnalysis");
+            analysis.put("behavioralFactors", trustAnalysis != null ? trustAnalysis.getTrustFactors() : null);
+            analysis.put("locationPatterns", result.get("locationStatistics"));
+            
+            TrustChangeAnalysisDto changeAnalysis = result.get("trustChanges");
+            if (changeAnalysis != null) {
+                analysis.put("trustPatterns", changeAnalysis.getPatterns());
+                analysis.put("criticalEvents", changeAnalysis.getCriticalEvents());
+                analysis.put("riskLevel", changeAnalysis.getRiskLevel());
+                analysis.put("summary", changeAnalysis.getSummary());
+            }
+            addPartialFailures(analysis, result);
             
             analysis.put("analysisPeriod", hours + " hours");
-            analysis.put("riskLevel", changeAnalysis.getRiskLevel());
-            analysis.put("summary", changeAnalysis.getSummary());
             
             return ResponseEntity.ok(analysis);
         } catch (Exception e) {
@@ -184,6 +283,13 @@ public class DeviceAnalyticsController {
         }
     }
 
+    private void addPartialFailures(Map<String, Object> response, CompositeQueryExecutor.CompositeResult result) {
+        response.put("partial", result.isPartial());
+        if (result.isPartial()) {
+            response.put("failedSections", result.getFailures());
+        }
+    }
+
     // === SYSTEM-WIDE ANALYTICS ===
 
     /**
@@ -214,10 +320,13 @@ public class DeviceAnalyticsController {
      * Get devices requiring immediate attention (for alerts/notifications)
      */
     @GetMapping("/system/devices-requiring-attention")
-    public ResponseEntity<List<Map<String, Object>>> getDevicesRequiringAttention() {
+    public ResponseEntity<List<Map<String, Object>>> getDevicesRequiringAttention(
+            @RequestParam(required = false) Integer limit) {
         try {
             logger.info("Getting devices requiring attention");
-            List<Map<String, Object>> devices = riskAssessmentService.getDevicesRequiringAttention();
+            List<Map<String, Object>> devices = limit != null
+                ? riskAssessmentService.getDevicesRequiringAttention(limit)
+                : riskAssessmentService.getDevicesRequiringAttention();
             return ResponseEntity.ok(devices);
         } catch (Exception e) {
             logger.error("Error getting devices requiring attention: {}", e.getMessage(), e);
@@ -225,6 +334,30 @@ public class DeviceAnalyticsController {
         }
     }
 
+    /**
+     * Get devices whose trust score changed at least {@code threshold} times in the window
+     */
+    @GetMapping("/system/frequent-changes")
+    public ResponseEntity<List<Map<String, Object>>> getDevicesWithFrequentChanges(
+            @RequestParam(defaultValue = "24") int hours,
+            @RequestParam(defaultValue = "10") long threshold) {
+        try {
+            Instant since = Instant.now().minus(hours, ChronoUnit.HOURS);
+            return ResponseEntity.ok(rollupService.getDevicesWithFrequentChanges(since, threshold));
+        } catch (Exception e) {
+            logger.error("Error getting devices with frequent changes: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * Hit/miss statistics of the per-device analytics result cache
+     */
+    @GetMapping("/system/cache-stats")
+    public ResponseEntity<Map<String, Object>> getCacheStatistics() {
+        return ResponseEntity.ok(resultCache.getStatistics());
+    }
+
     /**
      * Get location map data with enhanced risk indicators
      */
@@ -244,7 +377,8 @@ public class DeviceAnalyticsController {
                     if (deviceId != null) {
                         try {
                             // Add risk level
-                            DeviceRiskAssessmentDto risk = riskAssessmentService.getDeviceRiskAssessment(deviceId);
+                            DeviceRiskAssessmentDto risk = resultCache.get(deviceId, "risk-assessment",
+                () -> riskAssessmentService.getDeviceRiskAssessment(deviceId));
                             deviceLocation.put("riskLevel", risk.getRiskLevel());
                             deviceLocation.put("activeThreats", risk.getActiveThreats().size());
                             deviceLocation.put("recentAnomalies", risk.getRecentAnomalies());
@@ -325,7 +459,7 @@ public class DeviceAnalyticsController {
             simulation.put("simulatedTrustScore", simulatedScore);
             simulation.put("expectedChange", simulatedScore - currentScore);
             simulation.put("factorsUsed", factorChanges);
-            simulation.put("wouldBeTrusted", simulatedScore >= 70.0);
+            simulation.put("wouldBeTrusted", simulatedScore >= trustScoreService.getTrustedThreshold());
             
             return ResponseEntity.ok(simulation);
         } catch (Exception e) {
@@ -334,6 +468,87 @@ public class DeviceAnalyticsController {
         }
     }
 
+    /**
+     * Run partition maintenance and retention now instead of waiting for the nightly job
+     */
+    @PostMapping("/system/retention/run")
+    public ResponseEntity<Map<String, Object>> runRetention() {
+        try {
+            logger.info("Manually running data retention");
+            return ResponseEntity.ok(retentionService.applyRetention());
+        } catch (Exception e) {
+            logger.error("Error running data retention: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * Archive aged telemetry now instead of waiting for the nightly job
+     */
+    @PostMapping("/system/archive/run")
+    public ResponseEntity<Map<String, Object>> runTelemetryArchive() {
+        try {
+            logger.info("Manually archiving aged telemetry");
+            return ResponseEntity.ok(archiveService.archive());
+        } catch (Exception e) {
+            logger.error("Error archiving telemetry: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * Archived days, row counts and compressed size of the telemetry archive
+     */
+    @GetMapping("/system/archive")
+    public ResponseEntity<Map<String, Object>> getTelemetryArchiveStatistics() {
+        return ResponseEntity.ok(archiveService.getStatistics());
+    }
+
+    /**
+     * Snapshot in-memory device state now instead of waiting for the next interval
+     */
+    @PostMapping("/system/state-snapshot/run")
+    public ResponseEntity<?> runStateSnapshot() {
+        try {
+            return ResponseEntity.ok(stateSnapshotService.snapshot());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Error writing state snapshot: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * Last state snapshot and how long the restore on startup took
+     */
+    @GetMapping("/system/state-snapshot")
+    public ResponseEntity<Map<String, Object>> getStateSnapshotStatistics() {
+        return ResponseEntity.ok(stateSnapshotService.getStatistics());
+    }
+
+    /**
+     * Startup milestones, including time from JVM start to the first processed event
+     */
+    @GetMapping("/system/startup")
+    public ResponseEntity<Map<String, Object>> getStartupStatistics() {
+        return ResponseEntity.ok(startupService.getStatistics());
+    }
+
+    /**
+     * Rebuild trust score rollups from the raw history still in the database
+     */
+    @PostMapping("/system/rollups/backfill")
+    public ResponseEntity<Map<String, Object>> backfillRollups() {
+        try {
+            logger.info("Backfilling trust score rollups");
+            return ResponseEntity.ok(rollupService.backfill());
+        } catch (Exception e) {
+            logger.error("Error backfilling trust score rollups: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
     // === HEALTH CHECK ===
 
     /**
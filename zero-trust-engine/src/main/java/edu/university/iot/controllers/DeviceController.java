@@ -15,6 +15,8 @@ import org.springframework.web.bind.annotation.*;
 
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -36,6 +38,8 @@ public class DeviceController {
     private final AnomalyLogRepository     anomalyRepo;
     private final ComplianceService        complianceService;
     private final AnomalyDetectorService   anomalyService;
+    private final QuarantineCommandExecutor quarantineExecutor;
+    private final TelemetryEventLog        eventLog;
 
     public DeviceController(DeviceRegistryService registryService,
                             QuarantineService quarantineService,
@@ -47,7 +51,9 @@ public class DeviceController {
                             ComplianceLogRepository complianceRepo,
                             AnomalyLogRepository anomalyRepo,
                             ComplianceService complianceService,
-                            AnomalyDetectorService anomalyService) {
+                            AnomalyDetectorService anomalyService,
+                            QuarantineCommandExecutor quarantineExecutor,
+                            TelemetryEventLog eventLog) {
         this.registryService         = registryService;
         this.quarantineService       = quarantineService;
         this.trustService            = trustService;
@@ -59,6 +65,8 @@ public class DeviceController {
         this.anomalyRepo             = anomalyRepo;
         this.complianceService       = complianceService;
         this.anomalyService          = anomalyService;
+        this.quarantineExecutor      = quarantineExecutor;
+        this.eventLog                = eventLog;
     }
 
     @GetMapping
@@ -74,7 +82,9 @@ public class DeviceController {
         String deviceId = device.getDeviceId();
         
         // Fetch most recent telemetry
-        Optional<DeviceMessage> optMsg = messageRepo.findTopByDeviceIdOrderByTimestampDesc(deviceId);
+        Optional<DeviceMessage> optMsg = eventLog.isEnabled()
+            ? eventLog.latest(deviceId)
+            : messageRepo.findTopByDeviceIdOrderByTimestampDesc(deviceId);
 
         DeviceSummaryDto dto = new DeviceSummaryDto();
         dto.setDeviceId(deviceId);
@@ -135,6 +145,18 @@ public class DeviceController {
         return dto;
     }
 
+    /**
+     * Telemetry since the cutoff, newest first, from the event log when it stores raw telemetry
+     */
+    private List<DeviceMessage> recentMessages(String deviceId, Instant cutoff) {
+        if (!eventLog.isEnabled()) {
+            return messageRepo.findByDeviceIdAndTimestampAfterOrderByTimestampDesc(deviceId, cutoff);
+        }
+        List<DeviceMessage> messages = new ArrayList<>(eventLog.read(deviceId, cutoff, Instant.now(), 10_000));
+        Collections.reverse(messages);
+        return messages;
+    }
+
     /**
      * Build trust factors map based on recent device activity
      */
@@ -197,8 +219,7 @@ public class DeviceController {
             // Location factor - based on location changes
             try {
                 // Check if device has moved locations recently
-                List<DeviceMessage> recentMessages = messageRepo
-                    .findByDeviceIdAndTimestampAfterOrderByTimestampDesc(deviceId, cutoff);
+                List<DeviceMessage> recentMessages = recentMessages(deviceId, cutoff);
                     
                 if (recentMessages.size() > 1) {
                     String currentLocation = recentMessages.get(0).getLocation();
@@ -238,6 +259,11 @@ public class DeviceController {
         return ResponseEntity.ok().build();
     }
 
+    @GetMapping("/quarantine/queue")
+    public ResponseEntity<Map<String, Object>> getQuarantineQueue() {
+        return ResponseEntity.ok(quarantineExecutor.getQueueStatistics());
+    }
+
     @GetMapping("/{deviceId}/trust-score")
     public ResponseEntity<Double> getTrustScore(@PathVariable String deviceId) {
         return ResponseEntity.ok(trustService.getTrustScore(deviceId));
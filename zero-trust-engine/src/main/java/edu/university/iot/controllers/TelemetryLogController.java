@@ -0,0 +1,86 @@
+package edu.university.iot.controllers;
+
+import edu.university.iot.service.TelemetryEventLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the embedded telemetry event log by offset, for replay and export.
+ */
+@RestController
+@RequestMapping("/api/telemetry-log")
+public class TelemetryLogController {
+
+    private static final Logger logger = LoggerFactory.getLogger(TelemetryLogController.class);
+
+    private final TelemetryEventLog eventLog;
+
+    public TelemetryLogController(TelemetryEventLog eventLog) {
+        this.eventLog = eventLog;
+    }
+
+    /**
+     * Segments, size and group commit counters
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> getStatistics() {
+        return ResponseEntity.ok(eventLog.getStatistics());
+    }
+
+    /**
+     * Decoded records from an offset, with the offset to continue from
+     */
+    @GetMapping("/records")
+    public ResponseEntity<?> getRecords(@RequestParam(defaultValue = "0") long from,
+                                        @RequestParam(defaultValue = "100") int limit) {
+        if (!eventLog.isEnabled()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", "Telemetry event log is disabled"));
+        }
+        try {
+            List<Map<String, Object>> records = new ArrayList<>();
+            long next = eventLog.replay(from, Math.max(1, Math.min(limit, 1000)), (offset, partitionId, sequenceNumber, message) -> {
+                Map<String, Object> entry = new LinkedHashMap<>();
+                entry.put("offset", offset);
+                entry.put("partitionId", partitionId);
+                entry.put("sequenceNumber", sequenceNumber);
+                entry.put("message", message);
+                records.add(entry);
+            });
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("records", records);
+            response.put("nextOffset", next);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            logger.error("Error reading telemetry event log from offset {}: {}", from, e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * Raw records from an offset, streamed from the segment files without
+     * copying; the next offset is {@code from} plus the length of the body
+     */
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(defaultValue = "0") long from,
+                                                        @RequestParam(defaultValue = "67108864") long maxBytes) {
+        if (!eventLog.isEnabled()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        StreamingResponseBody body = out -> eventLog.transferTo(from, maxBytes, Channels.newChannel(out));
+        return ResponseEntity.ok()
+                .header("X-Log-Offset", Long.toString(from))
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(body);
+    }
+}
@@ -0,0 +1,63 @@
+package edu.university.iot.controllers;
+
+import edu.university.iot.model.TrustAnchorBatch;
+import edu.university.iot.model.dtoModel.InclusionProofDto;
+import edu.university.iot.service.TrustAnchorService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/anchoring")
+public class TrustAnchorController {
+
+    private static final Logger logger = LoggerFactory.getLogger(TrustAnchorController.class);
+
+    private final TrustAnchorService anchorService;
+
+    public TrustAnchorController(TrustAnchorService anchorService) {
+        this.anchorService = anchorService;
+    }
+
+    /**
+     * Most recent anchor batches with their on-chain status
+     */
+    @GetMapping("/batches")
+    public ResponseEntity<List<TrustAnchorBatch>> getBatches() {
+        return ResponseEntity.ok(anchorService.getRecentBatches());
+    }
+
+    /**
+     * Merkle inclusion proof for a trust score history row
+     */
+    @GetMapping("/proof/{historyId}")
+    public ResponseEntity<InclusionProofDto> getProof(@PathVariable Long historyId) {
+        try {
+            return anchorService.getInclusionProof(historyId)
+                    .map(ResponseEntity::ok)
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (Exception e) {
+            logger.error("Error building inclusion proof for history {}: {}", historyId, e.getMessage());
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * Seal and submit pending rows now instead of waiting for the next scheduled run
+     */
+    @PostMapping("/flush")
+    public ResponseEntity<Map<String, Object>> flush() {
+        try {
+            return ResponseEntity.ok(anchorService.anchorPending());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Error flushing trust anchors: {}", e.getMessage());
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+}
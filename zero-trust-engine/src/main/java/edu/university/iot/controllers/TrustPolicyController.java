@@ -0,0 +1,93 @@
+package edu.university.iot.controllers;
+
+import edu.university.iot.model.dtoModel.PolicyReplayDto;
+import edu.university.iot.model.dtoModel.TrustPolicyDto;
+import edu.university.iot.service.PolicyReplayService;
+import edu.university.iot.service.TrustPolicy;
+import edu.university.iot.service.TrustPolicyService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/policy")
+public class TrustPolicyController {
+
+    private static final Logger logger = LoggerFactory.getLogger(TrustPolicyController.class);
+
+    private final TrustPolicyService policyService;
+    private final PolicyReplayService replayService;
+
+    public TrustPolicyController(TrustPolicyService policyService, PolicyReplayService replayService) {
+        this.policyService = policyService;
+        this.replayService = replayService;
+    }
+
+    /**
+     * Active trust policy definition
+     */
+    @GetMapping
+    public ResponseEntity<TrustPolicyDto> getPolicy() {
+        return ResponseEntity.ok(policyService.current().getSource());
+    }
+
+    /**
+     * Re-read the policy from its configured location
+     */
+    @PostMapping("/reload")
+    public ResponseEntity<Map<String, Object>> reload() {
+        try {
+            return ResponseEntity.ok(summary(policyService.reload()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Error reloading trust policy: {}", e.getMessage());
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * Activate a new policy now; it is not written back to the policy file
+     */
+    @PutMapping
+    public ResponseEntity<Map<String, Object>> apply(@RequestBody TrustPolicyDto definition) {
+        try {
+            return ResponseEntity.ok(summary(policyService.apply(definition)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * What-if: how the posted policy would have scored the fleet's recent history
+     * compared with the active one. Nothing is changed.
+     */
+    @PostMapping("/replay")
+    public ResponseEntity<?> replay(@RequestBody TrustPolicyDto candidate,
+                                    @RequestParam(defaultValue = "30") int days) {
+        try {
+            PolicyReplayDto result = replayService.replay(candidate, days);
+            return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Error replaying trust policy: {}", e.getMessage());
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    private static Map<String, Object> summary(TrustPolicy policy) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("version", policy.getVersion());
+        summary.put("profiles", policy.getProfileNames());
+        summary.put("defaultProfile", policy.getDefaultProfile().getName());
+        return summary;
+    }
+}
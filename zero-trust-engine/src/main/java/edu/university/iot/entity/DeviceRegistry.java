@@ -58,6 +58,13 @@ public class DeviceRegistry {
     @Column(name = "quarantine_timestamp")
     private LocalDateTime quarantineTimestamp;
 
+    // Event Hub position of the last applied telemetry event (replay dedup)
+    @Column(name = "last_event_partition", length = 32)
+    private String lastEventPartition;
+
+    @Column(name = "last_event_sequence")
+    private Long lastEventSequence;
+
     // Default constructor
     public DeviceRegistry() {}
 
@@ -217,6 +224,22 @@ public class DeviceRegistry {
         this.quarantineTimestamp = quarantineTimestamp;
     }
 
+    public String getLastEventPartition() {
+        return lastEventPartition;
+    }
+
+    public void setLastEventPartition(String lastEventPartition) {
+        this.lastEventPartition = lastEventPartition;
+    }
+
+    public Long getLastEventSequence() {
+        return lastEventSequence;
+    }
+
+    public void setLastEventSequence(Long lastEventSequence) {
+        this.lastEventSequence = lastEventSequence;
+    }
+
     // Utility methods for quarantine management
     public void quarantine(String reason) {
         this.quarantined = true;
@@ -0,0 +1,33 @@
+package edu.university.iot.model;
+
+import java.time.Instant;
+
+/**
+ * A per-check log row that can be written in change-only mode.
+ *
+ * In that mode a row is persisted when a device's verdict or reported input
+ * changes; identical checks in between are folded into a summary row whose
+ * repeatCount says how many checks it stands for, first seen at firstSeenAt
+ * and last at the row's timestamp. Rows written one per check have a count of 1.
+ */
+public interface ChangeTrackedLog<T extends ChangeTrackedLog<T>> {
+
+    String getDeviceId();
+
+    /** When the check was made, as an instant. */
+    Instant observedAt();
+
+    /** True if both rows have the same verdict and the same reported input. */
+    boolean sameState(T other);
+
+    int getRepeatCount();
+
+    /** When the first check folded into this row was made. */
+    Instant firstObservedAt();
+
+    /**
+     * A new row with this row's state that stands for {@code repeatCount}
+     * checks made between {@code firstSeen} and {@code lastSeen}.
+     */
+    T summaryOf(int repeatCount, Instant firstSeen, Instant lastSeen);
+}
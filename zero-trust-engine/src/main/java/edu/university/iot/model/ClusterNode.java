@@ -0,0 +1,56 @@
+package edu.university.iot.model;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * Engine node taking part in clustering mode, kept alive by heartbeats.
+ *
+ * Heartbeat times are written with the database clock, so node clocks do not
+ * need to agree.
+ */
+@Entity
+@Table(name = "cluster_nodes")
+public class ClusterNode {
+
+    @Id
+    @Column(length = 100)
+    private String nodeId;
+
+    @Column(length = 200)
+    private String address;
+
+    @Column(length = 100)
+    private String consumerGroup;
+
+    @Column(nullable = false)
+    private int virtualNodes;
+
+    @Column(nullable = false)
+    private Instant startedAt;
+
+    @Column(nullable = false)
+    private Instant lastHeartbeat;
+
+    // Constructors
+    public ClusterNode() {}
+
+    // Getters and Setters
+    public String getNodeId() { return nodeId; }
+    public void setNodeId(String nodeId) { this.nodeId = nodeId; }
+
+    public String getAddress() { return address; }
+    public void setAddress(String address) { this.address = address; }
+
+    public String getConsumerGroup() { return consumerGroup; }
+    public void setConsumerGroup(String consumerGroup) { this.consumerGroup = consumerGroup; }
+
+    public int getVirtualNodes() { return virtualNodes; }
+    public void setVirtualNodes(int virtualNodes) { this.virtualNodes = virtualNodes; }
+
+    public Instant getStartedAt() { return startedAt; }
+    public void setStartedAt(Instant startedAt) { this.startedAt = startedAt; }
+
+    public Instant getLastHeartbeat() { return lastHeartbeat; }
+    public void setLastHeartbeat(Instant lastHeartbeat) { this.lastHeartbeat = lastHeartbeat; }
+}
@@ -3,9 +3,10 @@ package edu.university.iot.model;
 
 import jakarta.persistence.*;
 import java.time.Instant;
+import java.util.Objects;
 
 @Entity
-public class ComplianceLog {
+public class ComplianceLog implements ChangeTrackedLog<ComplianceLog> {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -45,5 +46,57 @@ public class ComplianceLog {
     private String violations;
     private Instant timestamp;
 
+    // Checks this row stands for in change-only mode (see ChangeTrackedLog)
+    @Column(name = "repeat_count", nullable = false, columnDefinition = "int default 1")
+    private int repeatCount = 1;
+
+    @Column(name = "first_seen_at")
+    private Instant firstSeenAt;
+
+    public int getRepeatCount() {
+        return repeatCount;
+    }
+
+    public void setRepeatCount(int repeatCount) {
+        this.repeatCount = repeatCount;
+    }
+
+    public Instant getFirstSeenAt() {
+        return firstSeenAt;
+    }
+
+    public void setFirstSeenAt(Instant firstSeenAt) {
+        this.firstSeenAt = firstSeenAt;
+    }
+
+    @Override
+    public Instant observedAt() {
+        return timestamp;
+    }
+
+    @Override
+    public Instant firstObservedAt() {
+        return firstSeenAt != null ? firstSeenAt : timestamp;
+    }
+
+    @Override
+    public boolean sameState(ComplianceLog other) {
+        return compliant == other.compliant
+            && Objects.equals(violations, other.violations)
+            && Objects.equals(deviceId, other.deviceId);
+    }
+
+    @Override
+    public ComplianceLog summaryOf(int repeatCount, Instant firstSeen, Instant lastSeen) {
+        ComplianceLog summary = new ComplianceLog();
+        summary.setDeviceId(deviceId);
+        summary.setCompliant(compliant);
+        summary.setViolations(violations);
+        summary.setTimestamp(lastSeen);
+        summary.setRepeatCount(repeatCount);
+        summary.setFirstSeenAt(firstSeen);
+        return summary;
+    }
+
     // Getters & Setters ...
 }
@@ -0,0 +1,127 @@
+package edu.university.iot.model;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * Telemetry event that could not be ingested, kept with its raw payload.
+ *
+ * Retried with backoff by DeadLetterService until it is applied or runs out
+ * of attempts; payloads that cannot be parsed are parked as FAILED straight
+ * away. Either kind can be replayed by hand once the cause is fixed.
+ */
+@Entity
+@Table(name = "dead_letter_events", indexes = {
+    @Index(name = "idx_dead_letter_status_next", columnList = "status, next_attempt_at"),
+    @Index(name = "idx_dead_letter_device", columnList = "device_id")
+})
+public class DeadLetterEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Null if the payload could not be parsed
+    @Column(name = "device_id")
+    private String deviceId;
+
+    @Column(name = "partition_id", length = 32)
+    private String partitionId;
+
+    @Column(name = "sequence_number")
+    private Long sequenceNumber;
+
+    @Column(name = "enqueued_time")
+    private Instant enqueuedTime;
+
+    @Column(name = "payload", columnDefinition = "MEDIUMTEXT")
+    private String payload;
+
+    @Column(name = "error_class", nullable = false)
+    private String errorClass;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private Status status = Status.PENDING;
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private Instant nextAttemptAt;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    @Column(name = "resolved_at")
+    private Instant resolvedAt;
+
+    @Version
+    private Long version;
+
+    public enum Status {
+        PENDING,
+        RESOLVED,
+        FAILED
+    }
+
+    // Constructors
+    public DeadLetterEvent() {}
+
+    public DeadLetterEvent(String deviceId, String partitionId, Long sequenceNumber,
+                           Instant enqueuedTime, String payload) {
+        this.deviceId = deviceId;
+        this.partitionId = partitionId;
+        this.sequenceNumber = sequenceNumber;
+        this.enqueuedTime = enqueuedTime;
+        this.payload = payload;
+        this.createdAt = Instant.now();
+        this.nextAttemptAt = this.createdAt;
+    }
+
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getDeviceId() { return deviceId; }
+    public void setDeviceId(String deviceId) { this.deviceId = deviceId; }
+
+    public String getPartitionId() { return partitionId; }
+    public void setPartitionId(String partitionId) { this.partitionId = partitionId; }
+
+    public Long getSequenceNumber() { return sequenceNumber; }
+    public void setSequenceNumber(Long sequenceNumber) { this.sequenceNumber = sequenceNumber; }
+
+    public Instant getEnqueuedTime() { return enqueuedTime; }
+    public void setEnqueuedTime(Instant enqueuedTime) { this.enqueuedTime = enqueuedTime; }
+
+    public String getPayload() { return payload; }
+    public void setPayload(String payload) { this.payload = payload; }
+
+    public String getErrorClass() { return errorClass; }
+    public void setErrorClass(String errorClass) { this.errorClass = errorClass; }
+
+    public String getLastError() { return lastError; }
+    public void setLastError(String lastError) { this.lastError = lastError; }
+
+    public Status getStatus() { return status; }
+    public void setStatus(Status status) { this.status = status; }
+
+    public int getAttempts() { return attempts; }
+    public void setAttempts(int attempts) { this.attempts = attempts; }
+
+    public Instant getNextAttemptAt() { return nextAttemptAt; }
+    public void setNextAttemptAt(Instant nextAttemptAt) { this.nextAttemptAt = nextAttemptAt; }
+
+    public Instant getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+
+    public Instant getResolvedAt() { return resolvedAt; }
+    public void setResolvedAt(Instant resolvedAt) { this.resolvedAt = resolvedAt; }
+
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
+}
@@ -0,0 +1,65 @@
+package edu.university.iot.model;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * Last processed position of one Event Hub partition for a consumer group.
+ */
+@Entity
+@Table(name = "event_hub_checkpoints", indexes = {
+    @Index(name = "idx_checkpoint_hub_group", columnList = "fullyQualifiedNamespace, eventHubName, consumerGroup")
+})
+public class EventHubCheckpoint {
+
+    // namespace/eventHub/consumerGroup/partitionId
+    @Id
+    @Column(length = 400)
+    private String id;
+
+    @Column(nullable = false, length = 200)
+    private String fullyQualifiedNamespace;
+
+    @Column(nullable = false, length = 100)
+    private String eventHubName;
+
+    @Column(nullable = false, length = 100)
+    private String consumerGroup;
+
+    @Column(nullable = false, length = 32)
+    private String partitionId;
+
+    @Column(name = "offset_value")
+    private Long offset;
+
+    private Long sequenceNumber;
+
+    @Column(nullable = false)
+    private Instant updatedAt;
+
+    public EventHubCheckpoint() {}
+
+    public EventHubCheckpoint(String id, String fullyQualifiedNamespace, String eventHubName,
+                              String consumerGroup, String partitionId) {
+        this.id = id;
+        this.fullyQualifiedNamespace = fullyQualifiedNamespace;
+        this.eventHubName = eventHubName;
+        this.consumerGroup = consumerGroup;
+        this.partitionId = partitionId;
+    }
+
+    public String getId() { return id; }
+    public String getFullyQualifiedNamespace() { return fullyQualifiedNamespace; }
+    public String getEventHubName() { return eventHubName; }
+    public String getConsumerGroup() { return consumerGroup; }
+    public String getPartitionId() { return partitionId; }
+
+    public Long getOffset() { return offset; }
+    public void setOffset(Long offset) { this.offset = offset; }
+
+    public Long getSequenceNumber() { return sequenceNumber; }
+    public void setSequenceNumber(Long sequenceNumber) { this.sequenceNumber = sequenceNumber; }
+
+    public Instant getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(Instant updatedAt) { this.updatedAt = updatedAt; }
+}
@@ -0,0 +1,67 @@
+package edu.university.iot.model;
+
+import jakarta.persistence.*;
+
+/**
+ * Which processor instance currently owns an Event Hub partition.
+ *
+ * Claims are optimistic: an update only succeeds if the stored eTag still
+ * matches the one the claimant read.
+ */
+@Entity
+@Table(name = "event_hub_ownership", indexes = {
+    @Index(name = "idx_ownership_hub_group", columnList = "fullyQualifiedNamespace, eventHubName, consumerGroup")
+})
+public class EventHubOwnership {
+
+    // namespace/eventHub/consumerGroup/partitionId
+    @Id
+    @Column(length = 400)
+    private String id;
+
+    @Column(nullable = false, length = 200)
+    private String fullyQualifiedNamespace;
+
+    @Column(nullable = false, length = 100)
+    private String eventHubName;
+
+    @Column(nullable = false, length = 100)
+    private String consumerGroup;
+
+    @Column(nullable = false, length = 32)
+    private String partitionId;
+
+    @Column(length = 100)
+    private String ownerId;
+
+    private Long lastModifiedTime;
+
+    @Column(nullable = false, length = 36)
+    private String etag;
+
+    public EventHubOwnership() {}
+
+    public EventHubOwnership(String id, String fullyQualifiedNamespace, String eventHubName,
+                             String consumerGroup, String partitionId) {
+        this.id = id;
+        this.fullyQualifiedNamespace = fullyQualifiedNamespace;
+        this.eventHubName = eventHubName;
+        this.consumerGroup = consumerGroup;
+        this.partitionId = partitionId;
+    }
+
+    public String getId() { return id; }
+    public String getFullyQualifiedNamespace() { return fullyQualifiedNamespace; }
+    public String getEventHubName() { return eventHubName; }
+    public String getConsumerGroup() { return consumerGroup; }
+    public String getPartitionId() { return partitionId; }
+
+    public String getOwnerId() { return ownerId; }
+    public void setOwnerId(String ownerId) { this.ownerId = ownerId; }
+
+    public Long getLastModifiedTime() { return lastModifiedTime; }
+    public void setLastModifiedTime(Long lastModifiedTime) { this.lastModifiedTime = lastModifiedTime; }
+
+    public String getEtag() { return etag; }
+    public void setEtag(String etag) { this.etag = etag; }
+}
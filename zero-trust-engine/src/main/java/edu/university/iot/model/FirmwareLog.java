@@ -1,11 +1,14 @@
 package edu.university.iot.model;
 
 import jakarta.persistence.*;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Objects;
 
 @Entity
 @Table(name = "firmware_logs")
-public class FirmwareLog {
+public class FirmwareLog implements ChangeTrackedLog<FirmwareLog> {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -26,6 +29,13 @@ public class FirmwareLog {
     @Column(name = "timestamp")
     private LocalDateTime timestamp;
 
+    // Checks this row stands for in change-only mode (see ChangeTrackedLog)
+    @Column(name = "repeat_count", nullable = false, columnDefinition = "int default 1")
+    private int repeatCount = 1;
+
+    @Column(name = "first_seen_at")
+    private LocalDateTime firstSeenAt;
+
     public FirmwareLog() {}
 
     public FirmwareLog(String deviceId, String firmwareVersion, boolean firmwareValid, LocalDateTime timestamp) {
@@ -53,6 +63,40 @@ public class FirmwareLog {
 
     public LocalDateTime getTimestamp() { return timestamp; }
     public void setTimestamp(LocalDateTime timestamp) { this.timestamp = timestamp; }
+
+    public int getRepeatCount() { return repeatCount; }
+    public void setRepeatCount(int repeatCount) { this.repeatCount = repeatCount; }
+
+    public LocalDateTime getFirstSeenAt() { return firstSeenAt; }
+    public void setFirstSeenAt(LocalDateTime firstSeenAt) { this.firstSeenAt = firstSeenAt; }
+
+    @Override
+    public Instant observedAt() {
+        return timestamp != null ? timestamp.atZone(ZoneId.systemDefault()).toInstant() : null;
+    }
+
+    @Override
+    public Instant firstObservedAt() {
+        return firstSeenAt != null ? firstSeenAt.atZone(ZoneId.systemDefault()).toInstant() : observedAt();
+    }
+
+    @Override
+    public boolean sameState(FirmwareLog other) {
+        return firmwareValid == other.firmwareValid
+            && Objects.equals(firmwareVersion, other.firmwareVersion)
+            && Objects.equals(reportedPatchStatus, other.reportedPatchStatus)
+            && Objects.equals(deviceId, other.deviceId);
+    }
+
+    @Override
+    public FirmwareLog summaryOf(int repeatCount, Instant firstSeen, Instant lastSeen) {
+        FirmwareLog summary = new FirmwareLog(deviceId, firmwareVersion, firmwareValid,
+                LocalDateTime.ofInstant(lastSeen, ZoneId.systemDefault()));
+        summary.setReportedPatchStatus(reportedPatchStatus);
+        summary.setRepeatCount(repeatCount);
+        summary.setFirstSeenAt(LocalDateTime.ofInstant(firstSeen, ZoneId.systemDefault()));
+        return summary;
+    }
 }
 
 
@@ -3,9 +3,10 @@ package edu.university.iot.model;
 
 import jakarta.persistence.*;
 import java.time.Instant;
+import java.util.Objects;
 
 @Entity
-public class IdentityLog {
+public class IdentityLog implements ChangeTrackedLog<IdentityLog> {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -14,6 +15,13 @@ public class IdentityLog {
     private boolean identityVerified;
     private Instant timestamp;
 
+    // Checks this row stands for in change-only mode (see ChangeTrackedLog)
+    @Column(name = "repeat_count", nullable = false, columnDefinition = "int default 1")
+    private int repeatCount = 1;
+
+    @Column(name = "first_seen_at")
+    private Instant firstSeenAt;
+
     public IdentityLog() {}
 
     public IdentityLog(String deviceId, boolean certificateValid, boolean identityVerified, Instant timestamp) {
@@ -38,4 +46,31 @@ public class IdentityLog {
 
     public Instant getTimestamp() { return timestamp; }
     public void setTimestamp(Instant timestamp) { this.timestamp = timestamp; }
+
+    public int getRepeatCount() { return repeatCount; }
+    public void setRepeatCount(int repeatCount) { this.repeatCount = repeatCount; }
+
+    public Instant getFirstSeenAt() { return firstSeenAt; }
+    public void setFirstSeenAt(Instant firstSeenAt) { this.firstSeenAt = firstSeenAt; }
+
+    @Override
+    public Instant observedAt() { return timestamp; }
+
+    @Override
+    public Instant firstObservedAt() { return firstSeenAt != null ? firstSeenAt : timestamp; }
+
+    @Override
+    public boolean sameState(IdentityLog other) {
+        return certificateValid == other.certificateValid
+            && identityVerified == other.identityVerified
+            && Objects.equals(deviceId, other.deviceId);
+    }
+
+    @Override
+    public IdentityLog summaryOf(int repeatCount, Instant firstSeen, Instant lastSeen) {
+        IdentityLog summary = new IdentityLog(deviceId, certificateValid, identityVerified, lastSeen);
+        summary.setRepeatCount(repeatCount);
+        summary.setFirstSeenAt(firstSeen);
+        return summary;
+    }
 }
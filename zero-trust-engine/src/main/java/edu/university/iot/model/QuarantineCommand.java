@@ -0,0 +1,105 @@
+package edu.university.iot.model;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * Durable request to disable a device in IoT Hub.
+ *
+ * Written in the same transaction that quarantines the device locally and
+ * executed later by QuarantineCommandExecutor, so ingestion never waits on IoT Hub.
+ */
+@Entity
+@Table(name = "quarantine_commands", indexes = {
+    @Index(name = "idx_quarantine_cmd_status_next", columnList = "status, next_attempt_at"),
+    @Index(name = "idx_quarantine_cmd_device", columnList = "device_id")
+})
+public class QuarantineCommand {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "device_id", nullable = false)
+    private String deviceId;
+
+    @Column(name = "reason", nullable = false)
+    private String reason;
+
+    // QuarantineLog row updated with the final outcome
+    @Column(name = "quarantine_log_id")
+    private Long quarantineLogId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private Status status = Status.PENDING;
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private Instant nextAttemptAt;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    @Column(name = "completed_at")
+    private Instant completedAt;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    @Version
+    private Long version;
+
+    public enum Status {
+        PENDING,
+        DONE,
+        FAILED
+    }
+
+    // Constructors
+    public QuarantineCommand() {}
+
+    public QuarantineCommand(String deviceId, String reason, Long quarantineLogId) {
+        this.deviceId = deviceId;
+        this.reason = reason;
+        this.quarantineLogId = quarantineLogId;
+        this.createdAt = Instant.now();
+        this.nextAttemptAt = this.createdAt;
+    }
+
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getDeviceId() { return deviceId; }
+    public void setDeviceId(String deviceId) { this.deviceId = deviceId; }
+
+    public String getReason() { return reason; }
+    public void setReason(String reason) { this.reason = reason; }
+
+    public Long getQuarantineLogId() { return quarantineLogId; }
+    public void setQuarantineLogId(Long quarantineLogId) { this.quarantineLogId = quarantineLogId; }
+
+    public Status getStatus() { return status; }
+    public void setStatus(Status status) { this.status = status; }
+
+    public int getAttempts() { return attempts; }
+    public void setAttempts(int attempts) { this.attempts = attempts; }
+
+    public Instant getNextAttemptAt() { return nextAttemptAt; }
+    public void setNextAttemptAt(Instant nextAttemptAt) { this.nextAttemptAt = nextAttemptAt; }
+
+    public Instant getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+
+    public Instant getCompletedAt() { return completedAt; }
+    public void setCompletedAt(Instant completedAt) { this.completedAt = completedAt; }
+
+    public String getLastError() { return lastError; }
+    public void setLastError(String lastError) { this.lastError = lastError; }
+
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
+}
@@ -0,0 +1,46 @@
+package edu.university.iot.model;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * Highest source row id already folded into a rollup table, and the ids below
+ * it that were still uncommitted when the watermark passed them.
+ */
+@Entity
+@Table(name = "rollup_watermarks")
+public class RollupWatermark {
+
+    @Id
+    @Column(length = 64)
+    private String name;
+
+    @Column(nullable = false)
+    private long lastSourceId;
+
+    private Instant updatedAt;
+
+    // "from-to@epochSecond" ranges, see TrustRollupService.PendingGaps
+    @Column(columnDefinition = "TEXT")
+    private String pendingGaps;
+
+    // Constructors
+    public RollupWatermark() {}
+
+    public RollupWatermark(String name) {
+        this.name = name;
+    }
+
+    // Getters and Setters
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+
+    public long getLastSourceId() { return lastSourceId; }
+    public void setLastSourceId(long lastSourceId) { this.lastSourceId = lastSourceId; }
+
+    public Instant getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(Instant updatedAt) { this.updatedAt = updatedAt; }
+
+    public String getPendingGaps() { return pendingGaps; }
+    public void setPendingGaps(String pendingGaps) { this.pendingGaps = pendingGaps; }
+}
@@ -0,0 +1,125 @@
+package edu.university.iot.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * A batch of trust_score_history rows whose Merkle root is anchored on-chain
+ * through the TrustRecord contract.
+ */
+@Entity
+@Table(name = "trust_anchor_batches", indexes = {
+    @Index(name = "idx_anchor_batch_status", columnList = "status")
+})
+public class TrustAnchorBatch {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "merkle_root", nullable = false, length = 66)
+    private String merkleRoot;
+
+    @Column(name = "leaf_count", nullable = false)
+    private int leafCount;
+
+    @Column(name = "first_history_id", nullable = false)
+    private Long firstHistoryId;
+
+    @Column(name = "last_history_id", nullable = false)
+    private Long lastHistoryId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    private Status status = Status.SEALED;
+
+    @Column(name = "transaction_hash", length = 66)
+    private String transactionHash;
+
+    @Column(name = "block_number")
+    private Long blockNumber;
+
+    @Column(name = "submit_attempts", nullable = false)
+    private int submitAttempts;
+
+    @Column(name = "error_message", length = 1000)
+    private String errorMessage;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    @Column(name = "submitted_at")
+    private Instant submittedAt;
+
+    @Column(name = "confirmed_at")
+    private Instant confirmedAt;
+
+    // History id (8 bytes) and leaf hash (32 bytes) of every leaf, in leaf order,
+    // so proofs can still be built after retention has deleted rows of the batch
+    @JsonIgnore
+    @Column(name = "leaves", columnDefinition = "MEDIUMBLOB")
+    private byte[] leaves;
+
+    public enum Status {
+        SEALED,     // root computed, rows assigned, not yet on-chain
+        SUBMITTED,  // transaction sent, waiting for receipt
+        CONFIRMED,  // receipt with success status
+        FAILED,     // last submission failed, will be retried
+        REJECTED    // the contract holds another root for this batch id; never retried
+    }
+
+    // Constructors
+    public TrustAnchorBatch() {}
+
+    public TrustAnchorBatch(String merkleRoot, int leafCount, Long firstHistoryId, Long lastHistoryId) {
+        this.merkleRoot = merkleRoot;
+        this.leafCount = leafCount;
+        this.firstHistoryId = firstHistoryId;
+        this.lastHistoryId = lastHistoryId;
+        this.createdAt = Instant.now();
+    }
+
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getMerkleRoot() { return merkleRoot; }
+    public void setMerkleRoot(String merkleRoot) { this.merkleRoot = merkleRoot; }
+
+    public int getLeafCount() { return leafCount; }
+    public void setLeafCount(int leafCount) { this.leafCount = leafCount; }
+
+    public Long getFirstHistoryId() { return firstHistoryId; }
+    public void setFirstHistoryId(Long firstHistoryId) { this.firstHistoryId = firstHistoryId; }
+
+    public Long getLastHistoryId() { return lastHistoryId; }
+    public void setLastHistoryId(Long lastHistoryId) { this.lastHistoryId = lastHistoryId; }
+
+    public Status getStatus() { return status; }
+    public void setStatus(Status status) { this.status = status; }
+
+    public String getTransactionHash() { return transactionHash; }
+    public void setTransactionHash(String transactionHash) { this.transactionHash = transactionHash; }
+
+    public Long getBlockNumber() { return blockNumber; }
+    public void setBlockNumber(Long blockNumber) { this.blockNumber = blockNumber; }
+
+    public int getSubmitAttempts() { return submitAttempts; }
+    public void setSubmitAttempts(int submitAttempts) { this.submitAttempts = submitAttempts; }
+
+    public String getErrorMessage() { return errorMessage; }
+    public void setErrorMessage(String errorMessage) { this.errorMessage = errorMessage; }
+
+    public Instant getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+
+    public Instant getSubmittedAt() { return submittedAt; }
+    public void setSubmittedAt(Instant submittedAt) { this.submittedAt = submittedAt; }
+
+    public Instant getConfirmedAt() { return confirmedAt; }
+    public void setConfirmedAt(Instant confirmedAt) { this.confirmedAt = confirmedAt; }
+
+    public byte[] getLeaves() { return leaves; }
+    public void setLeaves(byte[] leaves) { this.leaves = leaves; }
+}
@@ -10,7 +10,8 @@ import java.time.Instant;
 @Table(name = "trust_score_history", indexes = {
     @Index(name = "idx_trust_history_device_timestamp", columnList = "deviceId, timestamp"),
     @Index(name = "idx_trust_history_timestamp", columnList = "timestamp"),
-    @Index(name = "idx_trust_history_severity", columnList = "severity")
+    @Index(name = "idx_trust_history_severity", columnList = "severity"),
+    @Index(name = "idx_trust_history_anchor_batch", columnList = "anchorBatchId")
 })
 public class TrustScoreHistory {
 
@@ -71,6 +72,10 @@ public class TrustScoreHistory {
     @Column
     private Double networkTrafficAtChange;
 
+    // On-chain anchoring (null until the row is sealed into a Merkle batch)
+    @Column
+    private Long anchorBatchId;
+
     // Constructors
     public TrustScoreHistory() {}
 
@@ -137,4 +142,7 @@ public class TrustScoreHistory {
 
     public Double getNetworkTrafficAtChange() { return networkTrafficAtChange; }
     public void setNetworkTrafficAtChange(Double networkTrafficAtChange) { this.networkTrafficAtChange = networkTrafficAtChange; }
+
+    public Long getAnchorBatchId() { return anchorBatchId; }
+    public void setAnchorBatchId(Long anchorBatchId) { this.anchorBatchId = anchorBatchId; }
 }
\ No newline at end of file
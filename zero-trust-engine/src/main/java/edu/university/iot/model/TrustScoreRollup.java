@@ -0,0 +1,194 @@
+package edu.university.iot.model;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * Per-device aggregate of trust score history over one hour or one day.
+ * Maintained incrementally by TrustRollupService so analytics never have to
+ * group raw trust_score_history rows.
+ */
+@Entity
+@Table(name = "trust_score_rollups",
+    uniqueConstraints = @UniqueConstraint(name = "uk_trust_rollup_bucket",
+        columnNames = {"deviceId", "granularity", "bucketStart"}),
+    indexes = @Index(name = "idx_trust_rollup_granularity_bucket", columnList = "granularity, bucketStart"))
+public class TrustScoreRollup {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String deviceId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 10)
+    private Granularity granularity;
+
+    // Inclusive start of the UTC hour/day this row covers
+    @Column(nullable = false)
+    private Instant bucketStart;
+
+    private long changeCount;
+    private long improvingCount;
+    private double netChange;
+    private Double minScore;
+    private Double maxScore;
+    private Double lastScore;
+    private Instant lastChangeAt;
+
+    // Factor failure counts (rows where the factor did not pass)
+    private long identityFailures;
+    private long contextFailures;
+    private long firmwareFailures;
+    private long anomalies;
+    private long complianceFailures;
+
+    // Severity counts
+    private long highCount;
+    private long criticalCount;
+
+    public enum Granularity {
+        HOURLY(3600),
+        DAILY(86400);
+
+        private final long seconds;
+
+        Granularity(long seconds) {
+            this.seconds = seconds;
+        }
+
+        public Instant bucketOf(Instant timestamp) {
+            long epoch = timestamp.getEpochSecond();
+            return Instant.ofEpochSecond(epoch - Math.floorMod(epoch, seconds));
+        }
+
+        /**
+         * Start of the first bucket that lies entirely at or after {@code timestamp}.
+         */
+        public Instant firstBucketFrom(Instant timestamp) {
+            Instant bucket = bucketOf(timestamp);
+            return bucket.equals(timestamp) ? bucket : bucket.plusSeconds(seconds);
+        }
+    }
+
+    // Constructors
+    public TrustScoreRollup() {}
+
+    public TrustScoreRollup(String deviceId, Granularity granularity, Instant bucketStart) {
+        this.deviceId = deviceId;
+        this.granularity = granularity;
+        this.bucketStart = bucketStart;
+    }
+
+    /**
+     * Folds one history row into this aggregate.
+     */
+    public void add(TrustScoreHistory h) {
+        double change = h.getScoreChange() != null ? h.getScoreChange() : 0.0;
+        changeCount++;
+        if (change > 0) improvingCount++;
+        netChange += change;
+
+        Double score = h.getNewScore();
+        if (score != null) {
+            minScore = minScore == null ? score : Math.min(minScore, score);
+            maxScore = maxScore == null ? score : Math.max(maxScore, score);
+            if (lastChangeAt == null || (h.getTimestamp() != null && !h.getTimestamp().isBefore(lastChangeAt))) {
+                lastScore = score;
+                lastChangeAt = h.getTimestamp();
+            }
+        }
+
+        if (!Boolean.TRUE.equals(h.isIdentityPassed())) identityFailures++;
+        if (!Boolean.TRUE.equals(h.isContextPassed())) contextFailures++;
+        if (!Boolean.TRUE.equals(h.isFirmwareValid())) firmwareFailures++;
+        if (Boolean.TRUE.equals(h.isAnomalyDetected())) anomalies++;
+        if (!Boolean.TRUE.equals(h.isCompliancePassed())) complianceFailures++;
+
+        if ("HIGH".equals(h.getSeverity())) highCount++;
+        if ("CRITICAL".equals(h.getSeverity())) criticalCount++;
+    }
+
+    /**
+     * Adds another aggregate's counts into this one.
+     */
+    public void merge(TrustScoreRollup other) {
+        changeCount += other.changeCount;
+        improvingCount += other.improvingCount;
+        netChange += other.netChange;
+        if (other.minScore != null) minScore = minScore == null ? other.minScore : Math.min(minScore, other.minScore);
+        if (other.maxScore != null) maxScore = maxScore == null ? other.maxScore : Math.max(maxScore, other.maxScore);
+        if (other.lastChangeAt != null && (lastChangeAt == null || !other.lastChangeAt.isBefore(lastChangeAt))) {
+            lastScore = other.lastScore;
+            lastChangeAt = other.lastChangeAt;
+        }
+        identityFailures += other.identityFailures;
+        contextFailures += other.contextFailures;
+        firmwareFailures += other.firmwareFailures;
+        anomalies += other.anomalies;
+        complianceFailures += other.complianceFailures;
+        highCount += other.highCount;
+        criticalCount += other.criticalCount;
+    }
+
+    public long getDegradingCount() {
+        return changeCount - improvingCount;
+    }
+
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getDeviceId() { return deviceId; }
+    public void setDeviceId(String deviceId) { this.deviceId = deviceId; }
+
+    public Granularity getGranularity() { return granularity; }
+    public void setGranularity(Granularity granularity) { this.granularity = granularity; }
+
+    public Instant getBucketStart() { return bucketStart; }
+    public void setBucketStart(Instant bucketStart) { this.bucketStart = bucketStart; }
+
+    public long getChangeCount() { return changeCount; }
+    public void setChangeCount(long changeCount) { this.changeCount = changeCount; }
+
+    public long getImprovingCount() { return improvingCount; }
+    public void setImprovingCount(long improvingCount) { this.improvingCount = improvingCount; }
+
+    public double getNetChange() { return netChange; }
+    public void setNetChange(double netChange) { this.netChange = netChange; }
+
+    public Double getMinScore() { return minScore; }
+    public void setMinScore(Double minScore) { this.minScore = minScore; }
+
+    public Double getMaxScore() { return maxScore; }
+    public void setMaxScore(Double maxScore) { this.maxScore = maxScore; }
+
+    public Double getLastScore() { return lastScore; }
+    public void setLastScore(Double lastScore) { this.lastScore = lastScore; }
+
+    public Instant getLastChangeAt() { return lastChangeAt; }
+    public void setLastChangeAt(Instant lastChangeAt) { this.lastChangeAt = lastChangeAt; }
+
+    public long getIdentityFailures() { return identityFailures; }
+    public void setIdentityFailures(long identityFailures) { this.identityFailures = identityFailures; }
+
+    public long getContextFailures() { return contextFailures; }
+    public void setContextFailures(long contextFailures) { this.contextFailures = contextFailures; }
+
+    public long getFirmwareFailures() { return firmwareFailures; }
+    public void setFirmwareFailures(long firmwareFailures) { this.firmwareFailures = firmwareFailures; }
+
+    public long getAnomalies() { return anomalies; }
+    public void setAnomalies(long anomalies) { this.anomalies = anomalies; }
+
+    public long getComplianceFailures() { return complianceFailures; }
+    public void setComplianceFailures(long complianceFailures) { this.complianceFailures = complianceFailures; }
+
+    public long getHighCount() { return highCount; }
+    public void setHighCount(long highCount) { this.highCount = highCount; }
+
+    public long getCriticalCount() { return criticalCount; }
+    public void setCriticalCount(long criticalCount) { this.criticalCount = criticalCount; }
+}
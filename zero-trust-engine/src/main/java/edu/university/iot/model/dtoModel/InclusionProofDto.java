@@ -0,0 +1,82 @@
+package edu.university.iot.model.dtoModel;
+
+import java.util.List;
+
+/**
+ * Merkle inclusion proof for one trust_score_history row. Each proof step is
+ * a sibling hash and whether it sits on the LEFT or RIGHT of the running hash.
+ */
+public class InclusionProofDto {
+    private Long historyId;
+    private String deviceId;
+    private Long batchId;
+    private int leafIndex;
+    private int leafCount;
+    private String leafData;
+    private String leafHash;
+    private List<ProofStepDto> proof;
+    private String merkleRoot;
+    private String batchStatus;
+    private String transactionHash;
+    private Long blockNumber;
+    private boolean verified;
+
+    public InclusionProofDto() {}
+
+    public static class ProofStepDto {
+        private String hash;
+        private String position;
+
+        public ProofStepDto() {}
+
+        public ProofStepDto(String hash, String position) {
+            this.hash = hash;
+            this.position = position;
+        }
+
+        public String getHash() { return hash; }
+        public void setHash(String hash) { this.hash = hash; }
+
+        public String getPosition() { return position; }
+        public void setPosition(String position) { this.position = position; }
+    }
+
+    public Long getHistoryId() { return historyId; }
+    public void setHistoryId(Long historyId) { this.historyId = historyId; }
+
+    public String getDeviceId() { return deviceId; }
+    public void setDeviceId(String deviceId) { this.deviceId = deviceId; }
+
+    public Long getBatchId() { return batchId; }
+    public void setBatchId(Long batchId) { this.batchId = batchId; }
+
+    public int getLeafIndex() { return leafIndex; }
+    public void setLeafIndex(int leafIndex) { this.leafIndex = leafIndex; }
+
+    public int getLeafCount() { return leafCount; }
+    public void setLeafCount(int leafCount) { this.leafCount = leafCount; }
+
+    public String getLeafData() { return leafData; }
+    public void setLeafData(String leafData) { this.leafData = leafData; }
+
+    public String getLeafHash() { return leafHash; }
+    public void setLeafHash(String leafHash) { this.leafHash = leafHash; }
+
+    public List<ProofStepDto> getProof() { return proof; }
+    public void setProof(List<ProofStepDto> proof) { this.proof = proof; }
+
+    public String getMerkleRoot() { return merkleRoot; }
+    public void setMerkleRoot(String merkleRoot) { this.merkleRoot = merkleRoot; }
+
+    public String getBatchStatus() { return batchStatus; }
+    public void setBatchStatus(String batchStatus) { this.batchStatus = batchStatus; }
+
+    public String getTransactionHash() { return transactionHash; }
+    public void setTransactionHash(String transactionHash) { this.transactionHash = transactionHash; }
+
+    public Long getBlockNumber() { return blockNumber; }
+    public void setBlockNumber(Long blockNumber) { this.blockNumber = blockNumber; }
+
+    public boolean isVerified() { return verified; }
+    public void setVerified(boolean verified) { this.verified = verified; }
+}
@@ -0,0 +1,91 @@
+package edu.university.iot.model.dtoModel;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * DTO for a what-if replay of trust score history under a candidate policy,
+ * compared with the same replay under the active policy
+ */
+public class PolicyReplayDto {
+    private String activeVersion;
+    private String candidateVersion;
+    private Instant from;
+    private Instant to;
+    private long rows;
+    private int devices;
+    private long elapsedMs;
+
+    // Entries into untrusted state (each one a quarantine) under either policy
+    private long activeQuarantines;
+    private long candidateQuarantines;
+    private int activeQuarantinedDevices;
+    private int candidateQuarantinedDevices;
+
+    // Differences between the two replays
+    private long differingQuarantines;
+    private long trustFlips;
+    private int affectedDevices;
+    private int newlyQuarantinedDevices;
+    private int noLongerQuarantinedDevices;
+    private List<String> newlyQuarantinedSample;
+    private List<String> noLongerQuarantinedSample;
+
+    // Constructors
+    public PolicyReplayDto() {}
+
+    // Getters and Setters
+    public String getActiveVersion() { return activeVersion; }
+    public void setActiveVersion(String activeVersion) { this.activeVersion = activeVersion; }
+
+    public String getCandidateVersion() { return candidateVersion; }
+    public void setCandidateVersion(String candidateVersion) { this.candidateVersion = candidateVersion; }
+
+    public Instant getFrom() { return from; }
+    public void setFrom(Instant from) { this.from = from; }
+
+    public Instant getTo() { return to; }
+    public void setTo(Instant to) { this.to = to; }
+
+    public long getRows() { return rows; }
+    public void setRows(long rows) { this.rows = rows; }
+
+    public int getDevices() { return devices; }
+    public void setDevices(int devices) { this.devices = devices; }
+
+    public long getElapsedMs() { return elapsedMs; }
+    public void setElapsedMs(long elapsedMs) { this.elapsedMs = elapsedMs; }
+
+    public long getActiveQuarantines() { return activeQuarantines; }
+    public void setActiveQuarantines(long activeQuarantines) { this.activeQuarantines = activeQuarantines; }
+
+    public long getCandidateQuarantines() { return candidateQuarantines; }
+    public void setCandidateQuarantines(long candidateQuarantines) { this.candidateQuarantines = candidateQuarantines; }
+
+    public int getActiveQuarantinedDevices() { return activeQuarantinedDevices; }
+    public void setActiveQuarantinedDevices(int activeQuarantinedDevices) { this.activeQuarantinedDevices = activeQuarantinedDevices; }
+
+    public int getCandidateQuarantinedDevices() { return candidateQuarantinedDevices; }
+    public void setCandidateQuarantinedDevices(int candidateQuarantinedDevices) { this.candidateQuarantinedDevices = candidateQuarantinedDevices; }
+
+    public long getDifferingQuarantines() { return differingQuarantines; }
+    public void setDifferingQuarantines(long differingQuarantines) { this.differingQuarantines = differingQuarantines; }
+
+    public long getTrustFlips() { return trustFlips; }
+    public void setTrustFlips(long trustFlips) { this.trustFlips = trustFlips; }
+
+    public int getAffectedDevices() { return affectedDevices; }
+    public void setAffectedDevices(int affectedDevices) { this.affectedDevices = affectedDevices; }
+
+    public int getNewlyQuarantinedDevices() { return newlyQuarantinedDevices; }
+    public void setNewlyQuarantinedDevices(int newlyQuarantinedDevices) { this.newlyQuarantinedDevices = newlyQuarantinedDevices; }
+
+    public int getNoLongerQuarantinedDevices() { return noLongerQuarantinedDevices; }
+    public void setNoLongerQuarantinedDevices(int noLongerQuarantinedDevices) { this.noLongerQuarantinedDevices = noLongerQuarantinedDevices; }
+
+    public List<String> getNewlyQuarantinedSample() { return newlyQuarantinedSample; }
+    public void setNewlyQuarantinedSample(List<String> newlyQuarantinedSample) { this.newlyQuarantinedSample = newlyQuarantinedSample; }
+
+    public List<String> getNoLongerQuarantinedSample() { return noLongerQuarantinedSample; }
+    public void setNoLongerQuarantinedSample(List<String> noLongerQuarantinedSample) { this.noLongerQuarantinedSample = noLongerQuarantinedSample; }
+}
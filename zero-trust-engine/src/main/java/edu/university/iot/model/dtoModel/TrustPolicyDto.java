@@ -0,0 +1,103 @@
+package edu.university.iot.model.dtoModel;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Trust policy as written in trust-policy.json: per device profile, the
+ * trust threshold, reward/penalty weights per factor and compliance rules.
+ * Omitted weights and rules take the built-in defaults.
+ */
+public class TrustPolicyDto {
+    private String version;
+    private String defaultProfile = "DEFAULT";
+    private Map<String, ProfileDto> profiles = new LinkedHashMap<>();
+
+    public TrustPolicyDto() {}
+
+    public static class ProfileDto {
+        private double trustedThreshold = 70.0;
+        private double baselineScore = 50.0;
+        private WeightDto identity = new WeightDto(1.0, 5.0);
+        private WeightDto context = new WeightDto(0.5, 2.0);
+        private WeightDto firmware = new WeightDto(1.0, 5.0);
+        // Reward when no anomaly is detected, penalty when one is
+        private WeightDto anomaly = new WeightDto(2.0, 10.0);
+        private WeightDto compliance = new WeightDto(2.0, 10.0);
+        private ComplianceRulesDto complianceRules = new ComplianceRulesDto();
+
+        public ProfileDto() {}
+
+        public double getTrustedThreshold() { return trustedThreshold; }
+        public void setTrustedThreshold(double trustedThreshold) { this.trustedThreshold = trustedThreshold; }
+
+        public double getBaselineScore() { return baselineScore; }
+        public void setBaselineScore(double baselineScore) { this.baselineScore = baselineScore; }
+
+        public WeightDto getIdentity() { return identity; }
+        public void setIdentity(WeightDto identity) { this.identity = identity; }
+
+        public WeightDto getContext() { return context; }
+        public void setContext(WeightDto context) { this.context = context; }
+
+        public WeightDto getFirmware() { return firmware; }
+        public void setFirmware(WeightDto firmware) { this.firmware = firmware; }
+
+        public WeightDto getAnomaly() { return anomaly; }
+        public void setAnomaly(WeightDto anomaly) { this.anomaly = anomaly; }
+
+        public WeightDto getCompliance() { return compliance; }
+        public void setCompliance(WeightDto compliance) { this.compliance = compliance; }
+
+        public ComplianceRulesDto getComplianceRules() { return complianceRules; }
+        public void setComplianceRules(ComplianceRulesDto complianceRules) { this.complianceRules = complianceRules; }
+    }
+
+    public static class WeightDto {
+        private double reward;
+        private double penalty;
+
+        public WeightDto() {}
+
+        public WeightDto(double reward, double penalty) {
+            this.reward = reward;
+            this.penalty = penalty;
+        }
+
+        public double getReward() { return reward; }
+        public void setReward(double reward) { this.reward = reward; }
+
+        public double getPenalty() { return penalty; }
+        public void setPenalty(double penalty) { this.penalty = penalty; }
+    }
+
+    public static class ComplianceRulesDto {
+        // Patch status must be one of these unless the device allows outdated patches
+        private boolean requireCurrentPatch = true;
+        private List<String> currentPatchStatuses = new ArrayList<>(List.of("Up-to-date"));
+        private boolean requireExpectedFirmware = true;
+
+        public ComplianceRulesDto() {}
+
+        public boolean isRequireCurrentPatch() { return requireCurrentPatch; }
+        public void setRequireCurrentPatch(boolean requireCurrentPatch) { this.requireCurrentPatch = requireCurrentPatch; }
+
+        public List<String> getCurrentPatchStatuses() { return currentPatchStatuses; }
+        public void setCurrentPatchStatuses(List<String> currentPatchStatuses) { this.currentPatchStatuses = currentPatchStatuses; }
+
+        public boolean isRequireExpectedFirmware() { return requireExpectedFirmware; }
+        public void setRequireExpectedFirmware(boolean requireExpectedFirmware) { this.requireExpectedFirmware = requireExpectedFirmware; }
+    }
+
+    // Getters and Setters
+    public String getVersion() { return version; }
+    public void setVersion(String version) { this.version = version; }
+
+    public String getDefaultProfile() { return defaultProfile; }
+    public void setDefaultProfile(String defaultProfile) { this.defaultProfile = defaultProfile; }
+
+    public Map<String, ProfileDto> getProfiles() { return profiles; }
+    public void setProfiles(Map<String, ProfileDto> profiles) { this.profiles = profiles; }
+}
@@ -22,4 +22,9 @@ public interface AnomalyLogRepository extends JpaRepository<AnomalyLog, Long> {
     // Count recent anomalies
     @Query("SELECT COUNT(a) FROM AnomalyLog a WHERE a.deviceId = :deviceId AND a.timestamp > :timestamp AND a.anomalyDetected = true")
     long countRecentAnomaliesByDevice(@Param("deviceId") String deviceId, @Param("timestamp") Instant timestamp);
+
+    // Per device: [deviceId, checks, anomalies] since the cutoff
+    @Query("SELECT a.deviceId, COUNT(a), SUM(CASE WHEN a.anomalyDetected = true THEN 1 ELSE 0 END) " +
+           "FROM AnomalyLog a WHERE a.timestamp > :cutoff GROUP BY a.deviceId")
+    List<Object[]> countAnomaliesByDeviceSince(@Param("cutoff") Instant cutoff);
 }
\ No newline at end of file
@@ -0,0 +1,40 @@
+package edu.university.iot.repository;
+
+import edu.university.iot.model.ClusterNode;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+public interface ClusterNodeRepository extends JpaRepository<ClusterNode, String> {
+
+    // Registers the node or refreshes its heartbeat, stamped with the database clock
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO cluster_nodes (node_id, address, consumer_group, virtual_nodes, started_at, last_heartbeat) " +
+                   "VALUES (:nodeId, :address, :consumerGroup, :virtualNodes, UTC_TIMESTAMP(6), UTC_TIMESTAMP(6)) " +
+                   "ON DUPLICATE KEY UPDATE address = VALUES(address), consumer_group = VALUES(consumer_group), " +
+                   "virtual_nodes = VALUES(virtual_nodes), last_heartbeat = UTC_TIMESTAMP(6)",
+           nativeQuery = true)
+    int heartbeat(@Param("nodeId") String nodeId,
+                  @Param("address") String address,
+                  @Param("consumerGroup") String consumerGroup,
+                  @Param("virtualNodes") int virtualNodes);
+
+    // Nodes whose last heartbeat is at most timeoutMs old
+    @Query(value = "SELECT * FROM cluster_nodes " +
+                   "WHERE last_heartbeat >= UTC_TIMESTAMP(6) - INTERVAL (:timeoutMs * 1000) MICROSECOND",
+           nativeQuery = true)
+    List<ClusterNode> findLive(@Param("timeoutMs") long timeoutMs);
+
+    // Removes rows of nodes that stopped without leaving
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM cluster_nodes " +
+                   "WHERE last_heartbeat < UTC_TIMESTAMP(6) - INTERVAL (:ageMs * 1000) MICROSECOND",
+           nativeQuery = true)
+    int deleteStale(@Param("ageMs") long ageMs);
+}
@@ -3,8 +3,10 @@ package edu.university.iot.repository;
 import edu.university.iot.model.ComplianceLog;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,4 +22,10 @@ public interface ComplianceLogRepository extends JpaRepository<ComplianceLog, Lo
     
     // Get all compliance logs ordered by timestamp (for audit purposes)
     List<ComplianceLog> findAllByOrderByTimestampDesc();
+
+    // Per device: [deviceId, checks, violations] since the cutoff, counting folded checks
+    @Query("SELECT c.deviceId, SUM(c.repeatCount), " +
+           "SUM(CASE WHEN c.compliant = false THEN c.repeatCount ELSE 0 END) " +
+           "FROM ComplianceLog c WHERE c.timestamp > :cutoff GROUP BY c.deviceId")
+    List<Object[]> countViolationsByDeviceSince(@Param("cutoff") Instant cutoff);
 }
\ No newline at end of file
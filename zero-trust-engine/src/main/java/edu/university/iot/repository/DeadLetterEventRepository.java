@@ -0,0 +1,53 @@
+package edu.university.iot.repository;
+
+import edu.university.iot.model.DeadLetterEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface DeadLetterEventRepository extends JpaRepository<DeadLetterEvent, Long> {
+
+    /**
+     * Events whose next attempt (or lease) is due, oldest first
+     */
+    @Query("SELECT d FROM DeadLetterEvent d " +
+           "WHERE d.status = :status AND d.nextAttemptAt <= :now " +
+           "ORDER BY d.nextAttemptAt")
+    List<DeadLetterEvent> findDue(@Param("status") DeadLetterEvent.Status status,
+                                  @Param("now") Instant now,
+                                  Pageable pageable);
+
+    List<DeadLetterEvent> findByStatusOrderByCreatedAtDesc(DeadLetterEvent.Status status, Pageable pageable);
+
+    List<DeadLetterEvent> findAllByOrderByCreatedAtDesc(Pageable pageable);
+
+    long countByStatus(DeadLetterEvent.Status status);
+
+    /**
+     * Marks events applied; runs in the transaction that applied them
+     */
+    @Modifying
+    @Query("UPDATE DeadLetterEvent d SET d.status = :resolved, d.resolvedAt = :now, " +
+           "d.version = d.version + 1 WHERE d.id IN :ids")
+    int markResolved(@Param("ids") Collection<Long> ids,
+                     @Param("resolved") DeadLetterEvent.Status resolved,
+                     @Param("now") Instant now);
+
+    /**
+     * Puts unresolved events back in the queue with a fresh retry budget
+     */
+    @Modifying
+    @Query("UPDATE DeadLetterEvent d SET d.status = :pending, d.attempts = 0, d.nextAttemptAt = :now, " +
+           "d.version = d.version + 1 " +
+           "WHERE d.status <> :resolved AND (:deviceId IS NULL OR d.deviceId = :deviceId)")
+    int requeue(@Param("deviceId") String deviceId,
+                @Param("pending") DeadLetterEvent.Status pending,
+                @Param("resolved") DeadLetterEvent.Status resolved,
+                @Param("now") Instant now);
+}
@@ -1,7 +1,28 @@
 package edu.university.iot.repository;
 
 import edu.university.iot.entity.DeviceRegistry;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
 
 public interface DeviceRegistryRepository extends JpaRepository<DeviceRegistry, String> {
-}
\ No newline at end of file
+
+    // Devices that are quarantined or below the trust threshold (null score counts as 50)
+    @Query("SELECT d FROM DeviceRegistry d WHERE d.quarantined = true " +
+           "OR COALESCE(d.trustScore, 50.0) < :threshold")
+    List<DeviceRegistry> findQuarantinedOrBelowTrust(@Param("threshold") double threshold);
+
+    // Row-locks the devices for the rest of the transaction, in key order to avoid deadlocks
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT d FROM DeviceRegistry d WHERE d.deviceId IN :ids ORDER BY d.deviceId")
+    List<DeviceRegistry> lockAllById(@Param("ids") Collection<String> ids);
+
+    // Expected firmware versions and patch statuses in use, for warming FirmwareVersions
+    @Query("SELECT DISTINCT d.expectedFirmwareVersion, d.expectedPatchStatus FROM DeviceRegistry d")
+    List<Object[]> findDistinctExpectations();
+}
@@ -0,0 +1,12 @@
+package edu.university.iot.repository;
+
+import edu.university.iot.model.EventHubCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface EventHubCheckpointRepository extends JpaRepository<EventHubCheckpoint, String> {
+
+    List<EventHubCheckpoint> findByFullyQualifiedNamespaceAndEventHubNameAndConsumerGroup(
+            String fullyQualifiedNamespace, String eventHubName, String consumerGroup);
+}
@@ -0,0 +1,43 @@
+package edu.university.iot.repository;
+
+import edu.university.iot.model.EventHubOwnership;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+public interface EventHubOwnershipRepository extends JpaRepository<EventHubOwnership, String> {
+
+    List<EventHubOwnership> findByFullyQualifiedNamespaceAndEventHubNameAndConsumerGroup(
+            String fullyQualifiedNamespace, String eventHubName, String consumerGroup);
+
+    // First claim of a partition; returns 0 if another instance created the row first
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT IGNORE INTO event_hub_ownership (id, fully_qualified_namespace, event_hub_name, " +
+                   "consumer_group, partition_id, owner_id, last_modified_time, etag) " +
+                   "VALUES (:id, :namespace, :eventHub, :consumerGroup, :partitionId, :ownerId, :lastModified, :etag)",
+           nativeQuery = true)
+    int insertIfAbsent(@Param("id") String id,
+                       @Param("namespace") String namespace,
+                       @Param("eventHub") String eventHub,
+                       @Param("consumerGroup") String consumerGroup,
+                       @Param("partitionId") String partitionId,
+                       @Param("ownerId") String ownerId,
+                       @Param("lastModified") long lastModified,
+                       @Param("etag") String etag);
+
+    // Compare-and-set claim; returns 0 if someone else changed the row since expectedEtag was read
+    @Modifying
+    @Transactional
+    @Query("UPDATE EventHubOwnership o SET o.ownerId = :ownerId, o.lastModifiedTime = :lastModified, " +
+           "o.etag = :newEtag WHERE o.id = :id AND o.etag = :expectedEtag")
+    int claim(@Param("id") String id,
+              @Param("ownerId") String ownerId,
+              @Param("lastModified") long lastModified,
+              @Param("expectedEtag") String expectedEtag,
+              @Param("newEtag") String newEtag);
+}
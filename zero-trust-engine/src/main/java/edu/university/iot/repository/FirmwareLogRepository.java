@@ -4,6 +4,8 @@ import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import edu.university.iot.model.FirmwareLog;
 
 public interface FirmwareLogRepository extends JpaRepository<FirmwareLog, Long> {
@@ -13,5 +15,17 @@ public interface FirmwareLogRepository extends JpaRepository<FirmwareLog, Long>
     
     // Add this method for getting all firmware logs
     List<FirmwareLog> findAllByOrderByTimestampDesc();
+
+    // Per device: [deviceId, valid] of the latest firmware log
+    @Query("SELECT f.deviceId, f.firmwareValid FROM FirmwareLog f " +
+           "WHERE f.id IN (SELECT MAX(f2.id) FROM FirmwareLog f2 GROUP BY f2.deviceId)")
+    List<Object[]> findLatestValidityByDevice();
+
+    // Number of checks; change-only summary rows stand for repeatCount checks
+    @Query("SELECT COALESCE(SUM(f.repeatCount), 0) FROM FirmwareLog f")
+    long sumRepeatCount();
+
+    @Query("SELECT COALESCE(SUM(f.repeatCount), 0) FROM FirmwareLog f WHERE f.deviceId = :deviceId")
+    long sumRepeatCountByDeviceId(@Param("deviceId") String deviceId);
 }
 
@@ -2,12 +2,21 @@ package edu.university.iot.repository;
 
 import edu.university.iot.model.IdentityLog;
 
+import java.time.Instant;
 import java.util.List;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 public interface IdentityLogRepository extends JpaRepository<IdentityLog, Long> {
 
         List<IdentityLog> findByDeviceId(String deviceId);
 
+        // Per device: [deviceId, checks, failures] since the cutoff, counting folded checks
+        @Query("SELECT i.deviceId, SUM(i.repeatCount), " +
+               "SUM(CASE WHEN i.identityVerified = false THEN i.repeatCount ELSE 0 END) " +
+               "FROM IdentityLog i WHERE i.timestamp > :cutoff GROUP BY i.deviceId")
+        List<Object[]> countFailuresByDeviceSince(@Param("cutoff") Instant cutoff);
+
 }
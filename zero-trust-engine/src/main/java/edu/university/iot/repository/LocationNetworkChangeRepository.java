@@ -4,7 +4,9 @@ package edu.university.iot.repository;
 import edu.university.iot.model.LocationNetworkChange;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
@@ -12,6 +14,12 @@ public interface LocationNetworkChangeRepository
     extends JpaRepository<LocationNetworkChange, Long> {
   List<LocationNetworkChange> findAllByOrderByTimestampDesc();
   List<LocationNetworkChange> findByDeviceIdOrderByTimestampDesc(String deviceId);
+  List<LocationNetworkChange> findByDeviceIdAndTimestampAfterOrderByTimestampDesc(String deviceId, LocalDateTime timestamp);
   @Query("SELECT COUNT(DISTINCT l.deviceId) FROM LocationNetworkChange l")
   long countDistinctDeviceIds();
+
+  // Per device: [deviceId, changes] since the cutoff
+  @Query("SELECT l.deviceId, COUNT(l) FROM LocationNetworkChange l " +
+         "WHERE l.timestamp > :cutoff GROUP BY l.deviceId")
+  List<Object[]> countChangesByDeviceSince(@Param("cutoff") LocalDateTime cutoff);
 }
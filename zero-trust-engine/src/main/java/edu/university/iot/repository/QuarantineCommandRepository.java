@@ -0,0 +1,33 @@
+package edu.university.iot.repository;
+
+import edu.university.iot.model.QuarantineCommand;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+public interface QuarantineCommandRepository extends JpaRepository<QuarantineCommand, Long> {
+
+    /**
+     * Pending command for a device, if any (at most one is kept per device)
+     */
+    Optional<QuarantineCommand> findFirstByDeviceIdAndStatus(String deviceId, QuarantineCommand.Status status);
+
+    /**
+     * Commands whose next attempt (or lease) is due, oldest first
+     */
+    @Query("SELECT c FROM QuarantineCommand c " +
+           "WHERE c.status = :status AND c.nextAttemptAt <= :now " +
+           "ORDER BY c.nextAttemptAt")
+    List<QuarantineCommand> findDue(@Param("status") QuarantineCommand.Status status,
+                                    @Param("now") Instant now,
+                                    Pageable pageable);
+
+    long countByStatus(QuarantineCommand.Status status);
+
+    List<QuarantineCommand> findByDeviceIdOrderByCreatedAtDesc(String deviceId);
+}
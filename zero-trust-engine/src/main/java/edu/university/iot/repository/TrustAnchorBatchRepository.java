@@ -0,0 +1,14 @@
+package edu.university.iot.repository;
+
+import edu.university.iot.model.TrustAnchorBatch;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface TrustAnchorBatchRepository extends JpaRepository<TrustAnchorBatch, Long> {
+
+    List<TrustAnchorBatch> findByStatusInOrderByIdAsc(Collection<TrustAnchorBatch.Status> statuses);
+
+    List<TrustAnchorBatch> findTop50ByOrderByIdDesc();
+}
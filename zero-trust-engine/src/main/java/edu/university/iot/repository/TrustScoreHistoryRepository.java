@@ -1,12 +1,15 @@
 package edu.university.iot.repository;
 
 import edu.university.iot.model.TrustScoreHistory;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -30,6 +33,11 @@ public interface TrustScoreHistoryRepository extends JpaRepository<TrustScoreHis
      */
     List<TrustScoreHistory> findByDeviceIdOrderByTimestampDesc(String deviceId);
 
+    /**
+     * Find the five most recent trust score changes for a device
+     */
+    List<TrustScoreHistory> findTop5ByDeviceIdOrderByTimestampDesc(String deviceId);
+
     /**
      * Find the most recent trust score change for a device
      */
@@ -129,6 +137,63 @@ public interface TrustScoreHistoryRepository extends JpaRepository<TrustScoreHis
     List<Object[]> getTemporalPatterns(@Param("deviceId") String deviceId, 
                                      @Param("cutoff") Instant cutoff);
 
+    /**
+     * Next page of rows after a rollup watermark, in insertion order
+     */
+    List<TrustScoreHistory> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    /**
+     * Rows of a device that are not yet covered by the rollups
+     */
+    List<TrustScoreHistory> findByDeviceIdAndIdGreaterThanAndTimestampGreaterThanEqual(
+        String deviceId, Long id, Instant timestamp);
+
+    /**
+     * Most recent changes of a device within a window
+     */
+    List<TrustScoreHistory> findTop5ByDeviceIdAndTimestampAfterOrderByTimestampDesc(
+        String deviceId, Instant timestamp);
+
+    /**
+     * Most recent changes of a device with the given severities within a window
+     */
+    List<TrustScoreHistory> findTop5ByDeviceIdAndTimestampAfterAndSeverityInOrderByTimestampDesc(
+        String deviceId, Instant timestamp, Collection<String> severities);
+
+    /**
+     * Degrading changes per location for a device (recurring location issues)
+     */
+    @Query("SELECT h.locationAtChange, COUNT(h) FROM TrustScoreHistory h " +
+           "WHERE h.deviceId = :deviceId AND h.timestamp > :cutoff " +
+           "AND h.locationAtChange IS NOT NULL AND h.scoreChange < 0 " +
+           "GROUP BY h.locationAtChange")
+    List<Object[]> countDegradingChangesByLocation(@Param("deviceId") String deviceId,
+                                                   @Param("cutoff") Instant cutoff);
+
+    @Query("SELECT MIN(h.timestamp) FROM TrustScoreHistory h")
+    Instant findEarliestTimestamp();
+
+    @Query("SELECT MAX(h.id) FROM TrustScoreHistory h")
+    Long findMaxId();
+
+    /**
+     * Oldest rows not yet sealed into an anchoring batch
+     */
+    List<TrustScoreHistory> findByAnchorBatchIdIsNullOrderByIdAsc(Pageable pageable);
+
+    /**
+     * Rows of an anchoring batch in leaf order
+     */
+    List<TrustScoreHistory> findByAnchorBatchIdOrderByIdAsc(Long anchorBatchId);
+
+    /**
+     * Assign rows to an anchoring batch
+     */
+    @Modifying
+    @Query("UPDATE TrustScoreHistory h SET h.anchorBatchId = :batchId " +
+           "WHERE h.id IN :ids AND h.anchorBatchId IS NULL")
+    int assignAnchorBatch(@Param("batchId") Long batchId, @Param("ids") Collection<Long> ids);
+
     /**
      * Clean up old trust score history (for maintenance)
      */
@@ -0,0 +1,45 @@
+package edu.university.iot.repository;
+
+import edu.university.iot.model.TrustScoreRollup;
+import edu.university.iot.model.TrustScoreRollup.Granularity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface TrustScoreRollupRepository extends JpaRepository<TrustScoreRollup, Long> {
+
+    /**
+     * Rollups of one device from a bucket onwards, oldest first
+     */
+    List<TrustScoreRollup> findByDeviceIdAndGranularityAndBucketStartGreaterThanEqualOrderByBucketStartAsc(
+        String deviceId, Granularity granularity, Instant bucketStart);
+
+    /**
+     * Existing rows for a set of buckets (superset; callers match on device + bucket)
+     */
+    List<TrustScoreRollup> findByGranularityAndDeviceIdInAndBucketStartIn(
+        Granularity granularity, Collection<String> deviceIds, Collection<Instant> bucketStarts);
+
+    /**
+     * Devices whose change count in the window reaches the threshold, busiest first
+     */
+    @Query("SELECT r.deviceId, SUM(r.changeCount) FROM TrustScoreRollup r " +
+           "WHERE r.granularity = :granularity AND r.bucketStart >= :cutoff " +
+           "GROUP BY r.deviceId " +
+           "HAVING SUM(r.changeCount) >= :threshold " +
+           "ORDER BY SUM(r.changeCount) DESC")
+    List<Object[]> findDevicesWithFrequentChanges(@Param("granularity") Granularity granularity,
+                                                  @Param("cutoff") Instant cutoff,
+                                                  @Param("threshold") long threshold);
+
+    @Modifying
+    @Query("DELETE FROM TrustScoreRollup r WHERE r.granularity = :granularity AND r.bucketStart >= :from")
+    int deleteFromBucket(@Param("granularity") Granularity granularity, @Param("from") Instant from);
+}
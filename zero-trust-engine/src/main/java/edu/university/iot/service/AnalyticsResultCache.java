@@ -0,0 +1,171 @@
+package edu.university.iot.service;
+
+import edu.university.iot.config.AnalyticsCacheConfig;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Bounded LRU cache with TTL for per-device analytics results.
+ *
+ * Each device has a generation number that is bumped whenever telemetry for
+ * it is processed. Entries remember the generation they were computed under
+ * and are treated as misses once it moves on, so invalidation is O(1) and only
+ * touches the affected device. A cache-wide epoch does the same for all
+ * devices at once. Cached results are shared between callers and
+ * must not be modified.
+ */
+@Service
+public class AnalyticsResultCache {
+
+    private final AnalyticsCacheConfig config;
+    private final Map<String, Long> generations = new ConcurrentHashMap<>();
+    private final AtomicLong epoch = new AtomicLong();
+    private final LinkedHashMap<String, Entry> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public AnalyticsResultCache(AnalyticsCacheConfig config) {
+        this.config = config;
+        int maxEntries = Math.max(1, config.getMaxEntries());
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached result for the device and key, computing and caching
+     * it on a miss.
+     *
+     * @param key identifies the result kind and its parameters, e.g. "trust-changes:24"
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String deviceId, String key, Supplier<T> loader) {
+        if (!config.isEnabled()) {
+            return loader.get();
+        }
+
+        String cacheKey = deviceId + '|' + key;
+        long generation = generation(deviceId);
+        long currentEpoch = epoch.get();
+        long now = System.currentTimeMillis();
+
+        synchronized (entries) {
+            Entry entry = entries.get(cacheKey);
+            if (entry != null) {
+                boolean current = entry.generation == generation && entry.epoch == currentEpoch;
+                if (current && entry.expiresAt > now) {
+                    hits.incrementAndGet();
+                    return (T) entry.value;
+                }
+                entries.remove(cacheKey);
+                if (current) {
+                    expirations.incrementAndGet();
+                }
+            }
+        }
+
+        misses.incrementAndGet();
+        T value = loader.get();
+        if (value != null) {
+            // Stored under the generation read before loading, so a concurrent
+            // invalidation makes this entry stale instead of being lost
+            Entry entry = new Entry(value, generation, currentEpoch, now + config.getTtlSeconds() * 1000);
+            synchronized (entries) {
+                entries.put(cacheKey, entry);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Invalidates every cached result of the device. Inside a transaction the
+     * device is invalidated again after completion, so results computed from
+     * not-yet-committed state are not served afterwards.
+     */
+    public void invalidateDevice(String deviceId) {
+        if (deviceId == null) {
+            return;
+        }
+        bump(deviceId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    bump(deviceId);
+                }
+            });
+        }
+    }
+
+    /**
+     * Drops every cached result, e.g. when the trust policy changes. Results
+     * still being computed are stored stale.
+     */
+    public void clear() {
+        epoch.incrementAndGet();
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public Map<String, Object> getStatistics() {
+        long h = hits.get();
+        long m = misses.get();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", config.isEnabled());
+        synchronized (entries) {
+            stats.put("size", entries.size());
+        }
+        stats.put("maxEntries", config.getMaxEntries());
+        stats.put("ttlSeconds", config.getTtlSeconds());
+        stats.put("hits", h);
+        stats.put("misses", m);
+        stats.put("hitRate", h + m > 0 ? Math.round((double) h / (h + m) * 1000.0) / 10.0 : 0.0);
+        stats.put("evictions", evictions.get());
+        stats.put("expirations", expirations.get());
+        stats.put("invalidations", invalidations.get());
+        return stats;
+    }
+
+    private long generation(String deviceId) {
+        return generations.getOrDefault(deviceId, 0L);
+    }
+
+    private void bump(String deviceId) {
+        generations.merge(deviceId, 1L, Long::sum);
+        invalidations.incrementAndGet();
+    }
+
+    private static final class Entry {
+        final Object value;
+        final long generation;
+        final long epoch;
+        final long expiresAt;
+
+        Entry(Object value, long generation, long epoch, long expiresAt) {
+            this.value = value;
+            this.generation = generation;
+            this.epoch = epoch;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -25,13 +25,23 @@ public class AnomalyDetectorService {
      * Checks for anomalies, logs them, and returns true if an anomaly was detected.
      */
     public boolean checkAnomaly(Map<String, Object> telemetry) {
+        String deviceId = (String) telemetry.get("deviceId");
+        AnomalyLog log = assessAnomaly(telemetry, deviceRepo.findById(deviceId).orElse(null));
+        anomalyRepo.save(log);
+        return log.isAnomalyDetected();
+    }
+
+    /**
+     * Anomaly verdict against an already loaded registry entry (null if unknown),
+     * without any database access; the returned log is not saved yet.
+     */
+    public AnomalyLog assessAnomaly(Map<String, Object> telemetry, DeviceRegistry device) {
         String deviceId = (String) telemetry.get("deviceId");
         double cpu = (double) telemetry.get("cpuUsage");
         double mem = (double) telemetry.get("memoryUsage");
         double net = (double) telemetry.get("networkTrafficVolume");
         boolean malware = (boolean) telemetry.get("malwareSignatureDetected");
 
-        DeviceRegistry device = deviceRepo.findById(deviceId).orElse(null);
         boolean anomaly = false;
         StringBuilder reason = new StringBuilder();
 
@@ -62,9 +72,11 @@ public class AnomalyDetectorService {
         log.setAnomalyDetected(anomaly);
         log.setReason(reason.toString().trim());
         log.setTimestamp(Instant.now());
+        return log;
+    }
 
+    public void record(AnomalyLog log) {
         anomalyRepo.save(log);
-        return anomaly;
     }
 
     public List<AnomalyLog> getLogs(String deviceId) {
@@ -36,7 +36,7 @@ public class AuditSummaryService {
             summary.setTotalLocationChanges(totalLocationChanges);
 
             // Get total firmware checks/logs
-            long totalFirmwareChecks = firmwareService.getAllLogsDto().size();
+            long totalFirmwareChecks = firmwareService.countChecks();
             summary.setTotalFirmwareChecks(totalFirmwareChecks);
 
             // Calculate devices with issues (devices that have quarantine logs or location changes)
@@ -91,7 +91,7 @@ public class AuditSummaryService {
             summary.setTotalLocationChanges(deviceLocationChanges);
 
             // Get firmware checks for specific device
-            long deviceFirmwareChecks = firmwareService.getLogsDto(deviceId).size();
+            long deviceFirmwareChecks = firmwareService.countChecks(deviceId);
             summary.setTotalFirmwareChecks(deviceFirmwareChecks);
 
             // For a specific device, devicesWithIssues is either 0 or 1
@@ -0,0 +1,140 @@
+package edu.university.iot.service;
+
+/**
+ * Columnar trust scoring over primitive arrays.
+ *
+ * {@link #scoreColumns} scores n independent rows: new score, clamp,
+ * threshold and severity, each as its own branch-free loop over plain arrays
+ * so the JIT can unroll and vectorise them. {@link #scoreSequences} scores
+ * several events per device, where each event starts from the score the
+ * previous one left. It walks each device's rows in order with the same
+ * arithmetic, and stops a device once it is no longer trusted (the pipeline
+ * quarantines it and skips its remaining events). Scoring the k-th event of
+ * every device together so the kernel can be used measured slower: gathering
+ * and scattering rows across devices costs more than the vector loop saves.
+ */
+public final class BatchTrustScorer {
+
+    // Severity codes; NONE marks changes too small to record in history
+    public static final byte NONE = 0;
+    public static final byte LOW = 1;
+    public static final byte MEDIUM = 2;
+    public static final byte HIGH = 3;
+    public static final byte CRITICAL = 4;
+
+    public static final double MIN_RECORDED_CHANGE = 0.5;
+    private static final double MEDIUM_CHANGE = 5.0;
+    private static final double HIGH_CHANGE = 10.0;
+    private static final double CRITICAL_CHANGE = 20.0;
+
+    private static final String[] SEVERITY_NAMES = {null, "LOW", "MEDIUM", "HIGH", "CRITICAL"};
+
+    private BatchTrustScorer() {
+    }
+
+    /**
+     * Scores n independent rows.
+     *
+     * @param oldScores  score before the event
+     * @param deltas     score change from the policy delta table
+     * @param thresholds trusted threshold of each row's profile
+     * @param newScores  out: clamped score after the event
+     * @param trusted    out: new score at or above the threshold
+     * @param severity   out: severity code of the change
+     */
+    public static void scoreColumns(double[] oldScores, double[] deltas, double[] thresholds,
+                                    double[] newScores, boolean[] trusted, byte[] severity, int n) {
+        for (int i = 0; i < n; i++) {
+            newScores[i] = Math.min(100.0, Math.max(0.0, oldScores[i] + deltas[i]));
+        }
+        for (int i = 0; i < n; i++) {
+            trusted[i] = newScores[i] >= thresholds[i];
+        }
+        for (int i = 0; i < n; i++) {
+            severity[i] = severity(Math.abs(newScores[i] - oldScores[i]));
+        }
+    }
+
+    /**
+     * Severity code of a score change of the given size.
+     */
+    public static byte severity(double change) {
+        return (byte) ((change >= MIN_RECORDED_CHANGE ? 1 : 0)
+                + (change >= MEDIUM_CHANGE ? 1 : 0)
+                + (change >= HIGH_CHANGE ? 1 : 0)
+                + (change >= CRITICAL_CHANGE ? 1 : 0));
+    }
+
+    /** History severity name, or null for {@link #NONE}. */
+    public static String severityName(byte severity) {
+        return SEVERITY_NAMES[severity];
+    }
+
+    /**
+     * Scores events of several devices, in order within each device.
+     *
+     * @param deviceOffsets rows of device d are [deviceOffsets[d], deviceOffsets[d + 1])
+     * @param verdictMasks  {@link TrustPolicy#verdictMask} of each row
+     * @param profiles      {@link TrustPolicy#profileIndex} of each row
+     * @param startScores   score of each device before its first row
+     * @param startBlocked  devices already quarantined; none of their rows are applied
+     */
+    public static Result scoreSequences(TrustPolicy policy, int[] deviceOffsets, int[] verdictMasks,
+                                        int[] profiles, double[] startScores, boolean[] startBlocked) {
+        int devices = startScores.length;
+        Result result = new Result(deviceOffsets[devices]);
+        double[] deltaTable = policy.getDeltaTable();
+        double[] profileThresholds = policy.getThresholds();
+
+        for (int d = 0; d < devices; d++) {
+            if (startBlocked[d]) {
+                continue;
+            }
+            double score = startScores[d];
+            for (int row = deviceOffsets[d]; row < deviceOffsets[d + 1]; row++) {
+                int profile = profiles[row];
+                double scored = Math.min(100.0, Math.max(0.0,
+                    score + deltaTable[profile * TrustPolicy.VERDICT_COMBINATIONS + verdictMasks[row]]));
+                boolean trusted = scored >= profileThresholds[profile];
+
+                result.applied[row] = true;
+                result.oldScores[row] = score;
+                result.newScores[row] = scored;
+                result.trusted[row] = trusted;
+                result.severity[row] = severity(Math.abs(scored - score));
+                score = scored;
+                if (!trusted) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Per-row outcome of {@link #scoreSequences}; rows that were not applied
+     * (device quarantined before them) keep zero scores.
+     */
+    public static final class Result {
+        private final boolean[] applied;
+        private final double[] oldScores;
+        private final double[] newScores;
+        private final boolean[] trusted;
+        private final byte[] severity;
+
+        private Result(int rows) {
+            applied = new boolean[rows];
+            oldScores = new double[rows];
+            newScores = new double[rows];
+            trusted = new boolean[rows];
+            severity = new byte[rows];
+        }
+
+        public int size() { return applied.length; }
+        public boolean isApplied(int row) { return applied[row]; }
+        public double getOldScore(int row) { return oldScores[row]; }
+        public double getNewScore(int row) { return newScores[row]; }
+        public boolean isTrusted(int row) { return trusted[row]; }
+        public byte getSeverity(int row) { return severity[row]; }
+    }
+}
@@ -0,0 +1,298 @@
+package edu.university.iot.service;
+
+import edu.university.iot.config.AuditLogConfig;
+import edu.university.iot.model.ChangeTrackedLog;
+import edu.university.iot.model.ComplianceLog;
+import edu.university.iot.model.FirmwareLog;
+import edu.university.iot.model.IdentityLog;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Change-only mode for identity, firmware and compliance logs.
+ *
+ * With audit.logs.change-only enabled, a check is persisted only when the
+ * device's verdict or reported input differs from its last persisted row.
+ * Identical checks are counted in memory and written as one summary row
+ * (see {@link ChangeTrackedLog}) when the state changes, when a check arrives
+ * after heartbeat-interval-ms without a row, or by the idle flush for devices
+ * that went quiet. The sum of repeat counts therefore equals the number of
+ * checks, and {@link #expand} turns summary rows back into one row per check
+ * for the audit endpoints.
+ *
+ * State moves forward only when the transaction writing the rows commits, so
+ * a rolled back batch is filtered again from the same state when retried.
+ * State is per instance and starts empty, so the first check of each device
+ * after a restart is always written.
+ */
+@Service
+public class ChangeOnlyLogFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChangeOnlyLogFilter.class);
+
+    private final AuditLogConfig config;
+    private final Tracker<IdentityLog> identity;
+    private final Tracker<FirmwareLog> firmware;
+    private final Tracker<ComplianceLog> compliance;
+
+    public ChangeOnlyLogFilter(AuditLogConfig config, TelemetryBatchWriter batchWriter) {
+        this.config = config;
+        this.identity = new Tracker<>("identity", batchWriter::insertIdentityLogs);
+        this.firmware = new Tracker<>("firmware", batchWriter::insertFirmwareLogs);
+        this.compliance = new Tracker<>("compliance", batchWriter::insertComplianceLogs);
+    }
+
+    /** Rows to persist for these identity checks, in order; all of them unless change-only is on. */
+    public List<IdentityLog> filterIdentity(List<IdentityLog> logs) {
+        return identity.filter(logs);
+    }
+
+    /** Rows to persist for these firmware checks, in order. */
+    public List<FirmwareLog> filterFirmware(List<FirmwareLog> logs) {
+        return firmware.filter(logs);
+    }
+
+    /** Rows to persist for these compliance checks, in order. */
+    public List<ComplianceLog> filterCompliance(List<ComplianceLog> logs) {
+        return compliance.filter(logs);
+    }
+
+    /**
+     * Writes summary rows for devices with folded checks and no new check for a heartbeat interval.
+     */
+    @Scheduled(fixedDelayString = "${audit.logs.heartbeat-interval-ms:900000}")
+    public void flushIdle() {
+        if (!config.isChangeOnly()) {
+            return;
+        }
+        Instant cutoff = Instant.now().minusMillis(config.getHeartbeatIntervalMs());
+        identity.flush(cutoff);
+        firmware.flush(cutoff);
+        compliance.flush(cutoff);
+    }
+
+    @PreDestroy
+    public void flushAll() {
+        Instant all = Instant.now().plusSeconds(1);
+        identity.flush(all);
+        firmware.flush(all);
+        compliance.flush(all);
+    }
+
+    /**
+     * Suppressed and pending check counts for monitoring
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("changeOnly", config.isChangeOnly());
+        stats.put("heartbeatIntervalMs", config.getHeartbeatIntervalMs());
+        stats.put("identity", identity.statistics());
+        stats.put("firmware", firmware.statistics());
+        stats.put("compliance", compliance.statistics());
+        return stats;
+    }
+
+    /**
+     * One row per check: summary rows are replaced by repeatCount rows with
+     * the same state, their timestamps spread evenly between first and last
+     * seen (the exact times of folded checks are not kept).
+     *
+     * @param newestFirst order of {@code rows}, kept for the expanded rows
+     */
+    public static <T extends ChangeTrackedLog<T>> List<T> expand(List<T> rows, boolean newestFirst) {
+        boolean folded = false;
+        for (T row : rows) {
+            if (row.getRepeatCount() > 1) {
+                folded = true;
+                break;
+            }
+        }
+        if (!folded) {
+            return rows;
+        }
+
+        List<T> expanded = new ArrayList<>(rows.size());
+        for (T row : rows) {
+            int count = row.getRepeatCount();
+            if (count <= 1) {
+                expanded.add(row);
+                continue;
+            }
+            Instant first = row.firstObservedAt();
+            long spanNanos = Duration.between(first, row.observedAt()).toNanos();
+            for (int k = 0; k < count; k++) {
+                int step = newestFirst ? count - 1 - k : k;
+                Instant at = first.plusNanos((long) ((double) spanNanos * step / (count - 1)));
+                expanded.add(row.summaryOf(1, at, at));
+            }
+        }
+        return expanded;
+    }
+
+    /**
+     * Run of identical checks of one device since its last persisted row.
+     */
+    private static final class Run<T extends ChangeTrackedLog<T>> {
+        final T last;
+        final Instant lastWrittenAt;
+        final int pending;
+        final Instant firstPending;
+        final Instant lastPending;
+
+        Run(T last, Instant lastWrittenAt, int pending, Instant firstPending, Instant lastPending) {
+            this.last = last;
+            this.lastWrittenAt = lastWrittenAt;
+            this.pending = pending;
+            this.firstPending = firstPending;
+            this.lastPending = lastPending;
+        }
+
+        static <T extends ChangeTrackedLog<T>> Run<T> written(T row, Instant at) {
+            return new Run<>(row, at, 0, null, null);
+        }
+
+        Run<T> withRepeat(Instant at) {
+            return new Run<>(last, lastWrittenAt, pending + 1, pending == 0 ? at : firstPending, at);
+        }
+
+        boolean heartbeatDue(Instant at, long heartbeatMs) {
+            return Duration.between(lastWrittenAt, at).toMillis() >= heartbeatMs;
+        }
+
+        T closingRow() {
+            return last.summaryOf(pending, firstPending, lastPending);
+        }
+    }
+
+    private final class Tracker<T extends ChangeTrackedLog<T>> {
+        private final String name;
+        private final Consumer<List<T>> sink;
+        private final ConcurrentHashMap<String, Run<T>> runs = new ConcurrentHashMap<>();
+        // Devices with filtered rows in a transaction that has not finished yet
+        private final ConcurrentHashMap<String, Integer> inFlight = new ConcurrentHashMap<>();
+        private final AtomicLong suppressed = new AtomicLong();
+        private final AtomicLong summaryRows = new AtomicLong();
+
+        Tracker(String name, Consumer<List<T>> sink) {
+            this.name = name;
+            this.sink = sink;
+        }
+
+        List<T> filter(List<T> logs) {
+            if (!config.isChangeOnly() || logs.isEmpty()) {
+                return logs;
+            }
+            long heartbeatMs = config.getHeartbeatIntervalMs();
+            Map<String, Run<T>> staged = new HashMap<>();
+            List<T> rows = new ArrayList<>(logs.size());
+            int folded = 0;
+            int summaries = 0;
+
+            for (T log : logs) {
+                String deviceId = log.getDeviceId();
+                Run<T> run = staged.containsKey(deviceId) ? staged.get(deviceId) : runs.get(deviceId);
+                Instant at = log.observedAt();
+
+                if (run == null || !run.last.sameState(log)) {
+                    // Transition: close the old run, then record the new state
+                    if (run != null && run.pending > 0) {
+                        rows.add(run.closingRow());
+                        summaries++;
+                    }
+                    rows.add(log);
+                    staged.put(deviceId, Run.written(log, at));
+                } else if (run.heartbeatDue(at, heartbeatMs)) {
+                    rows.add(log.summaryOf(run.pending + 1, run.pending > 0 ? run.firstPending : at, at));
+                    summaries++;
+                    staged.put(deviceId, Run.written(log, at));
+                } else {
+                    staged.put(deviceId, run.withRepeat(at));
+                    folded++;
+                }
+            }
+
+            int foldedChecks = folded;
+            int summaryCount = summaries;
+            staged.keySet().forEach(id -> inFlight.merge(id, 1, Integer::sum));
+            Runnable commit = () -> {
+                runs.putAll(staged);
+                suppressed.addAndGet(foldedChecks);
+                summaryRows.addAndGet(summaryCount);
+            };
+            Runnable release = () -> staged.keySet().forEach(
+                id -> inFlight.computeIfPresent(id, (key, n) -> n > 1 ? n - 1 : null));
+
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        if (status == STATUS_COMMITTED) {
+                            commit.run();
+                        }
+                        release.run();
+                    }
+                });
+            } else {
+                commit.run();
+                release.run();
+            }
+            return rows;
+        }
+
+        void flush(Instant cutoff) {
+            List<T> rows = new ArrayList<>();
+            List<Map.Entry<String, Run<T>>> flushed = new ArrayList<>();
+            for (Map.Entry<String, Run<T>> entry : runs.entrySet()) {
+                Run<T> run = entry.getValue();
+                if (run.pending > 0 && run.lastPending.isBefore(cutoff) && !inFlight.containsKey(entry.getKey())) {
+                    rows.add(run.closingRow());
+                    flushed.add(Map.entry(entry.getKey(), run));
+                }
+            }
+            if (rows.isEmpty()) {
+                return;
+            }
+            try {
+                sink.accept(rows);
+            } catch (RuntimeException e) {
+                logger.warn("Could not write {} idle {} log summaries, will retry: {}", rows.size(), name, e.getMessage());
+                return;
+            }
+            for (Map.Entry<String, Run<T>> entry : flushed) {
+                Run<T> run = entry.getValue();
+                runs.replace(entry.getKey(), run, Run.written(run.last, run.lastPending));
+            }
+            summaryRows.addAndGet(rows.size());
+            logger.debug("Wrote {} idle {} log summaries", rows.size(), name);
+        }
+
+        Map<String, Object> statistics() {
+            long pending = 0;
+            for (Run<T> run : runs.values()) {
+                pending += run.pending;
+            }
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("suppressed", suppressed.get());
+            stats.put("summaryRows", summaryRows.get());
+            stats.put("pending", pending);
+            stats.put("trackedDevices", runs.size());
+            return stats;
+        }
+    }
+}
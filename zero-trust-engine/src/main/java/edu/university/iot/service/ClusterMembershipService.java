@@ -0,0 +1,338 @@
+package edu.university.iot.service;
+
+import edu.university.iot.config.ClusterConfig;
+import edu.university.iot.model.ClusterNode;
+import edu.university.iot.repository.ClusterNodeRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Decides which engine node owns which device in clustering mode.
+ *
+ * Nodes register in {@code cluster_nodes} and refresh a heartbeat; the live
+ * nodes form a {@link ConsistentHashRing} and every node derives the same
+ * owners from it. Each node reads the full telemetry stream under its own
+ * consumer group and keeps only the events of devices it owns, so the
+ * per-device state in memory (such as {@link LocationService}'s last known
+ * context) is held by exactly one node.
+ *
+ * When membership changes, a node keeps processing the devices it gave away
+ * for the handover grace period, so the old and new owner overlap rather than
+ * leave a gap. Events both of them process are applied once, because the
+ * device's Event Hub position is checked under the registry row lock. Once
+ * the grace period has passed, state of devices owned elsewhere is dropped.
+ *
+ * A node that crashes cannot hand over: until the others stop seeing its
+ * heartbeat, they drop its devices' events as foreign. So that those events
+ * are not lost, a node holds each partition's checkpoint behind dropped
+ * events for {@link #getForeignHoldMs()}, and when a rebalance gives it
+ * devices it publishes {@link DevicesGained}; {@link EventListenerService}
+ * then resumes every partition from its held checkpoint and re-reads what it
+ * dropped.
+ *
+ * With clustering off, this node owns every device.
+ */
+@Service
+public class ClusterMembershipService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterMembershipService.class);
+
+    private final ClusterConfig config;
+    private final ClusterNodeRepository nodeRepo;
+    private final LocationService locationService;
+    private final ApplicationEventPublisher events;
+    private final String consumerGroup;
+    private final String nodeId;
+    private final ReentrantLock refreshLock = new ReentrantLock();
+
+    private volatile Assignment assignment;
+    private volatile boolean joined;
+    private volatile boolean evictionPending;
+    private volatile Instant lastRebalance;
+    private volatile double lastMovedShare;
+    private final AtomicLong rebalances = new AtomicLong();
+    private final AtomicLong filteredEvents = new AtomicLong();
+
+    public ClusterMembershipService(ClusterConfig config,
+                                    ClusterNodeRepository nodeRepo,
+                                    LocationService locationService,
+                                    ApplicationEventPublisher events,
+                                    @Value("${eventhubs.consumer-group:$Default}") String consumerGroup) {
+        this.config = config;
+        this.nodeRepo = nodeRepo;
+        this.locationService = locationService;
+        this.events = events;
+        this.consumerGroup = consumerGroup;
+        this.nodeId = config.getNodeId() != null && !config.getNodeId().isBlank()
+            ? config.getNodeId() : defaultNodeId();
+        // Until the first heartbeat this node sees only itself
+        this.assignment = new Assignment(ring(Map.of()), null, 0, List.of());
+    }
+
+    @PostConstruct
+    public void join() {
+        if (config.isEnabled()) {
+            logger.info("Joining cluster as node {} (consumer group {}, {} virtual nodes)",
+                        nodeId, consumerGroup, config.getVirtualNodes());
+            refresh();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${cluster.heartbeat-interval-ms:5000}")
+    public void heartbeat() {
+        if (config.isEnabled()) {
+            refresh();
+        }
+    }
+
+    /**
+     * Leaves the ring at once, so the other nodes take over without waiting
+     * for the member timeout.
+     */
+    @PreDestroy
+    public void leave() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        try {
+            nodeRepo.deleteById(nodeId);
+            logger.info("Node {} left the cluster", nodeId);
+        } catch (RuntimeException e) {
+            logger.warn("Node {} could not leave the cluster cleanly: {}", nodeId, e.getMessage());
+        }
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * How long a checkpoint must stay behind events dropped as foreign: a
+     * crashed owner leaves the ring after the member timeout, and the other
+     * nodes notice at their next heartbeat, with one more as margin.
+     */
+    public long getForeignHoldMs() {
+        return config.getMemberTimeoutMs() + 2 * config.getHeartbeatIntervalMs();
+    }
+
+    /**
+     * True if this node processes the device's telemetry. Messages without a
+     * device ID all go to the same node.
+     */
+    public boolean owns(String deviceId) {
+        if (!config.isEnabled()) {
+            return true;
+        }
+        String key = deviceId != null ? deviceId : "";
+        Assignment current = assignment;
+        if (nodeId.equals(current.ring.ownerOf(key))) {
+            return true;
+        }
+        // Devices given away in the last rebalance stay here until the grace period ends
+        return current.previous != null && System.currentTimeMillis() < current.graceUntilMillis
+            && nodeId.equals(current.previous.ownerOf(key));
+    }
+
+    /**
+     * True if this node handles events of the partition that carry no
+     * readable device ID, so that only one node dead-letters them.
+     */
+    public boolean ownsPartition(String partitionId) {
+        return !config.isEnabled() || nodeId.equals(assignment.ring.ownerOf("partition/" + partitionId));
+    }
+
+    /**
+     * Owning node of a device, with its address when known.
+     */
+    public Map<String, Object> describeOwner(String deviceId) {
+        Assignment current = assignment;
+        String owner = config.isEnabled() ? current.ring.ownerOf(deviceId) : nodeId;
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("deviceId", deviceId);
+        result.put("ownerNodeId", owner);
+        result.put("ownerAddress", owner.equals(nodeId) ? config.getAddress() : current.addressOf(owner));
+        result.put("local", owner.equals(nodeId));
+        return result;
+    }
+
+    public void recordFiltered(int events) {
+        if (events > 0) {
+            filteredEvents.addAndGet(events);
+        }
+    }
+
+    /**
+     * Heartbeats, reloads the live members and rebuilds the ring if they changed.
+     */
+    private void refresh() {
+        double gained = 0.0;
+        refreshLock.lock();
+        try {
+            nodeRepo.heartbeat(nodeId, config.getAddress(), consumerGroup, config.getVirtualNodes());
+            List<ClusterNode> live = nodeRepo.findLive(config.getMemberTimeoutMs());
+
+            Map<String, Integer> members = new TreeMap<>();
+            live.forEach(node -> members.put(node.getNodeId(), node.getVirtualNodes()));
+
+            Assignment current = assignment;
+            long now = System.currentTimeMillis();
+            ConsistentHashRing ring = ring(members);
+            if (!ring.getMembers().equals(current.ring.getMembers())) {
+                warnOnSharedConsumerGroup(live);
+                if (joined) {
+                    // Hand over: the previous owners keep their devices a little longer
+                    lastMovedShare = ring.movedShare(current.ring);
+                    gained = ring.gainedShare(current.ring, nodeId);
+                    assignment = new Assignment(ring, current.ring, now + config.getHandoverGraceMs(), live);
+                    evictionPending = true;
+                    rebalances.incrementAndGet();
+                    lastRebalance = Instant.now();
+                } else {
+                    assignment = new Assignment(ring, null, 0, live);
+                }
+                logger.info("Cluster membership is now {}; {}% of devices moved, node {} owns {}%",
+                            ring.getMembers().keySet(), percent(joined ? lastMovedShare : 0.0),
+                            nodeId, percent(ring.share(nodeId)));
+            } else {
+                assignment = new Assignment(current.ring, current.previous, current.graceUntilMillis, live);
+            }
+            joined = true;
+
+            if (evictionPending && now >= assignment.graceUntilMillis) {
+                evictionPending = false;
+                int dropped = locationService.retainDevices(this::owns);
+                logger.info("Handover finished; dropped location state of {} devices owned by other nodes", dropped);
+            }
+
+            // Rows of nodes that crashed long ago
+            nodeRepo.deleteStale(config.getMemberTimeoutMs() * 20);
+        } catch (RuntimeException e) {
+            logger.warn("Cluster heartbeat of node {} failed: {}", nodeId, e.getMessage());
+        } finally {
+            refreshLock.unlock();
+        }
+        if (gained > 0.0) {
+            events.publishEvent(new DevicesGained(gained));
+        }
+    }
+
+    private void warnOnSharedConsumerGroup(List<ClusterNode> live) {
+        for (ClusterNode node : live) {
+            if (!node.getNodeId().equals(nodeId) && Objects.equals(node.getConsumerGroup(), consumerGroup)) {
+                logger.error("Nodes {} and {} share consumer group {}; each node needs its own or events are lost",
+                             nodeId, node.getNodeId(), consumerGroup);
+            }
+        }
+    }
+
+    // Ring of the given members, always including this node
+    private ConsistentHashRing ring(Map<String, Integer> members) {
+        Map<String, Integer> withSelf = new HashMap<>(members);
+        withSelf.put(nodeId, config.getVirtualNodes());
+        return new ConsistentHashRing(withSelf);
+    }
+
+    /**
+     * Get membership and ownership statistics for the monitoring dashboard
+     */
+    public Map<String, Object> getStatistics() {
+        Assignment current = assignment;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", config.isEnabled());
+        stats.put("nodeId", nodeId);
+        stats.put("consumerGroup", consumerGroup);
+        if (!config.isEnabled()) {
+            return stats;
+        }
+        List<Map<String, Object>> members = new ArrayList<>();
+        current.ring.getMembers().forEach((member, virtualNodes) -> {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("nodeId", member);
+            entry.put("address", member.equals(nodeId) ? config.getAddress() : current.addressOf(member));
+            entry.put("virtualNodes", virtualNodes);
+            entry.put("sharePercent", percent(current.ring.share(member)));
+            members.add(entry);
+        });
+        stats.put("members", members);
+        stats.put("ownedSharePercent", percent(current.ring.share(nodeId)));
+        stats.put("rebalances", rebalances.get());
+        stats.put("lastRebalance", lastRebalance);
+        stats.put("lastMovedSharePercent", percent(lastMovedShare));
+        stats.put("handoverInProgress", current.previous != null
+            && System.currentTimeMillis() < current.graceUntilMillis);
+        stats.put("filteredEvents", filteredEvents.get());
+        return stats;
+    }
+
+    private static double percent(double share) {
+        return Math.round(share * 10_000.0) / 100.0;
+    }
+
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "node";
+        }
+        return host + "-" + ProcessHandle.current().pid();
+    }
+
+    /**
+     * Published after a rebalance that moved devices to this node.
+     */
+    public static final class DevicesGained {
+        private final double share;
+
+        DevicesGained(double share) {
+            this.share = share;
+        }
+
+        /** Fraction of all devices that moved to this node. */
+        public double getShare() {
+            return share;
+        }
+    }
+
+    private static final class Assignment {
+        final ConsistentHashRing ring;
+        final ConsistentHashRing previous;
+        final long graceUntilMillis;
+        final List<ClusterNode> live;
+
+        Assignment(ConsistentHashRing ring, ConsistentHashRing previous, long graceUntilMillis,
+                   List<ClusterNode> live) {
+            this.ring = ring;
+            this.previous = previous;
+            this.graceUntilMillis = graceUntilMillis;
+            this.live = live;
+        }
+
+        String addressOf(String nodeId) {
+            return live.stream().filter(node -> node.getNodeId().equals(nodeId))
+                .map(ClusterNode::getAddress).findFirst().orElse(null);
+        }
+    }
+}
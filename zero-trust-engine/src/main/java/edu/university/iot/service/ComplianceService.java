@@ -21,29 +21,45 @@ public class ComplianceService {
     @Autowired
     private ComplianceLogRepository complianceRepo;
 
+    @Autowired
+    private TrustPolicyService policyService;
+
+    // Verdicts shared with the firmware check of the same report
+    @Autowired
+    private FirmwareVerdictCache verdictCache;
+
+    @Autowired
+    private ChangeOnlyLogFilter logFilter;
+
     /**
      * Evaluates compliance rules, logs the result,
      * and returns true if the device is compliant.
      */
     public boolean evaluateCompliance(Map<String, Object> telemetry) {
+        String deviceId = (String) telemetry.get("deviceId");
+        ComplianceLog log = assessCompliance(telemetry, deviceRepo.findById(deviceId).orElse(null));
+        record(log);
+        return log.isCompliant();
+    }
+
+    /**
+     * Compliance verdict against an already loaded registry entry (null if unknown),
+     * without any database access; the returned log is not saved yet. The rules
+     * come from the trust policy profile named in the telemetry.
+     */
+    public ComplianceLog assessCompliance(Map<String, Object> telemetry, DeviceRegistry device) {
         String deviceId = (String) telemetry.get("deviceId");
         String patchStatus = (String) telemetry.get("patchStatus");
         String firmwareVersion = (String) telemetry.get("firmwareVersion");
 
-        DeviceRegistry device = deviceRepo.findById(deviceId).orElse(null);
-
         boolean compliant = true;
         StringBuilder violations = new StringBuilder();
 
         if (device != null) {
-            if (!device.isAllowOutdatedPatch() && !"Up-to-date".equalsIgnoreCase(patchStatus)) {
-                compliant = false;
-                violations.append("Patch outdated; ");
-            }
-            if (!firmwareVersion.equals(device.getExpectedFirmwareVersion())) {
-                compliant = false;
-                violations.append("Firmware mismatch; ");
-            }
+            FirmwareVerdictCache.Verdict verdict = verdictCache.verdict(device, firmwareVersion, patchStatus,
+                policyService.current().profileFor((String) telemetry.get("deviceProfile")));
+            compliant = verdict.isCompliant();
+            violations.append(verdict.getViolations());
         }
 
         ComplianceLog log = new ComplianceLog();
@@ -51,13 +67,16 @@ public class ComplianceService {
         log.setCompliant(compliant);
         log.setViolations(violations.toString().trim());
         log.setTimestamp(Instant.now());
+        return log;
+    }
 
-        complianceRepo.save(log);
-        return compliant;
+    public void record(ComplianceLog log) {
+        complianceRepo.saveAll(logFilter.filterCompliance(List.of(log)));
     }
 
+    /** One entry per check, with change-only summary rows expanded. */
     public List<ComplianceLog> getLogs(String deviceId) {
-    return complianceRepo.findByDeviceId(deviceId);
+    return ChangeOnlyLogFilter.expand(complianceRepo.findByDeviceId(deviceId), false);
 }
 
 }
@@ -0,0 +1,119 @@
+package edu.university.iot.service;
+
+import edu.university.iot.config.CompositeQueryConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Runs the independent sub-queries of a composite endpoint concurrently.
+ *
+ * All sub-queries share one deadline measured from submission, so latency is
+ * bounded by the slowest sub-query (or the deadline) rather than their sum.
+ * A failing or late sub-query does not fail the request; it is reported in
+ * {@link CompositeResult#getFailures()} and the rest are returned.
+ *
+ * A sub-query still running at the deadline is cancelled, which interrupts
+ * its thread. Each sub-query also runs in a transaction whose timeout is the
+ * deadline rounded up to whole seconds; JPA and JDBC statements inside it get
+ * the remaining time as their statement timeout, so the database stops work
+ * nobody waits for any more. Code that neither queries the database nor
+ * checks for interrupts runs to completion, and its result is discarded.
+ */
+@Service
+public class CompositeQueryExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(CompositeQueryExecutor.class);
+
+    private final ExecutorService executor;
+    private final CompositeQueryConfig config;
+    private final PlatformTransactionManager transactionManager;
+
+    public CompositeQueryExecutor(@Qualifier("analyticsExecutor") ExecutorService executor,
+                                  CompositeQueryConfig config,
+                                  PlatformTransactionManager transactionManager) {
+        this.executor = executor;
+        this.config = config;
+        this.transactionManager = transactionManager;
+    }
+
+    /**
+     * Runs the named sub-queries with the configured deadline.
+     */
+    public CompositeResult run(Map<String, Supplier<?>> subQueries) {
+        return run(subQueries, config.getDeadlineMs());
+    }
+
+    public CompositeResult run(Map<String, Supplier<?>> subQueries, long deadlineMs) {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(deadlineMs);
+
+        TransactionTemplate txTemplate = new TransactionTemplate(transactionManager);
+        txTemplate.setTimeout((int) Math.max(1, Math.min(Integer.MAX_VALUE, (deadlineMs + 999) / 1000)));
+
+        Map<String, Future<?>> futures = new LinkedHashMap<>();
+        subQueries.forEach((name, query) ->
+            futures.put(name, executor.submit(() -> txTemplate.execute(status -> query.get()))));
+
+        CompositeResult result = new CompositeResult();
+        for (Map.Entry<String, Future<?>> entry : futures.entrySet()) {
+            String name = entry.getKey();
+            Future<?> future = entry.getValue();
+            try {
+                long remaining = Math.max(0, deadline - System.nanoTime());
+                result.values.put(name, future.get(remaining, TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                result.failures.put(name, "Timed out after " + deadlineMs + " ms");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                logger.warn("Composite sub-query [{}] failed: {}", name, cause.getMessage());
+                result.failures.put(name, cause.getClass().getSimpleName() + ": " + cause.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                future.cancel(true);
+                result.failures.put(name, "Interrupted");
+            }
+        }
+        result.elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * Results by sub-query name, plus the names that failed or timed out.
+     */
+    public static final class CompositeResult {
+        private final Map<String, Object> values = new LinkedHashMap<>();
+        private final Map<String, String> failures = new LinkedHashMap<>();
+        private long elapsedMs;
+
+        @SuppressWarnings("unchecked")
+        public <T> T get(String name) {
+            return (T) values.get(name);
+        }
+
+        public boolean isPartial() {
+            return !failures.isEmpty();
+        }
+
+        public Map<String, String> getFailures() {
+            return failures;
+        }
+
+        public long getElapsedMs() {
+            return elapsedMs;
+        }
+    }
+}
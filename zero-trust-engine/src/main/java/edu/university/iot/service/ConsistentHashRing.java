@@ -0,0 +1,192 @@
+package edu.university.iot.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.ToLongFunction;
+
+/**
+ * Immutable consistent-hash ring mapping keys such as device IDs to cluster
+ * nodes.
+ *
+ * Every node is placed on a 64-bit ring at several points (virtual nodes), so
+ * the key space is split evenly, and a node joining or leaving only moves the
+ * keys next to its own points. A node with more virtual nodes takes a
+ * proportionally larger share. The layout depends only on the members, so
+ * every node that sees the same membership computes the same owners.
+ */
+public final class ConsistentHashRing {
+
+    private static final double RING_SIZE = 0x1p64;
+
+    private final ToLongFunction<String> hasher;
+    private final Map<String, Integer> members;
+    // Sorted positions; owners[i] owns the keys after points[i - 1] up to points[i]
+    private final long[] points;
+    private final String[] owners;
+
+    /**
+     * @param members node ID to number of virtual nodes; nodes with none are left out
+     */
+    public ConsistentHashRing(Map<String, Integer> members) {
+        this(members, ConsistentHashRing::hash);
+    }
+
+    /**
+     * Ring placing virtual nodes ("nodeId#i") and keys with the given hash, so
+     * tests can put points at exact positions.
+     */
+    ConsistentHashRing(Map<String, Integer> members, ToLongFunction<String> hasher) {
+        this.hasher = hasher;
+        Map<String, Integer> placed = new TreeMap<>();
+        List<long[]> entries = new ArrayList<>();
+        List<String> nodeIds = new ArrayList<>();
+        members.forEach((nodeId, virtualNodes) -> {
+            if (virtualNodes != null && virtualNodes > 0) {
+                placed.put(nodeId, virtualNodes);
+            }
+        });
+        placed.forEach((nodeId, virtualNodes) -> {
+            for (int i = 0; i < virtualNodes; i++) {
+                entries.add(new long[] { hasher.applyAsLong(nodeId + "#" + i), nodeIds.size() });
+            }
+            nodeIds.add(nodeId);
+        });
+
+        // Ties go to the smaller node ID, so colliding points resolve the same way everywhere
+        entries.sort((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+        long[] sortedPoints = new long[entries.size()];
+        String[] sortedOwners = new String[entries.size()];
+        int n = 0;
+        for (long[] entry : entries) {
+            if (n > 0 && sortedPoints[n - 1] == entry[0]) {
+                continue;
+            }
+            sortedPoints[n] = entry[0];
+            sortedOwners[n] = nodeIds.get((int) entry[1]);
+            n++;
+        }
+        this.members = Collections.unmodifiableMap(placed);
+        this.points = Arrays.copyOf(sortedPoints, n);
+        this.owners = Arrays.copyOf(sortedOwners, n);
+    }
+
+    public boolean isEmpty() {
+        return points.length == 0;
+    }
+
+    /**
+     * Node IDs on the ring, with their virtual node counts, in ID order.
+     */
+    public Map<String, Integer> getMembers() {
+        return members;
+    }
+
+    /**
+     * Node owning the key, or null if the ring is empty.
+     */
+    public String ownerOf(String key) {
+        return ownerAt(hasher.applyAsLong(key));
+    }
+
+    /**
+     * Fraction of the key space, between 0 and 1, owned by the node.
+     */
+    public double share(String nodeId) {
+        if (points.length == 0) {
+            return 0.0;
+        }
+        double owned = 0.0;
+        for (int i = 0; i < points.length; i++) {
+            if (owners[i].equals(nodeId)) {
+                owned += arc(i == 0 ? points[points.length - 1] : points[i - 1], points[i], points.length);
+            }
+        }
+        return owned / RING_SIZE;
+    }
+
+    /**
+     * Fraction of the key space whose owner differs between this ring and
+     * {@code other}; the share of devices a membership change moves.
+     */
+    public double movedShare(ConsistentHashRing other) {
+        return changedShare(other, null);
+    }
+
+    /**
+     * Fraction of the key space the node owns in this ring but not in
+     * {@code previous}; the share of devices a membership change gives it.
+     */
+    public double gainedShare(ConsistentHashRing previous, String nodeId) {
+        return changedShare(previous, nodeId);
+    }
+
+    // Keys whose owner differs from other, counting only those now owned by newOwner unless it is null
+    private double changedShare(ConsistentHashRing other, String newOwner) {
+        if (points.length == 0) {
+            return newOwner != null || other.points.length == 0 ? 0.0 : 1.0;
+        }
+        if (other.points.length == 0) {
+            return newOwner != null ? share(newOwner) : 1.0;
+        }
+        // Between two consecutive points of either ring, both rings have a single owner
+        long[] all = new long[points.length + other.points.length];
+        System.arraycopy(points, 0, all, 0, points.length);
+        System.arraycopy(other.points, 0, all, points.length, other.points.length);
+        Arrays.sort(all);
+        double moved = 0.0;
+        for (int i = 0; i < all.length; i++) {
+            long previous = i == 0 ? all[all.length - 1] : all[i - 1];
+            if (previous == all[i] && i > 0) {
+                continue;
+            }
+            String owner = ownerAt(all[i]);
+            if (!owner.equals(other.ownerAt(all[i])) && (newOwner == null || newOwner.equals(owner))) {
+                moved += arc(previous, all[i], all.length);
+            }
+        }
+        return moved / RING_SIZE;
+    }
+
+    private String ownerAt(long hash) {
+        if (points.length == 0) {
+            return null;
+        }
+        int index = Arrays.binarySearch(points, hash);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return owners[index == points.length ? 0 : index];
+    }
+
+    // Length of the ring from just after one point up to the next, as a double
+    private static double arc(long from, long to, int pointCount) {
+        if (from == to) {
+            return pointCount == 1 ? RING_SIZE : 0.0;
+        }
+        long length = to - from;
+        return (double) (length >>> 1) * 2.0 + (length & 1);
+    }
+
+    /**
+     * 64-bit FNV-1a over the UTF-8 bytes, followed by the MurmurHash3
+     * finalizer so that similar keys spread over the whole ring.
+     */
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,104 @@
+package edu.university.iot.service;
+
+import edu.university.iot.config.LocationChangeConfig;
+
+import java.util.Objects;
+
+/**
+ * Tolerance-based comparison of two location/network contexts.
+ *
+ * Two contexts are equivalent when they name the same location, sit on the
+ * same IP subnet and their coordinates are within the distance threshold.
+ * A differing context only becomes a change once it has been observed for
+ * the configured dwell time (hysteresis), so flapping and jitter are ignored.
+ */
+final class ContextChangeDetector {
+
+    private static final double EARTH_RADIUS_METERS = 6_371_000.0;
+
+    private final double distanceThresholdMeters;
+    private final int subnetPrefix;
+    private final long dwellMillis;
+
+    ContextChangeDetector(LocationChangeConfig config) {
+        this.distanceThresholdMeters = config.getDistanceThresholdMeters();
+        this.subnetPrefix = Math.max(0, Math.min(32, config.getIpv4SubnetPrefix()));
+        this.dwellMillis = Math.max(0, config.getDwellSeconds()) * 1000;
+    }
+
+    /**
+     * Returns true if the observed context differs from the reference beyond tolerance.
+     */
+    boolean isSignificantChange(String oldLocation, String oldIp, Double oldLat, Double oldLng,
+                                String newLocation, String newIp, Double newLat, Double newLng) {
+        if (!Objects.equals(oldLocation, newLocation)) return true;
+        if (!sameSubnet(oldIp, newIp)) return true;
+        return exceedsDistance(oldLat, oldLng, newLat, newLng);
+    }
+
+    /**
+     * Returns true once a candidate context first seen at {@code firstSeenMillis}
+     * has persisted long enough to be committed.
+     */
+    boolean hasDwelled(long firstSeenMillis, long nowMillis) {
+        return nowMillis - firstSeenMillis >= dwellMillis;
+    }
+
+    boolean sameSubnet(String ip1, String ip2) {
+        if (Objects.equals(ip1, ip2)) return true;
+        if (ip1 == null || ip2 == null) return false;
+
+        long a = parseIpv4(ip1);
+        long b = parseIpv4(ip2);
+        if (a < 0 || b < 0) {
+            // Not IPv4 - fall back to exact match (already failed above)
+            return false;
+        }
+        long mask = subnetPrefix == 0 ? 0L : (0xFFFFFFFFL << (32 - subnetPrefix)) & 0xFFFFFFFFL;
+        return (a & mask) == (b & mask);
+    }
+
+    private boolean exceedsDistance(Double lat1, Double lng1, Double lat2, Double lng2) {
+        boolean hadCoords = lat1 != null && lng1 != null;
+        boolean hasCoords = lat2 != null && lng2 != null;
+        if (!hadCoords || !hasCoords) {
+            // Coordinates appearing or disappearing is not a move on its own
+            return false;
+        }
+        return distanceMeters(lat1, lng1, lat2, lng2) > distanceThresholdMeters;
+    }
+
+    /** Haversine distance between two WGS84 points. */
+    static double distanceMeters(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double h = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1.0, Math.sqrt(h)));
+    }
+
+    /** Parses dotted-quad IPv4 without DNS lookups; returns -1 if not IPv4. */
+    private static long parseIpv4(String ip) {
+        long value = 0;
+        int octet = 0;
+        int digits = 0;
+        int dots = 0;
+        for (int i = 0; i < ip.length(); i++) {
+            char c = ip.charAt(i);
+            if (c >= '0' && c <= '9') {
+                octet = octet * 10 + (c - '0');
+                if (++digits > 3 || octet > 255) return -1;
+            } else if (c == '.') {
+                if (digits == 0 || ++dots > 3) return -1;
+                value = (value << 8) | octet;
+                octet = 0;
+                digits = 0;
+            } else {
+                return -1;
+            }
+        }
+        if (dots != 3 || digits == 0) return -1;
+        return (value << 8) | octet;
+    }
+}
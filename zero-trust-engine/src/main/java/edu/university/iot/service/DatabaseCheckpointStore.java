@@ -0,0 +1,142 @@
+package edu.university.iot.service;
+
+import com.azure.messaging.eventhubs.CheckpointStore;
+import com.azure.messaging.eventhubs.models.Checkpoint;
+import com.azure.messaging.eventhubs.models.PartitionOwnership;
+import edu.university.iot.model.EventHubCheckpoint;
+import edu.university.iot.model.EventHubOwnership;
+import edu.university.iot.repository.EventHubCheckpointRepository;
+import edu.university.iot.repository.EventHubOwnershipRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+
+/**
+ * Event Hub checkpoint store backed by the engine's own database, standing in
+ * for the Azure Blob checkpoint store.
+ *
+ * Partition ownership is claimed with an eTag compare-and-set, so several
+ * engine instances can share a consumer group and rebalance partitions safely.
+ * Repository calls block, so they run on the bounded elastic scheduler.
+ */
+public class DatabaseCheckpointStore implements CheckpointStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(DatabaseCheckpointStore.class);
+
+    private final EventHubCheckpointRepository checkpointRepo;
+    private final EventHubOwnershipRepository ownershipRepo;
+
+    public DatabaseCheckpointStore(EventHubCheckpointRepository checkpointRepo,
+                                   EventHubOwnershipRepository ownershipRepo) {
+        this.checkpointRepo = checkpointRepo;
+        this.ownershipRepo = ownershipRepo;
+    }
+
+    @Override
+    public Flux<PartitionOwnership> listOwnership(String fullyQualifiedNamespace, String eventHubName,
+                                                  String consumerGroup) {
+        return blocking(() -> ownershipRepo
+                .findByFullyQualifiedNamespaceAndEventHubNameAndConsumerGroup(
+                        fullyQualifiedNamespace, eventHubName, consumerGroup)
+                .stream().map(DatabaseCheckpointStore::toOwnership).toList());
+    }
+
+    @Override
+    public Flux<PartitionOwnership> claimOwnership(List<PartitionOwnership> requestedPartitionOwnerships) {
+        return blocking(() -> {
+            List<PartitionOwnership> claimed = new ArrayList<>();
+            for (PartitionOwnership requested : requestedPartitionOwnerships) {
+                String id = key(requested.getFullyQualifiedNamespace(), requested.getEventHubName(),
+                                requested.getConsumerGroup(), requested.getPartitionId());
+                String newEtag = UUID.randomUUID().toString();
+                long now = System.currentTimeMillis();
+
+                int updated = requested.getETag() == null
+                        ? ownershipRepo.insertIfAbsent(id, requested.getFullyQualifiedNamespace(),
+                                requested.getEventHubName(), requested.getConsumerGroup(),
+                                requested.getPartitionId(), requested.getOwnerId(), now, newEtag)
+                        : ownershipRepo.claim(id, requested.getOwnerId(), now, requested.getETag(), newEtag);
+
+                if (updated == 1) {
+                    claimed.add(copy(requested).setLastModifiedTime(now).setETag(newEtag));
+                } else {
+                    logger.debug("Lost claim on partition {} to another instance", requested.getPartitionId());
+                }
+            }
+            return claimed;
+        });
+    }
+
+    @Override
+    public Flux<Checkpoint> listCheckpoints(String fullyQualifiedNamespace, String eventHubName,
+                                            String consumerGroup) {
+        return blocking(() -> checkpointRepo
+                .findByFullyQualifiedNamespaceAndEventHubNameAndConsumerGroup(
+                        fullyQualifiedNamespace, eventHubName, consumerGroup)
+                .stream().map(DatabaseCheckpointStore::toCheckpoint).toList());
+    }
+
+    @Override
+    public Mono<Void> updateCheckpoint(Checkpoint checkpoint) {
+        return Mono.<Void>fromRunnable(() -> {
+            String id = key(checkpoint.getFullyQualifiedNamespace(), checkpoint.getEventHubName(),
+                            checkpoint.getConsumerGroup(), checkpoint.getPartitionId());
+            EventHubCheckpoint row = checkpointRepo.findById(id).orElseGet(() -> new EventHubCheckpoint(
+                    id, checkpoint.getFullyQualifiedNamespace(), checkpoint.getEventHubName(),
+                    checkpoint.getConsumerGroup(), checkpoint.getPartitionId()));
+            row.setOffset(checkpoint.getOffset());
+            row.setSequenceNumber(checkpoint.getSequenceNumber());
+            row.setUpdatedAt(Instant.now());
+            checkpointRepo.save(row);
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    static String key(String fullyQualifiedNamespace, String eventHubName, String consumerGroup,
+                      String partitionId) {
+        return fullyQualifiedNamespace + "/" + eventHubName + "/" + consumerGroup + "/" + partitionId;
+    }
+
+    private static <T> Flux<T> blocking(Callable<List<T>> call) {
+        return Mono.fromCallable(call)
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(Flux::fromIterable);
+    }
+
+    private static PartitionOwnership toOwnership(EventHubOwnership row) {
+        return new PartitionOwnership()
+                .setFullyQualifiedNamespace(row.getFullyQualifiedNamespace())
+                .setEventHubName(row.getEventHubName())
+                .setConsumerGroup(row.getConsumerGroup())
+                .setPartitionId(row.getPartitionId())
+                .setOwnerId(row.getOwnerId())
+                .setLastModifiedTime(row.getLastModifiedTime())
+                .setETag(row.getEtag());
+    }
+
+    private static Checkpoint toCheckpoint(EventHubCheckpoint row) {
+        return new Checkpoint()
+                .setFullyQualifiedNamespace(row.getFullyQualifiedNamespace())
+                .setEventHubName(row.getEventHubName())
+                .setConsumerGroup(row.getConsumerGroup())
+                .setPartitionId(row.getPartitionId())
+                .setOffset(row.getOffset())
+                .setSequenceNumber(row.getSequenceNumber());
+    }
+
+    private static PartitionOwnership copy(PartitionOwnership ownership) {
+        return new PartitionOwnership()
+                .setFullyQualifiedNamespace(ownership.getFullyQualifiedNamespace())
+                .setEventHubName(ownership.getEventHubName())
+                .setConsumerGroup(ownership.getConsumerGroup())
+                .setPartitionId(ownership.getPartitionId())
+                .setOwnerId(ownership.getOwnerId());
+    }
+}
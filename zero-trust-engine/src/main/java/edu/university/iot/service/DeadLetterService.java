@@ -0,0 +1,256 @@
+package edu.university.iot.service;
+
+import edu.university.iot.config.DeadLetterConfig;
+import edu.university.iot.entity.DeviceMessage;
+import edu.university.iot.model.DeadLetterEvent;
+import edu.university.iot.repository.DeadLetterEventRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps telemetry events that failed ingestion and retries them off the hot path.
+ *
+ * Failed events are stored with their raw payload and retried by a poller with
+ * exponential backoff until maxAttempts is reached. Payloads that cannot be
+ * parsed will never succeed on their own and are parked as FAILED at once.
+ * A successful retry is marked resolved in the same transaction that applies it.
+ *
+ * Failures are logged as one line without a stack trace, and at most once per
+ * device (or partition) per logIntervalMs; the rest are only counted, so a
+ * single misbehaving device cannot flood the log.
+ */
+@Service
+public class DeadLetterService {
+
+    private static final Logger log = LoggerFactory.getLogger(DeadLetterService.class);
+
+    private final DeadLetterEventRepository deadLetterRepo;
+    private final TelemetryProcessorService processorService;
+    private final DeviceMessageParser parser;
+    private final DeadLetterConfig config;
+
+    // Log throttling: last warning time per device/partition key
+    private final Map<String, Long> lastWarnedAt = new ConcurrentHashMap<>();
+    private final AtomicLong suppressedWarnings = new AtomicLong();
+
+    public DeadLetterService(DeadLetterEventRepository deadLetterRepo,
+                             TelemetryProcessorService processorService,
+                             DeviceMessageParser parser,
+                             DeadLetterConfig config) {
+        this.deadLetterRepo = deadLetterRepo;
+        this.processorService = processorService;
+        this.parser = parser;
+        this.config = config;
+    }
+
+    /**
+     * Stores an event whose payload could not be parsed; it is not retried automatically.
+     */
+    public DeadLetterEvent recordParseFailure(String partitionId, Long sequenceNumber, Instant enqueuedTime,
+                                              String payload, Exception error) {
+        DeadLetterEvent event = new DeadLetterEvent(null, partitionId, sequenceNumber, enqueuedTime, payload);
+        event.setAttempts(1);
+        event.setStatus(DeadLetterEvent.Status.FAILED);
+        applyError(event, error);
+        warn("partition:" + partitionId, "Unreadable event {} on partition {} parked in dead-letter store: {}",
+             sequenceNumber, partitionId, describe(error));
+        return deadLetterRepo.save(event);
+    }
+
+    /**
+     * Stores an event that failed processing and schedules its first retry.
+     */
+    public DeadLetterEvent recordProcessingFailure(TelemetryEvent failed, String payload, Exception error) {
+        DeadLetterEvent event = new DeadLetterEvent(failed.getDeviceId(), failed.getPartitionId(),
+                failed.getSequenceNumber(), failed.getEnqueuedTime(), payload);
+        event.setAttempts(1);
+        applyError(event, error);
+        if (isRetryable(error)) {
+            event.setNextAttemptAt(Instant.now().plusMillis(backoffMillis(1)));
+        } else {
+            event.setStatus(DeadLetterEvent.Status.FAILED);
+        }
+        warn("device:" + failed.getDeviceId(), "Telemetry from device [{}] moved to dead-letter store: {}",
+             failed.getDeviceId(), describe(error));
+        return deadLetterRepo.save(event);
+    }
+
+    /**
+     * Retries due events, oldest first.
+     */
+    @Scheduled(fixedDelayString = "${ingestion.dead-letter.poll-interval-ms:5000}")
+    public void retryDue() {
+        Instant now = Instant.now();
+        List<DeadLetterEvent> due = deadLetterRepo.findDue(
+            DeadLetterEvent.Status.PENDING, now, PageRequest.of(0, config.getBatchSize()));
+
+        for (DeadLetterEvent event : due) {
+            DeadLetterEvent claimed = claim(event, now);
+            if (claimed != null) {
+                attempt(claimed);
+            }
+        }
+    }
+
+    /**
+     * Gives one event a fresh retry budget and retries it immediately.
+     *
+     * @return the event after the attempt, or empty if there is no such event
+     */
+    public Optional<DeadLetterEvent> replay(Long id) {
+        return deadLetterRepo.findById(id).map(event -> {
+            if (event.getStatus() == DeadLetterEvent.Status.RESOLVED) {
+                return event;
+            }
+            event.setStatus(DeadLetterEvent.Status.PENDING);
+            event.setAttempts(1);
+            event.setNextAttemptAt(Instant.now().plusMillis(config.getLeaseMs()));
+            DeadLetterEvent claimed = deadLetterRepo.save(event);
+            attempt(claimed);
+            return deadLetterRepo.findById(id).orElse(claimed);
+        });
+    }
+
+    /**
+     * Puts every unresolved event (optionally of one device) back in the retry queue.
+     *
+     * @return number of events requeued
+     */
+    @Transactional
+    public int requeue(String deviceId) {
+        return deadLetterRepo.requeue(deviceId, DeadLetterEvent.Status.PENDING,
+                                      DeadLetterEvent.Status.RESOLVED, Instant.now());
+    }
+
+    public List<DeadLetterEvent> getRecent(DeadLetterEvent.Status status, int limit) {
+        PageRequest page = PageRequest.of(0, Math.max(1, Math.min(limit, 500)));
+        return status != null
+            ? deadLetterRepo.findByStatusOrderByCreatedAtDesc(status, page)
+            : deadLetterRepo.findAllByOrderByCreatedAtDesc(page);
+    }
+
+    /**
+     * Queue depth and log suppression for monitoring
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("pending", deadLetterRepo.countByStatus(DeadLetterEvent.Status.PENDING));
+        stats.put("resolved", deadLetterRepo.countByStatus(DeadLetterEvent.Status.RESOLVED));
+        stats.put("failed", deadLetterRepo.countByStatus(DeadLetterEvent.Status.FAILED));
+        stats.put("suppressedWarnings", suppressedWarnings.get());
+        return stats;
+    }
+
+    private DeadLetterEvent claim(DeadLetterEvent event, Instant now) {
+        try {
+            event.setAttempts(event.getAttempts() + 1);
+            event.setNextAttemptAt(now.plusMillis(config.getLeaseMs()));
+            return deadLetterRepo.save(event);
+        } catch (OptimisticLockingFailureException e) {
+            // Another poller claimed it first
+            return null;
+        }
+    }
+
+    private void attempt(DeadLetterEvent event) {
+        DeviceMessage message;
+        try {
+            message = parser.parse(event.getPayload());
+        } catch (IOException e) {
+            retryOrFail(event, e);
+            return;
+        }
+
+        Exception error;
+        try {
+            // Resolved by the processor in the transaction that applies it
+            TelemetryBatchResult result = processorService.processBatch(
+                List.of(TelemetryEvent.fromDeadLetter(message, event.getId())));
+            if (result.getFailures().isEmpty()) {
+                log.info("Dead-letter event {} from device [{}] applied on attempt {}",
+                         event.getId(), event.getDeviceId(), event.getAttempts());
+                return;
+            }
+            error = result.getFailures().get(0).getError();
+        } catch (RuntimeException e) {
+            error = e;
+        }
+        retryOrFail(event, error);
+    }
+
+    private void retryOrFail(DeadLetterEvent event, Exception error) {
+        applyError(event, error);
+        if (!isRetryable(error) || event.getAttempts() >= config.getMaxAttempts()) {
+            event.setStatus(DeadLetterEvent.Status.FAILED);
+            warn("device:" + event.getDeviceId(), "Giving up on dead-letter event {} from device [{}] after {} attempts: {}",
+                 event.getId(), event.getDeviceId(), event.getAttempts(), describe(error));
+        } else {
+            event.setNextAttemptAt(Instant.now().plusMillis(backoffMillis(event.getAttempts())));
+        }
+        try {
+            deadLetterRepo.save(event);
+        } catch (OptimisticLockingFailureException e) {
+            log.debug("Dead-letter event {} was modified concurrently; lease will resolve it", event.getId());
+        }
+    }
+
+    /**
+     * Malformed payloads and type mismatches in telemetry fields fail the same
+     * way every time; anything else (unknown device, database errors) may pass later.
+     */
+    private static boolean isRetryable(Exception error) {
+        return !(error instanceof IOException) && !(error instanceof ClassCastException);
+    }
+
+    /**
+     * Exponential backoff with up to 20% jitter, capped at maxBackoffMs.
+     */
+    long backoffMillis(int attempts) {
+        int exponent = Math.min(Math.max(attempts - 1, 0), 30);
+        long base = Math.min(config.getMaxBackoffMs(), config.getInitialBackoffMs() << exponent);
+        if (base <= 0) base = config.getMaxBackoffMs();
+        return base + ThreadLocalRandom.current().nextLong(base / 5 + 1);
+    }
+
+    private void warn(String key, String format, Object... args) {
+        long now = System.currentTimeMillis();
+        Long previous = lastWarnedAt.get(key);
+        if (previous != null && now - previous < config.getLogIntervalMs()) {
+            suppressedWarnings.incrementAndGet();
+            if (log.isDebugEnabled()) {
+                log.debug(format, args);
+            }
+            return;
+        }
+        lastWarnedAt.put(key, now);
+        log.warn(format, args);
+    }
+
+    private static void applyError(DeadLetterEvent event, Exception error) {
+        event.setErrorClass(error.getClass().getName());
+        event.setLastError(truncate(describe(error)));
+    }
+
+    private static String describe(Exception error) {
+        return error.getClass().getSimpleName() + ": " + error.getMessage();
+    }
+
+    private static String truncate(String s) {
+        return s == null || s.length() <= 1000 ? s : s.substring(0, 1000);
+    }
+}
@@ -0,0 +1,25 @@
+package edu.university.iot.service;
+
+import java.io.IOException;
+
+/**
+ * Narrow view of the cloud device registry used by the quarantine pipeline.
+ *
+ * Production uses Azure IoT Hub; the local implementation keeps state in memory
+ * so the pipeline can run without network access.
+ */
+public interface DeviceIdentityGateway {
+
+    enum DisableOutcome {
+        DISABLED,
+        ALREADY_DISABLED,
+        NOT_FOUND
+    }
+
+    /**
+     * Disables the device identity so it can no longer connect.
+     *
+     * @throws IOException on transient failures that should be retried
+     */
+    DisableOutcome disableDevice(String deviceId) throws IOException;
+}
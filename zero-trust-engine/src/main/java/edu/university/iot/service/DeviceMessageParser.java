@@ -0,0 +1,44 @@
+package edu.university.iot.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import edu.university.iot.entity.DeviceMessage;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads device telemetry JSON, shared by live ingestion, dead-letter replay
+ * and the telemetry event log.
+ */
+@Component
+public class DeviceMessageParser {
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    public DeviceMessage parse(String payload) throws IOException {
+        if (payload == null || payload.isBlank()) {
+            throw new IOException("Empty payload");
+        }
+        return objectMapper.readValue(payload, DeviceMessage.class);
+    }
+
+    /**
+     * Reads a message straight from a buffer, e.g. a mapped event log record.
+     */
+    public DeviceMessage parse(ByteBuffer payload) throws IOException {
+        if (!payload.hasRemaining()) {
+            throw new IOException("Empty payload");
+        }
+        return objectMapper.readValue(new ByteBufferBackedInputStream(payload), DeviceMessage.class);
+    }
+
+    public byte[] toJson(DeviceMessage message) throws IOException {
+        return objectMapper.writeValueAsBytes(message);
+    }
+}
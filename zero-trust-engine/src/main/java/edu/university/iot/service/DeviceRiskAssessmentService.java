@@ -1,6 +1,7 @@
 package edu.university.iot.service;
 
 import edu.university.iot.entity.DeviceRegistry;
+import edu.university.iot.model.LocationNetworkChange;
 import edu.university.iot.model.dtoModel.*;
 import edu.university.iot.repository.*;
 import org.slf4j.Logger;
@@ -29,6 +30,21 @@ public class DeviceRiskAssessmentService {
     private final ComplianceLogRepository complianceRepo;
     private final FirmwareLogRepository firmwareRepo;
     private final IdentityLogRepository identityRepo;
+    private final LocationNetworkChangeRepository locationChangeRepo;
+    private final AnalyticsResultCache resultCache;
+
+    private static final double TRUSTED_THRESHOLD = 70.0;
+    private static final Map<String, Integer> URGENCY_RANK = Map.of(
+        "URGENT", 4, "HIGH", 3, "MEDIUM", 2, "LOW", 1);
+    private static final Map<String, Integer> RISK_RANK = Map.of(
+        "CRITICAL", 4, "HIGH", 3, "MEDIUM", 2, "LOW", 1);
+
+    // Most urgent first: urgency, risk level, lowest trust score, device id
+    private static final Comparator<Map<String, Object>> ATTENTION_ORDER =
+        Comparator.<Map<String, Object>>comparingInt(d -> -URGENCY_RANK.getOrDefault((String) d.get("urgency"), 0))
+            .thenComparingInt(d -> -RISK_RANK.getOrDefault((String) d.get("riskLevel"), 0))
+            .thenComparingDouble(d -> (Double) d.get("trustScore"))
+            .thenComparing(d -> (String) d.get("deviceId"));
 
     public DeviceRiskAssessmentService(
             DeviceRegistryRepository registryRepo,
@@ -37,7 +53,9 @@ public class DeviceRiskAssessmentService {
             AnomalyLogRepository anomalyRepo,
             ComplianceLogRepository complianceRepo,
             FirmwareLogRepository firmwareRepo,
-            IdentityLogRepository identityRepo) {
+            IdentityLogRepository identityRepo,
+            LocationNetworkChangeRepository locationChangeRepo,
+            AnalyticsResultCache resultCache) {
         
         this.registryRepo = registryRepo;
         this.trustHistoryService = trustHistoryService;
@@ -46,6 +64,8 @@ public class DeviceRiskAssessmentService {
         this.complianceRepo = complianceRepo;
         this.firmwareRepo = firmwareRepo;
         this.identityRepo = identityRepo;
+        this.locationChangeRepo = locationChangeRepo;
+        this.resultCache = resultCache;
     }
 
     /**
@@ -149,42 +169,61 @@ public class DeviceRiskAssessmentService {
      * Get devices that need immediate attention
      */
     public List<Map<String, Object>> getDevicesRequiringAttention() {
+        return getDevicesRequiringAttention(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Get the {@code limit} most urgent devices that need attention.
+     *
+     * Risk factors for the whole fleet come from one grouped query per log
+     * table, so the cost is a fixed six queries however many devices exist.
+     */
+    public List<Map<String, Object>> getDevicesRequiringAttention(int limit) {
         List<Map<String, Object>> attentionList = new ArrayList<>();
+        if (limit <= 0) {
+            return attentionList;
+        }
         
         try {
-            List<DeviceRegistry> allDevices = registryRepo.findAll();
+            // Only devices whose risk level is not LOW
+            List<DeviceRegistry> candidates = registryRepo.findQuarantinedOrBelowTrust(TRUSTED_THRESHOLD);
+            if (candidates.isEmpty()) {
+                return attentionList;
+            }
+
+            Map<String, List<String>> fleetIssues = identifyPrimaryIssuesForFleet();
+
+            // Bounded heap whose head is the least urgent device kept so far
+            PriorityQueue<Map<String, Object>> topK = new PriorityQueue<>(ATTENTION_ORDER.reversed());
             
-            for (DeviceRegistry device : allDevices) {
+            for (DeviceRegistry device : candidates) {
                 Map<String, Object> deviceInfo = new HashMap<>();
                 String deviceId = device.getDeviceId();
                 double trustScore = device.getTrustScore() != null ? device.getTrustScore() : 50.0;
                 String riskLevel = determineRiskLevel(trustScore, device);
                 
-                // Only include devices needing attention
-                if (!"LOW".equals(riskLevel)) {
-                    deviceInfo.put("deviceId", deviceId);
-                    deviceInfo.put("trustScore", trustScore);
-                    deviceInfo.put("riskLevel", riskLevel);
-                    deviceInfo.put("isQuarantined", device.isQuarantined());
-                    deviceInfo.put("isTrusted", device.isTrusted());
-                    
-                    // Get primary issues
-                    List<String> issues = identifyPrimaryIssues(deviceId);
-                    deviceInfo.put("primaryIssues", issues);
-                    
-                    // Get urgency level
-                    deviceInfo.put("urgency", determineUrgency(riskLevel, issues.size()));
-                    
-                    attentionList.add(deviceInfo);
+                deviceInfo.put("deviceId", deviceId);
+                deviceInfo.put("trustScore", trustScore);
+                deviceInfo.put("riskLevel", riskLevel);
+                deviceInfo.put("isQuarantined", device.isQuarantined());
+                deviceInfo.put("isTrusted", device.isTrusted());
+                
+                // Get primary issues
+                List<String> issues = fleetIssues.getOrDefault(deviceId, List.of());
+                deviceInfo.put("primaryIssues", issues);
+                
+                // Get urgency level
+                deviceInfo.put("urgency", determineUrgency(riskLevel, issues.size()));
+                
+                topK.offer(deviceInfo);
+                if (topK.size() > limit) {
+                    topK.poll();
                 }
             }
             
-            // Sort by urgency and risk level
-            attentionList.sort((a, b) -> {
-                String urgencyA = (String) a.get("urgency");
-                String urgencyB = (String) b.get("urgency");
-                return compareUrgency(urgencyB, urgencyA); // Reverse order for descending
-            });
+            // Most urgent first
+            attentionList.addAll(topK);
+            attentionList.sort(ATTENTION_ORDER);
             
         } catch (Exception e) {
             logger.error("Error getting devices requiring attention: {}", e.getMessage(), e);
@@ -206,7 +245,7 @@ public class DeviceRiskAssessmentService {
 
     private String analyzeTrustTrend(String deviceId) {
         try {
-            TrustChangeAnalysisDto analysis = trustHistoryService.analyzeTrustChanges(deviceId, 24);
+            TrustChangeAnalysisDto analysis = trustChanges(deviceId, 24);
             return analysis.getTrend();
         } catch (Exception e) {
             return "UNKNOWN";
@@ -220,7 +259,7 @@ public class DeviceRiskAssessmentService {
             Instant cutoff = Instant.now().minusSeconds(24 * 3600); // 24 hours ago
             
             // Identity factor
-            var identityLogs = identityRepo.findByDeviceId(deviceId).stream()
+            var identityLogs = ChangeOnlyLogFilter.expand(identityRepo.findByDeviceId(deviceId), false).stream()
                 .filter(log -> log.getTimestamp().isAfter(cutoff))
                 .collect(Collectors.toList());
             
@@ -229,16 +268,13 @@ public class DeviceRiskAssessmentService {
                     .mapToLong(log -> log.isIdentityVerified() ? 0L : 1L)
                     .sum();
                 double failureRate = (double) failures / identityLogs.size();
-                
-                if (failureRate > 0.3) factors.put("identity", "HIGH_RISK");
-                else if (failureRate > 0.1) factors.put("identity", "MEDIUM_RISK");
-                else factors.put("identity", "LOW_RISK");
+                factors.put("identity", classifyRate(failureRate));
             } else {
                 factors.put("identity", "NO_DATA");
             }
             
             // Location factor
-            var locationChanges = locationService.getLocationHistory(deviceId, 24);
+            var locationChanges = locationHistory(deviceId, 24);
             if (locationChanges.size() > 5) {
                 factors.put("location", "HIGH_RISK");
             } else if (locationChanges.size() > 2) {
@@ -257,16 +293,13 @@ public class DeviceRiskAssessmentService {
                     .mapToLong(log -> log.isAnomalyDetected() ? 1L : 0L)
                     .sum();
                 double anomalyRate = (double) anomalies / anomalyLogs.size();
-                
-                if (anomalyRate > 0.3) factors.put("behavior", "HIGH_RISK");
-                else if (anomalyRate > 0.1) factors.put("behavior", "MEDIUM_RISK");
-                else factors.put("behavior", "LOW_RISK");
+                factors.put("behavior", classifyRate(anomalyRate));
             } else {
                 factors.put("behavior", "NO_DATA");
             }
             
             // Compliance factor
-            var complianceLogs = complianceRepo.findByDeviceId(deviceId).stream()
+            var complianceLogs = ChangeOnlyLogFilter.expand(complianceRepo.findByDeviceId(deviceId), false).stream()
                 .filter(log -> log.getTimestamp().isAfter(cutoff))
                 .collect(Collectors.toList());
             
@@ -275,10 +308,7 @@ public class DeviceRiskAssessmentService {
                     .mapToLong(log -> log.isCompliant() ? 0L : 1L)
                     .sum();
                 double violationRate = (double) violations / complianceLogs.size();
-                
-                if (violationRate > 0.3) factors.put("compliance", "HIGH_RISK");
-                else if (violationRate > 0.1) factors.put("compliance", "MEDIUM_RISK");
-                else factors.put("compliance", "LOW_RISK");
+                factors.put("compliance", classifyRate(violationRate));
             } else {
                 factors.put("compliance", "NO_DATA");
             }
@@ -360,7 +390,7 @@ public class DeviceRiskAssessmentService {
             assessment.setRecentAnomalies((int) recentAnomalies);
             
             // Count location changes
-            int locationChanges = locationService.getLocationHistory(deviceId, 24).size();
+            int locationChanges = locationHistory(deviceId, 24).size();
             assessment.setLocationChanges(locationChanges);
             
             // Check for compliance issues
@@ -382,7 +412,7 @@ public class DeviceRiskAssessmentService {
                                          double currentTrustScore) {
         try {
             // Simple predictive model based on recent trends
-            TrustChangeAnalysisDto analysis = trustHistoryService.analyzeTrustChanges(deviceId, 24);
+            TrustChangeAnalysisDto analysis = trustChanges(deviceId, 24);
             
             double predictedChange = 0.0;
             double confidence = 0.5; // Default confidence
@@ -484,22 +514,72 @@ public class DeviceRiskAssessmentService {
             .orElse(0.0);
     }
 
-    private List<String> identifyPrimaryIssues(String deviceId) {
-        List<String> issues = new ArrayList<>();
-        
-        try {
-            Map<String, String> factors = analyzeRiskFactors(deviceId);
-            factors.entrySet().stream()
-                .filter(entry -> "HIGH_RISK".equals(entry.getValue()))
-                .forEach(entry -> issues.add(formatIssue(entry.getKey())));
-                
-        } catch (Exception e) {
-            issues.add("Assessment error");
+    /**
+     * Primary issues (HIGH_RISK factors) for every device with recent logs,
+     * using the same thresholds as analyzeRiskFactors.
+     */
+    private Map<String, List<String>> identifyPrimaryIssuesForFleet() {
+        Instant cutoff = Instant.now().minusSeconds(24 * 3600); // 24 hours ago
+        Map<String, List<String>> issues = new HashMap<>();
+
+        // Identity factor
+        for (Object[] row : identityRepo.countFailuresByDeviceSince(cutoff)) {
+            addIssueIfHighRisk(issues, row, "identity");
         }
-        
+
+        // Location factor
+        for (Object[] row : locationChangeRepo.countChangesByDeviceSince(LocalDateTime.now().minusHours(24))) {
+            if (((Number) row[1]).longValue() > 5) {
+                issues.computeIfAbsent((String) row[0], k -> new ArrayList<>()).add(formatIssue("location"));
+            }
+        }
+
+        // Anomaly factor
+        for (Object[] row : anomalyRepo.countAnomaliesByDeviceSince(cutoff)) {
+            addIssueIfHighRisk(issues, row, "behavior");
+        }
+
+        // Compliance factor
+        for (Object[] row : complianceRepo.countViolationsByDeviceSince(cutoff)) {
+            addIssueIfHighRisk(issues, row, "compliance");
+        }
+
+        // Firmware factor
+        for (Object[] row : firmwareRepo.findLatestValidityByDevice()) {
+            if (!Boolean.TRUE.equals(row[1])) {
+                issues.computeIfAbsent((String) row[0], k -> new ArrayList<>()).add(formatIssue("firmware"));
+            }
+        }
+
         return issues;
     }
 
+    /** Row is [deviceId, checks, failures]. */
+    private void addIssueIfHighRisk(Map<String, List<String>> issues, Object[] row, String factor) {
+        long checks = ((Number) row[1]).longValue();
+        long failures = row[2] != null ? ((Number) row[2]).longValue() : 0L;
+        if (checks > 0 && "HIGH_RISK".equals(classifyRate((double) failures / checks))) {
+            issues.computeIfAbsent((String) row[0], k -> new ArrayList<>()).add(formatIssue(factor));
+        }
+    }
+
+    private static String classifyRate(double rate) {
+        if (rate > 0.3) return "HIGH_RISK";
+        if (rate > 0.1) return "MEDIUM_RISK";
+        return "LOW_RISK";
+    }
+
+    // Shared with the analytics endpoints through the result cache
+    private TrustChangeAnalysisDto trustChanges(String deviceId, int hours) {
+        return resultCache.get(deviceId, "trust-changes:" + hours,
+            () -> trustHistoryService.analyzeTrustChanges(deviceId, hours));
+    }
+
+    private List<LocationNetworkChange> locationHistory(String deviceId, int hours) {
+        return resultCache.get(deviceId, "location-history:" + hours,
+            () -> locationService.getLocationHistory(deviceId, hours));
+    }
+
     private String formatIssue(String factor) {
         switch (factor) {
             case "identity": return "Identity verification failures";
@@ -517,18 +597,4 @@ public class DeviceRiskAssessmentService {
         if ("MEDIUM".equals(riskLevel) || issueCount > 0) return "MEDIUM";
         return "LOW";
     }
-
-    private int compareUrgency(String urgency1, String urgency2) {
-        Map<String, Integer> urgencyOrder = Map.of(
-            "URGENT", 4,
-            "HIGH", 3,
-            "MEDIUM", 2,
-            "LOW", 1
-        );
-        
-        return Integer.compare(
-            urgencyOrder.getOrDefault(urgency1, 0),
-            urgencyOrder.getOrDefault(urgency2, 0)
-        );
-    }
-}
\ No newline at end of file
+}
@@ -1,78 +1,293 @@
 package edu.university.iot.service;
 
-import com.azure.messaging.eventhubs.EventHubClientBuilder;
-import com.azure.messaging.eventhubs.EventHubConsumerAsyncClient;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
-import com.fasterxml.jackson.databind.SerializationFeature;
+import com.azure.messaging.eventhubs.CheckpointStore;
+import com.azure.messaging.eventhubs.EventData;
+import com.azure.messaging.eventhubs.EventProcessorClient;
+import com.azure.messaging.eventhubs.EventProcessorClientBuilder;
+import com.azure.messaging.eventhubs.models.Checkpoint;
+import com.azure.messaging.eventhubs.models.ErrorContext;
+import com.azure.messaging.eventhubs.models.EventBatchContext;
+import com.azure.messaging.eventhubs.models.EventPosition;
+import com.azure.messaging.eventhubs.models.PartitionContext;
 
+import edu.university.iot.config.CheckpointConfig;
 import edu.university.iot.entity.DeviceMessage;
-import edu.university.iot.repository.DeviceMessageRepository;
 
-import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Consumes device telemetry from Event Hub with checkpointing.
+ *
+ * Each partition is processed in order, one batch at a time; the checkpoint
+ * is written only after the whole batch has been committed. After a restart
+ * or a partition moving to another instance, consumption resumes from the
+ * last checkpoint, and events that were committed but not yet checkpointed
+ * are recognised as duplicates by their sequence number and skipped.
+ *
+ * Events that cannot be parsed or processed are handed to the dead-letter
+ * store with their raw payload and the batch is checkpointed past them; if
+ * even that fails, the batch is not checkpointed and will be redelivered.
+ *
+ * In clustering mode every node reads all partitions under its own consumer
+ * group and drops the events of devices another node owns. A partition's
+ * checkpoint is held behind dropped events for
+ * {@link ClusterMembershipService#getForeignHoldMs()}, and when a rebalance
+ * moves devices here, consumption restarts from the held checkpoints. Events
+ * of devices whose owner crashed are then read again and applied here; events
+ * that were already applied are skipped by their sequence number.
+ *
+ * Consumption starts when the application reports readiness, which happens
+ * after {@link StartupService} has warmed in-memory state, and stops if
+ * readiness is withdrawn.
+ */
 @Service
 public class EventListenerService {
 
+    private static final Logger logger = LoggerFactory.getLogger(EventListenerService.class);
+
     @Value("${eventhubs.connection-string}")
     private String eventHubConnectionString;
 
     @Value("${eventhubs.entity-path}")
     private String eventHubName;
 
-    private final DeviceMessageRepository deviceMessageRepository;
-    private final TelemetryProcessorService telemetryProcessorService;
+    @Value("${eventhubs.consumer-group:$Default}")
+    private String consumerGroup;
 
-    private final ObjectMapper objectMapper = new ObjectMapper()
-            .registerModule(new JavaTimeModule())
-            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    private volatile EventProcessorClient processor;
+    private final ReentrantLock lifecycleLock = new ReentrantLock();
 
-    public EventListenerService(DeviceMessageRepository deviceMessageRepository,
-                                TelemetryProcessorService telemetryProcessorService) {
-        this.deviceMessageRepository = deviceMessageRepository;
+    // Clustering mode: checkpoints not yet written, and the last sequence handled, per partition
+    private final Map<String, HeldCheckpoints> heldCheckpoints = new ConcurrentHashMap<>();
+    private final Map<String, Long> handledUpTo = new ConcurrentHashMap<>();
+
+    private final TelemetryProcessorService telemetryProcessorService;
+    private final DeadLetterService deadLetterService;
+    private final DeviceMessageParser parser;
+    private final CheckpointStore checkpointStore;
+    private final CheckpointConfig checkpointConfig;
+    private final ClusterMembershipService cluster;
+    private final StartupService startup;
+
+    public EventListenerService(TelemetryProcessorService telemetryProcessorService,
+                                DeadLetterService deadLetterService,
+                                DeviceMessageParser parser,
+                                CheckpointStore checkpointStore,
+                                CheckpointConfig checkpointConfig,
+                                ClusterMembershipService cluster,
+                                StartupService startup) {
         this.telemetryProcessorService = telemetryProcessorService;
+        this.deadLetterService = deadLetterService;
+        this.parser = parser;
+        this.checkpointStore = checkpointStore;
+        this.checkpointConfig = checkpointConfig;
+        this.cluster = cluster;
+        this.startup = startup;
+    }
+
+    @EventListener
+    public void onReadinessChange(AvailabilityChangeEvent<ReadinessState> event) {
+        if (event.getState() == ReadinessState.ACCEPTING_TRAFFIC) {
+            startListening();
+        } else {
+            stopListening();
+        }
     }
 
-    @PostConstruct
     public void startListening() {
-        // ← Add this debug line to confirm the method is called
-        System.out.println(">> [EventListenerService] Subscribing to Event Hub: " + eventHubName);
-
-        EventHubConsumerAsyncClient consumer = new EventHubClientBuilder()
-            .connectionString(eventHubConnectionString, eventHubName)
-            .consumerGroup("$Default")
-            .buildAsyncConsumerClient();
-
-        // ← Wrap subscribe() with an error handler and an early debug print
-        consumer.receive(false).subscribe(
-            partitionEvent -> {
-                // ← Add this to see each incoming event
-                System.out.println(">> [EventListenerService] Received event from partition: " +
-                    partitionEvent.getPartitionContext().getPartitionId());
-
-                try {
-                    String data = partitionEvent.getData().getBodyAsString();
-                    DeviceMessage message = objectMapper.readValue(data, DeviceMessage.class);
-
-                    // save & process
-                    DeviceMessage saved = deviceMessageRepository.saveAndFlush(message);
-                    System.out.println("Saved telemetry from device: " + saved.getDeviceId() +
-                                       ", assigned id=" + saved.getId());
-
-                    telemetryProcessorService.process(message.toMap());
-                    System.out.println("Processed telemetry for device: " + message.getDeviceId());
-
-                } catch (Exception e) {
-                    System.err.println("Error processing telemetry: " + e.getMessage());
-                    e.printStackTrace();
+        lifecycleLock.lock();
+        try {
+            if (processor != null) {
+                return;
+            }
+            logger.info("Subscribing to Event Hub {} (consumer group {}, {} checkpoints)",
+                        eventHubName, consumerGroup, checkpointConfig.getStore());
+
+            processor = new EventProcessorClientBuilder()
+                .connectionString(eventHubConnectionString, eventHubName)
+                .consumerGroup(consumerGroup)
+                .checkpointStore(checkpointStore)
+                // Partitions without a checkpoint start at new events, as before checkpointing
+                .initialPartitionEventPosition(partitionId -> EventPosition.latest())
+                .processEventBatch(this::handleBatch, Math.max(1, checkpointConfig.getBatchSize()),
+                                   Duration.ofMillis(checkpointConfig.getMaxWaitMs()))
+                .processError(this::handleError)
+                .buildEventProcessorClient();
+            processor.start();
+            startup.recordIngestionStarted();
+        } finally {
+            lifecycleLock.unlock();
+        }
+    }
+
+    /**
+     * Stops consuming; partitions resume from their checkpoints on the next start.
+     */
+    @PreDestroy
+    public void stopListening() {
+        lifecycleLock.lock();
+        try {
+            if (processor != null) {
+                logger.info("Unsubscribing from Event Hub {}", eventHubName);
+                processor.stop();
+                processor = null;
+                // Positions after the written checkpoints are read again on the next start
+                heldCheckpoints.clear();
+            }
+        } finally {
+            lifecycleLock.unlock();
+        }
+    }
+
+    /**
+     * Re-reads every partition from its held checkpoint after devices moved
+     * here, so events this node dropped while their owner was already gone
+     * are applied.
+     */
+    @EventListener
+    public void onDevicesGained(ClusterMembershipService.DevicesGained gained) {
+        lifecycleLock.lock();
+        try {
+            if (processor == null) {
+                return;
+            }
+            logger.info("{}% of devices moved to this node; re-reading partitions from their held checkpoints",
+                        Math.round(gained.getShare() * 10_000.0) / 100.0);
+            stopListening();
+            startListening();
+        } finally {
+            lifecycleLock.unlock();
+        }
+    }
+
+    /**
+     * Processes one partition batch and checkpoints it. If processing throws,
+     * no checkpoint is written and the processor restarts the partition from
+     * the previous one.
+     */
+    private void handleBatch(EventBatchContext batch) {
+        List<EventData> received = batch.getEvents();
+        if (received.isEmpty()) {
+            return;
+        }
+        String partitionId = batch.getPartitionContext().getPartitionId();
+
+        List<TelemetryEvent> events = new ArrayList<>(received.size());
+        List<String> payloads = new ArrayList<>(received.size());
+        int foreign = 0;
+        for (EventData data : received) {
+            String payload = data.getBodyAsString();
+            try {
+                DeviceMessage message = parser.parse(payload);
+                if (!cluster.owns(message.getDeviceId())) {
+                    foreign++;
+                    continue;
                 }
-            },
-            error -> {
-                // ← Add this to catch subscription errors
-                System.err.println("!! [EventListenerService] Subscription error: " + error);
+                events.add(TelemetryEvent.fromEventHub(message, partitionId,
+                                                       data.getSequenceNumber(), data.getEnqueuedTime()));
+                payloads.add(payload);
+            } catch (IOException e) {
+                // A re-read after a rebalance meets the same unreadable events again
+                if (cluster.ownsPartition(partitionId) && !handledBefore(partitionId, data.getSequenceNumber())) {
+                    deadLetterService.recordParseFailure(partitionId, data.getSequenceNumber(),
+                                                         data.getEnqueuedTime(), payload, e);
+                }
+            }
+        }
+        cluster.recordFiltered(foreign);
+
+        TelemetryBatchResult result = telemetryProcessorService.processBatch(events);
+        for (TelemetryBatchResult.Failure failure : result.getFailures()) {
+            deadLetterService.recordProcessingFailure(failure.getEvent(), payloads.get(failure.getIndex()),
+                                                      failure.getError());
+        }
+
+        checkpoint(batch, foreign > 0);
+        startup.recordBatchProcessed();
+        logger.debug("Partition {}: {} processed, {} skipped, {} duplicates, {} failed, {} owned elsewhere; " +
+                     "checkpoint at sequence {}",
+                     partitionId, result.getProcessed(), result.getSkipped(), result.getDuplicates(),
+                     result.getFailures().size(), foreign, received.get(received.size() - 1).getSequenceNumber());
+    }
+
+    /**
+     * Checkpoints the batch; in clustering mode, once no earlier batch of the
+     * partition that dropped foreign events is still held.
+     */
+    private void checkpoint(EventBatchContext batch, boolean droppedForeign) {
+        if (!cluster.isEnabled()) {
+            batch.updateCheckpoint();
+            return;
+        }
+        PartitionContext partition = batch.getPartitionContext();
+        EventData last = batch.getEvents().get(batch.getEvents().size() - 1);
+        handledUpTo.merge(partition.getPartitionId(), last.getSequenceNumber(), Math::max);
+
+        long now = System.currentTimeMillis();
+        long releaseAt = droppedForeign ? now + cluster.getForeignHoldMs() : now;
+        EventData release = heldCheckpoints
+            .computeIfAbsent(partition.getPartitionId(), id -> new HeldCheckpoints())
+            .add(last, releaseAt, now);
+        if (release != null) {
+            checkpointStore.updateCheckpoint(new Checkpoint()
+                .setFullyQualifiedNamespace(partition.getFullyQualifiedNamespace())
+                .setEventHubName(partition.getEventHubName())
+                .setConsumerGroup(partition.getConsumerGroup())
+                .setPartitionId(partition.getPartitionId())
+                .setSequenceNumber(release.getSequenceNumber())
+                .setOffset(release.getOffset()))
+                .block();
+        }
+    }
+
+    private boolean handledBefore(String partitionId, long sequenceNumber) {
+        Long handled = handledUpTo.get(partitionId);
+        return handled != null && sequenceNumber <= handled;
+    }
+
+    private void handleError(ErrorContext context) {
+        logger.error("Event Hub error on partition {}: {}",
+                     context.getPartitionContext().getPartitionId(), context.getThrowable().toString());
+    }
+
+    /**
+     * Batch ends of one partition waiting to be checkpointed, oldest first.
+     * A batch that dropped foreign events is held until its release time, and
+     * every later batch of the partition waits behind it.
+     */
+    private static final class HeldCheckpoints {
+        private final ArrayDeque<EventData> positions = new ArrayDeque<>();
+        private final ArrayDeque<Long> releaseTimes = new ArrayDeque<>();
+
+        /**
+         * Adds a batch end and returns the newest position that may be
+         * checkpointed now, or null if none.
+         */
+        synchronized EventData add(EventData last, long releaseAt, long now) {
+            positions.addLast(last);
+            releaseTimes.addLast(releaseAt);
+            EventData release = null;
+            while (!releaseTimes.isEmpty() && releaseTimes.peekFirst() <= now) {
+                releaseTimes.pollFirst();
+                release = positions.pollFirst();
             }
-        );
+            return release;
+        }
     }
 }
@@ -0,0 +1,626 @@
+package edu.university.iot.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * One file of the telemetry event log, named after the log offset of its first byte.
+ *
+ * A record is {@code length, crc32c, body}, the body being the event time in
+ * epoch micros, the Event Hub sequence number (-1 if none), the partition id,
+ * the device id and the message JSON. Records are only ever appended; a
+ * segment is sealed when the log rolls to the next one, which writes its
+ * sparse index next to it.
+ *
+ * The sparse index keeps, per device, spans of up to index-interval records:
+ * the byte range from the span's first record to the end of its last one and
+ * the time range of the device's records in it. A device query scans only the
+ * spans overlapping its window, skipping other devices' records by their
+ * header. Time ranges are kept per span because events arrive in arrival
+ * order, not strictly in time order.
+ */
+final class EventLogSegment {
+
+    static final int RECORD_OVERHEAD = 4 + 4;
+    // micros, sequence, partition id length, device id length
+    private static final int MIN_BODY = 8 + 8 + 1 + 2;
+    private static final int INDEX_MAGIC = 0x5A54494E; // "ZTIN"
+    private static final String LOG_SUFFIX = ".log";
+    private static final String INDEX_SUFFIX = ".index";
+
+    private final Path logFile;
+    private final Path indexFile;
+    private final long baseOffset;
+    private final int indexInterval;
+
+    // Guards the index and the size seen by readers; appends are serialized by the log
+    private final ReentrantLock indexLock = new ReentrantLock();
+    private final Map<String, List<Span>> spans = new HashMap<>();
+    private long minMicros = Long.MAX_VALUE;
+    private long maxMicros = Long.MIN_VALUE;
+    private long records;
+    private long size;
+    // Bytes known to be on disk: recovered at open, or covered by a force
+    private volatile long forcedSize;
+
+    private FileChannel writeChannel;
+    private FileChannel readChannel;
+    private MappedByteBuffer sealedMap;
+    private long truncatedBytes;
+
+    private EventLogSegment(Path directory, long baseOffset, int indexInterval) {
+        this.baseOffset = baseOffset;
+        this.logFile = directory.resolve(String.format("%020d", baseOffset) + LOG_SUFFIX);
+        this.indexFile = directory.resolve(String.format("%020d", baseOffset) + INDEX_SUFFIX);
+        this.indexInterval = Math.max(1, indexInterval);
+    }
+
+    static boolean isLogFile(Path file) {
+        return file.getFileName().toString().endsWith(LOG_SUFFIX);
+    }
+
+    static long baseOffsetOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - LOG_SUFFIX.length()));
+    }
+
+    /** A new, empty active segment. */
+    static EventLogSegment create(Path directory, long baseOffset, int indexInterval) throws IOException {
+        EventLogSegment segment = new EventLogSegment(directory, baseOffset, indexInterval);
+        segment.writeChannel = FileChannel.open(segment.logFile, StandardOpenOption.CREATE_NEW,
+                                                StandardOpenOption.WRITE);
+        segment.readChannel = FileChannel.open(segment.logFile, StandardOpenOption.READ);
+        return segment;
+    }
+
+    /**
+     * Opens an existing segment. A sealed segment with a valid index is not
+     * scanned; otherwise every record is checked and the file is truncated at
+     * the first torn or corrupt one.
+     */
+    static EventLogSegment open(Path logFile, boolean active, int indexInterval) throws IOException {
+        EventLogSegment segment = new EventLogSegment(logFile.getParent(), baseOffsetOf(logFile), indexInterval);
+        segment.readChannel = FileChannel.open(logFile, StandardOpenOption.READ);
+        long fileSize = segment.readChannel.size();
+        if (!active && segment.loadIndex(fileSize)) {
+            segment.forcedSize = fileSize;
+            segment.seal();
+            return segment;
+        }
+
+        long valid = segment.recover(fileSize);
+        segment.forcedSize = valid;
+        segment.truncatedBytes = fileSize - valid;
+        if (valid < fileSize) {
+            try (FileChannel truncate = FileChannel.open(logFile, StandardOpenOption.WRITE)) {
+                truncate.truncate(valid);
+                truncate.force(true);
+            }
+        }
+        if (active) {
+            segment.writeChannel = FileChannel.open(logFile, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } else {
+            segment.writeIndex();
+            segment.seal();
+        }
+        return segment;
+    }
+
+    /** Checks and indexes every record; returns the end of the last valid one. */
+    private long recover(long fileSize) throws IOException {
+        if (fileSize == 0) {
+            return 0;
+        }
+        if (fileSize > Integer.MAX_VALUE) {
+            throw new IOException("Segment " + logFile + " is too large to map (" + fileSize + " bytes)");
+        }
+        MappedByteBuffer map = readChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+        CRC32C crc = new CRC32C();
+        int position = 0;
+        while (fileSize - position >= RECORD_OVERHEAD) {
+            int length = map.getInt(position);
+            if (length < MIN_BODY || length > fileSize - position - RECORD_OVERHEAD) {
+                break;
+            }
+            ByteBuffer body = map.duplicate().position(position + RECORD_OVERHEAD)
+                                 .limit(position + RECORD_OVERHEAD + length);
+            crc.reset();
+            crc.update(body.duplicate());
+            if ((int) crc.getValue() != map.getInt(position + 4)) {
+                break;
+            }
+            RecordView view = RecordView.parse(baseOffset + position, body);
+            if (view == null) {
+                break;
+            }
+            int end = position + RECORD_OVERHEAD + length;
+            indexRecord(view.getDeviceId(), view.getMicros(), position, end);
+            position = end;
+        }
+        size = position;
+        return position;
+    }
+
+    /**
+     * Writes encoded records and adds them to the index.
+     *
+     * @param starts start of each record within {@code records}, then its end
+     */
+    void append(ByteBuffer records, List<String> deviceIds, long[] micros, int[] starts) throws IOException {
+        long base = size;
+        try {
+            while (records.hasRemaining()) {
+                writeChannel.write(records);
+            }
+        } catch (IOException e) {
+            // Drop a partly written batch so the next append starts on a record boundary
+            writeChannel.truncate(base);
+            throw e;
+        }
+        indexLock.lock();
+        try {
+            for (int i = 0; i < deviceIds.size(); i++) {
+                indexRecord(deviceIds.get(i), micros[i], base + starts[i], base + starts[i + 1]);
+            }
+            size = base + starts[deviceIds.size()];
+        } finally {
+            indexLock.unlock();
+        }
+    }
+
+    private void indexRecord(String deviceId, long recordMicros, long start, long end) {
+        List<Span> deviceSpans = spans.computeIfAbsent(deviceId, id -> new ArrayList<>(1));
+        Span last = deviceSpans.isEmpty() ? null : deviceSpans.get(deviceSpans.size() - 1);
+        if (last == null || last.records >= indexInterval) {
+            deviceSpans.add(new Span(start, end, recordMicros, recordMicros, 1));
+        } else {
+            deviceSpans.set(deviceSpans.size() - 1, new Span(last.start, end, Math.min(last.minMicros, recordMicros),
+                                                              Math.max(last.maxMicros, recordMicros), last.records + 1));
+        }
+        minMicros = Math.min(minMicros, recordMicros);
+        maxMicros = Math.max(maxMicros, recordMicros);
+        records++;
+    }
+
+    /**
+     * Forces appended records to disk; returns false if the segment was sealed
+     * meanwhile, which forced it before closing the channel.
+     */
+    boolean force() throws IOException {
+        FileChannel channel = writeChannel;
+        if (channel == null) {
+            return false;
+        }
+        try {
+            long covered = size();
+            channel.force(false);
+            forcedSize = Math.max(forcedSize, covered);
+            return true;
+        } catch (ClosedChannelException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Makes the segment read-only: forces it, writes its index and maps it.
+     */
+    void sealForRoll() throws IOException {
+        writeChannel.force(true);
+        forcedSize = size();
+        writeIndex();
+        FileChannel channel = writeChannel;
+        writeChannel = null;
+        channel.close();
+        seal();
+    }
+
+    private void seal() throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Segment " + logFile + " is too large to map (" + size + " bytes)");
+        }
+        sealedMap = readChannel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    }
+
+    /**
+     * Records of one device with fromMicros <= time < toMicros, in log order,
+     * up to {@code limit} (a segment-relative end, such as the durable end).
+     */
+    void scanDevice(String deviceId, long fromMicros, long toMicros, long limit, RecordHandler handler)
+            throws IOException {
+        List<Span> deviceSpans;
+        indexLock.lock();
+        try {
+            List<Span> current = spans.get(deviceId);
+            if (current == null || maxMicros < fromMicros || minMicros >= toMicros) {
+                return;
+            }
+            deviceSpans = new ArrayList<>(current);
+        } finally {
+            indexLock.unlock();
+        }
+
+        ByteBuffer view = view(limit);
+        for (Span span : deviceSpans) {
+            if (span.maxMicros >= fromMicros && span.minMicros < toMicros) {
+                scanSpan(view, span, deviceId, fromMicros, toMicros, handler);
+            }
+        }
+    }
+
+    /**
+     * Records of one device in its most recent span below {@code limit}; the
+     * device's newest record in this segment is among them.
+     *
+     * @return false if the device has no record in the segment below the limit
+     */
+    boolean scanLatest(String deviceId, long limit, RecordHandler handler) throws IOException {
+        Span latest = null;
+        ByteBuffer view = view(limit);
+        indexLock.lock();
+        try {
+            List<Span> current = spans.get(deviceId);
+            if (current != null) {
+                for (int i = current.size() - 1; i >= 0 && latest == null; i--) {
+                    if (current.get(i).start < view.limit()) {
+                        latest = current.get(i);
+                    }
+                }
+            }
+        } finally {
+            indexLock.unlock();
+        }
+        if (latest == null) {
+            return false;
+        }
+        scanSpan(view, latest, deviceId, Long.MIN_VALUE, Long.MAX_VALUE, handler);
+        return true;
+    }
+
+    private void scanSpan(ByteBuffer view, Span span, String deviceId, long fromMicros, long toMicros,
+                          RecordHandler handler) throws IOException {
+        int position = (int) span.start;
+        int end = (int) Math.min(span.end, view.limit());
+        while (position < end) {
+            int length = view.getInt(position);
+            ByteBuffer body = view.duplicate().position(position + RECORD_OVERHEAD)
+                                  .limit(position + RECORD_OVERHEAD + length);
+            if (RecordView.hasDevice(body, deviceId)) {
+                RecordView record = RecordView.parse(baseOffset + position, body);
+                if (record.getMicros() >= fromMicros && record.getMicros() < toMicros) {
+                    handler.accept(record);
+                }
+            }
+            position += RECORD_OVERHEAD + length;
+        }
+    }
+
+    /**
+     * Every record from the segment-relative position up to {@code limit}.
+     *
+     * @return position after the last record handed over
+     */
+    long scan(long from, long limit, int maxRecords, RecordHandler handler) throws IOException {
+        ByteBuffer view = view(limit);
+        int position = (int) from;
+        int handled = 0;
+        while (position < view.limit() && handled < maxRecords) {
+            int length = view.getInt(position);
+            ByteBuffer body = view.duplicate().position(position + RECORD_OVERHEAD)
+                                  .limit(position + RECORD_OVERHEAD + length);
+            handler.accept(RecordView.parse(baseOffset + position, body));
+            position += RECORD_OVERHEAD + length;
+            handled++;
+        }
+        return position;
+    }
+
+    /**
+     * Sends whole records from {@code from} to at most {@code maxEnd} straight
+     * from the file to {@code target}, without copying them through the heap.
+     *
+     * @return position after the last record sent
+     */
+    long transferTo(long from, long maxEnd, WritableByteChannel target) throws IOException {
+        ByteBuffer view = view(maxEnd);
+        long end = from;
+        while (end < view.limit() && end + RECORD_OVERHEAD <= view.limit()) {
+            long next = end + RECORD_OVERHEAD + view.getInt((int) end);
+            if (next > view.limit()) {
+                break;
+            }
+            end = next;
+        }
+        long position = from;
+        while (position < end) {
+            position += readChannel.transferTo(position, end - position, target);
+        }
+        return end;
+    }
+
+    /** Complete records up to {@code limit}, mapped read-only. */
+    private ByteBuffer view(long limit) throws IOException {
+        long end = Math.min(limit, size());
+        if (sealedMap != null) {
+            return sealedMap.duplicate().limit((int) end);
+        }
+        return readChannel.map(FileChannel.MapMode.READ_ONLY, 0, end);
+    }
+
+    private void writeIndex() throws IOException {
+        Path temp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(INDEX_MAGIC);
+            out.writeLong(size);
+            out.writeLong(records);
+            out.writeInt(spans.size());
+            for (Map.Entry<String, List<Span>> entry : spans.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeInt(entry.getValue().size());
+                for (Span span : entry.getValue()) {
+                    out.writeLong(span.start);
+                    out.writeLong(span.end);
+                    out.writeLong(span.minMicros);
+                    out.writeLong(span.maxMicros);
+                    out.writeInt(span.records);
+                }
+            }
+        }
+        Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Loads the index file if it exists and describes a file of this size. */
+    private boolean loadIndex(long fileSize) {
+        if (!Files.isRegularFile(indexFile)) {
+            return false;
+        }
+        try (InputStream raw = Files.newInputStream(indexFile);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(raw))) {
+            if (in.readInt() != INDEX_MAGIC || in.readLong() != fileSize) {
+                return false;
+            }
+            long indexedRecords = in.readLong();
+            int devices = in.readInt();
+            for (int d = 0; d < devices; d++) {
+                String deviceId = in.readUTF();
+                int count = in.readInt();
+                List<Span> deviceSpans = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    Span span = new Span(in.readLong(), in.readLong(), in.readLong(), in.readLong(), in.readInt());
+                    deviceSpans.add(span);
+                    minMicros = Math.min(minMicros, span.minMicros);
+                    maxMicros = Math.max(maxMicros, span.maxMicros);
+                }
+                spans.put(deviceId, deviceSpans);
+            }
+            records = indexedRecords;
+            size = fileSize;
+            return true;
+        } catch (IOException | RuntimeException e) {
+            spans.clear();
+            minMicros = Long.MAX_VALUE;
+            maxMicros = Long.MIN_VALUE;
+            return false;
+        }
+    }
+
+    void close() throws IOException {
+        if (writeChannel != null) {
+            writeChannel.close();
+            writeChannel = null;
+        }
+        readChannel.close();
+        sealedMap = null;
+    }
+
+    /** Closes and deletes the segment and its index. */
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(indexFile);
+        Files.deleteIfExists(logFile);
+    }
+
+    long getBaseOffset() {
+        return baseOffset;
+    }
+
+    long size() {
+        indexLock.lock();
+        try {
+            return size;
+        } finally {
+            indexLock.unlock();
+        }
+    }
+
+    long getRecords() {
+        indexLock.lock();
+        try {
+            return records;
+        } finally {
+            indexLock.unlock();
+        }
+    }
+
+    long getMaxMicros() {
+        indexLock.lock();
+        try {
+            return maxMicros;
+        } finally {
+            indexLock.unlock();
+        }
+    }
+
+    /** Bytes known to be on disk, at most {@link #size()}. */
+    long getForcedSize() {
+        return forcedSize;
+    }
+
+    /** Bytes of torn or corrupt records cut off when the segment was opened. */
+    long getTruncatedBytes() {
+        return truncatedBytes;
+    }
+
+    boolean isSealed() {
+        return sealedMap != null;
+    }
+
+    /**
+     * Encodes one record into {@code out}; the caller sizes the buffer with {@link #encodedSize}.
+     */
+    static void encode(ByteBuffer out, long micros, long sequence, byte[] partitionId, byte[] deviceId,
+                       byte[] payload, CRC32C crc) {
+        int start = out.position();
+        int length = MIN_BODY + partitionId.length + deviceId.length + payload.length;
+        out.putInt(length).putInt(0);
+        out.putLong(micros).putLong(sequence)
+           .put((byte) partitionId.length).put(partitionId)
+           .putShort((short) deviceId.length).put(deviceId)
+           .put(payload);
+        crc.reset();
+        crc.update(out.duplicate().position(start + RECORD_OVERHEAD).limit(out.position()));
+        out.putInt(start + 4, (int) crc.getValue());
+    }
+
+    static int encodedSize(byte[] partitionId, byte[] deviceId, byte[] payload) {
+        return RECORD_OVERHEAD + MIN_BODY + partitionId.length + deviceId.length + payload.length;
+    }
+
+    @FunctionalInterface
+    interface RecordHandler {
+        void accept(RecordView record) throws IOException;
+    }
+
+    /**
+     * A record read in place; the payload is a view of the mapped file.
+     */
+    static final class RecordView {
+        private final long offset;
+        private final long micros;
+        private final long sequence;
+        private final String partitionId;
+        private final String deviceId;
+        private final ByteBuffer payload;
+
+        private RecordView(long offset, long micros, long sequence, String partitionId, String deviceId,
+                           ByteBuffer payload) {
+            this.offset = offset;
+            this.micros = micros;
+            this.sequence = sequence;
+            this.partitionId = partitionId;
+            this.deviceId = deviceId;
+            this.payload = payload;
+        }
+
+        /** Null if the body is not a well-formed record. */
+        static RecordView parse(long offset, ByteBuffer body) {
+            ByteBuffer in = body.duplicate();
+            if (in.remaining() < MIN_BODY) {
+                return null;
+            }
+            long micros = in.getLong();
+            long sequence = in.getLong();
+            int partitionLength = in.get() & 0xFF;
+            if (in.remaining() < partitionLength + 2) {
+                return null;
+            }
+            String partitionId = partitionLength > 0 ? readString(in, partitionLength) : null;
+            int deviceLength = in.getShort() & 0xFFFF;
+            if (in.remaining() < deviceLength) {
+                return null;
+            }
+            String deviceId = readString(in, deviceLength);
+            return new RecordView(offset, micros, sequence, partitionId, deviceId, in.slice());
+        }
+
+        /** Compares the device id in place, without decoding the record. */
+        static boolean hasDevice(ByteBuffer body, String deviceId) {
+            int position = body.position() + 16;
+            int partitionLength = body.get(position) & 0xFF;
+            position += 1 + partitionLength;
+            int deviceLength = body.getShort(position) & 0xFFFF;
+            byte[] expected = deviceId.getBytes(StandardCharsets.UTF_8);
+            if (deviceLength != expected.length) {
+                return false;
+            }
+            position += 2;
+            for (int i = 0; i < deviceLength; i++) {
+                if (body.get(position + i) != expected[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static String readString(ByteBuffer in, int length) {
+            byte[] bytes = new byte[length];
+            in.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public long getMicros() {
+            return micros;
+        }
+
+        /** Event Hub sequence number, or -1 for events without a position. */
+        public long getSequence() {
+            return sequence;
+        }
+
+        public String getPartitionId() {
+            return partitionId;
+        }
+
+        public String getDeviceId() {
+            return deviceId;
+        }
+
+        public ByteBuffer getPayload() {
+            return payload.duplicate();
+        }
+    }
+
+    private static final class Span {
+        final long start;
+        final long end;
+        final long minMicros;
+        final long maxMicros;
+        final int records;
+
+        Span(long start, long end, long minMicros, long maxMicros, int records) {
+            this.start = start;
+            this.end = end;
+            this.minMicros = minMicros;
+            this.maxMicros = maxMicros;
+            this.records = records;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return logFile.toString();
+    }
+}
@@ -0,0 +1,177 @@
+package edu.university.iot.service;
+
+import com.azure.messaging.eventhubs.CheckpointStore;
+import com.azure.messaging.eventhubs.models.Checkpoint;
+import com.azure.messaging.eventhubs.models.PartitionOwnership;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Event Hub checkpoint store kept in a local JSON file, for a single engine
+ * instance without a shared database (development, demos, replay runs).
+ *
+ * The whole state is held in memory and rewritten through a temp file and an
+ * atomic rename on every change, so a crash leaves either the old or the new
+ * file behind. Ownership claims use the same eTag check as the database store.
+ */
+public class FileCheckpointStore implements CheckpointStore {
+
+    private final Path file;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final State state;
+
+    public FileCheckpointStore(Path directory) {
+        try {
+            Files.createDirectories(directory);
+            this.file = directory.resolve("eventhub-checkpoints.json");
+            this.state = Files.exists(file) ? objectMapper.readValue(file.toFile(), State.class) : new State();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open checkpoint directory " + directory, e);
+        }
+    }
+
+    @Override
+    public Flux<PartitionOwnership> listOwnership(String fullyQualifiedNamespace, String eventHubName,
+                                                  String consumerGroup) {
+        String prefix = DatabaseCheckpointStore.key(fullyQualifiedNamespace, eventHubName, consumerGroup, "");
+        return Flux.defer(() -> {
+            List<PartitionOwnership> result = new ArrayList<>();
+            withLock(() -> state.ownership.forEach((id, entry) -> {
+                if (id.startsWith(prefix)) {
+                    result.add(new PartitionOwnership()
+                            .setFullyQualifiedNamespace(fullyQualifiedNamespace)
+                            .setEventHubName(eventHubName)
+                            .setConsumerGroup(consumerGroup)
+                            .setPartitionId(entry.partitionId)
+                            .setOwnerId(entry.ownerId)
+                            .setLastModifiedTime(entry.lastModifiedTime)
+                            .setETag(entry.etag));
+                }
+            }));
+            return Flux.fromIterable(result);
+        });
+    }
+
+    @Override
+    public Flux<PartitionOwnership> claimOwnership(List<PartitionOwnership> requestedPartitionOwnerships) {
+        return Flux.defer(() -> {
+            List<PartitionOwnership> claimed = new ArrayList<>();
+            withLock(() -> {
+                for (PartitionOwnership requested : requestedPartitionOwnerships) {
+                    String id = DatabaseCheckpointStore.key(requested.getFullyQualifiedNamespace(),
+                            requested.getEventHubName(), requested.getConsumerGroup(), requested.getPartitionId());
+                    OwnershipEntry current = state.ownership.get(id);
+                    String currentEtag = current != null ? current.etag : null;
+                    if (!Objects.equals(currentEtag, requested.getETag())) {
+                        continue;
+                    }
+                    OwnershipEntry entry = new OwnershipEntry();
+                    entry.partitionId = requested.getPartitionId();
+                    entry.ownerId = requested.getOwnerId();
+                    entry.lastModifiedTime = System.currentTimeMillis();
+                    entry.etag = UUID.randomUUID().toString();
+                    state.ownership.put(id, entry);
+                    claimed.add(new PartitionOwnership()
+                            .setFullyQualifiedNamespace(requested.getFullyQualifiedNamespace())
+                            .setEventHubName(requested.getEventHubName())
+                            .setConsumerGroup(requested.getConsumerGroup())
+                            .setPartitionId(entry.partitionId)
+                            .setOwnerId(entry.ownerId)
+                            .setLastModifiedTime(entry.lastModifiedTime)
+                            .setETag(entry.etag));
+                }
+                if (!claimed.isEmpty()) {
+                    persist();
+                }
+            });
+            return Flux.fromIterable(claimed);
+        });
+    }
+
+    @Override
+    public Flux<Checkpoint> listCheckpoints(String fullyQualifiedNamespace, String eventHubName,
+                                            String consumerGroup) {
+        String prefix = DatabaseCheckpointStore.key(fullyQualifiedNamespace, eventHubName, consumerGroup, "");
+        return Flux.defer(() -> {
+            List<Checkpoint> result = new ArrayList<>();
+            withLock(() -> state.checkpoints.forEach((id, entry) -> {
+                if (id.startsWith(prefix)) {
+                    result.add(new Checkpoint()
+                            .setFullyQualifiedNamespace(fullyQualifiedNamespace)
+                            .setEventHubName(eventHubName)
+                            .setConsumerGroup(consumerGroup)
+                            .setPartitionId(entry.partitionId)
+                            .setOffset(entry.offset)
+                            .setSequenceNumber(entry.sequenceNumber));
+                }
+            }));
+            return Flux.fromIterable(result);
+        });
+    }
+
+    @Override
+    public Mono<Void> updateCheckpoint(Checkpoint checkpoint) {
+        return Mono.fromRunnable(() -> withLock(() -> {
+            CheckpointEntry entry = new CheckpointEntry();
+            entry.partitionId = checkpoint.getPartitionId();
+            entry.offset = checkpoint.getOffset();
+            entry.sequenceNumber = checkpoint.getSequenceNumber();
+            state.checkpoints.put(DatabaseCheckpointStore.key(checkpoint.getFullyQualifiedNamespace(),
+                    checkpoint.getEventHubName(), checkpoint.getConsumerGroup(), checkpoint.getPartitionId()), entry);
+            persist();
+        }));
+    }
+
+    private void withLock(Runnable action) {
+        lock.lock();
+        try {
+            action.run();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void persist() {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            objectMapper.writeValue(temp.toFile(), state);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write checkpoint file " + file, e);
+        }
+    }
+
+    // Serialized file layout, keyed by namespace/eventHub/consumerGroup/partitionId
+    static final class State {
+        public Map<String, CheckpointEntry> checkpoints = new LinkedHashMap<>();
+        public Map<String, OwnershipEntry> ownership = new LinkedHashMap<>();
+    }
+
+    static final class CheckpointEntry {
+        public String partitionId;
+        public Long offset;
+        public Long sequenceNumber;
+    }
+
+    static final class OwnershipEntry {
+        public String partitionId;
+        public String ownerId;
+        public Long lastModifiedTime;
+        public String etag;
+    }
+}
@@ -13,9 +13,10 @@ import org.springframework.stereotype.Service;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -24,11 +25,20 @@ public class FirmwareService {
 
     private final DeviceRegistryRepository registryRepo;
     private final FirmwareLogRepository firmwareLogRepo;
+    private final FirmwareVerdictCache verdictCache;
+    private final TrustPolicyService policyService;
+    private final ChangeOnlyLogFilter logFilter;
 
     public FirmwareService(DeviceRegistryRepository registryRepo,
-            FirmwareLogRepository firmwareLogRepo) {
+            FirmwareLogRepository firmwareLogRepo,
+            FirmwareVerdictCache verdictCache,
+            TrustPolicyService policyService,
+            ChangeOnlyLogFilter logFilter) {
         this.registryRepo = registryRepo;
         this.firmwareLogRepo = firmwareLogRepo;
+        this.verdictCache = verdictCache;
+        this.policyService = policyService;
+        this.logFilter = logFilter;
     }
 
     /**
@@ -36,60 +46,67 @@ public class FirmwareService {
      * logs the result, and returns true if the device passes.
      */
     public boolean validateAndLogFirmware(Map<String, Object> telemetry) {
+        String deviceId = (String) telemetry.get("deviceId");
+        FirmwareLog log = assessFirmware(telemetry, registryRepo.findById(deviceId).orElse(null));
+        record(log);
+        return log.isFirmwareValid();
+    }
+
+    /**
+     * Firmware verdict against an already loaded registry entry (null if unknown),
+     * without any database access; the returned log is not saved yet.
+     */
+    public FirmwareLog assessFirmware(Map<String, Object> telemetry, DeviceRegistry device) {
         String deviceId = (String) telemetry.get("deviceId");
         String reportedVersion = (String) telemetry.get("firmwareVersion");
         String reportedPatch = (String) telemetry.get("patchStatus");
 
-        Optional<DeviceRegistry> opt = registryRepo.findById(deviceId);
         boolean valid = false;
-        if (opt.isPresent()) {
-            DeviceRegistry device = opt.get();
-            // Semantic version check: reported >= expected
-            boolean versionOk = compareVersions(reportedVersion, device.getExpectedFirmwareVersion()) >= 0;
-            // Patch check: either patched or outdated allowed
-            boolean patchOk = device.isAllowOutdatedPatch()
-                    || reportedPatch.equalsIgnoreCase(device.getExpectedPatchStatus());
-            valid = versionOk && patchOk;
+        if (device != null) {
+            // Version >= expected and patch current (or outdated allowed); unchanged
+            // reports reuse the device's last verdict
+            valid = verdictCache.verdict(device, reportedVersion, reportedPatch,
+                    policyService.current().profileFor((String) telemetry.get("deviceProfile")))
+                .isFirmwareValid();
         } else {
             logger.warn("Device [{}] not found in registry for firmware validation", deviceId);
         }
 
-        // Persist the log
         FirmwareLog log = new FirmwareLog();
         log.setDeviceId(deviceId);
         log.setFirmwareVersion(reportedVersion);
         log.setReportedPatchStatus(reportedPatch);
         log.setFirmwareValid(valid);
         log.setTimestamp(LocalDateTime.now());
+        return log;
+    }
 
-        firmwareLogRepo.save(log);
+    public void record(FirmwareLog log) {
+        for (FirmwareLog row : firmwareLogRepo.saveAll(logFilter.filterFirmware(List.of(log)))) {
+            logger.info("Logged firmware check for device {}: version={}, valid={}",
+                        row.getDeviceId(), row.getFirmwareVersion(), row.isFirmwareValid());
+        }
+    }
 
-        logger.info("Logged firmware check for device {}: version={}, valid={}", deviceId, reportedVersion, valid);
-        return valid;
+    /** Number of firmware checks, counting every check folded into a change-only summary row. */
+    public long countChecks() {
+        return firmwareLogRepo.sumRepeatCount();
     }
 
-    /** Compare two semantic version strings “a.b.c” */
-    private int compareVersions(String v1, String v2) {
-        String[] p1 = v1.split("\\."), p2 = v2.split("\\.");
-        int len = Math.max(p1.length, p2.length);
-        for (int i = 0; i < len; i++) {
-            int x = i < p1.length ? Integer.parseInt(p1[i]) : 0;
-            int y = i < p2.length ? Integer.parseInt(p2[i]) : 0;
-            if (x != y)
-                return x - y;
-        }
-        return 0;
+    public long countChecks(String deviceId) {
+        return firmwareLogRepo.sumRepeatCountByDeviceId(deviceId);
     }
 
     public List<FirmwareLogDto> getLogsDto(String deviceId) {
-        return firmwareLogRepo.findByDeviceIdOrderByTimestampDesc(deviceId).stream()
+        // pull expected from registry if available, else blank
+        String expectedVersion = registryRepo.findById(deviceId)
+                .map(DeviceRegistry::getExpectedFirmwareVersion)
+                .orElse("Unknown");
+        return ChangeOnlyLogFilter.expand(firmwareLogRepo.findByDeviceIdOrderByTimestampDesc(deviceId), true).stream()
                 .map(log -> new FirmwareLogDto(
                         log.getDeviceId(),
                         log.getFirmwareVersion(),
-                        // pull expected from registry if available, else blank
-                        registryRepo.findById(deviceId)
-                                .map(DeviceRegistry::getExpectedFirmwareVersion)
-                                .orElse("Unknown"),
+                        expectedVersion,
                         log.getReportedPatchStatus(),
                         log.isFirmwareValid(),
                         log.getTimestamp().atZone(ZoneId.systemDefault()).toInstant()))
@@ -112,14 +129,20 @@ public class FirmwareService {
                 .orElse(defaultDto);
     }
     public List<FirmwareLogDto> getAllLogsDto() {
-    return firmwareLogRepo.findAllByOrderByTimestampDesc().stream()
+    List<FirmwareLog> logs = ChangeOnlyLogFilter.expand(firmwareLogRepo.findAllByOrderByTimestampDesc(), true);
+    // pull expected from registry if available, else blank; one query for all devices
+    Set<String> deviceIds = logs.stream().map(FirmwareLog::getDeviceId).collect(Collectors.toSet());
+    Map<String, String> expectedVersions = new HashMap<>();
+    registryRepo.findAllById(deviceIds).forEach(device -> {
+        if (device.getExpectedFirmwareVersion() != null) {
+            expectedVersions.put(device.getDeviceId(), device.getExpectedFirmwareVersion());
+        }
+    });
+    return logs.stream()
             .map(log -> new FirmwareLogDto(
                     log.getDeviceId(),
                     log.getFirmwareVersion(),
-                    // pull expected from registry if available, else blank
-                    registryRepo.findById(log.getDeviceId())
-                            .map(DeviceRegistry::getExpectedFirmwareVersion)
-                            .orElse("Unknown"),
+                    expectedVersions.getOrDefault(log.getDeviceId(), "Unknown"),
                     log.getReportedPatchStatus(),
                     log.isFirmwareValid(),
                     log.getTimestamp().atZone(ZoneId.systemDefault()).toInstant()))
@@ -0,0 +1,124 @@
+package edu.university.iot.service;
+
+import edu.university.iot.entity.DeviceRegistry;
+import org.springframework.stereotype.Service;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Last firmware and compliance verdict per device.
+ *
+ * Devices report the same firmware version and patch status message after
+ * message, so both verdicts are computed together once and reused while the
+ * report, the device's expectations and the policy profile stay the same.
+ * Reported strings are interned by {@link FirmwareVersions}, which makes the
+ * common case a reference comparison. Firmware and compliance checks of the
+ * same message share one entry.
+ */
+@Service
+public class FirmwareVerdictCache {
+
+    // Bound on remembered devices; the map is cleared if it grows past this
+    private static final int MAX_DEVICES = 100_000;
+
+    private final FirmwareVersions versions;
+    private final ConcurrentHashMap<String, Verdict> lastVerdicts = new ConcurrentHashMap<>();
+
+    public FirmwareVerdictCache(FirmwareVersions versions) {
+        this.versions = versions;
+    }
+
+    /**
+     * Firmware and compliance verdict for a report from a registered device.
+     */
+    public Verdict verdict(DeviceRegistry device, String reportedVersion, String reportedPatch,
+                           TrustPolicy.Profile profile) {
+        FirmwareVersions.Version version = versions.intern(reportedVersion);
+        String patch = versions.internPatchStatus(reportedPatch);
+
+        Verdict last = lastVerdicts.get(device.getDeviceId());
+        if (last != null && last.matches(version, patch, device, profile)) {
+            return last;
+        }
+
+        Verdict verdict = evaluate(device, version, patch, profile);
+        if (lastVerdicts.size() >= MAX_DEVICES) {
+            lastVerdicts.clear();
+        }
+        lastVerdicts.put(device.getDeviceId(), verdict);
+        return verdict;
+    }
+
+    private Verdict evaluate(DeviceRegistry device, FirmwareVersions.Version version, String patch,
+                             TrustPolicy.Profile profile) {
+        FirmwareVersions.Version expected = versions.intern(device.getExpectedFirmwareVersion());
+
+        // Semantic version check: reported >= expected
+        boolean versionOk = version.isAtLeast(expected);
+        // Patch check: either patched or outdated allowed
+        boolean patchOk = device.isAllowOutdatedPatch()
+                || (patch != null && patch.equalsIgnoreCase(device.getExpectedPatchStatus()));
+
+        // Compliance wants the exact expected version string
+        boolean versionMatches = version.getText() != null
+                && version.getText().equals(device.getExpectedFirmwareVersion());
+        StringBuilder violations = new StringBuilder();
+        boolean compliant = profile.checkCompliance(device, patch, versionMatches, violations);
+
+        return new Verdict(version, patch, device, profile, versionOk && patchOk,
+                           compliant, violations.toString().trim());
+    }
+
+    /**
+     * Verdicts together with everything they were computed from.
+     */
+    public static final class Verdict {
+        private final FirmwareVersions.Version version;
+        private final String patch;
+        private final String expectedVersion;
+        private final String expectedPatch;
+        private final boolean allowOutdatedPatch;
+        private final TrustPolicy.Profile profile;
+
+        private final boolean firmwareValid;
+        private final boolean compliant;
+        private final String violations;
+
+        private Verdict(FirmwareVersions.Version version, String patch, DeviceRegistry device,
+                        TrustPolicy.Profile profile, boolean firmwareValid, boolean compliant,
+                        String violations) {
+            this.version = version;
+            this.patch = patch;
+            this.expectedVersion = device.getExpectedFirmwareVersion();
+            this.expectedPatch = device.getExpectedPatchStatus();
+            this.allowOutdatedPatch = device.isAllowOutdatedPatch();
+            this.profile = profile;
+            this.firmwareValid = firmwareValid;
+            this.compliant = compliant;
+            this.violations = violations;
+        }
+
+        private boolean matches(FirmwareVersions.Version version, String patch, DeviceRegistry device,
+                                TrustPolicy.Profile profile) {
+            return this.version == version
+                    && this.patch == patch
+                    && this.profile == profile
+                    && this.allowOutdatedPatch == device.isAllowOutdatedPatch()
+                    && Objects.equals(expectedVersion, device.getExpectedFirmwareVersion())
+                    && Objects.equals(expectedPatch, device.getExpectedPatchStatus());
+        }
+
+        public boolean isFirmwareValid() {
+            return firmwareValid;
+        }
+
+        public boolean isCompliant() {
+            return compliant;
+        }
+
+        public String getViolations() {
+            return violations;
+        }
+    }
+}
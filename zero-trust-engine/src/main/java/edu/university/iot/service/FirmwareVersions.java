@@ -0,0 +1,188 @@
+package edu.university.iot.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interning cache for firmware version and patch status strings.
+ *
+ * A version is parsed once into a long that compares like the version: up to
+ * four numeric components of 16 bits each (15 for the major), missing
+ * components counting as 0, so "1.2" and "1.2.0" pack to the same value.
+ * Numeric versions that do not fit are kept as {@link #UNPARSEABLE} and
+ * compared component by component instead; anything else is compared by its
+ * text, without an exception. Interned values are canonical instances, so
+ * callers can tell an unchanged report by reference.
+ *
+ * The caches stop growing at MAX_ENTRIES distinct strings; later strings
+ * are still parsed, just not kept.
+ */
+@Component
+public class FirmwareVersions {
+
+    public static final long UNPARSEABLE = -1L;
+
+    private static final int MAX_ENTRIES = 4096;
+    private static final int MAX_COMPONENTS = 4;
+    private static final long MAX_MAJOR = 0x7FFF;
+    private static final long MAX_COMPONENT = 0xFFFF;
+
+    private final ConcurrentHashMap<String, Version> versions = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, String> patchStatuses = new ConcurrentHashMap<>();
+
+    /**
+     * Canonical parsed form of a version string; null gives an unparseable version.
+     */
+    public Version intern(String version) {
+        if (version == null) {
+            return Version.MISSING;
+        }
+        Version cached = versions.get(version);
+        if (cached != null) {
+            return cached;
+        }
+        Version parsed = new Version(version, pack(version), isNumeric(version));
+        if (versions.size() < MAX_ENTRIES) {
+            Version raced = versions.putIfAbsent(version, parsed);
+            return raced != null ? raced : parsed;
+        }
+        return parsed;
+    }
+
+    /**
+     * Canonical instance of a patch status string.
+     */
+    public String internPatchStatus(String patchStatus) {
+        if (patchStatus == null) {
+            return null;
+        }
+        String cached = patchStatuses.get(patchStatus);
+        if (cached != null) {
+            return cached;
+        }
+        if (patchStatuses.size() < MAX_ENTRIES) {
+            String raced = patchStatuses.putIfAbsent(patchStatus, patchStatus);
+            return raced != null ? raced : patchStatus;
+        }
+        return patchStatus;
+    }
+
+    /**
+     * Packs "a.b.c.d" into one comparable long, or returns {@link #UNPARSEABLE}.
+     */
+    static long pack(String version) {
+        long packed = 0;
+        long component = 0;
+        int components = 0;
+        boolean digits = false;
+
+        for (int i = 0; i <= version.length(); i++) {
+            char c = i < version.length() ? version.charAt(i) : '.';
+            if (c >= '0' && c <= '9') {
+                component = component * 10 + (c - '0');
+                if (component > MAX_COMPONENT) {
+                    return UNPARSEABLE;
+                }
+                digits = true;
+            } else if (c == '.' && digits && components < MAX_COMPONENTS) {
+                if (components == 0 && component > MAX_MAJOR) {
+                    return UNPARSEABLE;
+                }
+                packed |= component << (16 * (MAX_COMPONENTS - 1 - components));
+                components++;
+                component = 0;
+                digits = false;
+            } else {
+                return UNPARSEABLE;
+            }
+        }
+        return packed;
+    }
+
+    /**
+     * True for dot-separated runs of digits, e.g. "1.2.3.4.5".
+     */
+    static boolean isNumeric(String version) {
+        boolean digits = false;
+        for (int i = 0; i < version.length(); i++) {
+            char c = version.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits = true;
+            } else if (c == '.' && digits) {
+                digits = false;
+            } else {
+                return false;
+            }
+        }
+        return digits;
+    }
+
+    /**
+     * Compares two numeric versions component by component, missing
+     * components counting as 0, without limits on count or size.
+     */
+    static int compareNumeric(String a, String b) {
+        String[] pa = a.split("\\."), pb = b.split("\\.");
+        for (int i = 0; i < Math.max(pa.length, pb.length); i++) {
+            String x = stripLeadingZeros(i < pa.length ? pa[i] : "0");
+            String y = stripLeadingZeros(i < pb.length ? pb[i] : "0");
+            int cmp = x.length() != y.length() ? Integer.compare(x.length(), y.length()) : x.compareTo(y);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return 0;
+    }
+
+    private static String stripLeadingZeros(String component) {
+        int start = 0;
+        while (start < component.length() - 1 && component.charAt(start) == '0') {
+            start++;
+        }
+        return component.substring(start);
+    }
+
+    /**
+     * A version string with its packed value.
+     */
+    public static final class Version {
+        static final Version MISSING = new Version(null, UNPARSEABLE, false);
+
+        private final String text;
+        private final long packed;
+        private final boolean numeric;
+
+        private Version(String text, long packed, boolean numeric) {
+            this.text = text;
+            this.packed = packed;
+            this.numeric = numeric;
+        }
+
+        public boolean isParseable() {
+            return packed != UNPARSEABLE;
+        }
+
+        /**
+         * True if this version is the same as or newer than {@code minimum};
+         * non-numeric versions only satisfy an identical string.
+         */
+        public boolean isAtLeast(Version minimum) {
+            if (isParseable() && minimum.isParseable()) {
+                return packed >= minimum.packed;
+            }
+            if (numeric && minimum.numeric) {
+                return compareNumeric(text, minimum.text) >= 0;
+            }
+            return text != null && text.equals(minimum.text);
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public long getPacked() {
+            return packed;
+        }
+    }
+}
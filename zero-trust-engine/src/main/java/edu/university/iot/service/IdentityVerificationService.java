@@ -14,10 +14,13 @@ public class IdentityVerificationService {
 
     private final DeviceRegistryRepository registryRepo;
     private final IdentityLogRepository logRepo;
+    private final ChangeOnlyLogFilter logFilter;
 
-    public IdentityVerificationService(DeviceRegistryRepository registryRepo, IdentityLogRepository logRepo) {
+    public IdentityVerificationService(DeviceRegistryRepository registryRepo, IdentityLogRepository logRepo,
+                                       ChangeOnlyLogFilter logFilter) {
         this.registryRepo = registryRepo;
         this.logRepo = logRepo;
+        this.logFilter = logFilter;
     }
 
     /**
@@ -25,18 +28,30 @@ public class IdentityVerificationService {
      */
     public boolean verifyIdentity(Map<String, Object> telemetry) {
     String deviceId = (String) telemetry.get("deviceId");
+    IdentityLog log = assessIdentity(telemetry, registryRepo.existsById(deviceId));
+    record(log);
+
+    return log.isIdentityVerified();
+    }
+
+    /**
+     * Identity verdict without any database access; the returned log is not saved yet.
+     */
+    public IdentityLog assessIdentity(Map<String, Object> telemetry, boolean knownDevice) {
+    String deviceId = (String) telemetry.get("deviceId");
     boolean certificateValid = Boolean.TRUE.equals(telemetry.get("certificateValid"));
-    boolean knownDevice = registryRepo.existsById(deviceId);
     boolean verified = certificateValid && knownDevice;
 
-    IdentityLog log = new IdentityLog(deviceId, certificateValid, verified, Instant.now());
-    logRepo.save(log);
+    return new IdentityLog(deviceId, certificateValid, verified, Instant.now());
+    }
 
-    return verified;
+    public void record(IdentityLog log) {
+    logRepo.saveAll(logFilter.filterIdentity(List.of(log)));
     }
 
+    /** One entry per check, with change-only summary rows expanded. */
     public List<IdentityLog> getLogs(String deviceId) {
-    return logRepo.findByDeviceId(deviceId);
+    return ChangeOnlyLogFilter.expand(logRepo.findByDeviceId(deviceId), false);
 }
 }
 
@@ -0,0 +1,45 @@
+package edu.university.iot.service;
+
+import com.microsoft.azure.sdk.iot.service.Device;
+import com.microsoft.azure.sdk.iot.service.DeviceStatus;
+import com.microsoft.azure.sdk.iot.service.RegistryManager;
+import com.microsoft.azure.sdk.iot.service.exceptions.IotHubException;
+import com.microsoft.azure.sdk.iot.service.exceptions.IotHubNotFoundException;
+
+import java.io.IOException;
+import java.util.function.Supplier;
+
+/**
+ * DeviceIdentityGateway backed by the Azure IoT Hub service SDK. The
+ * RegistryManager is obtained on the first call, so startup does not wait for
+ * the IoT Hub client.
+ */
+public class IoTHubDeviceIdentityGateway implements DeviceIdentityGateway {
+
+    private final Supplier<RegistryManager> registryManager;
+
+    public IoTHubDeviceIdentityGateway(Supplier<RegistryManager> registryManager) {
+        this.registryManager = registryManager;
+    }
+
+    @Override
+    public DisableOutcome disableDevice(String deviceId) throws IOException {
+        RegistryManager registryManager = this.registryManager.get();
+        try {
+            Device device = registryManager.getDevice(deviceId);
+            if (device == null) {
+                return DisableOutcome.NOT_FOUND;
+            }
+            if (device.getStatus() == DeviceStatus.Disabled) {
+                return DisableOutcome.ALREADY_DISABLED;
+            }
+            device.setStatus(DeviceStatus.Disabled);
+            registryManager.updateDevice(device);
+            return DisableOutcome.DISABLED;
+        } catch (IotHubNotFoundException e) {
+            return DisableOutcome.NOT_FOUND;
+        } catch (IotHubException e) {
+            throw new IOException("IoT Hub rejected update for device " + deviceId + ": " + e.getMessage(), e);
+        }
+    }
+}
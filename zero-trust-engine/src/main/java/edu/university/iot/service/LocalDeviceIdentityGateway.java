@@ -0,0 +1,36 @@
+package edu.university.iot.service;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory stand-in for IoT Hub, used for local runs and tests.
+ * Every device is assumed to exist and start enabled.
+ */
+public class LocalDeviceIdentityGateway implements DeviceIdentityGateway {
+
+    private final Map<String, Boolean> disabled = new ConcurrentHashMap<>();
+
+    @Override
+    public DisableOutcome disableDevice(String deviceId) {
+        Boolean previous = disabled.put(deviceId, Boolean.TRUE);
+        return Boolean.TRUE.equals(previous) ? DisableOutcome.ALREADY_DISABLED : DisableOutcome.DISABLED;
+    }
+
+    public boolean isDisabled(String deviceId) {
+        return Boolean.TRUE.equals(disabled.get(deviceId));
+    }
+
+    public void enableDevice(String deviceId) {
+        disabled.remove(deviceId);
+    }
+
+    public Set<String> getDisabledDevices() {
+        return disabled.entrySet().stream()
+            .filter(Map.Entry::getValue)
+            .map(Map.Entry::getKey)
+            .collect(Collectors.toSet());
+    }
+}
@@ -1,5 +1,7 @@
 package edu.university.iot.service;
 
+import edu.university.iot.config.LocationChangeConfig;
+import edu.university.iot.entity.DeviceMessage;
 import edu.university.iot.model.LocationNetworkChange;
 import edu.university.iot.model.dtoModel.LocationMapDto;
 import edu.university.iot.model.dtoModel.DeviceLocationDto;
@@ -8,11 +10,18 @@ import edu.university.iot.repository.LocationNetworkChangeRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 /**
@@ -23,13 +32,19 @@ import java.util.stream.Collectors;
  * - LocationMonitoringService (enhanced monitoring and alerts)
  * 
  * Eliminates code duplication by providing a single service for all location-related operations.
+ *
+ * The per-device tracking state is kept in memory and restored after a restart
+ * from state snapshots (see {@link StateSnapshotService}).
  */
 @Service
-public class LocationService {
+public class LocationService implements SnapshotParticipant {
 
     private static final Logger log = LoggerFactory.getLogger(LocationService.class);
     
     private final LocationNetworkChangeRepository changeRepo;
+    private final ContextChangeDetector changeDetector;
+    private final SlidingWindowCounter recentChangeCounter;
+    private final int alertThreshold;
     
     // Campus location definitions - could be moved to a separate configuration class
     private static final Map<String, LocationMapDto> CAMPUS_LOCATIONS = initializeCampusLocations();
@@ -37,9 +52,15 @@ public class LocationService {
     // Real-time tracking state
     private final Map<String, DeviceLocationDto> currentDeviceLocations = new ConcurrentHashMap<>();
     private final Map<String, LocationContext> lastKnownContext = new ConcurrentHashMap<>();
+    // Differing contexts waiting out the dwell time before they count as a change
+    private final Map<String, LocationContext> pendingContext = new ConcurrentHashMap<>();
+    private final TrackingState liveState = new LiveState();
 
-    public LocationService(LocationNetworkChangeRepository changeRepo) {
+    public LocationService(LocationNetworkChangeRepository changeRepo, LocationChangeConfig changeConfig) {
         this.changeRepo = changeRepo;
+        this.changeDetector = new ContextChangeDetector(changeConfig);
+        this.recentChangeCounter = new SlidingWindowCounter(changeConfig.getAlertWindowMinutes() * 60_000L);
+        this.alertThreshold = changeConfig.getAlertThreshold();
     }
 
     // ========== CORE VALIDATION METHOD (from LocationNetworkChangeService) ==========
@@ -48,7 +69,8 @@ public class LocationService {
      * Main validation method - checks if location/network context has changed.
      * Returns true if unchanged, false if changed (and logs the change).
      * 
-     * This method handles both basic change detection and enhanced monitoring.
+     * Small coordinate jitter and address churn inside the same subnet are tolerated,
+     * and a new context must persist for the dwell time before it is reported.
      */
     public boolean validateContext(Map<String, Object> telemetry) {
         if (telemetry == null) {
@@ -62,40 +84,107 @@ public class LocationService {
             return true;
         }
 
+        return advance(deviceId, telemetry, System.currentTimeMillis(), true, liveState);
+    }
+
+    /**
+     * Like {@link #validateContext}, for telemetry applied in the caller's
+     * transaction. Verdicts take the earlier messages of the same transaction
+     * into account, but the tracked state only moves once it commits, so a
+     * rolled-back or retried message leaves no trace. Change rows are saved in
+     * the transaction. Without a transaction the state is updated at once.
+     */
+    public boolean validateContextOnCommit(Map<String, Object> telemetry) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return validateContext(telemetry);
+        }
+        String deviceId = telemetry != null ? safeToString(telemetry.get("deviceId")) : null;
+        if (deviceId == null || deviceId.trim().isEmpty()) {
+            return validateContext(telemetry);
+        }
+
+        StagedState staged = (StagedState) TransactionSynchronizationManager.getResource(this);
+        if (staged == null) {
+            StagedState created = new StagedState();
+            staged = created;
+            TransactionSynchronizationManager.bindResource(this, created);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(LocationService.this);
+                    if (status == STATUS_COMMITTED) {
+                        created.commit();
+                    }
+                }
+            });
+        }
+        return advance(deviceId, telemetry, System.currentTimeMillis(), true, staged);
+    }
+
+    /**
+     * Moves a device's tracked context forward by one observation. Live
+     * observations also record changes and raise alerts; replayed ones only
+     * rebuild the state they left behind.
+     */
+    private boolean advance(String deviceId, Map<String, Object> telemetry, long now, boolean live,
+                            TrackingState state) {
         String newLocation = safeToString(telemetry.get("location"));
         String newIpAddress = safeToString(telemetry.get("ipAddress"));
         
         // Extract coordinates
         Map<String, Object> coordinates = (Map<String, Object>) telemetry.get("coordinates");
-        Double newLat = coordinates != null ? (Double) coordinates.get("lat") : null;
-        Double newLng = coordinates != null ? (Double) coordinates.get("lng") : null;
+        Double newLat = coordinates != null ? toDouble(coordinates.get("lat")) : null;
+        Double newLng = coordinates != null ? toDouble(coordinates.get("lng")) : null;
 
-        LocationContext previousContext = lastKnownContext.get(deviceId);
+        LocationContext observed = new LocationContext(newLocation, newIpAddress, newLat, newLng, now);
+        LocationContext previousContext = state.lastKnown(deviceId);
         boolean hasChanged = false;
 
-        // Check if location or IP has changed
-        if (previousContext != null) {
-            boolean locationChanged = !Objects.equals(previousContext.location, newLocation);
-            boolean ipChanged = !Objects.equals(previousContext.ipAddress, newIpAddress);
-            boolean coordinatesChanged = !Objects.equals(previousContext.latitude, newLat) || 
-                                       !Objects.equals(previousContext.longitude, newLng);
+        if (previousContext == null) {
+            state.setLastKnown(deviceId, observed);
+        } else if (!differs(previousContext, observed)) {
+            // Back within tolerance of the stable context - drop any pending candidate
+            state.setPending(deviceId, null);
+        } else {
+            LocationContext candidate = state.pending(deviceId);
+            if (candidate == null || differs(candidate, observed)) {
+                // New candidate context - start its dwell clock
+                candidate = observed;
+            }
+
+            if (changeDetector.hasDwelled(candidate.firstSeenMillis, now)) {
+                state.setPending(deviceId, null);
+                int recentChanges = state.countChange(deviceId, now);
 
-            if (locationChanged || ipChanged || coordinatesChanged) {
-                // Record the change
-                recordLocationChange(deviceId, previousContext, newLocation, newIpAddress, newLat, newLng, telemetry);
+                if (live) {
+                    // Record the change
+                    recordLocationChange(deviceId, previousContext, newLocation, newIpAddress, newLat, newLng, telemetry);
+
+                    // Generate alerts for suspicious patterns
+                    generateAlertsIfNeeded(deviceId, previousContext.location, newLocation, recentChanges);
+                }
                 hasChanged = true;
 
-                // Generate alerts for suspicious patterns
-                generateAlertsIfNeeded(deviceId, previousContext.location, newLocation);
+                state.setLastKnown(deviceId, observed);
+            } else {
+                state.setPending(deviceId, candidate);
             }
         }
 
-        // Update context and current location tracking
-        updateDeviceContext(deviceId, newLocation, newIpAddress, newLat, newLng, telemetry);
+        // Update current location tracking
+        state.setLocation(deviceId, deviceLocation(deviceId, newLocation, newIpAddress, newLat, newLng, telemetry,
+                             live ? LocalDateTime.now().atZone(ZoneId.systemDefault()).toInstant()
+                                  : Instant.ofEpochMilli(now)));
 
         return !hasChanged; // Return true if unchanged, false if changed
     }
 
+    private boolean differs(LocationContext reference, LocationContext observed) {
+        return changeDetector.isSignificantChange(
+                reference.location, reference.ipAddress, reference.latitude, reference.longitude,
+                observed.location, observed.ipAddress, observed.latitude, observed.longitude);
+    }
+
     // ========== DATA PERSISTENCE ==========
 
     private void recordLocationChange(String deviceId, LocationContext previous, 
@@ -130,11 +219,9 @@ public class LocationService {
         }
     }
 
-    private void updateDeviceContext(String deviceId, String location, String ipAddress, 
-                                   Double lat, Double lng, Map<String, Object> telemetry) {
-        // Update last known context
-        lastKnownContext.put(deviceId, new LocationContext(location, ipAddress, lat, lng));
-
+    private DeviceLocationDto deviceLocation(String deviceId, String location, String ipAddress,
+                                             Double lat, Double lng, Map<String, Object> telemetry,
+                                             Instant updatedAt) {
         // Update real-time tracking
         DeviceLocationDto deviceLocation = new DeviceLocationDto();
         deviceLocation.setDeviceId(deviceId);
@@ -142,7 +229,7 @@ public class LocationService {
         deviceLocation.setCurrentIpAddress(ipAddress);
         deviceLocation.setLatitude(lat);
         deviceLocation.setLongitude(lng);
-        deviceLocation.setLastUpdate(LocalDateTime.now().atZone(ZoneId.systemDefault()).toInstant());
+        deviceLocation.setLastUpdate(updatedAt);
         
         // Add telemetry scores
         deviceLocation.setTrustScore(safeParseDouble(telemetry.get("trustScore")));
@@ -159,12 +246,12 @@ public class LocationService {
             deviceLocation.setRiskLevel("HIGH");
         }
 
-        currentDeviceLocations.put(deviceId, deviceLocation);
+        return deviceLocation;
     }
 
     // ========== ALERT GENERATION ==========
 
-    private void generateAlertsIfNeeded(String deviceId, String oldLocation, String newLocation) {
+    private void generateAlertsIfNeeded(String deviceId, String oldLocation, String newLocation, int recentChanges) {
         try {
             LocationMapDto oldLoc = CAMPUS_LOCATIONS.get(oldLocation);
             LocationMapDto newLoc = CAMPUS_LOCATIONS.get(newLocation);
@@ -178,9 +265,8 @@ public class LocationService {
                 }
             }
             
-            // Check for frequent changes
-            long recentChanges = getLocationHistory(deviceId, 1).size();
-            if (recentChanges >= 3) {
+            // Check for frequent changes (in-memory window, no history query)
+            if (recentChanges >= alertThreshold) {
                 alertReasons.add("Excessive location changes in short time");
             }
             
@@ -215,9 +301,7 @@ public class LocationService {
      */
     public List<LocationNetworkChange> getLocationHistory(String deviceId, int hours) {
         LocalDateTime cutoff = LocalDateTime.now().minusHours(hours);
-        return changeRepo.findByDeviceIdOrderByTimestampDesc(deviceId).stream()
-                .filter(change -> change.getTimestamp().isAfter(cutoff))
-                .collect(Collectors.toList());
+        return changeRepo.findByDeviceIdAndTimestampAfterOrderByTimestampDesc(deviceId, cutoff);
     }
 
     /**
@@ -269,6 +353,170 @@ public class LocationService {
         return stats;
     }
 
+    /**
+     * Drops the real-time state of devices that no longer belong to this
+     * node, after a cluster rebalance.
+     *
+     * @return number of devices dropped
+     */
+    @Override
+    public int retainDevices(Predicate<String> owned) {
+        Set<String> dropped = new HashSet<>();
+        for (String deviceId : currentDeviceLocations.keySet()) {
+            if (!owned.test(deviceId)) {
+                dropped.add(deviceId);
+            }
+        }
+        for (String deviceId : lastKnownContext.keySet()) {
+            if (!owned.test(deviceId)) {
+                dropped.add(deviceId);
+            }
+        }
+        for (String deviceId : dropped) {
+            currentDeviceLocations.remove(deviceId);
+            lastKnownContext.remove(deviceId);
+            pendingContext.remove(deviceId);
+            recentChangeCounter.reset(deviceId);
+        }
+        return dropped.size();
+    }
+
+    // ========== STATE SNAPSHOTS ==========
+
+    private static final int HAS_CONTEXT = 1;
+    private static final int HAS_PENDING = 2;
+    private static final int HAS_LOCATION = 4;
+
+    @Override
+    public String snapshotSection() {
+        return "location";
+    }
+
+    /**
+     * Writes every tracked device: its stable and pending context and its
+     * current location entry, followed by the change-alert windows.
+     */
+    @Override
+    public void writeSnapshot(DataOutput out) throws IOException {
+        SnapshotStrings.Writer strings = new SnapshotStrings.Writer(out);
+        Set<String> deviceIds = new HashSet<>(lastKnownContext.keySet());
+        deviceIds.addAll(currentDeviceLocations.keySet());
+        for (String deviceId : deviceIds) {
+            LocationContext context = lastKnownContext.get(deviceId);
+            LocationContext pending = pendingContext.get(deviceId);
+            DeviceLocationDto location = currentDeviceLocations.get(deviceId);
+            int flags = (context != null ? HAS_CONTEXT : 0) | (pending != null ? HAS_PENDING : 0)
+                      | (location != null ? HAS_LOCATION : 0);
+            if (flags == 0) {
+                continue;
+            }
+            out.writeByte(flags);
+            out.writeUTF(deviceId);
+            if (context != null) {
+                writeContext(out, strings, context);
+            }
+            if (pending != null) {
+                writeContext(out, strings, pending);
+            }
+            if (location != null) {
+                strings.write(location.getCurrentLocation());
+                strings.write(location.getCurrentIpAddress());
+                SnapshotStrings.writeNullableDouble(out, location.getLatitude());
+                SnapshotStrings.writeNullableDouble(out, location.getLongitude());
+                out.writeLong(location.getLastUpdate() != null ? location.getLastUpdate().toEpochMilli() : Long.MIN_VALUE);
+                SnapshotStrings.writeNullableDouble(out, location.getTrustScore());
+                SnapshotStrings.writeNullableDouble(out, location.getAnomalyScore());
+                out.writeBoolean(location.getSuspiciousActivityScore() != null);
+                if (location.getSuspiciousActivityScore() != null) {
+                    out.writeInt(location.getSuspiciousActivityScore());
+                }
+                strings.write(location.getLocationType());
+                strings.write(location.getRiskLevel());
+            }
+        }
+        out.writeByte(0);
+        recentChangeCounter.writeTo(out, System.currentTimeMillis());
+    }
+
+    @Override
+    public void readSnapshot(DataInput in) throws IOException {
+        SnapshotStrings.Reader strings = new SnapshotStrings.Reader(in);
+        Map<String, LocationContext> contexts = new HashMap<>();
+        Map<String, LocationContext> pending = new HashMap<>();
+        Map<String, DeviceLocationDto> locations = new HashMap<>();
+        int flags;
+        while ((flags = in.readUnsignedByte()) != 0) {
+            String deviceId = in.readUTF();
+            if ((flags & HAS_CONTEXT) != 0) {
+                contexts.put(deviceId, readContext(in, strings));
+            }
+            if ((flags & HAS_PENDING) != 0) {
+                pending.put(deviceId, readContext(in, strings));
+            }
+            if ((flags & HAS_LOCATION) != 0) {
+                DeviceLocationDto location = new DeviceLocationDto();
+                location.setDeviceId(deviceId);
+                location.setCurrentLocation(strings.read());
+                location.setCurrentIpAddress(strings.read());
+                location.setLatitude(SnapshotStrings.readNullableDouble(in));
+                location.setLongitude(SnapshotStrings.readNullableDouble(in));
+                long updated = in.readLong();
+                location.setLastUpdate(updated != Long.MIN_VALUE ? Instant.ofEpochMilli(updated) : null);
+                location.setTrustScore(SnapshotStrings.readNullableDouble(in));
+                location.setAnomalyScore(SnapshotStrings.readNullableDouble(in));
+                location.setSuspiciousActivityScore(in.readBoolean() ? in.readInt() : null);
+                location.setLocationType(strings.read());
+                location.setRiskLevel(strings.read());
+                locations.put(deviceId, location);
+            }
+        }
+        recentChangeCounter.readFrom(in);
+
+        lastKnownContext.clear();
+        lastKnownContext.putAll(contexts);
+        pendingContext.clear();
+        pendingContext.putAll(pending);
+        currentDeviceLocations.clear();
+        currentDeviceLocations.putAll(locations);
+    }
+
+    /**
+     * Replays a stored message at the time it was sent; no change rows are
+     * written and no alerts raised, those already happened the first time.
+     */
+    @Override
+    public void replay(DeviceMessage message) {
+        if (message.getDeviceId() == null || message.getDeviceId().trim().isEmpty()) {
+            return;
+        }
+        long at = message.getTimestamp() != null ? message.getTimestamp().toEpochMilli() : System.currentTimeMillis();
+        advance(message.getDeviceId(), message.toMap(), at, false, liveState);
+    }
+
+    private static void writeContext(DataOutput out, SnapshotStrings.Writer strings, LocationContext context)
+            throws IOException {
+        strings.write(context.location);
+        strings.write(context.ipAddress);
+        SnapshotStrings.writeNullableDouble(out, context.latitude);
+        SnapshotStrings.writeNullableDouble(out, context.longitude);
+        out.writeLong(context.firstSeenMillis);
+    }
+
+    private static LocationContext readContext(DataInput in, SnapshotStrings.Reader strings) throws IOException {
+        String location = strings.read();
+        String ipAddress = strings.read();
+        Double latitude = SnapshotStrings.readNullableDouble(in);
+        Double longitude = SnapshotStrings.readNullableDouble(in);
+        return new LocationContext(location, ipAddress, latitude, longitude, in.readLong());
+    }
+
+    /**
+     * Number of devices whose location context is tracked in memory
+     */
+    public int getTrackedDeviceCount() {
+        return lastKnownContext.size();
+    }
+
     /**
      * Get device count with changes
      */
@@ -395,6 +643,11 @@ public class LocationService {
         return 0.0;
     }
 
+    private static Double toDouble(Object obj) {
+        if (obj instanceof Number) return ((Number) obj).doubleValue();
+        return obj instanceof String ? safeParseDouble(obj) : null;
+    }
+
     private static Integer safeParseInteger(Object obj) {
         if (obj == null) return null;
         if (obj instanceof Integer) return (Integer) obj;
@@ -411,12 +664,116 @@ public class LocationService {
         final String ipAddress;
         final Double latitude;
         final Double longitude;
+        final long firstSeenMillis;
 
-        LocationContext(String location, String ipAddress, Double latitude, Double longitude) {
+        LocationContext(String location, String ipAddress, Double latitude, Double longitude,
+                        long firstSeenMillis) {
             this.location = location;
             this.ipAddress = ipAddress;
             this.latitude = latitude;
             this.longitude = longitude;
+            this.firstSeenMillis = firstSeenMillis;
+        }
+    }
+
+    /**
+     * Per-device tracking state as seen by {@link #advance}.
+     */
+    private interface TrackingState {
+        LocationContext lastKnown(String deviceId);
+        LocationContext pending(String deviceId);
+        void setLastKnown(String deviceId, LocationContext context);
+        /** A null context drops the pending candidate. */
+        void setPending(String deviceId, LocationContext context);
+        void setLocation(String deviceId, DeviceLocationDto location);
+        /** Counts a change and returns the changes inside the alert window. */
+        int countChange(String deviceId, long nowMillis);
+    }
+
+    private class LiveState implements TrackingState {
+        @Override
+        public LocationContext lastKnown(String deviceId) {
+            return lastKnownContext.get(deviceId);
+        }
+
+        @Override
+        public LocationContext pending(String deviceId) {
+            return pendingContext.get(deviceId);
+        }
+
+        @Override
+        public void setLastKnown(String deviceId, LocationContext context) {
+            lastKnownContext.put(deviceId, context);
+        }
+
+        @Override
+        public void setPending(String deviceId, LocationContext context) {
+            if (context == null) {
+                pendingContext.remove(deviceId);
+            } else {
+                pendingContext.put(deviceId, context);
+            }
+        }
+
+        @Override
+        public void setLocation(String deviceId, DeviceLocationDto location) {
+            currentDeviceLocations.put(deviceId, location);
+        }
+
+        @Override
+        public int countChange(String deviceId, long nowMillis) {
+            return recentChangeCounter.incrementAndCount(deviceId, nowMillis);
+        }
+    }
+
+    /**
+     * Changes made by one transaction, layered over the live state and
+     * copied into it on commit.
+     */
+    private class StagedState implements TrackingState {
+        private final Map<String, LocationContext> lastKnown = new HashMap<>();
+        // A null value stands for a dropped candidate
+        private final Map<String, LocationContext> pending = new HashMap<>();
+        private final Map<String, DeviceLocationDto> locations = new HashMap<>();
+        private final Map<String, List<Long>> changes = new HashMap<>();
+
+        @Override
+        public LocationContext lastKnown(String deviceId) {
+            return lastKnown.containsKey(deviceId) ? lastKnown.get(deviceId) : lastKnownContext.get(deviceId);
+        }
+
+        @Override
+        public LocationContext pending(String deviceId) {
+            return pending.containsKey(deviceId) ? pending.get(deviceId) : pendingContext.get(deviceId);
+        }
+
+        @Override
+        public void setLastKnown(String deviceId, LocationContext context) {
+            lastKnown.put(deviceId, context);
+        }
+
+        @Override
+        public void setPending(String deviceId, LocationContext context) {
+            pending.put(deviceId, context);
+        }
+
+        @Override
+        public void setLocation(String deviceId, DeviceLocationDto location) {
+            locations.put(deviceId, location);
+        }
+
+        @Override
+        public int countChange(String deviceId, long nowMillis) {
+            List<Long> staged = changes.computeIfAbsent(deviceId, id -> new ArrayList<>());
+            staged.add(nowMillis);
+            return recentChangeCounter.count(deviceId, nowMillis) + staged.size();
+        }
+
+        void commit() {
+            lastKnownContext.putAll(lastKnown);
+            pending.forEach(liveState::setPending);
+            currentDeviceLocations.putAll(locations);
+            changes.forEach((deviceId, times) -> times.forEach(at -> recentChangeCounter.incrementAndCount(deviceId, at)));
         }
     }
-}
\ No newline at end of file
+}
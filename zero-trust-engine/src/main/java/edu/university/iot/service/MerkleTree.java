@@ -0,0 +1,140 @@
+package edu.university.iot.service;
+
+import org.web3j.crypto.Hash;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Binary keccak-256 Merkle tree over a batch of leaves.
+ *
+ * Leaves and inner nodes are hashed with different prefixes (0x00 / 0x01) so a
+ * leaf can never be passed off as an inner node. An odd node at the end of a
+ * level is promoted unchanged to the next level.
+ */
+public final class MerkleTree {
+
+    private static final byte LEAF_PREFIX = 0x00;
+    private static final byte NODE_PREFIX = 0x01;
+
+    // levels.get(0) are the leaf hashes, the last level holds only the root
+    private final List<byte[][]> levels = new ArrayList<>();
+
+    public MerkleTree(List<byte[]> leafData) {
+        this(hashLeaves(leafData));
+    }
+
+    private MerkleTree(byte[][] leafHashes) {
+        if (leafHashes.length == 0) {
+            throw new IllegalArgumentException("Merkle tree needs at least one leaf");
+        }
+
+        byte[][] level = leafHashes;
+        levels.add(level);
+
+        while (level.length > 1) {
+            byte[][] next = new byte[(level.length + 1) / 2][];
+            for (int i = 0; i < next.length; i++) {
+                int left = 2 * i;
+                next[i] = left + 1 < level.length ? hashNode(level[left], level[left + 1]) : level[left];
+            }
+            levels.add(next);
+            level = next;
+        }
+    }
+
+    /**
+     * Tree over leaves that were hashed earlier, e.g. stored with a batch.
+     */
+    public static MerkleTree fromLeafHashes(List<byte[]> leafHashes) {
+        byte[][] level = new byte[leafHashes.size()][];
+        for (int i = 0; i < level.length; i++) {
+            level[i] = leafHashes.get(i).clone();
+        }
+        return new MerkleTree(level);
+    }
+
+    private static byte[][] hashLeaves(List<byte[]> leafData) {
+        byte[][] hashes = new byte[leafData.size()][];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = hashLeaf(leafData.get(i));
+        }
+        return hashes;
+    }
+
+    public byte[] getRoot() {
+        return levels.get(levels.size() - 1)[0].clone();
+    }
+
+    public int getLeafCount() {
+        return levels.get(0).length;
+    }
+
+    public byte[] getLeafHash(int index) {
+        return levels.get(0)[index].clone();
+    }
+
+    /**
+     * Sibling path from the leaf at {@code index} up to the root.
+     */
+    public List<ProofStep> getProof(int index) {
+        if (index < 0 || index >= getLeafCount()) {
+            throw new IndexOutOfBoundsException("Leaf index " + index + " out of range");
+        }
+
+        List<ProofStep> proof = new ArrayList<>();
+        int position = index;
+        for (int depth = 0; depth < levels.size() - 1; depth++) {
+            byte[][] level = levels.get(depth);
+            int sibling = position ^ 1;
+            if (sibling < level.length) {
+                proof.add(new ProofStep(level[sibling].clone(), sibling < position));
+            }
+            position /= 2;
+        }
+        return proof;
+    }
+
+    /**
+     * Recomputes the root from raw leaf data and a proof and compares it to the expected root.
+     */
+    public static boolean verify(byte[] leafData, List<ProofStep> proof, byte[] expectedRoot) {
+        byte[] current = hashLeaf(leafData);
+        for (ProofStep step : proof) {
+            current = step.isLeft() ? hashNode(step.getHash(), current) : hashNode(current, step.getHash());
+        }
+        return Arrays.equals(current, expectedRoot);
+    }
+
+    static byte[] hashLeaf(byte[] data) {
+        byte[] buf = new byte[data.length + 1];
+        buf[0] = LEAF_PREFIX;
+        System.arraycopy(data, 0, buf, 1, data.length);
+        return Hash.sha3(buf);
+    }
+
+    static byte[] hashNode(byte[] left, byte[] right) {
+        byte[] buf = new byte[1 + left.length + right.length];
+        buf[0] = NODE_PREFIX;
+        System.arraycopy(left, 0, buf, 1, left.length);
+        System.arraycopy(right, 0, buf, 1 + left.length, right.length);
+        return Hash.sha3(buf);
+    }
+
+    /**
+     * One sibling hash in an inclusion proof; {@code left} means the sibling sits on the left.
+     */
+    public static final class ProofStep {
+        private final byte[] hash;
+        private final boolean left;
+
+        public ProofStep(byte[] hash, boolean left) {
+            this.hash = hash;
+            this.left = left;
+        }
+
+        public byte[] getHash() { return hash.clone(); }
+        public boolean isLeft() { return left; }
+    }
+}
@@ -0,0 +1,177 @@
+package edu.university.iot.service;
+
+import edu.university.iot.entity.DeviceRegistry;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Immutable state of one telemetry message as it moves through the pipeline.
+ *
+ * Every stage receives a context and returns a new one with its results added,
+ * so a context can be handed between threads or held in a batch without any
+ * thread-bound state. Verdicts hold the raw stage outputs (for ANOMALY,
+ * {@code true} means an anomaly was detected).
+ */
+public final class PipelineContext {
+
+    public enum Factor {
+        CONTEXT("context"),
+        IDENTITY("identity"),
+        FIRMWARE("firmware"),
+        ANOMALY("anomaly"),
+        COMPLIANCE("compliance");
+
+        private final String key;
+
+        Factor(String key) {
+            this.key = key;
+        }
+
+        /** Name used in factor result maps and trust score history. */
+        public String getKey() {
+            return key;
+        }
+    }
+
+    private final String deviceId;
+    private final Map<String, Object> telemetry;
+    private final Instant receivedAt;
+    private final String sessionId;
+    private final Double preTrustScore;
+    private final boolean quarantined;
+    private final Double postTrustScore;
+    private final Boolean trusted;
+    private final Map<Factor, Boolean> verdicts;
+    private final Map<String, Long> timingsMicros;
+
+    private PipelineContext(String deviceId, Map<String, Object> telemetry, Instant receivedAt,
+                            String sessionId, Double preTrustScore, boolean quarantined,
+                            Double postTrustScore, Boolean trusted,
+                            Map<Factor, Boolean> verdicts, Map<String, Long> timingsMicros) {
+        this.deviceId = deviceId;
+        this.telemetry = telemetry;
+        this.receivedAt = receivedAt;
+        this.sessionId = sessionId;
+        this.preTrustScore = preTrustScore;
+        this.quarantined = quarantined;
+        this.postTrustScore = postTrustScore;
+        this.trusted = trusted;
+        this.verdicts = verdicts;
+        this.timingsMicros = timingsMicros;
+    }
+
+    /**
+     * Starts a context for an incoming message. The telemetry map is copied,
+     * later changes to the caller's map are not seen by the pipeline.
+     */
+    public static PipelineContext of(Map<String, Object> telemetry) {
+        Map<String, Object> copy = Collections.unmodifiableMap(new HashMap<>(telemetry));
+        return new PipelineContext((String) copy.get("deviceId"), copy, Instant.now(),
+                                   null, null, false, null, null,
+                                   Collections.unmodifiableMap(new EnumMap<>(Factor.class)),
+                                   Collections.emptyMap());
+    }
+
+    public PipelineContext withSession(String sessionId) {
+        return new PipelineContext(deviceId, telemetry, receivedAt, sessionId, preTrustScore, quarantined,
+                                   postTrustScore, trusted, verdicts, timingsMicros);
+    }
+
+    /**
+     * Captures the device state as it was before trust adjustment.
+     */
+    public PipelineContext withDevice(DeviceRegistry device) {
+        double score = device.getTrustScore() != null ? device.getTrustScore() : 50.0;
+        return new PipelineContext(deviceId, telemetry, receivedAt, sessionId, score, device.isQuarantined(),
+                                   postTrustScore, device.isTrusted(), verdicts, timingsMicros);
+    }
+
+    public PipelineContext withVerdict(Factor factor, boolean verdict) {
+        Map<Factor, Boolean> next = new EnumMap<>(Factor.class);
+        next.putAll(verdicts);
+        next.put(factor, verdict);
+        return new PipelineContext(deviceId, telemetry, receivedAt, sessionId, preTrustScore, quarantined,
+                                   postTrustScore, trusted, Collections.unmodifiableMap(next), timingsMicros);
+    }
+
+    public PipelineContext withTrustOutcome(double score, boolean trusted) {
+        return new PipelineContext(deviceId, telemetry, receivedAt, sessionId, preTrustScore, quarantined,
+                                   score, trusted, verdicts, timingsMicros);
+    }
+
+    public PipelineContext withTiming(String stage, long elapsedNanos) {
+        Map<String, Long> next = new LinkedHashMap<>(timingsMicros);
+        next.put(stage, elapsedNanos / 1000);
+        return new PipelineContext(deviceId, telemetry, receivedAt, sessionId, preTrustScore, quarantined,
+                                   postTrustScore, trusted, verdicts, Collections.unmodifiableMap(next));
+    }
+
+    public String getDeviceId() {
+        return deviceId;
+    }
+
+    public Map<String, Object> getTelemetry() {
+        return telemetry;
+    }
+
+    public Instant getReceivedAt() {
+        return receivedAt;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    /** Trust score before this message, or null before the device was loaded. */
+    public Double getPreTrustScore() {
+        return preTrustScore;
+    }
+
+    public boolean isQuarantined() {
+        return quarantined;
+    }
+
+    /** Trust score after adjustment, or null if trust has not been adjusted yet. */
+    public Double getPostTrustScore() {
+        return postTrustScore;
+    }
+
+    /** Trusted flag after adjustment, or as loaded before it. */
+    public Boolean getTrusted() {
+        return trusted;
+    }
+
+    public boolean hasVerdict(Factor factor) {
+        return verdicts.containsKey(factor);
+    }
+
+    /**
+     * @throws IllegalStateException if the factor has not been evaluated yet
+     */
+    public boolean getVerdict(Factor factor) {
+        Boolean verdict = verdicts.get(factor);
+        if (verdict == null) {
+            throw new IllegalStateException("Factor " + factor + " not evaluated for device " + deviceId);
+        }
+        return verdict;
+    }
+
+    /**
+     * Verdicts keyed by factor name, the shape trust score history expects.
+     */
+    public Map<String, Boolean> getFactorResults() {
+        Map<String, Boolean> results = new HashMap<>();
+        verdicts.forEach((factor, verdict) -> results.put(factor.getKey(), verdict));
+        return results;
+    }
+
+    /** Elapsed time per stage in microseconds, in the order the stages ran. */
+    public Map<String, Long> getTimingsMicros() {
+        return timingsMicros;
+    }
+}
@@ -0,0 +1,338 @@
+package edu.university.iot.service;
+
+import edu.university.iot.config.TrustPolicyConfig;
+import edu.university.iot.model.dtoModel.PolicyReplayDto;
+import edu.university.iot.model.dtoModel.TrustPolicyDto;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * What-if replay of trust score history under a candidate policy.
+ *
+ * The factor verdicts of every history row in the window are streamed from
+ * trust_score_history into primitive columns, ordered by device and time.
+ * Devices are then split across a fork-join pool and each device's sequence
+ * is re-scored in one pass under both the active policy and the candidate,
+ * straight from their delta tables, both starting from the score the device
+ * had before its first row. Comparing the two replays rather than the
+ * recorded scores keeps rows missing from history (changes under 0.5 points)
+ * from showing up as differences.
+ *
+ * History does not record the device profile, so both policies are replayed
+ * with their default profile. Quarantines are counted as entries into
+ * untrusted state; a replay does not stop a device there, since its later
+ * rows exist because it was released.
+ */
+@Service
+public class PolicyReplayService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PolicyReplayService.class);
+
+    // Rows per fork-join leaf; a single device is never split
+    private static final int LEAF_ROWS = 32_768;
+    private static final int SAMPLE_SIZE = 20;
+
+    private static final String HISTORY_SQL =
+        "SELECT device_id, old_score, identity_passed, context_passed, firmware_valid, anomaly_detected, "
+            + "compliance_passed FROM trust_score_history WHERE `timestamp` >= ? AND `timestamp` < ? "
+            + "ORDER BY device_id, `timestamp`, id";
+
+    private final JdbcTemplate streamingJdbc;
+    private final TrustPolicyService policyService;
+    private final TrustPolicyConfig config;
+    private final ForkJoinPool pool;
+
+    // One replay at a time; each holds the whole window in memory
+    private final ReentrantLock replayLock = new ReentrantLock();
+
+    public PolicyReplayService(JdbcTemplate jdbc, TrustPolicyService policyService, TrustPolicyConfig config) {
+        // MySQL Connector/J only streams a result set row by row with this fetch size
+        this.streamingJdbc = new JdbcTemplate(jdbc.getDataSource());
+        this.streamingJdbc.setFetchSize(Integer.MIN_VALUE);
+        this.policyService = policyService;
+        this.config = config;
+        int parallelism = config.getReplayParallelism() > 0
+            ? config.getReplayParallelism() : Runtime.getRuntime().availableProcessors();
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Replays the last {@code days} days of history under the candidate policy.
+     *
+     * @throws IllegalArgumentException if the candidate is invalid or the window out of range
+     * @throws IllegalStateException    if another replay is running
+     */
+    public PolicyReplayDto replay(TrustPolicyDto candidateDefinition, int days) {
+        if (days < 1 || days > config.getReplayMaxDays()) {
+            throw new IllegalArgumentException("Replay window must be between 1 and "
+                + config.getReplayMaxDays() + " days, was " + days);
+        }
+        TrustPolicy candidate = TrustPolicy.compile(candidateDefinition);
+        TrustPolicy active = policyService.current();
+
+        if (!replayLock.tryLock()) {
+            throw new IllegalStateException("A policy replay is already running");
+        }
+        try {
+            long start = System.nanoTime();
+            Instant to = Instant.now();
+            Instant from = to.minus(Duration.ofDays(days));
+
+            HistoryColumns columns = load(from, to);
+            PolicyReplayDto dto = compare(pool, columns, active, candidate);
+            dto.setActiveVersion(active.getVersion());
+            dto.setCandidateVersion(candidate.getVersion());
+            dto.setFrom(from);
+            dto.setTo(to);
+            dto.setRows(columns.rowCount());
+            dto.setDevices(columns.deviceCount());
+            dto.setElapsedMs((System.nanoTime() - start) / 1_000_000);
+
+            logger.info("Replayed {} history rows of {} devices under policy {} in {} ms: "
+                        + "{} trust flips, {} differing quarantines",
+                        dto.getRows(), dto.getDevices(), dto.getCandidateVersion(), dto.getElapsedMs(),
+                        dto.getTrustFlips(), dto.getDifferingQuarantines());
+            return dto;
+        } finally {
+            replayLock.unlock();
+        }
+    }
+
+    private HistoryColumns load(Instant from, Instant to) {
+        HistoryColumns columns = new HistoryColumns();
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        streamingJdbc.query(con -> {
+            var ps = con.prepareStatement(HISTORY_SQL);
+            ps.setTimestamp(1, Timestamp.from(from), utc);
+            ps.setTimestamp(2, Timestamp.from(to), utc);
+            return ps;
+        }, rs -> {
+            String deviceId = rs.getString(1);
+            // Null verdicts (rows from before factor tracking) count as failed / not detected
+            int mask = TrustPolicy.verdictMask(rs.getBoolean(3), rs.getBoolean(4), rs.getBoolean(5),
+                                               rs.getBoolean(6), rs.getBoolean(7));
+            columns.add(deviceId, rs.getDouble(2), mask);
+        });
+        columns.finish();
+        return columns;
+    }
+
+    /**
+     * Replays every device in the columns under both policies and counts the differences.
+     */
+    static PolicyReplayDto compare(ForkJoinPool pool, HistoryColumns columns,
+                                   TrustPolicy active, TrustPolicy candidate) {
+        Tally tally = columns.deviceCount() == 0
+            ? new Tally()
+            : pool.invoke(new ReplayTask(columns, active, candidate, 0, columns.deviceCount()));
+        return tally.toDto();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * History rows as columns; rows of device d are [offsets[d], offsets[d + 1]).
+     */
+    static final class HistoryColumns {
+        private final List<String> deviceIds = new ArrayList<>();
+        private int[] offsets = new int[1024];
+        private double[] startScores = new double[1024];
+        private int[] verdictMasks = new int[65_536];
+        private int rows;
+
+        void add(String deviceId, double oldScore, int mask) {
+            int devices = deviceIds.size();
+            if (devices == 0 || !deviceIds.get(devices - 1).equals(deviceId)) {
+                if (devices + 1 >= offsets.length) {
+                    offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                    startScores = Arrays.copyOf(startScores, startScores.length * 2);
+                }
+                deviceIds.add(deviceId);
+                offsets[devices] = rows;
+                startScores[devices] = oldScore;
+            }
+            if (rows == verdictMasks.length) {
+                verdictMasks = Arrays.copyOf(verdictMasks, verdictMasks.length * 2);
+            }
+            verdictMasks[rows++] = mask;
+        }
+
+        void finish() {
+            offsets[deviceIds.size()] = rows;
+        }
+
+        int deviceCount() {
+            return deviceIds.size();
+        }
+
+        int rowCount() {
+            return rows;
+        }
+    }
+
+    /**
+     * Replays devices [fromDevice, toDevice), splitting until a range is small enough.
+     */
+    private static final class ReplayTask extends RecursiveTask<Tally> {
+        private final HistoryColumns columns;
+        private final TrustPolicy active;
+        private final TrustPolicy candidate;
+        private final int fromDevice;
+        private final int toDevice;
+
+        ReplayTask(HistoryColumns columns, TrustPolicy active, TrustPolicy candidate,
+                   int fromDevice, int toDevice) {
+            this.columns = columns;
+            this.active = active;
+            this.candidate = candidate;
+            this.fromDevice = fromDevice;
+            this.toDevice = toDevice;
+        }
+
+        @Override
+        protected Tally compute() {
+            int rows = columns.offsets[toDevice] - columns.offsets[fromDevice];
+            if (toDevice - fromDevice == 1 || rows <= LEAF_ROWS) {
+                return replayRange();
+            }
+            int mid = (fromDevice + toDevice) >>> 1;
+            ReplayTask left = new ReplayTask(columns, active, candidate, fromDevice, mid);
+            ReplayTask right = new ReplayTask(columns, active, candidate, mid, toDevice);
+            left.fork();
+            Tally rightTally = right.compute();
+            Tally tally = left.join();
+            tally.merge(rightTally);
+            return tally;
+        }
+
+        private Tally replayRange() {
+            int[] offsets = columns.offsets;
+            int[] masks = columns.verdictMasks;
+            // Default profile block of each delta table; history does not record the profile
+            double[] activeDeltas = active.getDeltaTable();
+            double[] candidateDeltas = candidate.getDeltaTable();
+            int activeBase = active.profileIndex(null) * TrustPolicy.VERDICT_COMBINATIONS;
+            int candidateBase = candidate.profileIndex(null) * TrustPolicy.VERDICT_COMBINATIONS;
+            double activeThreshold = active.getDefaultProfile().getTrustedThreshold();
+            double candidateThreshold = candidate.getDefaultProfile().getTrustedThreshold();
+
+            Tally tally = new Tally();
+            for (int d = fromDevice; d < toDevice; d++) {
+                double activeScore = columns.startScores[d];
+                double candidateScore = columns.startScores[d];
+                boolean activeTrusted = activeScore >= activeThreshold;
+                boolean candidateTrusted = candidateScore >= candidateThreshold;
+                boolean activeQuarantined = false;
+                boolean candidateQuarantined = false;
+                boolean affected = false;
+
+                for (int row = offsets[d]; row < offsets[d + 1]; row++) {
+                    int mask = masks[row];
+                    activeScore = Math.min(100.0, Math.max(0.0, activeScore + activeDeltas[activeBase + mask]));
+                    candidateScore = Math.min(100.0, Math.max(0.0,
+                        candidateScore + candidateDeltas[candidateBase + mask]));
+                    boolean activeNow = activeScore >= activeThreshold;
+                    boolean candidateNow = candidateScore >= candidateThreshold;
+                    boolean activeQuarantine = activeTrusted && !activeNow;
+                    boolean candidateQuarantine = candidateTrusted && !candidateNow;
+
+                    if (activeQuarantine) tally.activeQuarantines++;
+                    if (candidateQuarantine) tally.candidateQuarantines++;
+                    if (activeQuarantine != candidateQuarantine) {
+                        tally.differingQuarantines++;
+                        affected = true;
+                    }
+                    if (activeNow != candidateNow) {
+                        tally.trustFlips++;
+                        affected = true;
+                    }
+                    activeQuarantined |= activeQuarantine;
+                    candidateQuarantined |= candidateQuarantine;
+                    activeTrusted = activeNow;
+                    candidateTrusted = candidateNow;
+                }
+
+                String deviceId = columns.deviceIds.get(d);
+                if (activeQuarantined) tally.activeQuarantinedDevices++;
+                if (candidateQuarantined) tally.candidateQuarantinedDevices++;
+                if (affected) tally.affectedDevices++;
+                if (candidateQuarantined && !activeQuarantined) {
+                    tally.newlyQuarantined++;
+                    tally.sample(tally.newlyQuarantinedSample, deviceId);
+                } else if (activeQuarantined && !candidateQuarantined) {
+                    tally.noLongerQuarantined++;
+                    tally.sample(tally.noLongerQuarantinedSample, deviceId);
+                }
+            }
+            return tally;
+        }
+    }
+
+    private static final class Tally {
+        long activeQuarantines;
+        long candidateQuarantines;
+        int activeQuarantinedDevices;
+        int candidateQuarantinedDevices;
+        long differingQuarantines;
+        long trustFlips;
+        int affectedDevices;
+        int newlyQuarantined;
+        int noLongerQuarantined;
+        final List<String> newlyQuarantinedSample = new ArrayList<>();
+        final List<String> noLongerQuarantinedSample = new ArrayList<>();
+
+        void sample(List<String> sample, String deviceId) {
+            if (sample.size() < SAMPLE_SIZE) {
+                sample.add(deviceId);
+            }
+        }
+
+        void merge(Tally other) {
+            activeQuarantines += other.activeQuarantines;
+            candidateQuarantines += other.candidateQuarantines;
+            activeQuarantinedDevices += other.activeQuarantinedDevices;
+            candidateQuarantinedDevices += other.candidateQuarantinedDevices;
+            differingQuarantines += other.differingQuarantines;
+            trustFlips += other.trustFlips;
+            affectedDevices += other.affectedDevices;
+            newlyQuarantined += other.newlyQuarantined;
+            noLongerQuarantined += other.noLongerQuarantined;
+            other.newlyQuarantinedSample.forEach(id -> sample(newlyQuarantinedSample, id));
+            other.noLongerQuarantinedSample.forEach(id -> sample(noLongerQuarantinedSample, id));
+        }
+
+        PolicyReplayDto toDto() {
+            PolicyReplayDto dto = new PolicyReplayDto();
+            dto.setActiveQuarantines(activeQuarantines);
+            dto.setCandidateQuarantines(candidateQuarantines);
+            dto.setActiveQuarantinedDevices(activeQuarantinedDevices);
+            dto.setCandidateQuarantinedDevices(candidateQuarantinedDevices);
+            dto.setDifferingQuarantines(differingQuarantines);
+            dto.setTrustFlips(trustFlips);
+            dto.setAffectedDevices(affectedDevices);
+            dto.setNewlyQuarantinedDevices(newlyQuarantined);
+            dto.setNoLongerQuarantinedDevices(noLongerQuarantined);
+            dto.setNewlyQuarantinedSample(newlyQuarantinedSample);
+            dto.setNoLongerQuarantinedSample(noLongerQuarantinedSample);
+            return dto;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package edu.university.iot.service;
+
+import edu.university.iot.config.QuarantineConfig;
+import edu.university.iot.config.VirtualThreadSupport;
+import edu.university.iot.model.QuarantineCommand;
+import edu.university.iot.model.QuarantineLog;
+import edu.university.iot.repository.QuarantineCommandRepository;
+import edu.university.iot.repository.QuarantineLogRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Drains the quarantine command queue against IoT Hub on a small worker pool,
+ * or on virtual threads when spring.threads.virtual.enabled is set and the
+ * runtime supports them; in-flight calls are bounded by batchSize either way.
+ *
+ * Commands are claimed by pushing their next attempt time out by a lease, so a
+ * crashed worker's commands become visible again once the lease expires.
+ * Failures are retried with exponential backoff until maxAttempts is reached.
+ */
+@Service
+public class QuarantineCommandExecutor {
+
+    private static final Logger log = LoggerFactory.getLogger(QuarantineCommandExecutor.class);
+
+    private final QuarantineCommandRepository commandRepo;
+    private final QuarantineLogRepository logRepo;
+    private final DeviceIdentityGateway gateway;
+    private final QuarantineConfig config;
+    private final ExecutorService workers;
+    private final boolean virtualThreads;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public QuarantineCommandExecutor(QuarantineCommandRepository commandRepo,
+                                     QuarantineLogRepository logRepo,
+                                     DeviceIdentityGateway gateway,
+                                     QuarantineConfig config,
+                                     @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreadsRequested) {
+        this.commandRepo = commandRepo;
+        this.logRepo = logRepo;
+        this.gateway = gateway;
+        this.config = config;
+
+        Optional<ExecutorService> virtual = virtualThreadsRequested
+                ? VirtualThreadSupport.newVirtualThreadPerTaskExecutor()
+                : Optional.empty();
+        if (virtualThreadsRequested && virtual.isEmpty()) {
+            log.warn("Virtual threads requested but not supported by this runtime; using {} quarantine workers",
+                     config.getWorkerThreads());
+        }
+        this.virtualThreads = virtual.isPresent();
+        this.workers = virtual.orElseGet(() -> {
+            AtomicInteger threadNo = new AtomicInteger();
+            return Executors.newFixedThreadPool(Math.max(1, config.getWorkerThreads()), r -> {
+                Thread t = new Thread(r, "quarantine-worker-" + threadNo.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        });
+    }
+
+    /**
+     * Claims due commands (bounded by free worker capacity) and dispatches them.
+     */
+    @Scheduled(fixedDelayString = "${quarantine.poll-interval-ms:2000}")
+    public void pollAndDispatch() {
+        int capacity = config.getBatchSize() - inFlight.get();
+        if (capacity <= 0) {
+            return;
+        }
+
+        Instant now = Instant.now();
+        List<QuarantineCommand> due = commandRepo.findDue(
+            QuarantineCommand.Status.PENDING, now, PageRequest.of(0, capacity));
+
+        for (QuarantineCommand command : due) {
+            QuarantineCommand claimed = claim(command, now);
+            if (claimed == null) {
+                continue;
+            }
+            inFlight.incrementAndGet();
+            try {
+                workers.execute(() -> execute(claimed));
+            } catch (RuntimeException e) {
+                // Pool shut down - lease expiry will make the command visible again
+                inFlight.decrementAndGet();
+                log.warn("Could not dispatch quarantine command for device [{}]: {}",
+                         claimed.getDeviceId(), e.getMessage());
+            }
+        }
+    }
+
+    private QuarantineCommand claim(QuarantineCommand command, Instant now) {
+        try {
+            command.setAttempts(command.getAttempts() + 1);
+            command.setNextAttemptAt(now.plusMillis(config.getLeaseMs()));
+            return commandRepo.save(command);
+        } catch (OptimisticLockingFailureException e) {
+            // Another poller claimed it first
+            return null;
+        }
+    }
+
+    private void execute(QuarantineCommand command) {
+        String deviceId = command.getDeviceId();
+        try {
+            DeviceIdentityGateway.DisableOutcome outcome = gateway.disableDevice(deviceId);
+            switch (outcome) {
+                case DISABLED -> {
+                    log.info("Device [{}] disabled in IoT Hub. Reason: {}", deviceId, command.getReason());
+                    complete(command, QuarantineCommand.Status.DONE, QuarantineLog.Status.SUCCESS, null);
+                }
+                case ALREADY_DISABLED -> complete(command, QuarantineCommand.Status.DONE,
+                                                  QuarantineLog.Status.ALREADY_QUARANTINED, null);
+                case NOT_FOUND -> {
+                    log.warn("Device [{}] not found in IoT Hub. Skipping Azure disable.", deviceId);
+                    complete(command, QuarantineCommand.Status.FAILED, QuarantineLog.Status.FAILED,
+                             "Device not found in IoT Hub");
+                }
+            }
+        } catch (Exception e) {
+            retryOrFail(command, e);
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private void retryOrFail(QuarantineCommand command, Exception error) {
+        String message = error.getClass().getSimpleName() + ": " + error.getMessage();
+        if (command.getAttempts() >= config.getMaxAttempts()) {
+            log.error("Giving up disabling device [{}] in IoT Hub after {} attempts: {}",
+                      command.getDeviceId(), command.getAttempts(), message);
+            complete(command, QuarantineCommand.Status.FAILED, QuarantineLog.Status.FAILED, message);
+            return;
+        }
+
+        long delay = backoffMillis(command.getAttempts());
+        log.warn("Failed to disable device [{}] in IoT Hub (attempt {}), retrying in {} ms: {}",
+                 command.getDeviceId(), command.getAttempts(), delay, message);
+        command.setLastError(truncate(message));
+        command.setNextAttemptAt(Instant.now().plusMillis(delay));
+        saveQuietly(command);
+    }
+
+    /**
+     * Exponential backoff with up to 20% jitter, capped at maxBackoffMs.
+     */
+    long backoffMillis(int attempts) {
+        int exponent = Math.min(Math.max(attempts - 1, 0), 30);
+        long base = Math.min(config.getMaxBackoffMs(), config.getInitialBackoffMs() << exponent);
+        if (base <= 0) base = config.getMaxBackoffMs();
+        return base + ThreadLocalRandom.current().nextLong(base / 5 + 1);
+    }
+
+    private void complete(QuarantineCommand command, QuarantineCommand.Status status,
+                          QuarantineLog.Status logStatus, String error) {
+        command.setStatus(status);
+        command.setCompletedAt(Instant.now());
+        command.setLastError(truncate(error));
+        // A stale worker (its lease expired and another poller took over) leaves the log alone
+        if (!saveQuietly(command)) {
+            return;
+        }
+
+        if (command.getQuarantineLogId() != null) {
+            logRepo.findById(command.getQuarantineLogId()).ifPresent(entry -> {
+                entry.setStatus(logStatus);
+                entry.setErrorMessage(error);
+                logRepo.save(entry);
+            });
+        }
+    }
+
+    private boolean saveQuietly(QuarantineCommand command) {
+        try {
+            commandRepo.save(command);
+            return true;
+        } catch (OptimisticLockingFailureException e) {
+            log.warn("Quarantine command for device [{}] was modified concurrently; lease will resolve it",
+                     command.getDeviceId());
+            return false;
+        }
+    }
+
+    private static String truncate(String s) {
+        return s == null || s.length() <= 1000 ? s : s.substring(0, 1000);
+    }
+
+    /**
+     * Queue depth and worker utilisation for monitoring
+     */
+    public Map<String, Object> getQueueStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("pending", commandRepo.countByStatus(QuarantineCommand.Status.PENDING));
+        stats.put("done", commandRepo.countByStatus(QuarantineCommand.Status.DONE));
+        stats.put("failed", commandRepo.countByStatus(QuarantineCommand.Status.FAILED));
+        stats.put("inFlight", inFlight.get());
+        stats.put("workerThreads", virtualThreads ? "virtual" : config.getWorkerThreads());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        workers.shutdown();
+        if (!workers.awaitTermination(10, TimeUnit.SECONDS)) {
+            workers.shutdownNow();
+        }
+    }
+}
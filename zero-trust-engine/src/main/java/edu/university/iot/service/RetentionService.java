@@ -0,0 +1,211 @@
+package edu.university.iot.service;
+
+import edu.university.iot.config.RetentionConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Maintains the daily range partitions of the log tables and expires old data.
+ *
+ * For each table with a retention policy the job splits empty daily partitions
+ * out of p_future ahead of today and drops whole partitions whose upper bound
+ * is older than the retention window, which is a metadata operation instead of
+ * a row-by-row delete. Tables that are not partitioned (V5 migration not
+ * applied) fall back to deleting expired rows in bounded batches.
+ */
+@Service
+public class RetentionService {
+
+    private static final Logger log = LoggerFactory.getLogger(RetentionService.class);
+
+    private static final String FUTURE_PARTITION = "p_future";
+    private static final DateTimeFormatter PARTITION_NAME = DateTimeFormatter.ofPattern("'p'yyyyMMdd");
+    private static final DateTimeFormatter BOUND = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final Pattern TABLE_NAME = Pattern.compile("[a-z_][a-z0-9_]*");
+
+    private final JdbcTemplate jdbc;
+    private final RetentionConfig config;
+
+    private final ReentrantLock runLock = new ReentrantLock();
+
+    public RetentionService(JdbcTemplate jdbc, RetentionConfig config) {
+        this.jdbc = jdbc;
+        this.config = config;
+    }
+
+    @Scheduled(cron = "${retention.cron:0 15 0 * * *}", zone = "UTC")
+    public void scheduledRetention() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        applyRetention();
+    }
+
+    /**
+     * Runs partition maintenance and expiry for every configured table.
+     *
+     * @return per-table summary of partitions created/dropped or rows deleted
+     */
+    public Map<String, Object> applyRetention() {
+        runLock.lock();
+        try {
+            return applyRetentionLocked();
+        } finally {
+            runLock.unlock();
+        }
+    }
+
+    private Map<String, Object> applyRetentionLocked() {
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        Map<String, Object> summary = new LinkedHashMap<>();
+
+        for (Map.Entry<String, Integer> policy : config.getDays().entrySet()) {
+            String table = policy.getKey();
+            if (!TABLE_NAME.matcher(table).matches() || policy.getValue() == null || policy.getValue() <= 0) {
+                log.warn("Skipping invalid retention policy {}={}", table, policy.getValue());
+                continue;
+            }
+            LocalDate cutoff = today.minusDays(policy.getValue());
+
+            try {
+                List<PartitionInfo> partitions = loadPartitions(table);
+                Map<String, Object> result = new LinkedHashMap<>();
+                if (partitions.isEmpty()) {
+                    result.put("partitioned", false);
+                    result.put("rowsDeleted", deleteExpiredRows(table, cutoff));
+                } else {
+                    result.put("partitioned", true);
+                    result.put("partitionsCreated", createUpcomingPartitions(table, partitions, today));
+                    result.put("partitionsDropped", dropExpiredPartitions(table, partitions, cutoff));
+                }
+                result.put("retentionDays", policy.getValue());
+                summary.put(table, result);
+            } catch (Exception e) {
+                log.error("Retention failed for table {}: {}", table, e.getMessage(), e);
+                summary.put(table, Map.of("error", String.valueOf(e.getMessage())));
+            }
+        }
+        return summary;
+    }
+
+    /**
+     * Splits daily partitions for today .. today+precreateDays out of p_future.
+     */
+    private int createUpcomingPartitions(String table, List<PartitionInfo> partitions, LocalDate today) {
+        LocalDateTime highestBound = partitions.stream()
+                .map(p -> p.upperBound)
+                .filter(b -> b != null)
+                .max(LocalDateTime::compareTo)
+                .orElse(null);
+        boolean hasFuture = partitions.stream().anyMatch(p -> FUTURE_PARTITION.equals(p.name));
+        if (!hasFuture) {
+            log.warn("Table {} has no {} partition; not creating daily partitions", table, FUTURE_PARTITION);
+            return 0;
+        }
+
+        // Next day without its own partition. Days missed while the job was not
+        // running are folded into today's partition rather than backfilled.
+        LocalDate day = highestBound != null && highestBound.toLocalDate().isAfter(today)
+                ? highestBound.toLocalDate() : today;
+        LocalDate last = today.plusDays(Math.max(0, config.getPrecreateDays()));
+        if (day.isAfter(last)) {
+            return 0;
+        }
+
+        StringBuilder ddl = new StringBuilder("ALTER TABLE ").append(table)
+                .append(" REORGANIZE PARTITION ").append(FUTURE_PARTITION).append(" INTO (");
+        int created = 0;
+        for (; !day.isAfter(last); day = day.plusDays(1)) {
+            ddl.append("PARTITION ").append(day.format(PARTITION_NAME))
+               .append(" VALUES LESS THAN ('").append(day.plusDays(1).atStartOfDay().format(BOUND)).append("'), ");
+            created++;
+        }
+        ddl.append("PARTITION ").append(FUTURE_PARTITION).append(" VALUES LESS THAN (MAXVALUE))");
+
+        jdbc.execute(ddl.toString());
+        log.info("Created {} daily partitions on {}", created, table);
+        return created;
+    }
+
+    /**
+     * Drops partitions whose every row is older than the cutoff.
+     */
+    private int dropExpiredPartitions(String table, List<PartitionInfo> partitions, LocalDate cutoff) {
+        LocalDateTime cutoffTime = cutoff.atStartOfDay();
+        List<String> expired = new ArrayList<>();
+        for (PartitionInfo p : partitions) {
+            if (p.upperBound != null && !p.upperBound.isAfter(cutoffTime)) {
+                expired.add(p.name);
+            }
+        }
+        if (expired.isEmpty()) {
+            return 0;
+        }
+
+        jdbc.execute("ALTER TABLE " + table + " DROP PARTITION " + String.join(", ", expired));
+        log.info("Dropped {} expired partitions from {}: {}", expired.size(), table, expired);
+        return expired.size();
+    }
+
+    private long deleteExpiredRows(String table, LocalDate cutoff) {
+        Timestamp cutoffTs = Timestamp.valueOf(cutoff.atStartOfDay());
+        String sql = "DELETE FROM " + table + " WHERE `timestamp` < ? LIMIT " + Math.max(1, config.getDeleteBatchSize());
+        long total = 0;
+        int deleted;
+        do {
+            deleted = jdbc.update(sql, cutoffTs);
+            total += deleted;
+        } while (deleted > 0);
+
+        if (total > 0) {
+            log.info("Deleted {} expired rows from unpartitioned table {}", total, table);
+        }
+        return total;
+    }
+
+    private List<PartitionInfo> loadPartitions(String table) {
+        return jdbc.query(
+                "SELECT PARTITION_NAME, PARTITION_DESCRIPTION FROM information_schema.PARTITIONS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_NAME IS NOT NULL " +
+                "ORDER BY PARTITION_ORDINAL_POSITION",
+                (rs, i) -> new PartitionInfo(rs.getString(1), parseBound(rs.getString(2))),
+                table);
+    }
+
+    /** RANGE COLUMNS bounds look like {@code '2026-10-20 00:00:00'} or {@code MAXVALUE}. */
+    private static LocalDateTime parseBound(String description) {
+        if (description == null || description.equalsIgnoreCase("MAXVALUE")) {
+            return null;
+        }
+        String value = description.replace("'", "").trim();
+        if (value.length() == 10) {
+            return LocalDate.parse(value).atStartOfDay();
+        }
+        return LocalDateTime.parse(value.substring(0, 19), BOUND);
+    }
+
+    private static final class PartitionInfo {
+        final String name;
+        final LocalDateTime upperBound; // exclusive; null for MAXVALUE
+
+        PartitionInfo(String name, LocalDateTime upperBound) {
+            this.name = name;
+            this.upperBound = upperBound;
+        }
+    }
+}
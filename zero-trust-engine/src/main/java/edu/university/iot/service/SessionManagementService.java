@@ -5,6 +5,9 @@ import edu.university.iot.repository.DeviceSessionRepository;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -30,6 +33,31 @@ public class SessionManagementService {
         return session.getSessionId();
     }
 
+    /**
+     * Starts or refreshes the sessions of several devices with one lookup,
+     * returning session IDs by device.
+     */
+    public Map<String, String> startOrRefreshSessions(Collection<String> deviceIds) {
+        Map<String, DeviceSession> sessions = new HashMap<>();
+        for (DeviceSession session : sessionRepo.findByDeviceIdIn(deviceIds)) {
+            sessions.put(session.getDeviceId(), session);
+        }
+
+        Instant now = Instant.now();
+        Map<String, String> sessionIds = new HashMap<>();
+        for (String deviceId : deviceIds) {
+            DeviceSession session = sessions.get(deviceId);
+            if (session == null) {
+                session = createNewSession(deviceId);
+            }
+            session.setLastActivityTime(now);
+            session.setStatus("ACTIVE");
+            sessionIds.put(deviceId, session.getSessionId());
+        }
+        // Managed sessions are written when the caller's transaction flushes
+        return sessionIds;
+    }
+
     private DeviceSession createNewSession(String deviceId) {
         DeviceSession session = new DeviceSession();
         session.setDeviceId(deviceId);
@@ -0,0 +1,133 @@
+package edu.university.iot.service;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-key event counter over a sliding time window, kept entirely in memory.
+ *
+ * The window is split into fixed buckets so memory per key is constant and
+ * counting never touches the database.
+ */
+final class SlidingWindowCounter {
+
+    private static final int BUCKETS = 60;
+
+    private final long bucketMillis;
+    private final Map<String, Window> windows = new ConcurrentHashMap<>();
+
+    SlidingWindowCounter(long windowMillis) {
+        this.bucketMillis = Math.max(1, windowMillis / BUCKETS);
+    }
+
+    /**
+     * Records one event for the key and returns the count inside the window.
+     */
+    int incrementAndCount(String key, long nowMillis) {
+        return windows.computeIfAbsent(key, k -> new Window()).add(nowMillis / bucketMillis);
+    }
+
+    /**
+     * Returns the number of events recorded for the key inside the window.
+     */
+    int count(String key, long nowMillis) {
+        Window window = windows.get(key);
+        return window != null ? window.sum(nowMillis / bucketMillis) : 0;
+    }
+
+    void reset(String key) {
+        windows.remove(key);
+    }
+
+    /**
+     * Writes the buckets still inside the window, for state snapshots.
+     */
+    void writeTo(DataOutput out, long nowMillis) throws IOException {
+        long epoch = nowMillis / bucketMillis;
+        out.writeLong(bucketMillis);
+        for (Map.Entry<String, Window> entry : windows.entrySet()) {
+            long[][] live = entry.getValue().live(epoch);
+            if (live.length == 0) {
+                continue;
+            }
+            out.writeBoolean(true);
+            out.writeUTF(entry.getKey());
+            out.writeByte(live.length);
+            for (long[] bucket : live) {
+                out.writeLong(bucket[0]);
+                out.writeInt((int) bucket[1]);
+            }
+        }
+        out.writeBoolean(false);
+    }
+
+    /**
+     * Replaces every window with those written by {@link #writeTo}. Windows
+     * written with another bucket size are read and dropped.
+     */
+    void readFrom(DataInput in) throws IOException {
+        boolean compatible = in.readLong() == bucketMillis;
+        Map<String, Window> loaded = new HashMap<>();
+        while (in.readBoolean()) {
+            String key = in.readUTF();
+            int buckets = in.readUnsignedByte();
+            Window window = new Window();
+            for (int i = 0; i < buckets; i++) {
+                window.set(in.readLong(), in.readInt());
+            }
+            loaded.put(key, window);
+        }
+        windows.clear();
+        if (compatible) {
+            windows.putAll(loaded);
+        }
+    }
+
+    private static final class Window {
+        private final long[] epochs = new long[BUCKETS];
+        private final int[] counts = new int[BUCKETS];
+
+        synchronized int add(long epoch) {
+            int idx = (int) (epoch % BUCKETS);
+            if (epochs[idx] != epoch) {
+                epochs[idx] = epoch;
+                counts[idx] = 0;
+            }
+            counts[idx]++;
+            return sum(epoch);
+        }
+
+        synchronized void set(long epoch, int count) {
+            int idx = (int) (epoch % BUCKETS);
+            epochs[idx] = epoch;
+            counts[idx] = count;
+        }
+
+        // Epoch and count of every non-empty bucket inside the window
+        synchronized long[][] live(long epoch) {
+            int n = 0;
+            long[][] buckets = new long[BUCKETS][];
+            for (int i = 0; i < BUCKETS; i++) {
+                if (counts[i] > 0 && epochs[i] > epoch - BUCKETS && epochs[i] <= epoch) {
+                    buckets[n++] = new long[] { epochs[i], counts[i] };
+                }
+            }
+            return Arrays.copyOf(buckets, n);
+        }
+
+        synchronized int sum(long epoch) {
+            int total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                if (epochs[i] > epoch - BUCKETS && epochs[i] <= epoch) {
+                    total += counts[i];
+                }
+            }
+            return total;
+        }
+    }
+}
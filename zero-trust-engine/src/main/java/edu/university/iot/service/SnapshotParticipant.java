@@ -0,0 +1,48 @@
+package edu.university.iot.service;
+
+import edu.university.iot.entity.DeviceMessage;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.function.Predicate;
+
+/**
+ * In-memory device state that survives a restart through
+ * {@link StateSnapshotService}: it is written to periodic snapshots, loaded
+ * from the latest one on startup and brought up to date by replaying the raw
+ * telemetry stored since.
+ *
+ * Snapshots are taken while telemetry is being processed, so replay may hand
+ * over messages whose effect is already in the snapshot; applying a message
+ * twice must leave the same state as applying it once.
+ */
+public interface SnapshotParticipant {
+
+    /**
+     * Name of this participant's section in the snapshot file; keep it stable
+     * across versions.
+     */
+    String snapshotSection();
+
+    void writeSnapshot(DataOutput out) throws IOException;
+
+    /**
+     * Replaces the current state with the one read. If reading fails, the
+     * current state is left as it was.
+     */
+    void readSnapshot(DataInput in) throws IOException;
+
+    /**
+     * Applies a message received after the snapshot, without the side effects
+     * (rows, alerts) it had when it was first processed.
+     */
+    void replay(DeviceMessage message);
+
+    /**
+     * Drops the state of devices this node does not own in clustering mode.
+     *
+     * @return number of devices dropped
+     */
+    int retainDevices(Predicate<String> owned);
+}
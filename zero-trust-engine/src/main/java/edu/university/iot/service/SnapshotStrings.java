@@ -0,0 +1,101 @@
+package edu.university.iot.service;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Inline string dictionary for snapshot sections. The first occurrence of a
+ * string is written in full, later ones as its number, so repeated locations,
+ * profiles and risk levels cost one or two bytes each. Null is code 0.
+ */
+final class SnapshotStrings {
+
+    private SnapshotStrings() {
+    }
+
+    static final class Writer {
+        private final DataOutput out;
+        private final Map<String, Integer> codes = new HashMap<>();
+
+        Writer(DataOutput out) {
+            this.out = out;
+        }
+
+        void write(String value) throws IOException {
+            if (value == null) {
+                writeVarInt(out, 0);
+                return;
+            }
+            Integer code = codes.get(value);
+            if (code != null) {
+                writeVarInt(out, code + 1);
+                return;
+            }
+            // Code of a new string is the next unused one; the reader assigns it the same way
+            codes.put(value, codes.size() + 1);
+            writeVarInt(out, 1);
+            out.writeUTF(value);
+        }
+    }
+
+    static final class Reader {
+        private final DataInput in;
+        private final List<String> values = new ArrayList<>();
+
+        Reader(DataInput in) {
+            this.in = in;
+        }
+
+        String read() throws IOException {
+            int code = readVarInt(in);
+            if (code == 0) {
+                return null;
+            }
+            if (code == 1) {
+                String value = in.readUTF();
+                values.add(value);
+                return value;
+            }
+            if (code - 2 >= values.size()) {
+                throw new IOException("Snapshot string code " + code + " is not defined");
+            }
+            return values.get(code - 2);
+        }
+    }
+
+    static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in snapshot");
+    }
+
+    static void writeNullableDouble(DataOutput out, Double value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeDouble(value);
+        }
+    }
+
+    static Double readNullableDouble(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readDouble() : null;
+    }
+}
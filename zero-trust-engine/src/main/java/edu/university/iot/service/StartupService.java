@@ -0,0 +1,124 @@
+package edu.university.iot.service;
+
+import edu.university.iot.repository.DeviceRegistryRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Warms the engine's in-memory state before telemetry is consumed and
+ * measures how long startup takes.
+ *
+ * Warm-up runs on {@link ApplicationReadyEvent}, which Spring Boot publishes
+ * before it switches readiness to ACCEPTING_TRAFFIC, so readiness reports UP
+ * only once warm-up is done. It restores device state from the latest
+ * snapshot, and parses the firmware versions and patch statuses registered
+ * devices expect. That first query also waits for JPA, which the
+ * fast-startup profile bootstraps in the background.
+ * {@link EventListenerService} starts consuming when readiness reports UP,
+ * so the first event is evaluated against warm state.
+ *
+ * Time to first event runs from JVM start to the end of the first processed
+ * Event Hub batch.
+ */
+@Service
+public class StartupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(StartupService.class);
+
+    private final StateSnapshotService stateSnapshots;
+    private final DeviceRegistryRepository registryRepo;
+    private final FirmwareVersions firmwareVersions;
+    private final long jvmStartMillis = ManagementFactory.getRuntimeMXBean().getStartTime();
+
+    private final AtomicBoolean firstEventSeen = new AtomicBoolean();
+    private volatile boolean warmedUp;
+    // Milliseconds since JVM start
+    private volatile Long readyMillis;
+    private volatile Long ingestionStartedMillis;
+    private volatile Long firstEventMillis;
+    private volatile Long warmUpMillis;
+
+    public StartupService(StateSnapshotService stateSnapshots,
+                          DeviceRegistryRepository registryRepo,
+                          FirmwareVersions firmwareVersions) {
+        this.stateSnapshots = stateSnapshots;
+        this.registryRepo = registryRepo;
+        this.firmwareVersions = firmwareVersions;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        readyMillis = sinceJvmStart();
+        long start = System.nanoTime();
+
+        // In-memory device state must be warm before the first event is evaluated
+        stateSnapshots.restore();
+        int expectations = warmFirmwareVersions();
+
+        warmUpMillis = (System.nanoTime() - start) / 1_000_000;
+        warmedUp = true;
+        logger.info("Application ready {} ms after JVM start; warm-up took {} ms ({} firmware expectations)",
+                    readyMillis, warmUpMillis, expectations);
+    }
+
+    private int warmFirmwareVersions() {
+        try {
+            List<Object[]> expectations = registryRepo.findDistinctExpectations();
+            for (Object[] row : expectations) {
+                firmwareVersions.intern((String) row[0]);
+                firmwareVersions.internPatchStatus((String) row[1]);
+            }
+            return expectations.size();
+        } catch (RuntimeException e) {
+            logger.warn("Cannot warm firmware versions from the device registry: {}", e.getMessage());
+            return 0;
+        }
+    }
+
+    public void recordIngestionStarted() {
+        if (ingestionStartedMillis == null) {
+            ingestionStartedMillis = sinceJvmStart();
+        }
+    }
+
+    /**
+     * Called after every processed batch; only the first one is recorded.
+     */
+    public void recordBatchProcessed() {
+        if (firstEventSeen.get() || !firstEventSeen.compareAndSet(false, true)) {
+            return;
+        }
+        firstEventMillis = sinceJvmStart();
+        logger.info("First telemetry batch processed {} ms after JVM start (ready at {} ms, warm-up {} ms, " +
+                    "consuming since {} ms)", firstEventMillis, readyMillis, warmUpMillis, ingestionStartedMillis);
+    }
+
+    private long sinceJvmStart() {
+        return System.currentTimeMillis() - jvmStartMillis;
+    }
+
+    /**
+     * Startup milestones in milliseconds since JVM start, for monitoring and
+     * for comparing startup modes
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("jvmStartedAt", Instant.ofEpochMilli(jvmStartMillis));
+        stats.put("readyMillis", readyMillis);
+        stats.put("warmUpMillis", warmUpMillis);
+        stats.put("warmedUp", warmedUp);
+        stats.put("ingestionStartedMillis", ingestionStartedMillis);
+        stats.put("firstEventMillis", firstEventMillis);
+        return stats;
+    }
+}
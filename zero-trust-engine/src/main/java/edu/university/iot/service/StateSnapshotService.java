@@ -0,0 +1,352 @@
+package edu.university.iot.service;
+
+import edu.university.iot.config.StateSnapshotConfig;
+import edu.university.iot.entity.DeviceMessage;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Saves the in-memory state of every {@link SnapshotParticipant} to a binary
+ * snapshot file and restores it on startup.
+ *
+ * A snapshot records where raw telemetry storage stood when it was taken, and
+ * everything stored after that position is replayed on restore. The position
+ * is read before any state; messages counted twice are harmless because
+ * replay is idempotent.
+ *
+ * With the {@link TelemetryEventLog} the position is its durable offset, and
+ * every record below it is on disk. With MySQL it is a {@code device_message}
+ * id, but ids are assigned at insert and become visible at commit, so a row
+ * below the highest visible id can still commit afterwards. The snapshot
+ * therefore records the highest id that was visible commit-timeout-seconds
+ * earlier: every insert that could still commit started after that and got a
+ * higher id. A restore replays up to a commit timeout of telemetry more than
+ * strictly needed. Only a row whose insert stays open longer than the commit
+ * timeout can be missed, as with the rollup gap timeout.
+ *
+ * File layout: magic, version, creation time, source and position, then one
+ * length-prefixed section per participant, then a CRC32C of everything
+ * before it. Sections of participants that no longer exist are skipped. The
+ * file is written to a temporary name and moved over the previous snapshot.
+ */
+@Service
+public class StateSnapshotService {
+
+    private static final Logger logger = LoggerFactory.getLogger(StateSnapshotService.class);
+
+    private static final int MAGIC = 0x5A545353; // "ZTSS"
+    private static final int VERSION = 1;
+    private static final String FILE_NAME = "device-state.snap";
+
+    private static final int SOURCE_EVENT_LOG = 1;
+    private static final int SOURCE_DATABASE = 2;
+
+    private final StateSnapshotConfig config;
+    private final List<SnapshotParticipant> participants;
+    private final TelemetryEventLog eventLog;
+    private final TelemetryArchiveService archiveService;
+    private final ClusterMembershipService cluster;
+    private final Path file;
+
+    private final ReentrantLock snapshotLock = new ReentrantLock();
+    // {epoch millis, highest device_message id} taken at each snapshot, oldest first
+    private final ArrayDeque<long[]> messageIdSamples = new ArrayDeque<>();
+    // Snapshots are only written once the previous one has been restored
+    private volatile boolean restored;
+
+    private volatile Instant lastSnapshotAt;
+    private volatile long lastSnapshotBytes;
+    private volatile long lastSnapshotMillis;
+    private volatile Map<String, Object> restoreStats = Map.of();
+
+    public StateSnapshotService(StateSnapshotConfig config,
+                                List<SnapshotParticipant> participants,
+                                TelemetryEventLog eventLog,
+                                TelemetryArchiveService archiveService,
+                                ClusterMembershipService cluster) {
+        this.config = config;
+        this.participants = participants;
+        this.eventLog = eventLog;
+        this.archiveService = archiveService;
+        this.cluster = cluster;
+        this.file = Paths.get(config.getDirectory()).resolve(FILE_NAME);
+    }
+
+    /**
+     * Loads the latest snapshot and replays the telemetry stored since. Call
+     * once, before telemetry processing starts.
+     */
+    public void restore() {
+        if (restored) {
+            return;
+        }
+        try {
+            if (config.isEnabled()) {
+                if (Files.isRegularFile(file)) {
+                    restoreFrom(file);
+                } else {
+                    logger.info("No state snapshot at {}; device state starts empty", file.toAbsolutePath());
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.error("Cannot restore state snapshot {}; device state starts empty: {}", file, e.getMessage(), e);
+        } finally {
+            restored = true;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${state.snapshot.interval-ms:60000}")
+    public void scheduledSnapshot() {
+        if (config.isEnabled() && restored) {
+            try {
+                snapshot();
+            } catch (RuntimeException e) {
+                logger.error("State snapshot failed: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Final snapshot once telemetry processing has stopped, so a clean restart
+     * replays nothing.
+     */
+    @PreDestroy
+    public void shutdown() {
+        scheduledSnapshot();
+    }
+
+    /**
+     * Writes a snapshot now.
+     *
+     * @throws IllegalStateException if snapshots are disabled or the previous one is not restored yet
+     */
+    public Map<String, Object> snapshot() {
+        if (!config.isEnabled() || !restored) {
+            throw new IllegalStateException("State snapshots are disabled or not restored yet");
+        }
+        snapshotLock.lock();
+        try {
+            long start = System.nanoTime();
+            int source = currentSource();
+            long position = currentPosition(source);
+
+            Files.createDirectories(file.getParent());
+            Path temp = file.resolveSibling(FILE_NAME + ".tmp");
+            CRC32C crc = new CRC32C();
+            try (FileOutputStream fileOut = new FileOutputStream(temp.toFile());
+                 DataOutputStream out = new DataOutputStream(
+                     new CheckedOutputStream(new BufferedOutputStream(fileOut, 1 << 16), crc))) {
+                out.writeInt(MAGIC);
+                out.writeShort(VERSION);
+                out.writeLong(System.currentTimeMillis());
+                out.writeByte(source);
+                out.writeLong(position);
+                out.writeInt(participants.size());
+                for (SnapshotParticipant participant : participants) {
+                    ByteArrayOutputStream section = new ByteArrayOutputStream();
+                    participant.writeSnapshot(new DataOutputStream(section));
+                    out.writeUTF(participant.snapshotSection());
+                    out.writeInt(section.size());
+                    section.writeTo(out);
+                }
+                out.writeInt((int) crc.getValue());
+                out.flush();
+                fileOut.getChannel().force(true);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            lastSnapshotAt = Instant.now();
+            lastSnapshotBytes = Files.size(file);
+            lastSnapshotMillis = (System.nanoTime() - start) / 1_000_000;
+            logger.debug("Wrote state snapshot of {} bytes in {} ms at position {}",
+                         lastSnapshotBytes, lastSnapshotMillis, position);
+            return getStatistics();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write state snapshot " + file, e);
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    private void restoreFrom(Path snapshot) throws IOException {
+        long start = System.nanoTime();
+        byte[] bytes = Files.readAllBytes(snapshot);
+        if (bytes.length < 4) {
+            throw new IOException("snapshot is truncated");
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(bytes, 0, bytes.length - 4);
+        int stored = ((bytes[bytes.length - 4] & 0xff) << 24) | ((bytes[bytes.length - 3] & 0xff) << 16)
+                   | ((bytes[bytes.length - 2] & 0xff) << 8) | (bytes[bytes.length - 1] & 0xff);
+        if ((int) crc.getValue() != stored) {
+            throw new IOException("snapshot checksum does not match");
+        }
+
+        ByteArrayInputStream buffer = new ByteArrayInputStream(bytes, 0, bytes.length - 4);
+        DataInputStream in = new DataInputStream(buffer);
+        if (in.readInt() != MAGIC) {
+            throw new IOException("not a state snapshot");
+        }
+        int version = in.readUnsignedShort();
+        if (version != VERSION) {
+            throw new IOException("unsupported snapshot version " + version);
+        }
+        Instant createdAt = Instant.ofEpochMilli(in.readLong());
+        int source = in.readUnsignedByte();
+        long position = in.readLong();
+        if (source == SOURCE_DATABASE) {
+            // Snapshots inside the first commit timeout cannot trust a newer id than the one restored from
+            messageIdSamples.add(new long[] {System.currentTimeMillis(), position});
+        }
+
+        Map<String, SnapshotParticipant> byName = new HashMap<>();
+        participants.forEach(p -> byName.put(p.snapshotSection(), p));
+        int sections = in.readInt();
+        for (int i = 0; i < sections; i++) {
+            String name = in.readUTF();
+            int length = in.readInt();
+            int offset = bytes.length - 4 - buffer.available();
+            SnapshotParticipant participant = byName.get(name);
+            if (participant == null) {
+                logger.warn("Skipping state snapshot section {} with no participant", name);
+            } else {
+                try {
+                    participant.readSnapshot(new DataInputStream(new ByteArrayInputStream(bytes, offset, length)));
+                } catch (IOException | RuntimeException e) {
+                    logger.error("Cannot restore state snapshot section {}: {}", name, e.getMessage(), e);
+                }
+            }
+            in.skipNBytes(length);
+        }
+        if (cluster.isEnabled()) {
+            // Devices may have moved to other nodes while this one was down
+            participants.forEach(p -> p.retainDevices(cluster::owns));
+        }
+        long loadMillis = (System.nanoTime() - start) / 1_000_000;
+
+        long replayStart = System.nanoTime();
+        long replayed = replaySince(source, position);
+        long replayMillis = (System.nanoTime() - replayStart) / 1_000_000;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("snapshotCreatedAt", createdAt);
+        stats.put("snapshotBytes", bytes.length);
+        stats.put("loadMillis", loadMillis);
+        stats.put("replayedMessages", replayed);
+        stats.put("replayMillis", replayMillis);
+        restoreStats = stats;
+        logger.info("Restored device state from snapshot of {} ({} bytes) in {} ms, then replayed {} messages in {} ms",
+                    createdAt, bytes.length, loadMillis, replayed, replayMillis);
+    }
+
+    /**
+     * Hands every message stored after the position to the participants.
+     *
+     * @return number of messages replayed
+     */
+    private long replaySince(int source, long position) {
+        int current = currentSource();
+        if (source != current) {
+            logger.warn("State snapshot was taken with raw telemetry in {}, now in {}; nothing is replayed",
+                        sourceName(source), sourceName(current));
+            return 0;
+        }
+        long[] replayed = { 0 };
+        if (source == SOURCE_EVENT_LOG) {
+            long offset = position;
+            int batch = Math.max(1, config.getReplayBatchSize());
+            while (true) {
+                long next = eventLog.replay(offset, batch,
+                    (recordOffset, partitionId, sequenceNumber, message) -> replayed[0] += apply(message));
+                if (next == offset) {
+                    break;
+                }
+                offset = next;
+            }
+        } else {
+            archiveService.forEachMessageAfter(position, message -> replayed[0] += apply(message));
+        }
+        return replayed[0];
+    }
+
+    private int apply(DeviceMessage message) {
+        if (!cluster.owns(message.getDeviceId())) {
+            return 0;
+        }
+        for (SnapshotParticipant participant : participants) {
+            participant.replay(message);
+        }
+        return 1;
+    }
+
+    private int currentSource() {
+        return eventLog.isEnabled() ? SOURCE_EVENT_LOG : SOURCE_DATABASE;
+    }
+
+    private long currentPosition(int source) {
+        if (source == SOURCE_EVENT_LOG) {
+            return eventLog.getDurableOffset();
+        }
+        long now = System.currentTimeMillis();
+        messageIdSamples.addLast(new long[] {now, archiveService.latestMessageId()});
+        return committedMessageId(now);
+    }
+
+    /**
+     * Newest sampled id taken at least the commit timeout before {@code now},
+     * or the oldest sample while none is that old; older samples are dropped.
+     */
+    private long committedMessageId(long now) {
+        long cutoff = now - Math.max(0, config.getCommitTimeoutSeconds()) * 1000;
+        long[] committed = messageIdSamples.pollFirst();
+        while (!messageIdSamples.isEmpty() && messageIdSamples.peekFirst()[0] <= cutoff) {
+            committed = messageIdSamples.pollFirst();
+        }
+        messageIdSamples.addFirst(committed);
+        return committed[1];
+    }
+
+    private static String sourceName(int source) {
+        return source == SOURCE_EVENT_LOG ? "the event log" : source == SOURCE_DATABASE ? "MySQL" : "unknown";
+    }
+
+    /**
+     * Last snapshot and the restore on startup, for monitoring
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", config.isEnabled());
+        stats.put("file", file.toAbsolutePath().toString());
+        stats.put("participants", participants.stream().map(SnapshotParticipant::snapshotSection).toList());
+        stats.put("lastSnapshotAt", lastSnapshotAt);
+        stats.put("lastSnapshotBytes", lastSnapshotBytes);
+        stats.put("lastSnapshotMillis", lastSnapshotMillis);
+        stats.put("restore", restoreStats);
+        return stats;
+    }
+}
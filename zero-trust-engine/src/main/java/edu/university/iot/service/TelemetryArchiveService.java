@@ -0,0 +1,835 @@
+package edu.university.iot.service;
+
+import edu.university.iot.config.TelemetryArchiveConfig;
+import edu.university.iot.entity.CoordinateData;
+import edu.university.iot.entity.DeviceMessage;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TimeZone;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Moves aged device telemetry out of MySQL into columnar segment files, and
+ * answers telemetry queries across both.
+ *
+ * Each UTC day older than archive-after-days is streamed out of
+ * device_message ordered by device and written as one {@link TelemetrySegment}
+ * per device bucket into a temp directory. A manifest recording the archived
+ * row ids as ranges is added and the directory renamed into place atomically,
+ * so a day directory exists only once all of its segments are on disk. Only
+ * then are exactly those rows deleted from MySQL in bounded batches; the
+ * manifest is marked purged afterwards and an interrupted purge is resumed by
+ * the next run. Ids are handed out at insert, not at commit, so a row of an
+ * archived day can commit after the day was read with an id below ones already
+ * archived (a dead-letter replay writes rows with their original timestamps).
+ * Such rows are not in any range, stay in MySQL and are still found by
+ * queries.
+ *
+ * Queries read archived days from the mapped segments and everything else from
+ * MySQL, skipping MySQL rows an archived day already covers. When raw telemetry
+ * goes to the {@link TelemetryEventLog} instead of MySQL, its records are
+ * included as well.
+ */
+@Service
+public class TelemetryArchiveService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TelemetryArchiveService.class);
+
+    private static final String MANIFEST = "manifest.properties";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private static final String COLUMNS =
+        "id, device_id, `timestamp`, certificate_valid, patch_status, firmware_version, ip_address, location, "
+            + "cpu_usage, memory_usage, network_traffic_volume, anomaly_score, malware_signature_detected, "
+            + "session_duration, lat, lng, subnet, suspicious_activity_score, consecutive_anomalies, device_profile";
+
+    // Binary order keeps each device's rows together whatever the column collation
+    private static final String DAY_SQL = "SELECT " + COLUMNS + " FROM device_message "
+        + "WHERE `timestamp` >= ? AND `timestamp` < ? ORDER BY CAST(device_id AS BINARY), `timestamp`, id";
+
+    private static final String DEVICE_SQL = "SELECT " + COLUMNS + " FROM device_message "
+        + "WHERE device_id = ? AND `timestamp` >= ? AND `timestamp` < ? ORDER BY `timestamp` DESC, id DESC LIMIT ?";
+
+    private final JdbcTemplate jdbc;
+    private final JdbcTemplate streamingJdbc;
+    private final TelemetryArchiveConfig config;
+    private final TelemetryEventLog eventLog;
+    private final Path root;
+
+    // Archived days by date, loaded from the manifests on startup
+    private final ConcurrentSkipListMap<LocalDate, DayManifest> archivedDays = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<Path, TelemetrySegment.Reader> readers = new ConcurrentHashMap<>();
+
+    private final ReentrantLock runLock = new ReentrantLock();
+
+    public TelemetryArchiveService(JdbcTemplate jdbc, TelemetryArchiveConfig config, TelemetryEventLog eventLog) {
+        this.jdbc = jdbc;
+        // MySQL Connector/J only streams a result set row by row with this fetch size
+        this.streamingJdbc = new JdbcTemplate(jdbc.getDataSource());
+        this.streamingJdbc.setFetchSize(Integer.MIN_VALUE);
+        this.config = config;
+        this.eventLog = eventLog;
+        this.root = Paths.get(config.getDirectory());
+    }
+
+    @PostConstruct
+    public void loadManifests() {
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(root)) {
+            for (Path entry : entries) {
+                String name = entry.getFileName().toString();
+                if (name.endsWith(TEMP_SUFFIX)) {
+                    // Left behind by a run that did not finish
+                    deleteRecursively(entry);
+                    continue;
+                }
+                Path manifest = entry.resolve(MANIFEST);
+                if (Files.isRegularFile(manifest)) {
+                    DayManifest day = DayManifest.read(manifest);
+                    archivedDays.put(day.day, day);
+                }
+            }
+            logger.info("Telemetry archive at {} holds {} days", root.toAbsolutePath(), archivedDays.size());
+        } catch (IOException | RuntimeException e) {
+            logger.error("Cannot read telemetry archive at {}: {}", root, e.getMessage(), e);
+        }
+    }
+
+    @Scheduled(cron = "${telemetry.archive.cron:0 45 0 * * *}", zone = "UTC")
+    public void scheduledArchive() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        archive();
+    }
+
+    /**
+     * Archives the oldest days past archive-after-days, at most max-days-per-run,
+     * and finishes purges left over from earlier runs.
+     *
+     * @return per-day summary of rows archived and purged
+     */
+    public Map<String, Object> archive() {
+        runLock.lock();
+        try {
+            return archiveLocked();
+        } finally {
+            runLock.unlock();
+        }
+    }
+
+    private Map<String, Object> archiveLocked() {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        for (DayManifest day : archivedDays.values()) {
+            if (!day.purged) {
+                try {
+                    summary.put(day.day.toString(), Map.of("rowsPurged", purge(day)));
+                } catch (Exception e) {
+                    logger.error("Purging archived telemetry of {} failed: {}", day.day, e.getMessage(), e);
+                    summary.put(day.day.toString(), Map.of("error", String.valueOf(e.getMessage())));
+                }
+            }
+        }
+
+        LocalDate cutoff = LocalDate.now(ZoneOffset.UTC).minusDays(Math.max(1, config.getArchiveAfterDays()));
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        Instant oldest = jdbc.query("SELECT MIN(`timestamp`) FROM device_message WHERE `timestamp` < ?",
+            ps -> ps.setTimestamp(1, Timestamp.from(cutoff.atStartOfDay(ZoneOffset.UTC).toInstant()), utc),
+            rs -> {
+                Timestamp min = rs.next() ? rs.getTimestamp(1, utc) : null;
+                return min != null ? min.toInstant() : null;
+            });
+        if (oldest == null) {
+            return summary;
+        }
+
+        int archived = 0;
+        for (LocalDate day = oldest.atOffset(ZoneOffset.UTC).toLocalDate();
+             day.isBefore(cutoff) && archived < config.getMaxDaysPerRun(); day = day.plusDays(1)) {
+            if (archivedDays.containsKey(day)) {
+                continue;
+            }
+            archived++;
+            try {
+                DayManifest manifest = archiveDay(day);
+                Map<String, Object> result = new LinkedHashMap<>();
+                result.put("rowsArchived", manifest.rows);
+                result.put("devices", manifest.devices);
+                result.put("bytes", manifest.bytes);
+                result.put("rowsPurged", purge(manifest));
+                summary.put(day.toString(), result);
+            } catch (Exception e) {
+                logger.error("Archiving telemetry of {} failed: {}", day, e.getMessage(), e);
+                summary.put(day.toString(), Map.of("error", String.valueOf(e.getMessage())));
+                break;
+            }
+        }
+        return summary;
+    }
+
+    private DayManifest archiveDay(LocalDate day) throws IOException {
+        long start = System.nanoTime();
+        int buckets = Math.max(1, config.getBuckets());
+        Path target = root.resolve(day.toString());
+        Path temp = root.resolve(day + TEMP_SUFFIX);
+        deleteRecursively(temp);
+        Files.createDirectories(temp);
+
+        DayWriter writer = new DayWriter(temp, buckets);
+        try {
+            Instant from = day.atStartOfDay(ZoneOffset.UTC).toInstant();
+            Instant to = from.plus(Duration.ofDays(1));
+            Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+            streamingJdbc.query(con -> {
+                var ps = con.prepareStatement(DAY_SQL);
+                ps.setTimestamp(1, Timestamp.from(from), utc);
+                ps.setTimestamp(2, Timestamp.from(to), utc);
+                return ps;
+            }, (RowCallbackHandler) rs -> writer.add(mapRow(rs, utc)));
+            writer.finish();
+        } finally {
+            writer.close();
+        }
+
+        DayManifest manifest = new DayManifest(day, writer.rows, writer.devices, writer.maxId, buckets,
+                                               writer.bytes(), false, IdRanges.of(writer.ids, (int) writer.rows));
+        manifest.write(temp.resolve(MANIFEST));
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        archivedDays.put(day, manifest);
+
+        logger.info("Archived {} telemetry rows of {} devices for {} into {} bytes in {} ms",
+                    manifest.rows, manifest.devices, day, manifest.bytes, (System.nanoTime() - start) / 1_000_000);
+        return manifest;
+    }
+
+    /**
+     * Deletes an archived day's rows from MySQL, only the ids its segments
+     * hold, and marks the manifest purged.
+     */
+    private long purge(DayManifest day) throws IOException {
+        long total = 0;
+        if (day.rows > 0) {
+            Instant from = day.day.atStartOfDay(ZoneOffset.UTC).toInstant();
+            Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+            String sql = "DELETE FROM device_message WHERE `timestamp` >= ? AND `timestamp` < ? "
+                + "AND id BETWEEN ? AND ? LIMIT " + Math.max(1, config.getDeleteBatchSize());
+            for (int range = 0; range < day.ids.size(); range++) {
+                long first = day.ids.first(range);
+                long last = day.ids.last(range);
+                int deleted;
+                do {
+                    deleted = jdbc.update(sql, ps -> {
+                        ps.setTimestamp(1, Timestamp.from(from), utc);
+                        ps.setTimestamp(2, Timestamp.from(from.plus(Duration.ofDays(1))), utc);
+                        ps.setLong(3, first);
+                        ps.setLong(4, last);
+                    });
+                    total += deleted;
+                } while (deleted > 0);
+            }
+        }
+
+        DayManifest purged = day.markPurged();
+        purged.write(root.resolve(day.day.toString()).resolve(MANIFEST));
+        archivedDays.put(day.day, purged);
+        if (total > 0) {
+            logger.info("Purged {} archived telemetry rows of {} from device_message", total, day.day);
+        }
+        return total;
+    }
+
+    /**
+     * Telemetry of one device with from <= timestamp < to, from MySQL and the
+     * archive; the newest {@code limit} rows, oldest first.
+     *
+     * @throws IllegalArgumentException if the window is empty or longer than max-query-days
+     */
+    public List<DeviceMessage> findMessages(String deviceId, Instant from, Instant to, int limit) {
+        validateWindow(from, to);
+        int max = Math.max(1, Math.min(limit, config.getMaxQueryRows()));
+
+        List<DeviceMessage> result = new ArrayList<>();
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        jdbc.query(DEVICE_SQL, ps -> {
+            ps.setString(1, deviceId);
+            ps.setTimestamp(2, Timestamp.from(from), utc);
+            ps.setTimestamp(3, Timestamp.from(to), utc);
+            ps.setInt(4, max);
+        }, (RowCallbackHandler) rs -> {
+            DeviceMessage message = mapRow(rs, utc);
+            if (!coveredByArchive(message)) {
+                result.add(message);
+            }
+        });
+
+        if (eventLog.isEnabled()) {
+            result.addAll(eventLog.read(deviceId, from, to, max));
+        }
+
+        // Newest archived days first; once they fill the limit, older days cannot make the cut
+        int archived = 0;
+        for (DayManifest day : archivedDays(from, to).descendingMap().values()) {
+            if (archived >= max) {
+                break;
+            }
+            List<DeviceMessage> rows = readArchivedDay(day, deviceId, from, to);
+            result.addAll(rows);
+            archived += rows.size();
+        }
+
+        // Messages from the event log have no row id
+        result.sort(Comparator.comparing(DeviceMessage::getTimestamp)
+                              .thenComparing(DeviceMessage::getId, Comparator.nullsLast(Comparator.naturalOrder())));
+        return result.size() > max ? new ArrayList<>(result.subList(result.size() - max, result.size())) : result;
+    }
+
+    /**
+     * Aggregates over all telemetry of one device in the window, archived or not.
+     *
+     * @throws IllegalArgumentException if the window is empty or longer than max-query-days
+     */
+    public Map<String, Object> summarize(String deviceId, Instant from, Instant to) {
+        validateWindow(from, to);
+        TelemetrySummary summary = new TelemetrySummary();
+
+        for (DayManifest day : archivedDays(from, to).values()) {
+            for (DeviceMessage message : readArchivedDay(day, deviceId, from, to)) {
+                summary.add(message, TelemetrySummary.ARCHIVE);
+            }
+        }
+        if (eventLog.isEnabled()) {
+            for (DeviceMessage message : eventLog.read(deviceId, from, to, Integer.MAX_VALUE)) {
+                summary.add(message, TelemetrySummary.EVENT_LOG);
+            }
+        }
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        streamingJdbc.query(con -> {
+            var ps = con.prepareStatement("SELECT " + COLUMNS + " FROM device_message "
+                + "WHERE device_id = ? AND `timestamp` >= ? AND `timestamp` < ?");
+            ps.setString(1, deviceId);
+            ps.setTimestamp(2, Timestamp.from(from), utc);
+            ps.setTimestamp(3, Timestamp.from(to), utc);
+            return ps;
+        }, (RowCallbackHandler) rs -> {
+            DeviceMessage message = mapRow(rs, utc);
+            if (!coveredByArchive(message)) {
+                summary.add(message, TelemetrySummary.DATABASE);
+            }
+        });
+
+        Map<String, Object> result = summary.toMap();
+        result.put("deviceId", deviceId);
+        result.put("from", from);
+        result.put("to", to);
+        return result;
+    }
+
+    /**
+     * Id of the newest {@code device_message} row, or 0 if the table is empty.
+     */
+    public long latestMessageId() {
+        Long id = jdbc.queryForObject("SELECT MAX(id) FROM device_message", Long.class);
+        return id != null ? id : 0L;
+    }
+
+    /**
+     * Streams the {@code device_message} rows with an id above {@code afterId}
+     * in id order; rows already moved to the archive are not included.
+     *
+     * @return id of the last row handed over, or {@code afterId} if there was none
+     */
+    public long forEachMessageAfter(long afterId, Consumer<DeviceMessage> handler) {
+        long[] last = { afterId };
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        streamingJdbc.query(con -> {
+            var ps = con.prepareStatement("SELECT " + COLUMNS + " FROM device_message WHERE id > ? ORDER BY id");
+            ps.setLong(1, afterId);
+            return ps;
+        }, (RowCallbackHandler) rs -> {
+            DeviceMessage message = mapRow(rs, utc);
+            handler.accept(message);
+            last[0] = message.getId();
+        });
+        return last[0];
+    }
+
+    /**
+     * Archived days, sizes and the archive settings, for monitoring
+     */
+    public Map<String, Object> getStatistics() {
+        long rows = 0;
+        long bytes = 0;
+        int unpurged = 0;
+        for (DayManifest day : archivedDays.values()) {
+            rows += day.rows;
+            bytes += day.bytes;
+            if (!day.purged) {
+                unpurged++;
+            }
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", config.isEnabled());
+        stats.put("directory", root.toAbsolutePath().toString());
+        stats.put("archiveAfterDays", config.getArchiveAfterDays());
+        stats.put("archivedDays", archivedDays.size());
+        stats.put("oldestDay", archivedDays.isEmpty() ? null : archivedDays.firstKey().toString());
+        stats.put("newestDay", archivedDays.isEmpty() ? null : archivedDays.lastKey().toString());
+        stats.put("archivedRows", rows);
+        stats.put("archivedBytes", bytes);
+        stats.put("bytesPerRow", rows > 0 ? (double) bytes / rows : 0.0);
+        stats.put("daysPendingPurge", unpurged);
+        stats.put("openSegments", readers.size());
+        return stats;
+    }
+
+    private void validateWindow(Instant from, Instant to) {
+        if (from == null || to == null || !from.isBefore(to)) {
+            throw new IllegalArgumentException("Query window must have from before to");
+        }
+        if (Duration.between(from, to).toDays() > config.getMaxQueryDays()) {
+            throw new IllegalArgumentException("Query window is longer than " + config.getMaxQueryDays() + " days");
+        }
+    }
+
+    private ConcurrentSkipListMap<LocalDate, DayManifest> archivedDays(Instant from, Instant to) {
+        LocalDate first = from.atOffset(ZoneOffset.UTC).toLocalDate();
+        LocalDate last = to.minusNanos(1).atOffset(ZoneOffset.UTC).toLocalDate();
+        return new ConcurrentSkipListMap<>(archivedDays.subMap(first, true, last, true));
+    }
+
+    private boolean coveredByArchive(DeviceMessage message) {
+        DayManifest day = archivedDays.get(message.getTimestamp().atOffset(ZoneOffset.UTC).toLocalDate());
+        return day != null && day.ids.contains(message.getId());
+    }
+
+    private List<DeviceMessage> readArchivedDay(DayManifest day, String deviceId, Instant from, Instant to) {
+        if (day.rows == 0) {
+            return List.of();
+        }
+        Path segment = root.resolve(day.day.toString()).resolve(segmentName(bucketOf(deviceId, day.buckets)));
+        if (!Files.exists(segment)) {
+            // No device of this bucket reported that day
+            return List.of();
+        }
+        try {
+            return reader(segment).read(deviceId, from, to);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read telemetry segment " + segment, e);
+        }
+    }
+
+    private TelemetrySegment.Reader reader(Path segment) throws IOException {
+        TelemetrySegment.Reader reader = readers.get(segment);
+        if (reader == null) {
+            reader = TelemetrySegment.Reader.open(segment);
+            if (readers.size() >= config.getMaxOpenSegments()) {
+                // Mappings of dropped readers are released once they are garbage collected
+                readers.clear();
+            }
+            TelemetrySegment.Reader raced = readers.putIfAbsent(segment, reader);
+            if (raced != null) {
+                reader = raced;
+            }
+        }
+        return reader;
+    }
+
+    static int bucketOf(String deviceId, int buckets) {
+        return Math.floorMod(deviceId.hashCode(), buckets);
+    }
+
+    private static String segmentName(int bucket) {
+        return String.format("bucket-%03d.seg", bucket);
+    }
+
+    private static DeviceMessage mapRow(ResultSet rs, Calendar utc) throws SQLException {
+        DeviceMessage m = new DeviceMessage();
+        m.setId(rs.getLong(1));
+        m.setDeviceId(rs.getString(2));
+        m.setTimestamp(rs.getTimestamp(3, utc).toInstant());
+        m.setCertificateValid(rs.getBoolean(4));
+        m.setPatchStatus(rs.getString(5));
+        m.setFirmwareVersion(rs.getString(6));
+        m.setIpAddress(rs.getString(7));
+        m.setLocation(rs.getString(8));
+        m.setCpuUsage(rs.getDouble(9));
+        m.setMemoryUsage(rs.getDouble(10));
+        m.setNetworkTrafficVolume(rs.getDouble(11));
+        m.setAnomalyScore(rs.getDouble(12));
+        m.setMalwareSignatureDetected(rs.getBoolean(13));
+        m.setSessionDuration(rs.getInt(14));
+        double lat = rs.getDouble(15);
+        boolean hasLat = !rs.wasNull();
+        double lng = rs.getDouble(16);
+        boolean hasLng = !rs.wasNull();
+        String subnet = rs.getString(17);
+        if (hasLat || hasLng || subnet != null) {
+            m.setCoordinates(new CoordinateData(lat, lng, subnet));
+        }
+        m.setSuspiciousActivityScore(rs.getInt(18));
+        m.setConsecutiveAnomalies(rs.getInt(19));
+        m.setDeviceProfile(rs.getString(20));
+        return m;
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> walk = Files.walk(path)) {
+            for (Path p : (Iterable<Path>) walk.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(p);
+            }
+        }
+    }
+
+    /**
+     * Segment writers of one day being archived; rows arrive grouped by device.
+     */
+    private static final class DayWriter {
+        private final Path directory;
+        private final TelemetrySegment.Writer[] writers;
+        private final List<DeviceMessage> current = new ArrayList<>();
+        private String currentDevice;
+        private long rows;
+        private int devices;
+        private long maxId;
+        private long[] ids = new long[1024];
+
+        DayWriter(Path directory, int buckets) {
+            this.directory = directory;
+            this.writers = new TelemetrySegment.Writer[buckets];
+        }
+
+        void add(DeviceMessage message) {
+            if (currentDevice != null && !currentDevice.equals(message.getDeviceId())) {
+                flushDevice();
+            }
+            currentDevice = message.getDeviceId();
+            current.add(message);
+            if (rows == ids.length) {
+                ids = Arrays.copyOf(ids, ids.length * 2);
+            }
+            ids[(int) rows] = message.getId();
+            rows++;
+            maxId = Math.max(maxId, message.getId());
+        }
+
+        void finish() throws IOException {
+            if (currentDevice != null) {
+                flushDevice();
+            }
+            for (TelemetrySegment.Writer writer : writers) {
+                if (writer != null) {
+                    writer.finish();
+                }
+            }
+        }
+
+        long bytes() throws IOException {
+            long total = 0;
+            for (int bucket = 0; bucket < writers.length; bucket++) {
+                if (writers[bucket] != null) {
+                    total += Files.size(directory.resolve(segmentName(bucket)));
+                }
+            }
+            return total;
+        }
+
+        void close() throws IOException {
+            for (TelemetrySegment.Writer writer : writers) {
+                if (writer != null) {
+                    writer.close();
+                }
+            }
+        }
+
+        private void flushDevice() {
+            int bucket = bucketOf(currentDevice, writers.length);
+            try {
+                if (writers[bucket] == null) {
+                    writers[bucket] = new TelemetrySegment.Writer(directory.resolve(segmentName(bucket)));
+                }
+                writers[bucket].writeDevice(currentDevice, current);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot write telemetry segment for bucket " + bucket, e);
+            }
+            devices++;
+            current.clear();
+        }
+    }
+
+    /**
+     * Contents of an archived day's manifest.properties.
+     */
+    private static final class DayManifest {
+        final LocalDate day;
+        final long rows;
+        final int devices;
+        final long maxId;
+        final int buckets;
+        final long bytes;
+        final boolean purged;
+        final IdRanges ids;
+
+        DayManifest(LocalDate day, long rows, int devices, long maxId, int buckets, long bytes, boolean purged,
+                    IdRanges ids) {
+            this.day = day;
+            this.rows = rows;
+            this.devices = devices;
+            this.maxId = maxId;
+            this.buckets = buckets;
+            this.bytes = bytes;
+            this.purged = purged;
+            this.ids = ids;
+        }
+
+        DayManifest markPurged() {
+            return new DayManifest(day, rows, devices, maxId, buckets, bytes, true, ids);
+        }
+
+        static DayManifest read(Path file) throws IOException {
+            Properties p = new Properties();
+            try (InputStream in = Files.newInputStream(file)) {
+                p.load(in);
+            }
+            try {
+                long maxId = Long.parseLong(p.getProperty("maxId"));
+                // Manifests written before id ranges were recorded covered every id up to maxId
+                String ids = p.getProperty("ids");
+                return new DayManifest(LocalDate.parse(p.getProperty("day")),
+                                       Long.parseLong(p.getProperty("rows")),
+                                       Integer.parseInt(p.getProperty("devices")),
+                                       maxId,
+                                       Integer.parseInt(p.getProperty("buckets")),
+                                       Long.parseLong(p.getProperty("bytes")),
+                                       Boolean.parseBoolean(p.getProperty("purged")),
+                                       ids != null ? IdRanges.parse(ids) : IdRanges.upTo(maxId));
+            } catch (NumberFormatException | DateTimeParseException | NullPointerException e) {
+                throw new IOException("Corrupt archive manifest " + file, e);
+            }
+        }
+
+        /** Written through a temp file and an atomic rename. */
+        void write(Path file) throws IOException {
+            Properties p = new Properties();
+            p.setProperty("day", day.toString());
+            p.setProperty("rows", Long.toString(rows));
+            p.setProperty("devices", Integer.toString(devices));
+            p.setProperty("maxId", Long.toString(maxId));
+            p.setProperty("buckets", Integer.toString(buckets));
+            p.setProperty("bytes", Long.toString(bytes));
+            p.setProperty("purged", Boolean.toString(purged));
+            p.setProperty("ids", ids.format());
+            Path temp = file.resolveSibling(file.getFileName() + TEMP_SUFFIX);
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                p.store(out, "Telemetry archive day");
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    /**
+     * Sorted, disjoint ranges of consecutive row ids, written to the manifest
+     * as {@code first-last} pairs separated by commas.
+     */
+    static final class IdRanges {
+        private final long[] firsts;
+        private final long[] lasts;
+
+        private IdRanges(long[] firsts, long[] lasts) {
+            this.firsts = firsts;
+            this.lasts = lasts;
+        }
+
+        /** Ranges of the first {@code count} ids; the array is sorted in place. */
+        static IdRanges of(long[] ids, int count) {
+            Arrays.sort(ids, 0, count);
+            long[] firsts = new long[count];
+            long[] lasts = new long[count];
+            int ranges = 0;
+            for (int i = 0; i < count; i++) {
+                if (ranges > 0 && ids[i] <= lasts[ranges - 1] + 1) {
+                    lasts[ranges - 1] = Math.max(lasts[ranges - 1], ids[i]);
+                } else {
+                    firsts[ranges] = ids[i];
+                    lasts[ranges] = ids[i];
+                    ranges++;
+                }
+            }
+            return new IdRanges(Arrays.copyOf(firsts, ranges), Arrays.copyOf(lasts, ranges));
+        }
+
+        static IdRanges upTo(long maxId) {
+            return maxId > 0 ? new IdRanges(new long[] {1}, new long[] {maxId})
+                             : new IdRanges(new long[0], new long[0]);
+        }
+
+        static IdRanges parse(String value) {
+            String[] parts = value.isBlank() ? new String[0] : value.split(",");
+            long[] firsts = new long[parts.length];
+            long[] lasts = new long[parts.length];
+            for (int i = 0; i < parts.length; i++) {
+                int dash = parts[i].indexOf('-', 1);
+                firsts[i] = Long.parseLong(parts[i].substring(0, dash).trim());
+                lasts[i] = Long.parseLong(parts[i].substring(dash + 1).trim());
+                if (lasts[i] < firsts[i] || (i > 0 && firsts[i] <= lasts[i - 1])) {
+                    throw new NumberFormatException("Id ranges out of order at " + parts[i]);
+                }
+            }
+            return new IdRanges(firsts, lasts);
+        }
+
+        String format() {
+            StringBuilder out = new StringBuilder();
+            for (int i = 0; i < firsts.length; i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                out.append(firsts[i]).append('-').append(lasts[i]);
+            }
+            return out.toString();
+        }
+
+        boolean contains(long id) {
+            int i = Arrays.binarySearch(firsts, id);
+            if (i >= 0) {
+                return true;
+            }
+            int range = -i - 2;
+            return range >= 0 && id <= lasts[range];
+        }
+
+        int size() {
+            return firsts.length;
+        }
+
+        long first(int range) {
+            return firsts[range];
+        }
+
+        long last(int range) {
+            return lasts[range];
+        }
+    }
+
+    /**
+     * Running aggregates of a telemetry window.
+     */
+    private static final class TelemetrySummary {
+        static final int DATABASE = 0;
+        static final int ARCHIVE = 1;
+        static final int EVENT_LOG = 2;
+
+        private long messages;
+        private final long[] bySource = new long[3];
+        private double cpuSum;
+        private double cpuMax;
+        private double memorySum;
+        private double memoryMax;
+        private double trafficSum;
+        private double anomalySum;
+        private double anomalyMax;
+        private long malwareDetections;
+        private long invalidCertificates;
+        private Instant first;
+        private Instant last;
+        private final TreeSet<String> locations = new TreeSet<>();
+        private final TreeSet<String> ipAddresses = new TreeSet<>();
+        private final TreeSet<String> firmwareVersions = new TreeSet<>();
+
+        void add(DeviceMessage m, int source) {
+            messages++;
+            bySource[source]++;
+            cpuSum += m.getCpuUsage();
+            cpuMax = Math.max(cpuMax, m.getCpuUsage());
+            memorySum += m.getMemoryUsage();
+            memoryMax = Math.max(memoryMax, m.getMemoryUsage());
+            trafficSum += m.getNetworkTrafficVolume();
+            anomalySum += m.getAnomalyScore();
+            anomalyMax = Math.max(anomalyMax, m.getAnomalyScore());
+            if (m.isMalwareSignatureDetected()) {
+                malwareDetections++;
+            }
+            if (!m.isCertificateValid()) {
+                invalidCertificates++;
+            }
+            if (first == null || m.getTimestamp().isBefore(first)) {
+                first = m.getTimestamp();
+            }
+            if (last == null || m.getTimestamp().isAfter(last)) {
+                last = m.getTimestamp();
+            }
+            if (m.getLocation() != null) {
+                locations.add(m.getLocation());
+            }
+            if (m.getIpAddress() != null) {
+                ipAddresses.add(m.getIpAddress());
+            }
+            if (m.getFirmwareVersion() != null) {
+                firmwareVersions.add(m.getFirmwareVersion());
+            }
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("messages", messages);
+            map.put("fromDatabase", bySource[DATABASE]);
+            map.put("fromArchive", bySource[ARCHIVE]);
+            map.put("fromEventLog", bySource[EVENT_LOG]);
+            map.put("firstMessage", first);
+            map.put("lastMessage", last);
+            map.put("averageCpuUsage", messages > 0 ? cpuSum / messages : 0.0);
+            map.put("maxCpuUsage", cpuMax);
+            map.put("averageMemoryUsage", messages > 0 ? memorySum / messages : 0.0);
+            map.put("maxMemoryUsage", memoryMax);
+            map.put("totalNetworkTraffic", trafficSum);
+            map.put("averageAnomalyScore", messages > 0 ? anomalySum / messages : 0.0);
+            map.put("maxAnomalyScore", anomalyMax);
+            map.put("malwareDetections", malwareDetections);
+            map.put("invalidCertificates", invalidCertificates);
+            map.put("locations", locations);
+            map.put("ipAddresses", ipAddresses.size());
+            map.put("firmwareVersions", firmwareVersions);
+            return map;
+        }
+    }
+}
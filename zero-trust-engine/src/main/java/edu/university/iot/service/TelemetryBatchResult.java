@@ -0,0 +1,83 @@
+package edu.university.iot.service;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of {@link TelemetryProcessorService#processBatch}: how many events
+ * were applied, skipped or already applied before, and which ones failed and why.
+ */
+public final class TelemetryBatchResult {
+
+    private int processed;
+    private int skipped;
+    private final BitSet duplicates = new BitSet();
+    private final List<Failure> failures = new ArrayList<>();
+
+    void addProcessed() {
+        processed++;
+    }
+
+    void addSkipped() {
+        skipped++;
+    }
+
+    void addDuplicate(int index) {
+        duplicates.set(index);
+    }
+
+    void addFailure(int index, TelemetryEvent event, Exception error) {
+        failures.add(new Failure(index, event, error));
+    }
+
+    void merge(TelemetryBatchResult other) {
+        processed += other.processed;
+        skipped += other.skipped;
+        duplicates.or(other.duplicates);
+        failures.addAll(other.failures);
+    }
+
+    public int getProcessed() {
+        return processed;
+    }
+
+    /** Events of devices that were already quarantined. */
+    public int getSkipped() {
+        return skipped;
+    }
+
+    /** Events already applied by an earlier delivery (replay after a restart or rebalance). */
+    public int getDuplicates() {
+        return duplicates.cardinality();
+    }
+
+    public boolean isDuplicate(int index) {
+        return duplicates.get(index);
+    }
+
+    public List<Failure> getFailures() {
+        return Collections.unmodifiableList(failures);
+    }
+
+    /**
+     * An event that could not be processed; the rest of the batch was unaffected.
+     */
+    public static final class Failure {
+        private final int index;
+        private final TelemetryEvent event;
+        private final Exception error;
+
+        Failure(int index, TelemetryEvent event, Exception error) {
+            this.index = index;
+            this.event = event;
+            this.error = error;
+        }
+
+        /** Position of the event in the submitted batch. */
+        public int getIndex() { return index; }
+        public TelemetryEvent getEvent() { return event; }
+        public Exception getError() { return error; }
+    }
+}
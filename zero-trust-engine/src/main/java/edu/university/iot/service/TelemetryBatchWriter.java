@@ -0,0 +1,136 @@
+package edu.university.iot.service;
+
+import edu.university.iot.model.AnomalyLog;
+import edu.university.iot.model.ComplianceLog;
+import edu.university.iot.model.FirmwareLog;
+import edu.university.iot.model.IdentityLog;
+import edu.university.iot.model.TrustScoreHistory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * Bulk inserts for the rows produced by a telemetry batch.
+ *
+ * The log entities use IDENTITY ids, which stops Hibernate from batching
+ * inserts, so they are written with JDBC batches instead (sent as multi-row
+ * INSERTs when rewriteBatchedStatements is enabled on the connection URL).
+ * Instants are bound in UTC, the same way Hibernate stores them.
+ */
+@Service
+public class TelemetryBatchWriter {
+
+    private static final int BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbc;
+
+    public TelemetryBatchWriter(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    public void insertIdentityLogs(List<IdentityLog> logs) {
+        if (logs.isEmpty()) return;
+        jdbc.batchUpdate(
+            "INSERT INTO identity_log (device_id, certificate_valid, identity_verified, `timestamp`, repeat_count, "
+                + "first_seen_at) VALUES (?, ?, ?, ?, ?, ?)",
+            logs, BATCH_SIZE, (ps, log) -> {
+                ps.setString(1, log.getDeviceId());
+                ps.setBoolean(2, log.isCertificateValid());
+                ps.setBoolean(3, log.isIdentityVerified());
+                setInstant(ps, 4, log.getTimestamp());
+                ps.setInt(5, log.getRepeatCount());
+                setInstant(ps, 6, log.getFirstSeenAt());
+            });
+    }
+
+    public void insertFirmwareLogs(List<FirmwareLog> logs) {
+        if (logs.isEmpty()) return;
+        jdbc.batchUpdate(
+            "INSERT INTO firmware_logs (device_id, firmware_version, patch_status, valid, `timestamp`, repeat_count, "
+                + "first_seen_at) VALUES (?, ?, ?, ?, ?, ?, ?)",
+            logs, BATCH_SIZE, (ps, log) -> {
+                ps.setString(1, log.getDeviceId());
+                ps.setString(2, log.getFirmwareVersion());
+                ps.setString(3, log.getReportedPatchStatus());
+                ps.setBoolean(4, log.isFirmwareValid());
+                ps.setTimestamp(5, log.getTimestamp() != null ? Timestamp.valueOf(log.getTimestamp()) : null);
+                ps.setInt(6, log.getRepeatCount());
+                ps.setTimestamp(7, log.getFirstSeenAt() != null ? Timestamp.valueOf(log.getFirstSeenAt()) : null);
+            });
+    }
+
+    public void insertAnomalyLogs(List<AnomalyLog> logs) {
+        if (logs.isEmpty()) return;
+        jdbc.batchUpdate(
+            "INSERT INTO anomaly_log (device_id, cpu_usage, memory_usage, network_traffic_volume, anomaly_detected, reason, `timestamp`) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?)",
+            logs, BATCH_SIZE, (ps, log) -> {
+                ps.setString(1, log.getDeviceId());
+                ps.setDouble(2, log.getCpuUsage());
+                ps.setDouble(3, log.getMemoryUsage());
+                ps.setDouble(4, log.getNetworkTrafficVolume());
+                ps.setBoolean(5, log.isAnomalyDetected());
+                ps.setString(6, log.getReason());
+                setInstant(ps, 7, log.getTimestamp());
+            });
+    }
+
+    public void insertComplianceLogs(List<ComplianceLog> logs) {
+        if (logs.isEmpty()) return;
+        jdbc.batchUpdate(
+            "INSERT INTO compliance_log (device_id, compliant, violations, `timestamp`, repeat_count, first_seen_at) "
+                + "VALUES (?, ?, ?, ?, ?, ?)",
+            logs, BATCH_SIZE, (ps, log) -> {
+                ps.setString(1, log.getDeviceId());
+                ps.setBoolean(2, log.isCompliant());
+                ps.setString(3, log.getViolations());
+                setInstant(ps, 4, log.getTimestamp());
+                ps.setInt(5, log.getRepeatCount());
+                setInstant(ps, 6, log.getFirstSeenAt());
+            });
+    }
+
+    public void insertTrustHistory(List<TrustScoreHistory> rows) {
+        if (rows.isEmpty()) return;
+        jdbc.batchUpdate(
+            "INSERT INTO trust_score_history (device_id, old_score, new_score, score_change, `timestamp`, change_reason, "
+                + "severity, identity_passed, context_passed, firmware_valid, anomaly_detected, compliance_passed, "
+                + "location_at_change, ip_address_at_change, cpu_usage_at_change, memory_usage_at_change, "
+                + "network_traffic_at_change) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+            rows, BATCH_SIZE, (ps, h) -> {
+                ps.setString(1, h.getDeviceId());
+                ps.setDouble(2, h.getOldScore());
+                ps.setDouble(3, h.getNewScore());
+                ps.setDouble(4, h.getScoreChange());
+                setInstant(ps, 5, h.getTimestamp());
+                ps.setString(6, h.getChangeReason());
+                ps.setString(7, h.getSeverity());
+                ps.setObject(8, h.isIdentityPassed(), Types.BOOLEAN);
+                ps.setObject(9, h.isContextPassed(), Types.BOOLEAN);
+                ps.setObject(10, h.isFirmwareValid(), Types.BOOLEAN);
+                ps.setObject(11, h.isAnomalyDetected(), Types.BOOLEAN);
+                ps.setObject(12, h.isCompliancePassed(), Types.BOOLEAN);
+                ps.setString(13, h.getLocationAtChange());
+                ps.setString(14, h.getIpAddressAtChange());
+                ps.setObject(15, h.getCpuUsageAtChange(), Types.DOUBLE);
+                ps.setObject(16, h.getMemoryUsageAtChange(), Types.DOUBLE);
+                ps.setObject(17, h.getNetworkTrafficAtChange(), Types.DOUBLE);
+            });
+    }
+
+    private static void setInstant(PreparedStatement ps, int index, Instant value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, Types.TIMESTAMP);
+        } else {
+            ps.setTimestamp(index, Timestamp.from(value), Calendar.getInstance(TimeZone.getTimeZone("UTC")));
+        }
+    }
+}
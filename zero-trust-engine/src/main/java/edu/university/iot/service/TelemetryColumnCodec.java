@@ -0,0 +1,275 @@
+package edu.university.iot.service;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Column encodings used by telemetry archive segments.
+ *
+ * Integers are written as LEB128 varints, signed values zigzag-encoded first.
+ * Timestamps store the first value, the first delta and then delta-of-deltas,
+ * which are zero for a device reporting at a fixed interval. Low-cardinality
+ * codes (dictionary indexes, flags) are run-length encoded. Doubles use the
+ * XOR scheme from Facebook's Gorilla paper: a value equal to the previous one
+ * costs one bit, and a changed one only its meaningful XOR bits, reusing the
+ * previous leading/trailing zero window when it fits. Bit-packed columns are
+ * padded to a whole byte, so columns can be read back to back.
+ */
+final class TelemetryColumnCodec {
+
+    private TelemetryColumnCodec() {
+    }
+
+    static void encodeTimestamps(Encoder out, long[] values, int n) {
+        if (n == 0) {
+            return;
+        }
+        out.writeZigZag(values[0]);
+        long previousDelta = 0;
+        for (int i = 1; i < n; i++) {
+            long delta = values[i] - values[i - 1];
+            out.writeZigZag(i == 1 ? delta : delta - previousDelta);
+            previousDelta = delta;
+        }
+    }
+
+    static void decodeTimestamps(Decoder in, long[] values, int n) {
+        if (n == 0) {
+            return;
+        }
+        values[0] = in.readZigZag();
+        long delta = 0;
+        for (int i = 1; i < n; i++) {
+            delta = i == 1 ? in.readZigZag() : delta + in.readZigZag();
+            values[i] = values[i - 1] + delta;
+        }
+    }
+
+    static void encodeDeltas(Encoder out, long[] values, int n) {
+        long previous = 0;
+        for (int i = 0; i < n; i++) {
+            out.writeZigZag(values[i] - previous);
+            previous = values[i];
+        }
+    }
+
+    static void decodeDeltas(Decoder in, long[] values, int n) {
+        long previous = 0;
+        for (int i = 0; i < n; i++) {
+            previous += in.readZigZag();
+            values[i] = previous;
+        }
+    }
+
+    /** Pairs of (code, run length) covering n non-negative codes. */
+    static void encodeRuns(Encoder out, int[] codes, int n) {
+        int i = 0;
+        while (i < n) {
+            int run = 1;
+            while (i + run < n && codes[i + run] == codes[i]) {
+                run++;
+            }
+            out.writeVarLong(codes[i]);
+            out.writeVarLong(run);
+            i += run;
+        }
+    }
+
+    static void decodeRuns(Decoder in, int[] codes, int n) {
+        int i = 0;
+        while (i < n) {
+            int code = (int) in.readVarLong();
+            int run = (int) in.readVarLong();
+            if (run <= 0 || i + run > n) {
+                throw new IllegalStateException("Corrupt run length " + run + " at row " + i + " of " + n);
+            }
+            Arrays.fill(codes, i, i + run, code);
+            i += run;
+        }
+    }
+
+    static void encodeGorilla(Encoder out, double[] values, int n) {
+        if (n == 0) {
+            return;
+        }
+        long previous = Double.doubleToRawLongBits(values[0]);
+        out.writeBits(previous, 64);
+        int previousLeading = -1;
+        int previousTrailing = 0;
+
+        for (int i = 1; i < n; i++) {
+            long bits = Double.doubleToRawLongBits(values[i]);
+            long xor = bits ^ previous;
+            previous = bits;
+            if (xor == 0) {
+                out.writeBits(0, 1);
+                continue;
+            }
+            out.writeBits(1, 1);
+            // Leading zeros are stored in 5 bits
+            int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+            int trailing = Long.numberOfTrailingZeros(xor);
+            if (previousLeading >= 0 && leading >= previousLeading && trailing >= previousTrailing) {
+                out.writeBits(0, 1);
+                out.writeBits(xor >>> previousTrailing, 64 - previousLeading - previousTrailing);
+            } else {
+                int meaningful = 64 - leading - trailing;
+                out.writeBits(1, 1);
+                out.writeBits(leading, 5);
+                // 64 meaningful bits do not fit in 6 bits and are written as 0
+                out.writeBits(meaningful & 0x3F, 6);
+                out.writeBits(xor >>> trailing, meaningful);
+                previousLeading = leading;
+                previousTrailing = trailing;
+            }
+        }
+        out.alignToByte();
+    }
+
+    static void decodeGorilla(Decoder in, double[] values, int n) {
+        if (n == 0) {
+            return;
+        }
+        long previous = in.readBits(64);
+        values[0] = Double.longBitsToDouble(previous);
+        int leading = 0;
+        int trailing = 0;
+
+        for (int i = 1; i < n; i++) {
+            if (in.readBits(1) != 0) {
+                if (in.readBits(1) != 0) {
+                    leading = (int) in.readBits(5);
+                    int meaningful = (int) in.readBits(6);
+                    if (meaningful == 0) {
+                        meaningful = 64;
+                    }
+                    trailing = 64 - leading - meaningful;
+                }
+                previous ^= in.readBits(64 - leading - trailing) << trailing;
+            }
+            values[i] = Double.longBitsToDouble(previous);
+        }
+        in.alignToByte();
+    }
+
+    /**
+     * Growable byte buffer with varint and bit-level writes.
+     */
+    static final class Encoder {
+        private byte[] bytes;
+        private int size;
+        private int pending;
+        private int pendingBits;
+
+        Encoder(int initialCapacity) {
+            this.bytes = new byte[Math.max(16, initialCapacity)];
+        }
+
+        void writeByte(int b) {
+            if (size == bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            bytes[size++] = (byte) b;
+        }
+
+        void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                writeByte((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            writeByte((int) value);
+        }
+
+        void writeZigZag(long value) {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        /** Writes the low {@code count} bits of {@code value}, most significant first. */
+        void writeBits(long value, int count) {
+            while (count > 0) {
+                int take = Math.min(8 - pendingBits, count);
+                int chunk = (int) ((value >>> (count - take)) & ((1L << take) - 1));
+                pending = (pending << take) | chunk;
+                pendingBits += take;
+                count -= take;
+                if (pendingBits == 8) {
+                    writeByte(pending);
+                    pending = 0;
+                    pendingBits = 0;
+                }
+            }
+        }
+
+        void alignToByte() {
+            if (pendingBits > 0) {
+                writeByte(pending << (8 - pendingBits));
+                pending = 0;
+                pendingBits = 0;
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        ByteBuffer toByteBuffer() {
+            alignToByte();
+            return ByteBuffer.wrap(bytes, 0, size);
+        }
+
+        void reset() {
+            size = 0;
+            pending = 0;
+            pendingBits = 0;
+        }
+    }
+
+    /**
+     * Reads what an {@link Encoder} wrote, from the buffer's position onwards.
+     */
+    static final class Decoder {
+        private final ByteBuffer buffer;
+        private int current;
+        private int bitsLeft;
+
+        Decoder(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = buffer.get() & 0xFF;
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalStateException("Corrupt varint at position " + buffer.position());
+        }
+
+        long readZigZag() {
+            long raw = readVarLong();
+            return (raw >>> 1) ^ -(raw & 1);
+        }
+
+        long readBits(int count) {
+            long value = 0;
+            while (count > 0) {
+                if (bitsLeft == 0) {
+                    current = buffer.get() & 0xFF;
+                    bitsLeft = 8;
+                }
+                int take = Math.min(bitsLeft, count);
+                value = (value << take) | ((current >>> (bitsLeft - take)) & ((1 << take) - 1));
+                bitsLeft -= take;
+                count -= take;
+            }
+            return value;
+        }
+
+        void alignToByte() {
+            bitsLeft = 0;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package edu.university.iot.service;
+
+import edu.university.iot.entity.DeviceMessage;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * One telemetry message handed to {@link TelemetryProcessorService#processBatch},
+ * with the Event Hub position it was read from when known.
+ *
+ * Events with a position are de-duplicated per device: an event at or before
+ * the device's last applied sequence number on the same partition is skipped.
+ */
+public final class TelemetryEvent {
+
+    private final Map<String, Object> telemetry;
+    private final String partitionId;
+    private final Long sequenceNumber;
+    private final Instant enqueuedTime;
+    private final DeviceMessage message;
+    private final Long deadLetterId;
+
+    public TelemetryEvent(Map<String, Object> telemetry, String partitionId,
+                          Long sequenceNumber, Instant enqueuedTime) {
+        this(telemetry, partitionId, sequenceNumber, enqueuedTime, null, null);
+    }
+
+    private TelemetryEvent(Map<String, Object> telemetry, String partitionId, Long sequenceNumber,
+                           Instant enqueuedTime, DeviceMessage message, Long deadLetterId) {
+        this.telemetry = telemetry;
+        this.partitionId = partitionId;
+        this.sequenceNumber = sequenceNumber;
+        this.enqueuedTime = enqueuedTime;
+        this.message = message;
+        this.deadLetterId = deadLetterId;
+    }
+
+    public static TelemetryEvent of(Map<String, Object> telemetry) {
+        return new TelemetryEvent(telemetry, null, null, null, null, null);
+    }
+
+    /**
+     * Event read from Event Hub; the raw message is saved in the same
+     * transaction as the trust adjustment it causes.
+     */
+    public static TelemetryEvent fromEventHub(DeviceMessage message, String partitionId,
+                                              long sequenceNumber, Instant enqueuedTime) {
+        return new TelemetryEvent(message.toMap(), partitionId, sequenceNumber, enqueuedTime, message, null);
+    }
+
+    /**
+     * Retry of a dead-lettered event. It carries no position, so it is applied
+     * even if the device has moved on; the dead-letter entry is resolved in the
+     * same transaction.
+     */
+    public static TelemetryEvent fromDeadLetter(DeviceMessage message, long deadLetterId) {
+        return new TelemetryEvent(message.toMap(), null, null, null, message, deadLetterId);
+    }
+
+    public String getDeviceId() {
+        return (String) telemetry.get("deviceId");
+    }
+
+    public Map<String, Object> getTelemetry() {
+        return telemetry;
+    }
+
+    public String getPartitionId() {
+        return partitionId;
+    }
+
+    public Long getSequenceNumber() {
+        return sequenceNumber;
+    }
+
+    public Instant getEnqueuedTime() {
+        return enqueuedTime;
+    }
+
+    /** Raw message to store with the event, or null if there is none. */
+    public DeviceMessage getMessage() {
+        return message;
+    }
+
+    /** Dead-letter entry this event retries, or null. */
+    public Long getDeadLetterId() {
+        return deadLetterId;
+    }
+
+    public boolean hasPosition() {
+        return partitionId != null && sequenceNumber != null;
+    }
+}
@@ -0,0 +1,526 @@
+package edu.university.iot.service;
+
+import edu.university.iot.config.EventLogConfig;
+import edu.university.iot.entity.DeviceMessage;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Embedded append-only store for raw device telemetry, used instead of the
+ * device_message table when telemetry.event-log.enabled is set.
+ *
+ * The log is a directory of {@link EventLogSegment} files addressed by byte
+ * offset. Appends are serialized, and each batch returns only once it is on
+ * disk. Durability uses group commit: the first waiting appender forces the
+ * file on behalf of everyone who has written so far, and appenders arriving
+ * during that sync wait and share the next one. Under load, one force covers
+ * many batches. Only records up to the durable offset are visible to readers.
+ *
+ * On startup every segment is checked. The active one, and any sealed one
+ * whose index is missing or stale, is scanned record by record and truncated
+ * at the first torn or corrupt record, so a crash loses at most batches that
+ * were never acknowledged.
+ *
+ * Writes are at least once. A batch whose database transaction rolls back is
+ * appended again when it is retried. Records keep the Event Hub partition and
+ * sequence number, and device queries drop the repeats.
+ */
+@Service
+public class TelemetryEventLog {
+
+    private static final Logger logger = LoggerFactory.getLogger(TelemetryEventLog.class);
+
+    private static final long MAX_SEGMENT_BYTES = 1L << 30;
+
+    private final EventLogConfig config;
+    private final DeviceMessageParser parser;
+    private final Path root;
+
+    // Serializes appends, rolls and retention; the segment list is replaced, never modified
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private volatile List<EventLogSegment> segments = List.of();
+    private EventLogSegment active;
+    private long writtenOffset;
+
+    // Group commit: one appender syncs at a time, the others wait for it
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final Condition syncDone = syncLock.newCondition();
+    private boolean syncing;
+    private final AtomicLong durableOffset = new AtomicLong();
+
+    private final AtomicLong appendedRecords = new AtomicLong();
+    private final AtomicLong appendedBatches = new AtomicLong();
+    private final AtomicLong syncs = new AtomicLong();
+    private final AtomicLong syncNanos = new AtomicLong();
+    private long recoveredTruncatedBytes;
+
+    public TelemetryEventLog(EventLogConfig config, DeviceMessageParser parser) {
+        this.config = config;
+        this.parser = parser;
+        this.root = Paths.get(config.getDirectory());
+    }
+
+    @PostConstruct
+    public void open() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        appendLock.lock();
+        try {
+            Files.createDirectories(root);
+            List<Path> files;
+            try (Stream<Path> list = Files.list(root)) {
+                files = list.filter(EventLogSegment::isLogFile)
+                            .sorted(Comparator.comparingLong(EventLogSegment::baseOffsetOf))
+                            .toList();
+            }
+
+            List<EventLogSegment> opened = new ArrayList<>();
+            for (int i = 0; i < files.size(); i++) {
+                EventLogSegment segment = EventLogSegment.open(files.get(i), i == files.size() - 1,
+                                                               config.getIndexInterval());
+                if (segment.getTruncatedBytes() > 0) {
+                    logger.warn("Recovered event log segment {}: cut {} bytes of torn or corrupt records",
+                                segment, segment.getTruncatedBytes());
+                    recoveredTruncatedBytes += segment.getTruncatedBytes();
+                }
+                opened.add(segment);
+            }
+            if (opened.isEmpty()) {
+                opened.add(EventLogSegment.create(root, 0, config.getIndexInterval()));
+            }
+            active = opened.get(opened.size() - 1);
+            segments = List.copyOf(opened);
+            writtenOffset = active.getBaseOffset() + active.size();
+            durableOffset.set(writtenOffset);
+            logger.info("Opened telemetry event log at {}: {} segments, end offset {}",
+                        root.toAbsolutePath(), opened.size(), writtenOffset);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open telemetry event log at " + root, e);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        appendLock.lock();
+        try {
+            if (active != null) {
+                active.force();
+            }
+            for (EventLogSegment segment : segments) {
+                segment.close();
+            }
+            segments = List.of();
+            active = null;
+        } catch (IOException e) {
+            logger.error("Error closing telemetry event log: {}", e.getMessage(), e);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    /**
+     * Appends the messages of these events and returns once they are durable.
+     *
+     * @throws UncheckedIOException if the records cannot be written or synced
+     */
+    public void append(List<TelemetryEvent> events) {
+        List<String> deviceIds = new ArrayList<>(events.size());
+        List<byte[][]> encoded = new ArrayList<>(events.size());
+        long[] micros = new long[events.size()];
+        long[] sequences = new long[events.size()];
+        int bytes = 0;
+        try {
+            for (TelemetryEvent event : events) {
+                DeviceMessage message = event.getMessage();
+                if (message == null || message.getDeviceId() == null) {
+                    continue;
+                }
+                Instant at = message.getTimestamp() != null ? message.getTimestamp()
+                    : event.getEnqueuedTime() != null ? event.getEnqueuedTime() : Instant.now();
+                byte[] partition = event.getPartitionId() != null
+                    ? event.getPartitionId().getBytes(StandardCharsets.UTF_8) : new byte[0];
+                byte[] device = message.getDeviceId().getBytes(StandardCharsets.UTF_8);
+                byte[] payload = parser.toJson(message);
+                micros[deviceIds.size()] = toMicros(at);
+                sequences[deviceIds.size()] = event.getSequenceNumber() != null ? event.getSequenceNumber() : -1;
+                deviceIds.add(message.getDeviceId());
+                encoded.add(new byte[][] {partition, device, payload});
+                bytes += EventLogSegment.encodedSize(partition, device, payload);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot encode telemetry for the event log", e);
+        }
+        if (deviceIds.isEmpty()) {
+            return;
+        }
+
+        ByteBuffer records = ByteBuffer.allocate(bytes);
+        int[] starts = new int[deviceIds.size() + 1];
+        CRC32C crc = new CRC32C();
+        for (int i = 0; i < deviceIds.size(); i++) {
+            starts[i] = records.position();
+            byte[][] parts = encoded.get(i);
+            EventLogSegment.encode(records, micros[i], sequences[i], parts[0], parts[1], parts[2], crc);
+        }
+        starts[deviceIds.size()] = records.position();
+        records.flip();
+
+        long end;
+        appendLock.lock();
+        try {
+            if (active == null) {
+                throw new IllegalStateException("Telemetry event log is not open");
+            }
+            long segmentBytes = Math.min(Math.max(1, config.getSegmentBytes()), MAX_SEGMENT_BYTES);
+            if (active.size() > 0 && active.size() + bytes > segmentBytes) {
+                roll();
+            }
+            active.append(records, deviceIds, micros, starts);
+            writtenOffset = active.getBaseOffset() + active.size();
+            end = writtenOffset;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot append to telemetry event log", e);
+        } finally {
+            appendLock.unlock();
+        }
+
+        awaitDurable(end);
+        appendedRecords.addAndGet(deviceIds.size());
+        appendedBatches.incrementAndGet();
+    }
+
+    /** Seals the active segment and starts the next one; called with the append lock held. */
+    private void roll() throws IOException {
+        EventLogSegment sealed = active;
+        sealed.sealForRoll();
+        // Sealing forced the segment, so everything in it is durable
+        durableOffset.accumulateAndGet(sealed.getBaseOffset() + sealed.size(), Math::max);
+
+        EventLogSegment next = EventLogSegment.create(root, sealed.getBaseOffset() + sealed.size(),
+                                                      config.getIndexInterval());
+        List<EventLogSegment> updated = new ArrayList<>(segments);
+        updated.add(next);
+        segments = List.copyOf(updated);
+        active = next;
+        logger.info("Rolled telemetry event log to segment {}", next);
+    }
+
+    private void awaitDurable(long end) {
+        if (durableOffset.get() >= end) {
+            return;
+        }
+        syncLock.lock();
+        try {
+            while (durableOffset.get() < end) {
+                if (syncing) {
+                    syncDone.awaitUninterruptibly();
+                    continue;
+                }
+                syncing = true;
+                syncLock.unlock();
+
+                long target = 0;
+                IOException failure = null;
+                try {
+                    if (config.getCommitLingerMicros() > 0) {
+                        LockSupport.parkNanos(config.getCommitLingerMicros() * 1_000);
+                    }
+                    EventLogSegment segment;
+                    appendLock.lock();
+                    try {
+                        target = writtenOffset;
+                        segment = active;
+                    } finally {
+                        appendLock.unlock();
+                    }
+                    long start = System.nanoTime();
+                    if (segment != null) {
+                        segment.force();
+                    }
+                    syncNanos.addAndGet(System.nanoTime() - start);
+                    syncs.incrementAndGet();
+                } catch (IOException e) {
+                    failure = e;
+                } finally {
+                    syncLock.lock();
+                    syncing = false;
+                    if (failure == null) {
+                        durableOffset.accumulateAndGet(target, Math::max);
+                    }
+                    syncDone.signalAll();
+                }
+                if (failure != null) {
+                    throw new UncheckedIOException("Cannot sync telemetry event log", failure);
+                }
+            }
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * Telemetry of one device with from <= timestamp < to; the newest
+     * {@code limit} messages, oldest first.
+     */
+    public List<DeviceMessage> read(String deviceId, Instant from, Instant to, int limit) {
+        long fromMicros = toMicros(from);
+        long toMicros = toMicros(to);
+        long durable = durableOffset.get();
+        List<EventLogSegment.RecordView> records = new ArrayList<>();
+        try {
+            for (EventLogSegment segment : segments) {
+                if (durable > segment.getBaseOffset()) {
+                    segment.scanDevice(deviceId, fromMicros, toMicros, durable - segment.getBaseOffset(),
+                                       records::add);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read telemetry event log", e);
+        }
+        records.sort(Comparator.comparingLong(EventLogSegment.RecordView::getMicros)
+                               .thenComparingLong(EventLogSegment.RecordView::getOffset));
+
+        List<DeviceMessage> result = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (int i = records.size() - 1; i >= 0 && result.size() < limit; i--) {
+            EventLogSegment.RecordView record = records.get(i);
+            if (record.getSequence() >= 0 && !seen.add(record.getPartitionId() + '/' + record.getSequence())) {
+                continue;
+            }
+            result.add(toMessage(record));
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * The device's newest message, looking at its latest index span in the
+     * newest segment that has it.
+     */
+    public Optional<DeviceMessage> latest(String deviceId) {
+        long durable = durableOffset.get();
+        List<EventLogSegment> snapshot = segments;
+        try {
+            for (int i = snapshot.size() - 1; i >= 0; i--) {
+                EventLogSegment segment = snapshot.get(i);
+                if (durable <= segment.getBaseOffset()) {
+                    continue;
+                }
+                EventLogSegment.RecordView[] newest = new EventLogSegment.RecordView[1];
+                boolean found = segment.scanLatest(deviceId, durable - segment.getBaseOffset(), record -> {
+                    if (newest[0] == null || record.getMicros() >= newest[0].getMicros()) {
+                        newest[0] = record;
+                    }
+                });
+                if (found && newest[0] != null) {
+                    return Optional.of(toMessage(newest[0]));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read telemetry event log", e);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Receives records replayed from the log, decoded, in log order.
+     */
+    public interface ReplayHandler {
+        void accept(long offset, String partitionId, Long sequenceNumber, DeviceMessage message) throws IOException;
+    }
+
+    /**
+     * Hands durable records from {@code fromOffset} to the handler in log
+     * order, reading them in place from the mapped segments.
+     *
+     * @return offset to continue from
+     */
+    public long replay(long fromOffset, int maxRecords, ReplayHandler handler) {
+        long durable = durableOffset.get();
+        long offset = fromOffset;
+        int remaining = maxRecords;
+        try {
+            for (EventLogSegment segment : segments) {
+                long base = segment.getBaseOffset();
+                long end = Math.min(base + segment.size(), durable);
+                if (end <= offset || remaining <= 0) {
+                    continue;
+                }
+                long start = Math.max(offset, base) - base;
+                long[] handled = new long[1];
+                long next = segment.scan(start, end - base, remaining, record -> {
+                    handled[0]++;
+                    handler.accept(record.getOffset(), record.getPartitionId(),
+                            record.getSequence() >= 0 ? record.getSequence() : null, toMessage(record));
+                });
+                remaining -= (int) handled[0];
+                offset = base + next;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot replay telemetry event log", e);
+        }
+        return offset;
+    }
+
+    /**
+     * Streams whole durable records starting at {@code fromOffset}, which must
+     * be a record boundary such as an offset returned by an earlier call,
+     * straight from the segment files to {@code target}.
+     *
+     * @return offset to continue from; equal to {@code fromOffset} when there is nothing new
+     */
+    public long transferTo(long fromOffset, long maxBytes, WritableByteChannel target) throws IOException {
+        long durable = durableOffset.get();
+        long budget = Math.min(maxBytes, config.getMaxExportBytes());
+        long offset = fromOffset;
+        for (EventLogSegment segment : segments) {
+            long base = segment.getBaseOffset();
+            long end = Math.min(base + segment.size(), durable);
+            if (end <= offset) {
+                continue;
+            }
+            long start = Math.max(offset, base);
+            long next = base + segment.transferTo(start - base, Math.min(end, start + budget) - base, target);
+            budget -= next - start;
+            offset = next;
+            if (next < end || budget <= 0) {
+                break;
+            }
+        }
+        return offset;
+    }
+
+    /**
+     * Deletes the oldest sealed segments whose newest event is past retention-days.
+     */
+    @Scheduled(cron = "${telemetry.event-log.retention-cron:0 30 0 * * *}", zone = "UTC")
+    public void applyRetention() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        long cutoff = toMicros(Instant.now().minus(Duration.ofDays(Math.max(1, config.getRetentionDays()))));
+        appendLock.lock();
+        try {
+            List<EventLogSegment> kept = new ArrayList<>(segments);
+            int deleted = 0;
+            // Oldest first and only while expired, so the remaining log stays contiguous
+            while (kept.size() > 1 && kept.get(0).isSealed() && kept.get(0).getMaxMicros() < cutoff) {
+                kept.remove(0).delete();
+                deleted++;
+            }
+            if (deleted > 0) {
+                segments = List.copyOf(kept);
+                logger.info("Deleted {} expired telemetry event log segments", deleted);
+            }
+        } catch (IOException e) {
+            logger.error("Event log retention failed: {}", e.getMessage(), e);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Offset just past the last durable record; a later replay from here
+     * returns only records appended after this call.
+     */
+    public long getDurableOffset() {
+        return durableOffset.get();
+    }
+
+    /**
+     * End of the records known to be forced to disk; the durable offset
+     * never runs ahead of it.
+     */
+    long getForcedOffset() {
+        long forced = 0;
+        for (EventLogSegment segment : segments) {
+            forced = Math.max(forced, segment.getBaseOffset() + segment.getForcedSize());
+        }
+        return forced;
+    }
+
+    /**
+     * Segment, append and group commit counters for monitoring
+     */
+    public Map<String, Object> getStatistics() {
+        List<EventLogSegment> snapshot = segments;
+        long bytes = 0;
+        long records = 0;
+        for (EventLogSegment segment : snapshot) {
+            bytes += segment.size();
+            records += segment.getRecords();
+        }
+        long syncCount = syncs.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", config.isEnabled());
+        stats.put("directory", root.toAbsolutePath().toString());
+        stats.put("segments", snapshot.size());
+        stats.put("firstOffset", snapshot.isEmpty() ? 0 : snapshot.get(0).getBaseOffset());
+        stats.put("durableOffset", durableOffset.get());
+        stats.put("bytes", bytes);
+        stats.put("records", records);
+        stats.put("appendedRecords", appendedRecords.get());
+        stats.put("appendedBatches", appendedBatches.get());
+        stats.put("syncs", syncCount);
+        stats.put("batchesPerSync", syncCount > 0 ? (double) appendedBatches.get() / syncCount : 0.0);
+        stats.put("averageSyncMicros", syncCount > 0 ? syncNanos.get() / syncCount / 1_000 : 0);
+        stats.put("recoveredTruncatedBytes", recoveredTruncatedBytes);
+        return stats;
+    }
+
+    private DeviceMessage toMessage(EventLogSegment.RecordView record) {
+        try {
+            return parser.parse(record.getPayload());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unreadable event log record at offset " + record.getOffset(), e);
+        }
+    }
+
+    private static long toMicros(Instant instant) {
+        long seconds = instant.getEpochSecond();
+        if (seconds >= Long.MAX_VALUE / 1_000_000L) {
+            return Long.MAX_VALUE;
+        }
+        if (seconds <= Long.MIN_VALUE / 1_000_000L) {
+            return Long.MIN_VALUE;
+        }
+        return seconds * 1_000_000L + instant.getNano() / 1_000;
+    }
+}
@@ -1,152 +1,474 @@
 package edu.university.iot.service;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import edu.university.iot.entity.DeviceRegistry;
+import edu.university.iot.model.AnomalyLog;
+import edu.university.iot.model.ComplianceLog;
+import edu.university.iot.model.DeadLetterEvent;
+import edu.university.iot.model.FirmwareLog;
+import edu.university.iot.model.IdentityLog;
+import edu.university.iot.model.TrustScoreHistory;
+import edu.university.iot.repository.DeadLetterEventRepository;
+import edu.university.iot.repository.DeviceMessageRepository;
 import edu.university.iot.repository.DeviceRegistryRepository;
 
 @Service
 public class TelemetryProcessorService {
 
-    private final LocationService contextService;
+    private static final Logger logger = LoggerFactory.getLogger(TelemetryProcessorService.class);
+
     private final SessionManagementService sessionService;
-    private final IdentityVerificationService identityService;
-    private final FirmwareService firmwareService;
-    private final AnomalyDetectorService anomalyService;
-    private final ComplianceService complianceService;
+    private final ValidationStage validationStage;
     private final TrustScoreService trustService;
+    private final TrustPolicyService policyService;
     private final QuarantineService quarantineService;
     private final DeviceRegistryRepository registryRepo;
+    private final DeviceMessageRepository messageRepo;
+    private final DeadLetterEventRepository deadLetterRepo;
+    private final AnalyticsResultCache resultCache;
+    private final TelemetryBatchWriter batchWriter;
+    private final ChangeOnlyLogFilter logFilter;
+    private final TelemetryEventLog eventLog;
+    private final TransactionTemplate txTemplate;
 
     public TelemetryProcessorService(
-        LocationService contextService,
         SessionManagementService sessionService,
-        IdentityVerificationService identityService,
-        FirmwareService firmwareService,
-        AnomalyDetectorService anomalyService,
-        ComplianceService complianceService,
+        ValidationStage validationStage,
         TrustScoreService trustService,
+        TrustPolicyService policyService,
         QuarantineService quarantineService,
-        DeviceRegistryRepository registryRepo) {
+        DeviceRegistryRepository registryRepo,
+        DeviceMessageRepository messageRepo,
+        DeadLetterEventRepository deadLetterRepo,
+        AnalyticsResultCache resultCache,
+        TelemetryBatchWriter batchWriter,
+        ChangeOnlyLogFilter logFilter,
+        TelemetryEventLog eventLog,
+        PlatformTransactionManager transactionManager) {
 
-        this.contextService = contextService;
         this.sessionService = sessionService;
-        this.identityService = identityService;
-        this.firmwareService = firmwareService;
-        this.anomalyService = anomalyService;
-        this.complianceService = complianceService;
+        this.validationStage = validationStage;
         this.trustService = trustService;
+        this.policyService = policyService;
         this.quarantineService = quarantineService;
         this.registryRepo = registryRepo;
+        this.messageRepo = messageRepo;
+        this.deadLetterRepo = deadLetterRepo;
+        this.resultCache = resultCache;
+        this.batchWriter = batchWriter;
+        this.logFilter = logFilter;
+        this.eventLog = eventLog;
+        this.txTemplate = new TransactionTemplate(transactionManager);
     }
 
     @Transactional
     public void process(Map<String, Object> telemetry) {
-        String deviceId = (String) telemetry.get("deviceId");
+        process(PipelineContext.of(telemetry));
+    }
 
-        try {
-            // Set telemetry context for detailed trust tracking
-            TrustScoreService.setCurrentTelemetryContext(telemetry);
+    /**
+     * Runs every stage for one message. Each stage adds its results to the
+     * context, nothing is kept in thread-bound state.
+     *
+     * @return the final context, including verdicts and stage timings
+     */
+    @Transactional
+    public PipelineContext process(PipelineContext ctx) {
+        String deviceId = ctx.getDeviceId();
+        Map<String, Object> telemetry = ctx.getTelemetry();
 
+        try {
             // 1) Start or refresh session
-            String sessionId = sessionService.startOrRefreshSession(deviceId);
+            long start = System.nanoTime();
+            ctx = ctx.withSession(sessionService.startOrRefreshSession(deviceId));
 
             DeviceRegistry device = registryRepo.findById(deviceId)
                 .orElseThrow(() -> new IllegalStateException("Unknown device: " + deviceId));
+            ctx = ctx.withDevice(device).withTiming("session", System.nanoTime() - start);
 
             // 2) If already quarantined, terminate session and skip
-            if (device.isQuarantined()) {
-                sessionService.terminateSession(sessionId, "Device already quarantined");
-                return;
+            if (ctx.isQuarantined()) {
+                sessionService.terminateSession(ctx.getSessionId(), "Device already quarantined");
+                return ctx;
             }
 
-            // Get pre-processing trust score for comparison
-            double preTrustScore = device.getTrustScore() != null ? device.getTrustScore() : 50.0;
-            
-            // 3) Context check via LocationService
-            boolean contextUnchanged = contextService.validateContext(telemetry);
-            if (!contextUnchanged) {
-                sessionService.pauseSession(sessionId, "Location/IP change detected");
-                logSecurityEvent(deviceId, "CONTEXT_CHANGE", 
-                    "Location or network context changed", telemetry);
-            }
+            // 3-7) Context, identity, firmware, anomaly and compliance checks;
+            // the independent ones are evaluated concurrently and joined here
+            ctx = validationStage.evaluate(ctx, device);
+            reportVerdicts(ctx);
 
-            // 4) Identity verification
-            boolean identityOk = identityService.verifyIdentity(telemetry);
-            if (!identityOk) {
-                logSecurityEvent(deviceId, "IDENTITY_FAILURE", 
-                    "Device identity verification failed", telemetry);
+            // 8) Adjust trust score with enhanced tracking
+            start = System.nanoTime();
+            ctx = trustService.adjustTrust(ctx);
+            ctx = ctx.withTiming("trust", System.nanoTime() - start);
+
+            // 9) Reload device to get updated trust & quarantine flags
+            device = registryRepo.findById(deviceId).get();
+            handleTrustOutcome(ctx, device);
+
+            return ctx;
+
+        } catch (Exception e) {
+            logSecurityEvent(deviceId, "PROCESSING_ERROR", 
+                "Error during telemetry processing: " + e.getMessage(), telemetry);
+            throw e;
+        } finally {
+            // Cached analytics for this device are now out of date
+            resultCache.invalidateDevice(deviceId);
+        }
+    }
+
+    /**
+     * Processes a batch of events with one transaction for all writes.
+     *
+     * Events are grouped by device, keeping each device's order. The stateless
+     * factors are evaluated first; registry and session updates, log rows and
+     * history rows are then written in a single transaction, the inserts as
+     * bulk statements. The context check keeps per-device state, so it runs in
+     * that transaction under the registry row lock, and its state only moves
+     * when the transaction commits. An event that fails evaluation or belongs to an unknown
+     * device is reported in the result and left out; logging or dead-lettering
+     * it is up to the caller. If the batch write itself fails, events are applied one
+     * transaction each so only the offending event fails.
+     *
+     * Events carrying an Event Hub position that the device has already
+     * applied are reported as duplicates and not evaluated again, so a replay
+     * from an older checkpoint costs one registry read and never adjusts trust
+     * twice. The position is re-checked under a row lock when applying, which
+     * covers another instance that took over the partition meanwhile.
+     */
+    public TelemetryBatchResult processBatch(List<TelemetryEvent> events) {
+        TelemetryBatchResult result = new TelemetryBatchResult();
+        if (events.isEmpty()) {
+            return result;
+        }
+
+        // Group by device; within a device events keep their arrival order
+        Map<String, List<Integer>> byDevice = new LinkedHashMap<>();
+        for (int i = 0; i < events.size(); i++) {
+            byDevice.computeIfAbsent(events.get(i).getDeviceId(), id -> new ArrayList<>()).add(i);
+        }
+        List<Integer> order = new ArrayList<>(events.size());
+        byDevice.values().forEach(order::addAll);
+
+        Map<String, DeviceRegistry> snapshot = new HashMap<>();
+        registryRepo.findAllById(byDevice.keySet()).forEach(d -> snapshot.put(d.getDeviceId(), d));
+
+        // Drop events applied by an earlier delivery, and fail events of unknown
+        // devices, before any validator sees them
+        List<Integer> fresh = new ArrayList<>(order.size());
+        for (int index : order) {
+            TelemetryEvent event = events.get(index);
+            DeviceRegistry device = snapshot.get(event.getDeviceId());
+            if (device == null) {
+                result.addFailure(index, event, new IllegalStateException("Unknown device: " + event.getDeviceId()));
+            } else if (alreadyApplied(device, event)) {
+                result.addDuplicate(index);
+            } else {
+                fresh.add(index);
             }
+        }
 
-            // Combined identity + context check
-            boolean overallIdentityOk = identityOk && contextUnchanged;
+        // Evaluate the stateless factors; nothing is written yet
+        List<PipelineContext> contexts = new ArrayList<>(fresh.size());
+        for (int index : fresh) {
+            contexts.add(PipelineContext.of(events.get(index).getTelemetry()));
+        }
+        List<ValidationStage.Evaluation> evaluations = validationStage.assessAll(contexts, snapshot);
+
+        List<PendingEvent> pending = new ArrayList<>(fresh.size());
+        for (int k = 0; k < fresh.size(); k++) {
+            int index = fresh.get(k);
+            ValidationStage.Evaluation evaluation = evaluations.get(k);
+            if (evaluation.isFailed()) {
+                result.addFailure(index, events.get(index), evaluation.getError());
+            } else {
+                pending.add(new PendingEvent(index, events.get(index), evaluation));
+            }
+        }
 
-            // 5) Firmware & patch validation
-            boolean firmwareOk = firmwareService.validateAndLogFirmware(telemetry);
-            if (!firmwareOk) {
-                logSecurityEvent(deviceId, "FIRMWARE_VIOLATION", 
-                    "Firmware does not meet compliance requirements", telemetry);
+        try {
+            result.merge(txTemplate.execute(status -> apply(pending)));
+        } catch (RuntimeException e) {
+            logger.warn("Telemetry batch of {} events failed to commit ({}); applying events individually",
+                        pending.size(), e.getMessage());
+            for (PendingEvent event : pending) {
+                try {
+                    result.merge(txTemplate.execute(status -> apply(List.of(event))));
+                } catch (RuntimeException single) {
+                    result.addFailure(event.index, event.event, single);
+                }
             }
+        }
+        return result;
+    }
 
-            // 6) Anomaly detection
-            boolean anomalyDetected = anomalyService.checkAnomaly(telemetry);
-            if (anomalyDetected) {
-                logSecurityEvent(deviceId, "ANOMALY_DETECTED", 
-                    "Behavioral or resource anomaly detected", telemetry);
+    /**
+     * Applies evaluated events inside the caller's transaction and writes
+     * their rows in bulk. Events must be grouped by device in arrival order.
+     * Registry rows stay locked until commit, so each device's position and
+     * trust score change together or not at all.
+     *
+     * Scores are computed for the whole batch at once by {@link BatchTrustScorer},
+     * which also stops a device at its first untrusted result; the events after
+     * that one are skipped as for an already quarantined device.
+     */
+    private TelemetryBatchResult apply(List<PendingEvent> events) {
+        TelemetryBatchResult result = new TelemetryBatchResult();
+
+        Map<String, DeviceRegistry> devices = new HashMap<>();
+        Set<String> deviceIds = new LinkedHashSet<>();
+        events.forEach(event -> deviceIds.add(event.deviceId()));
+        registryRepo.lockAllById(deviceIds).forEach(d -> devices.put(d.getDeviceId(), d));
+        Map<String, String> sessionIds = sessionService.startOrRefreshSessions(devices.keySet());
+
+        List<IdentityLog> identityLogs = new ArrayList<>();
+        List<FirmwareLog> firmwareLogs = new ArrayList<>();
+        List<AnomalyLog> anomalyLogs = new ArrayList<>();
+        List<ComplianceLog> complianceLogs = new ArrayList<>();
+        List<TrustScoreHistory> history = new ArrayList<>();
+        List<TelemetryEvent> messages = new ArrayList<>();
+        List<Long> resolvedDeadLetters = new ArrayList<>();
+
+        // Position bookkeeping, and the events to score grouped by device
+        Map<String, List<PendingEvent>> scoring = new LinkedHashMap<>();
+        for (PendingEvent event : events) {
+            String deviceId = event.deviceId();
+            DeviceRegistry device = devices.get(deviceId);
+            if (device == null) {
+                result.addFailure(event.index, event.event, new IllegalStateException("Unknown device: " + deviceId));
+                continue;
+            }
+            if (alreadyApplied(device, event.event)) {
+                result.addDuplicate(event.index);
+                continue;
+            }
+            // The context check keeps per-device state, so it runs under the
+            // row lock and only for events that are really applied
+            validationStage.assessContext(event.evaluation);
+            if (event.evaluation.isFailed()) {
+                result.addFailure(event.index, event.event, event.evaluation.getError());
+                continue;
+            }
+            markApplied(device, event.event);
+            if (event.event.getMessage() != null) {
+                messages.add(event.event);
+            }
+            if (event.event.getDeadLetterId() != null) {
+                resolvedDeadLetters.add(event.event.getDeadLetterId());
             }
+            scoring.computeIfAbsent(deviceId, id -> new ArrayList<>()).add(event);
+        }
 
-            // 7) Compliance evaluation
-            boolean compliant = complianceService.evaluateCompliance(telemetry);
-            if (!compliant) {
-                logSecurityEvent(deviceId, "COMPLIANCE_VIOLATION", 
-                    "Device does not meet policy compliance", telemetry);
+        // Score every device's events in one pass over primitive columns
+        TrustPolicy policy = policyService.current();
+        int deviceCount = scoring.size();
+        int[] deviceOffsets = new int[deviceCount + 1];
+        double[] startScores = new double[deviceCount];
+        boolean[] startBlocked = new boolean[deviceCount];
+        List<PendingEvent> rows = new ArrayList<>(events.size());
+        int d = 0;
+        for (Map.Entry<String, List<PendingEvent>> entry : scoring.entrySet()) {
+            DeviceRegistry device = devices.get(entry.getKey());
+            deviceOffsets[d] = rows.size();
+            startBlocked[d] = device.isQuarantined();
+            startScores[d] = device.getTrustScore() != null ? device.getTrustScore()
+                : policy.profileFor(profileOf(entry.getValue().get(0))).getBaselineScore();
+            rows.addAll(entry.getValue());
+            d++;
+        }
+        deviceOffsets[deviceCount] = rows.size();
+
+        int[] verdictMasks = new int[rows.size()];
+        int[] profiles = new int[rows.size()];
+        for (int row = 0; row < rows.size(); row++) {
+            PipelineContext evaluated = rows.get(row).evaluation.getContext();
+            boolean contextPass = evaluated.getVerdict(PipelineContext.Factor.CONTEXT);
+            verdictMasks[row] = TrustPolicy.verdictMask(
+                evaluated.getVerdict(PipelineContext.Factor.IDENTITY) && contextPass,
+                contextPass,
+                evaluated.getVerdict(PipelineContext.Factor.FIRMWARE),
+                evaluated.getVerdict(PipelineContext.Factor.ANOMALY),
+                evaluated.getVerdict(PipelineContext.Factor.COMPLIANCE));
+            profiles[row] = policy.profileIndex(profileOf(rows.get(row)));
+        }
+        BatchTrustScorer.Result scores = BatchTrustScorer.scoreSequences(
+            policy, deviceOffsets, verdictMasks, profiles, startScores, startBlocked);
+
+        // Apply the scores in order, with the side effects of each event
+        for (int row = 0; row < rows.size(); row++) {
+            PendingEvent event = rows.get(row);
+            DeviceRegistry device = devices.get(event.deviceId());
+            String sessionId = sessionIds.get(event.deviceId());
+            if (!scores.isApplied(row)) {
+                // Quarantined before this event, possibly by an earlier event of this batch
+                sessionService.terminateSession(sessionId, "Device already quarantined");
+                result.addSkipped();
+                continue;
             }
 
-            // 8) Adjust trust score with enhanced tracking
-            trustService.adjustTrustWithContext(deviceId, overallIdentityOk, contextUnchanged, 
-                                              firmwareOk, anomalyDetected, compliant, telemetry);
+            ValidationStage.Evaluation evaluation = event.evaluation;
+            PipelineContext ctx = evaluation.getContext().withSession(sessionId).withDevice(device);
+            identityLogs.add(evaluation.getLog(PipelineContext.Factor.IDENTITY, IdentityLog.class));
+            firmwareLogs.add(evaluation.getLog(PipelineContext.Factor.FIRMWARE, FirmwareLog.class));
+            anomalyLogs.add(evaluation.getLog(PipelineContext.Factor.ANOMALY, AnomalyLog.class));
+            complianceLogs.add(evaluation.getLog(PipelineContext.Factor.COMPLIANCE, ComplianceLog.class));
+            reportVerdicts(ctx);
+
+            ctx = trustService.applyScored(device, ctx, scores.getOldScore(row), scores.getNewScore(row),
+                                           scores.isTrusted(row), scores.getSeverity(row), history);
+            handleTrustOutcome(ctx, device);
+            result.addProcessed();
+        }
 
-            // 9) Reload device to get updated trust & quarantine flags
-            device = registryRepo.findById(deviceId).get();
-            double postTrustScore = device.getTrustScore() != null ? device.getTrustScore() : 0.0;
+        if (eventLog.isEnabled()) {
+            // Raw telemetry goes to the event log, synced before the transaction commits
+            eventLog.append(messages);
+        } else {
+            messageRepo.saveAll(messages.stream().map(TelemetryEvent::getMessage).toList());
+        }
+        if (!resolvedDeadLetters.isEmpty()) {
+            deadLetterRepo.markResolved(resolvedDeadLetters, DeadLetterEvent.Status.RESOLVED, Instant.now());
+        }
+        batchWriter.insertIdentityLogs(logFilter.filterIdentity(identityLogs));
+        batchWriter.insertFirmwareLogs(logFilter.filterFirmware(firmwareLogs));
+        batchWriter.insertAnomalyLogs(anomalyLogs);
+        batchWriter.insertComplianceLogs(logFilter.filterCompliance(complianceLogs));
+        batchWriter.insertTrustHistory(history);
+
+        // Cached analytics of these devices are now out of date
+        deviceIds.forEach(resultCache::invalidateDevice);
+        return result;
+    }
 
-            // Log significant trust score changes
-            if (Math.abs(postTrustScore - preTrustScore) > 5.0) {
-                String changeType = postTrustScore > preTrustScore ? "IMPROVEMENT" : "DEGRADATION";
-                logSecurityEvent(deviceId, "TRUST_CHANGE_" + changeType, 
-                    String.format("Trust score changed from %.1f to %.1f", preTrustScore, postTrustScore), 
-                    telemetry);
-            }
+    /**
+     * True if the device already applied this event or a later one from the same partition.
+     */
+    private static boolean alreadyApplied(DeviceRegistry device, TelemetryEvent event) {
+        return device != null && event.hasPosition()
+            && event.getPartitionId().equals(device.getLastEventPartition())
+            && device.getLastEventSequence() != null
+            && event.getSequenceNumber() <= device.getLastEventSequence();
+    }
 
-            // 10) Handle trust-based actions
-            if (!device.isTrusted()) {
-                String reason = String.format("Trust score below threshold: %.1f < %.1f", 
-                                            postTrustScore, 70.0);
-                
-                sessionService.terminateSession(sessionId, reason);
-                quarantineService.quarantineDevice(deviceId, reason);
-                
-                logSecurityEvent(deviceId, "QUARANTINE_INITIATED", reason, telemetry);
-            }
+    private static String profileOf(PendingEvent event) {
+        return (String) event.event.getTelemetry().get("deviceProfile");
+    }
 
-            // 11) Check for rapid trust degradation pattern
-            if (postTrustScore < preTrustScore - 10) {
-                logSecurityEvent(deviceId, "RAPID_TRUST_DEGRADATION", 
-                    "Device trust score dropped significantly in single cycle", telemetry);
-            }
+    private static void markApplied(DeviceRegistry device, TelemetryEvent event) {
+        if (event.hasPosition()) {
+            device.setLastEventPartition(event.getPartitionId());
+            device.setLastEventSequence(event.getSequenceNumber());
+        }
+    }
 
-            // 12) Additional proactive monitoring
-            performProactiveMonitoring(deviceId, telemetry, device);
+    /**
+     * Pauses the session on a context change and logs a security event for every failed factor.
+     */
+    private void reportVerdicts(PipelineContext ctx) {
+        String deviceId = ctx.getDeviceId();
+        Map<String, Object> telemetry = ctx.getTelemetry();
+
+        // 3) Context check via LocationService
+        if (!ctx.getVerdict(PipelineContext.Factor.CONTEXT)) {
+            sessionService.pauseSession(ctx.getSessionId(), "Location/IP change detected");
+            logSecurityEvent(deviceId, "CONTEXT_CHANGE", 
+                "Location or network context changed", telemetry);
+        }
 
-        } catch (Exception e) {
-            logSecurityEvent(deviceId, "PROCESSING_ERROR", 
-                "Error during telemetry processing: " + e.getMessage(), telemetry);
-            throw e;
-        } finally {
-            // Always clear telemetry context
-            TrustScoreService.clearCurrentTelemetryContext();
+        // 4) Identity verification
+        if (!ctx.getVerdict(PipelineContext.Factor.IDENTITY)) {
+            logSecurityEvent(deviceId, "IDENTITY_FAILURE", 
+                "Device identity verification failed", telemetry);
+        }
+
+        // 5) Firmware & patch validation
+        if (!ctx.getVerdict(PipelineContext.Factor.FIRMWARE)) {
+            logSecurityEvent(deviceId, "FIRMWARE_VIOLATION", 
+                "Firmware does not meet compliance requirements", telemetry);
+        }
+
+        // 6) Anomaly detection
+        if (ctx.getVerdict(PipelineContext.Factor.ANOMALY)) {
+            logSecurityEvent(deviceId, "ANOMALY_DETECTED", 
+                "Behavioral or resource anomaly detected", telemetry);
+        }
+
+        // 7) Compliance evaluation
+        if (!ctx.getVerdict(PipelineContext.Factor.COMPLIANCE)) {
+            logSecurityEvent(deviceId, "COMPLIANCE_VIOLATION", 
+                "Device does not meet policy compliance", telemetry);
+        }
+    }
+
+    /**
+     * Logs trust changes and quarantines the device if it is no longer trusted.
+     */
+    private void handleTrustOutcome(PipelineContext ctx, DeviceRegistry device) {
+        String deviceId = ctx.getDeviceId();
+        Map<String, Object> telemetry = ctx.getTelemetry();
+        double preTrustScore = ctx.getPreTrustScore();
+        double postTrustScore = device.getTrustScore() != null ? device.getTrustScore() : 0.0;
+
+        // Log significant trust score changes
+        if (Math.abs(postTrustScore - preTrustScore) > 5.0) {
+            String changeType = postTrustScore > preTrustScore ? "IMPROVEMENT" : "DEGRADATION";
+            logSecurityEvent(deviceId, "TRUST_CHANGE_" + changeType, 
+                String.format("Trust score changed from %.1f to %.1f", preTrustScore, postTrustScore), 
+                telemetry);
+        }
+
+        // 10) Handle trust-based actions
+        if (!device.isTrusted()) {
+            double threshold = policyService.current()
+                .profileFor((String) telemetry.get("deviceProfile")).getTrustedThreshold();
+            String reason = String.format("Trust score below threshold: %.1f < %.1f", 
+                                        postTrustScore, threshold);
+            
+            sessionService.terminateSession(ctx.getSessionId(), reason);
+            quarantineService.quarantineDevice(deviceId, reason);
+            
+            logSecurityEvent(deviceId, "QUARANTINE_INITIATED", reason, telemetry);
+        }
+
+        // 11) Check for rapid trust degradation pattern
+        if (postTrustScore < preTrustScore - 10) {
+            logSecurityEvent(deviceId, "RAPID_TRUST_DEGRADATION", 
+                "Device trust score dropped significantly in single cycle", telemetry);
+        }
+
+        // 12) Additional proactive monitoring
+        performProactiveMonitoring(deviceId, telemetry, device);
+    }
+
+    private static final class PendingEvent {
+        private final int index;
+        private final TelemetryEvent event;
+        private final ValidationStage.Evaluation evaluation;
+
+        PendingEvent(int index, TelemetryEvent event, ValidationStage.Evaluation evaluation) {
+            this.index = index;
+            this.event = event;
+            this.evaluation = evaluation;
+        }
+
+        String deviceId() {
+            return event.getDeviceId();
         }
     }
 
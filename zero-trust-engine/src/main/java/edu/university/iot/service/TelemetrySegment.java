@@ -0,0 +1,389 @@
+package edu.university.iot.service;
+
+import edu.university.iot.entity.CoordinateData;
+import edu.university.iot.entity.DeviceMessage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * One archive segment file: the telemetry of one day and device bucket.
+ *
+ * Layout: a fixed header, one block per device, the string dictionary and the
+ * device directory. A block holds the device's rows ordered by time, stored
+ * column by column with {@link TelemetryColumnCodec}: delta-of-delta
+ * timestamps, delta ids, run-length dictionary codes for the string columns,
+ * Gorilla doubles and varint counters. The directory gives each device's
+ * block position and time range, so a reader decodes only the block it needs
+ * and skips devices whose range misses the query window.
+ *
+ * Files are written once and never modified; readers map them read-only.
+ */
+final class TelemetrySegment {
+
+    static final int MAGIC = 0x5A544131; // "ZTA1"
+    static final short FORMAT_VERSION = 1;
+
+    // magic, version, row count, device count, dictionary offset, directory offset
+    private static final int HEADER_BYTES = 4 + 2 + 4 + 4 + 8 + 8;
+
+    private static final int FLAG_CERTIFICATE_VALID = 1;
+    private static final int FLAG_MALWARE = 2;
+    private static final int FLAG_COORDINATES = 4;
+
+    // Dictionary-encoded string columns, in block order
+    private static final int LOCATION = 0;
+    private static final int IP_ADDRESS = 1;
+    private static final int FIRMWARE_VERSION = 2;
+    private static final int PATCH_STATUS = 3;
+    private static final int DEVICE_PROFILE = 4;
+    private static final int SUBNET = 5;
+    private static final int STRING_COLUMNS = 6;
+
+    private TelemetrySegment() {
+    }
+
+    // Saturates for instants beyond the +-292,000 year range of epoch micros
+    private static long toMicros(Instant instant) {
+        long seconds = instant.getEpochSecond();
+        if (seconds >= Long.MAX_VALUE / 1_000_000L) {
+            return Long.MAX_VALUE;
+        }
+        if (seconds <= Long.MIN_VALUE / 1_000_000L) {
+            return Long.MIN_VALUE;
+        }
+        return seconds * 1_000_000L + instant.getNano() / 1_000;
+    }
+
+    private static Instant fromMicros(long micros) {
+        return Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000L), Math.floorMod(micros, 1_000_000L) * 1_000L);
+    }
+
+    /**
+     * Writes a new segment file device by device; {@link #finish} makes it complete.
+     */
+    static final class Writer implements Closeable {
+        private final FileChannel channel;
+        private final TelemetryColumnCodec.Encoder block = new TelemetryColumnCodec.Encoder(64 * 1024);
+        private final Map<String, Integer> codes = new HashMap<>();
+        // Code 0 is null
+        private final List<String> dictionary = new ArrayList<>(Collections.singletonList(null));
+        private final List<DirectoryEntry> directory = new ArrayList<>();
+        private long position = HEADER_BYTES;
+        private int rowCount;
+
+        Writer(Path file) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            // The header is written last, once the offsets are known
+            this.channel.position(HEADER_BYTES);
+        }
+
+        /**
+         * Appends one device's rows, which must be ordered by timestamp; each device at most once.
+         */
+        void writeDevice(String deviceId, List<DeviceMessage> rows) throws IOException {
+            int n = rows.size();
+            if (n == 0) {
+                return;
+            }
+            long[] micros = new long[n];
+            long[] ids = new long[n];
+            int[][] strings = new int[STRING_COLUMNS][n];
+            int[] flags = new int[n];
+            double[][] doubles = new double[6][n];
+            long[][] counters = new long[3][n];
+
+            for (int i = 0; i < n; i++) {
+                DeviceMessage m = rows.get(i);
+                micros[i] = toMicros(m.getTimestamp());
+                ids[i] = m.getId();
+                CoordinateData c = m.getCoordinates();
+                strings[LOCATION][i] = code(m.getLocation());
+                strings[IP_ADDRESS][i] = code(m.getIpAddress());
+                strings[FIRMWARE_VERSION][i] = code(m.getFirmwareVersion());
+                strings[PATCH_STATUS][i] = code(m.getPatchStatus());
+                strings[DEVICE_PROFILE][i] = code(m.getDeviceProfile());
+                strings[SUBNET][i] = code(c != null ? c.getSubnet() : null);
+                flags[i] = (m.isCertificateValid() ? FLAG_CERTIFICATE_VALID : 0)
+                        | (m.isMalwareSignatureDetected() ? FLAG_MALWARE : 0)
+                        | (c != null ? FLAG_COORDINATES : 0);
+                doubles[0][i] = m.getCpuUsage();
+                doubles[1][i] = m.getMemoryUsage();
+                doubles[2][i] = m.getNetworkTrafficVolume();
+                doubles[3][i] = m.getAnomalyScore();
+                doubles[4][i] = c != null ? c.getLat() : 0;
+                doubles[5][i] = c != null ? c.getLng() : 0;
+                counters[0][i] = m.getSessionDuration();
+                counters[1][i] = m.getSuspiciousActivityScore();
+                counters[2][i] = m.getConsecutiveAnomalies();
+            }
+
+            block.reset();
+            TelemetryColumnCodec.encodeTimestamps(block, micros, n);
+            TelemetryColumnCodec.encodeDeltas(block, ids, n);
+            for (int[] column : strings) {
+                TelemetryColumnCodec.encodeRuns(block, column, n);
+            }
+            TelemetryColumnCodec.encodeRuns(block, flags, n);
+            for (double[] column : doubles) {
+                TelemetryColumnCodec.encodeGorilla(block, column, n);
+            }
+            for (long[] column : counters) {
+                TelemetryColumnCodec.encodeDeltas(block, column, n);
+            }
+
+            ByteBuffer bytes = block.toByteBuffer();
+            int length = bytes.remaining();
+            writeFully(bytes);
+            directory.add(new DirectoryEntry(deviceId, position, length, n, micros[0], micros[n - 1]));
+            position += length;
+            rowCount += n;
+        }
+
+        /**
+         * Writes dictionary, directory and header, and forces the file to disk.
+         */
+        void finish() throws IOException {
+            TelemetryColumnCodec.Encoder tail = new TelemetryColumnCodec.Encoder(4096);
+            long dictionaryOffset = position;
+            tail.writeVarLong(dictionary.size() - 1);
+            for (int i = 1; i < dictionary.size(); i++) {
+                writeString(tail, dictionary.get(i));
+            }
+            long directoryOffset = dictionaryOffset + tail.size();
+            for (DirectoryEntry entry : directory) {
+                writeString(tail, entry.deviceId);
+                tail.writeVarLong(entry.offset);
+                tail.writeVarLong(entry.length);
+                tail.writeVarLong(entry.rows);
+                tail.writeZigZag(entry.minMicros);
+                tail.writeZigZag(entry.maxMicros);
+            }
+            writeFully(tail.toByteBuffer());
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putShort(FORMAT_VERSION).putInt(rowCount).putInt(directory.size())
+                  .putLong(dictionaryOffset).putLong(directoryOffset).flip();
+            channel.write(header, 0);
+            channel.force(true);
+        }
+
+        int getRowCount() {
+            return rowCount;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        private int code(String value) {
+            if (value == null) {
+                return 0;
+            }
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = dictionary.size();
+                dictionary.add(value);
+                codes.put(value, code);
+            }
+            return code;
+        }
+
+        private void writeFully(ByteBuffer bytes) throws IOException {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+
+        private static void writeString(TelemetryColumnCodec.Encoder out, String value) {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            out.writeVarLong(utf8.length);
+            for (byte b : utf8) {
+                out.writeByte(b);
+            }
+        }
+    }
+
+    /**
+     * A segment file mapped read-only; safe to share between threads.
+     */
+    static final class Reader {
+        private final Path file;
+        private final MappedByteBuffer mapped;
+        private final int rowCount;
+        private final String[] dictionary;
+        private final Map<String, DirectoryEntry> directory;
+
+        private Reader(Path file, MappedByteBuffer mapped, int rowCount, String[] dictionary,
+                       Map<String, DirectoryEntry> directory) {
+            this.file = file;
+            this.mapped = mapped;
+            this.rowCount = rowCount;
+            this.dictionary = dictionary;
+            this.directory = directory;
+        }
+
+        static Reader open(Path file) throws IOException {
+            MappedByteBuffer mapped;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                if (channel.size() > Integer.MAX_VALUE) {
+                    throw new IOException("Segment " + file + " is too large to map (" + channel.size() + " bytes)");
+                }
+                // The mapping stays valid after the channel is closed
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+
+            ByteBuffer in = mapped.duplicate();
+            if (in.remaining() < HEADER_BYTES || in.getInt() != MAGIC) {
+                throw new IOException("Not a telemetry segment: " + file);
+            }
+            short version = in.getShort();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported segment version " + version + " in " + file);
+            }
+            int rows = in.getInt();
+            int devices = in.getInt();
+            long dictionaryOffset = in.getLong();
+            long directoryOffset = in.getLong();
+
+            in.position((int) dictionaryOffset);
+            TelemetryColumnCodec.Decoder decoder = new TelemetryColumnCodec.Decoder(in);
+            String[] dictionary = new String[(int) decoder.readVarLong() + 1];
+            for (int i = 1; i < dictionary.length; i++) {
+                dictionary[i] = readString(in, decoder);
+            }
+
+            in.position((int) directoryOffset);
+            Map<String, DirectoryEntry> directory = new HashMap<>(devices * 2);
+            for (int i = 0; i < devices; i++) {
+                String deviceId = readString(in, decoder);
+                directory.put(deviceId, new DirectoryEntry(deviceId, decoder.readVarLong(),
+                        (int) decoder.readVarLong(), (int) decoder.readVarLong(),
+                        decoder.readZigZag(), decoder.readZigZag()));
+            }
+            return new Reader(file, mapped, rows, dictionary, directory);
+        }
+
+        Set<String> deviceIds() {
+            return Collections.unmodifiableSet(directory.keySet());
+        }
+
+        int getRowCount() {
+            return rowCount;
+        }
+
+        Path getFile() {
+            return file;
+        }
+
+        /**
+         * Rows of one device with from <= timestamp < to, oldest first.
+         */
+        List<DeviceMessage> read(String deviceId, Instant from, Instant to) {
+            DirectoryEntry entry = directory.get(deviceId);
+            if (entry == null) {
+                return List.of();
+            }
+            long fromMicros = toMicros(from);
+            long toMicros = toMicros(to);
+            if (entry.maxMicros < fromMicros || entry.minMicros >= toMicros) {
+                return List.of();
+            }
+
+            int n = entry.rows;
+            ByteBuffer in = mapped.duplicate();
+            in.position((int) entry.offset);
+            in.limit((int) (entry.offset + entry.length));
+            TelemetryColumnCodec.Decoder decoder = new TelemetryColumnCodec.Decoder(in);
+
+            long[] micros = new long[n];
+            long[] ids = new long[n];
+            int[][] strings = new int[STRING_COLUMNS][n];
+            int[] flags = new int[n];
+            double[][] doubles = new double[6][n];
+            long[][] counters = new long[3][n];
+
+            TelemetryColumnCodec.decodeTimestamps(decoder, micros, n);
+            TelemetryColumnCodec.decodeDeltas(decoder, ids, n);
+            for (int[] column : strings) {
+                TelemetryColumnCodec.decodeRuns(decoder, column, n);
+            }
+            TelemetryColumnCodec.decodeRuns(decoder, flags, n);
+            for (double[] column : doubles) {
+                TelemetryColumnCodec.decodeGorilla(decoder, column, n);
+            }
+            for (long[] column : counters) {
+                TelemetryColumnCodec.decodeDeltas(decoder, column, n);
+            }
+
+            List<DeviceMessage> result = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                if (micros[i] < fromMicros || micros[i] >= toMicros) {
+                    continue;
+                }
+                DeviceMessage m = new DeviceMessage();
+                m.setId(ids[i]);
+                m.setDeviceId(deviceId);
+                m.setTimestamp(fromMicros(micros[i]));
+                m.setLocation(dictionary[strings[LOCATION][i]]);
+                m.setIpAddress(dictionary[strings[IP_ADDRESS][i]]);
+                m.setFirmwareVersion(dictionary[strings[FIRMWARE_VERSION][i]]);
+                m.setPatchStatus(dictionary[strings[PATCH_STATUS][i]]);
+                m.setDeviceProfile(dictionary[strings[DEVICE_PROFILE][i]]);
+                m.setCertificateValid((flags[i] & FLAG_CERTIFICATE_VALID) != 0);
+                m.setMalwareSignatureDetected((flags[i] & FLAG_MALWARE) != 0);
+                if ((flags[i] & FLAG_COORDINATES) != 0) {
+                    m.setCoordinates(new CoordinateData(doubles[4][i], doubles[5][i],
+                                                        dictionary[strings[SUBNET][i]]));
+                }
+                m.setCpuUsage(doubles[0][i]);
+                m.setMemoryUsage(doubles[1][i]);
+                m.setNetworkTrafficVolume(doubles[2][i]);
+                m.setAnomalyScore(doubles[3][i]);
+                m.setSessionDuration((int) counters[0][i]);
+                m.setSuspiciousActivityScore((int) counters[1][i]);
+                m.setConsecutiveAnomalies((int) counters[2][i]);
+                result.add(m);
+            }
+            return result;
+        }
+
+        private static String readString(ByteBuffer in, TelemetryColumnCodec.Decoder decoder) {
+            byte[] utf8 = new byte[(int) decoder.readVarLong()];
+            in.get(utf8);
+            return new String(utf8, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static final class DirectoryEntry {
+        final String deviceId;
+        final long offset;
+        final int length;
+        final int rows;
+        final long minMicros;
+        final long maxMicros;
+
+        DirectoryEntry(String deviceId, long offset, int length, int rows, long minMicros, long maxMicros) {
+            this.deviceId = deviceId;
+            this.offset = offset;
+            this.length = length;
+            this.rows = rows;
+            this.minMicros = minMicros;
+            this.maxMicros = maxMicros;
+        }
+    }
+}
@@ -12,7 +12,6 @@ import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * Enhanced Service for comprehensive trust analysis using trust_score_history data.
@@ -25,25 +24,18 @@ public class TrustAnalysisService {
     private final DeviceRegistryRepository registryRepo;
     private final TrustScoreHistoryRepository trustHistoryRepo;
     private final TrustScoreService trustScoreService;
-
-    // Trust scoring weights (should match TrustScoreService)
-    private static final double TRUSTED_THRESHOLD = 70.0;
-    private static final Map<String, Double> FACTOR_WEIGHTS = Map.of(
-        "identity", 5.0,
-        "context", 2.0,
-        "firmware", 5.0,
-        "anomaly", 10.0,
-        "compliance", 10.0
-    );
+    private final TrustPolicyService policyService;
 
     public TrustAnalysisService(
             DeviceRegistryRepository registryRepo,
             TrustScoreHistoryRepository trustHistoryRepo,
-            TrustScoreService trustScoreService) {
+            TrustScoreService trustScoreService,
+            TrustPolicyService policyService) {
         
         this.registryRepo = registryRepo;
         this.trustHistoryRepo = trustHistoryRepo;
         this.trustScoreService = trustScoreService;
+        this.policyService = policyService;
     }
 
     /**
@@ -61,23 +53,26 @@ public class TrustAnalysisService {
             double currentTrustScore = device.getTrustScore() != null ? device.getTrustScore() : 50.0;
             analysis.setCurrentTrustScore(currentTrustScore);
             analysis.setTrusted(device.isTrusted());
-            analysis.setTrustThreshold(TRUSTED_THRESHOLD);
+            analysis.setTrustThreshold(policyService.current().getDefaultProfile().getTrustedThreshold());
             analysis.setLastUpdated(Instant.now());
 
+            // One query and one pass over the 30-day window feed every section
+            TrustHistoryScan scan = scanHistory(deviceId);
+
             // Analyze using trust_score_history data
-            analyzeTrustFactorsFromHistory(deviceId, analysis);
+            analyzeTrustFactorsFromHistory(deviceId, scan, analysis);
             
             // Historical context
-            analyzeHistoricalContext(deviceId, analysis);
+            analyzeHistoricalContext(deviceId, scan, analysis);
 
             // Risk assessment
-            performRiskAssessment(deviceId, analysis, currentTrustScore);
+            performRiskAssessment(deviceId, scan, analysis, currentTrustScore);
 
             // Generate recommendations
             generateRecommendations(deviceId, analysis);
 
             // Performance metrics from history
-            calculatePerformanceMetricsFromHistory(deviceId, analysis);
+            calculatePerformanceMetricsFromHistory(deviceId, scan, analysis);
 
         } catch (Exception e) {
             logger.error("Error performing trust analysis for device [{}]: {}", deviceId, e.getMessage(), e);
@@ -90,170 +85,141 @@ public class TrustAnalysisService {
 
     // === PRIVATE HELPER METHODS ===
 
-    private void analyzeTrustFactorsFromHistory(String deviceId, TrustAnalysisDto analysis) {
+    private TrustHistoryScan scanHistory(String deviceId) {
+        Instant now = Instant.now();
+        List<TrustScoreHistory> monthHistory = trustHistoryRepo
+            .findByDeviceIdAndTimestampAfterOrderByTimestampDesc(deviceId, now.minus(TrustHistoryScan.MONTH));
+
+        if (monthHistory.isEmpty()) {
+            // No recent history - fall back to the latest older rows for factor analysis
+            return TrustHistoryScan.ofFallback(trustHistoryRepo.findTop5ByDeviceIdOrderByTimestampDesc(deviceId));
+        }
+        return TrustHistoryScan.of(monthHistory, now);
+    }
+
+    private void analyzeTrustFactorsFromHistory(String deviceId, TrustHistoryScan scan, TrustAnalysisDto analysis) {
         Map<String, Object> trustFactors = new HashMap<>();
         Map<String, String> factorStatuses = new HashMap<>();
         
         try {
-            Instant cutoff = Instant.now().minusSeconds(24 * 3600); // 24 hours
-            
-            // Get recent trust score history
-            List<TrustScoreHistory> recentHistory = trustHistoryRepo
-                .findByDeviceIdAndTimestampAfterOrderByTimestampDesc(deviceId, cutoff);
-            
-            if (recentHistory.isEmpty()) {
-                // No recent history - check older data
-                List<TrustScoreHistory> allHistory = trustHistoryRepo
-                    .findByDeviceIdOrderByTimestampDesc(deviceId);
-                if (!allHistory.isEmpty()) {
-                    recentHistory = allHistory.stream().limit(5).collect(Collectors.toList());
-                }
-            }
-
             // Identity factor analysis from history
-            Map<String, Object> identityAnalysis = analyzeIdentityFromHistory(recentHistory);
+            Map<String, Object> identityAnalysis = analyzeIdentityFromHistory(scan);
             trustFactors.put("identity", identityAnalysis);
             factorStatuses.put("identity", determineFactorStatus(identityAnalysis, "identity"));
             
             // Context factor analysis from history
-            Map<String, Object> contextAnalysis = analyzeContextFromHistory(recentHistory);
+            Map<String, Object> contextAnalysis = analyzeContextFromHistory(scan);
             trustFactors.put("context", contextAnalysis);
             factorStatuses.put("context", determineFactorStatus(contextAnalysis, "context"));
             
             // Firmware factor analysis from history
-            Map<String, Object> firmwareAnalysis = analyzeFirmwareFromHistory(recentHistory);
+            Map<String, Object> firmwareAnalysis = analyzeFirmwareFromHistory(scan);
             trustFactors.put("firmware", firmwareAnalysis);
             factorStatuses.put("firmware", determineFactorStatus(firmwareAnalysis, "firmware"));
             
             // Anomaly factor analysis from history
-            Map<String, Object> anomalyAnalysis = analyzeAnomalyFromHistory(recentHistory);
+            Map<String, Object> anomalyAnalysis = analyzeAnomalyFromHistory(scan);
             trustFactors.put("behavior", anomalyAnalysis);
             factorStatuses.put("behavior", determineFactorStatus(anomalyAnalysis, "anomaly"));
             
             // Compliance factor analysis from history
-            Map<String, Object> complianceAnalysis = analyzeComplianceFromHistory(recentHistory);
+            Map<String, Object> complianceAnalysis = analyzeComplianceFromHistory(scan);
             trustFactors.put("compliance", complianceAnalysis);
             factorStatuses.put("compliance", determineFactorStatus(complianceAnalysis, "compliance"));
             
             analysis.setTrustFactors(trustFactors);
             analysis.setFactorStatuses(factorStatuses);
-            analysis.setFactorWeights(FACTOR_WEIGHTS);
+            analysis.setFactorWeights(policyService.current().getDefaultProfile().getPenaltyWeights());
             
         } catch (Exception e) {
             logger.error("Error analyzing trust factors from history for device [{}]: {}", deviceId, e.getMessage());
         }
     }
 
-    private Map<String, Object> analyzeIdentityFromHistory(List<TrustScoreHistory> history) {
+    private Map<String, Object> analyzeIdentityFromHistory(TrustHistoryScan scan) {
         Map<String, Object> analysis = new HashMap<>();
         
-        if (history.isEmpty()) {
+        if (scan.factorRows == 0) {
             analysis.put("status", "NO_DATA");
             return analysis;
         }
         
-        long totalChecks = history.size();
-        long failures = history.stream()
-            .mapToLong(h -> h.isIdentityPassed() ? 0L : 1L)
-            .sum();
-        double failureRate = totalChecks > 0 ? (double) failures / totalChecks : 0.0;
-        
-        analysis.put("totalChecks", totalChecks);
-        analysis.put("failures", failures);
-        analysis.put("failureRate", Math.round(failureRate * 1000.0) / 10.0);
-        analysis.put("lastCheck", history.get(0).getTimestamp());
+        analysis.put("totalChecks", scan.factorRows);
+        analysis.put("failures", scan.identityFailures);
+        analysis.put("failureRate", percent(scan.identityFailures, scan.factorRows));
+        analysis.put("lastCheck", scan.lastCheck);
         
         return analysis;
     }
     
-    private Map<String, Object> analyzeContextFromHistory(List<TrustScoreHistory> history) {
+    private Map<String, Object> analyzeContextFromHistory(TrustHistoryScan scan) {
         Map<String, Object> analysis = new HashMap<>();
         
-        if (history.isEmpty()) {
+        if (scan.factorRows == 0) {
             analysis.put("status", "NO_DATA");
             return analysis;
         }
         
         // Count location changes and context failures
-        Set<String> uniqueLocations = history.stream()
-            .map(TrustScoreHistory::getLocationAtChange)
-            .filter(Objects::nonNull)
-            .collect(Collectors.toSet());
-            
-        long contextFailures = history.stream()
-            .mapToLong(h -> h.isContextPassed() ? 0L : 1L)
-            .sum();
-            
-        analysis.put("locationChanges", uniqueLocations.size());
-        analysis.put("uniqueLocations", uniqueLocations);
-        analysis.put("contextFailures", contextFailures);
+        analysis.put("locationChanges", (long) scan.locations.size());
+        analysis.put("uniqueLocations", scan.locations);
+        analysis.put("contextFailures", scan.contextFailures);
         
         return analysis;
     }
     
-    private Map<String, Object> analyzeFirmwareFromHistory(List<TrustScoreHistory> history) {
+    private Map<String, Object> analyzeFirmwareFromHistory(TrustHistoryScan scan) {
         Map<String, Object> analysis = new HashMap<>();
         
-        if (history.isEmpty()) {
+        if (scan.factorRows == 0) {
             analysis.put("status", "NO_DATA");
             return analysis;
         }
         
-        long totalChecks = history.size();
-        long failures = history.stream()
-            .mapToLong(h -> h.isFirmwareValid() ? 0L : 1L)
-            .sum();
-            
-        analysis.put("totalChecks", totalChecks);
-        analysis.put("failures", failures);
-        analysis.put("isValid", failures == 0);
-        analysis.put("lastCheck", history.get(0).getTimestamp());
+        analysis.put("totalChecks", scan.factorRows);
+        analysis.put("failures", scan.firmwareFailures);
+        analysis.put("isValid", scan.firmwareFailures == 0);
+        analysis.put("lastCheck", scan.lastCheck);
         
         return analysis;
     }
     
-    private Map<String, Object> analyzeAnomalyFromHistory(List<TrustScoreHistory> history) {
+    private Map<String, Object> analyzeAnomalyFromHistory(TrustHistoryScan scan) {
         Map<String, Object> analysis = new HashMap<>();
         
-        if (history.isEmpty()) {
+        if (scan.factorRows == 0) {
             analysis.put("status", "NO_DATA");
             return analysis;
         }
         
-        long totalChecks = history.size();
-        long anomalies = history.stream()
-            .mapToLong(h -> h.isAnomalyDetected() ? 1L : 0L)
-            .sum();
-        double anomalyRate = totalChecks > 0 ? (double) anomalies / totalChecks : 0.0;
-        
-        analysis.put("totalChecks", totalChecks);
-        analysis.put("anomaliesDetected", anomalies);
-        analysis.put("anomalyRate", Math.round(anomalyRate * 1000.0) / 10.0);
+        analysis.put("totalChecks", scan.factorRows);
+        analysis.put("anomaliesDetected", scan.anomalies);
+        analysis.put("anomalyRate", percent(scan.anomalies, scan.factorRows));
         
         return analysis;
     }
     
-    private Map<String, Object> analyzeComplianceFromHistory(List<TrustScoreHistory> history) {
+    private Map<String, Object> analyzeComplianceFromHistory(TrustHistoryScan scan) {
         Map<String, Object> analysis = new HashMap<>();
         
-        if (history.isEmpty()) {
+        if (scan.factorRows == 0) {
             analysis.put("status", "NO_DATA");
             return analysis;
         }
         
-        long totalChecks = history.size();
-        long violations = history.stream()
-            .mapToLong(h -> h.isCompliancePassed() ? 0L : 1L)
-            .sum();
-        double violationRate = totalChecks > 0 ? (double) violations / totalChecks : 0.0;
-        
-        analysis.put("totalChecks", totalChecks);
-        analysis.put("violations", violations);
-        analysis.put("violationRate", Math.round(violationRate * 1000.0) / 10.0);
+        analysis.put("totalChecks", scan.factorRows);
+        analysis.put("violations", scan.complianceViolations);
+        analysis.put("violationRate", percent(scan.complianceViolations, scan.factorRows));
         
         return analysis;
     }
 
+    /** Rate as a percentage with one decimal place. */
+    private static double percent(long count, long total) {
+        double rate = total > 0 ? (double) count / total : 0.0;
+        return Math.round(rate * 1000.0) / 10.0;
+    }
+
     private String determineFactorStatus(Map<String, Object> factorData, String factorType) {
         if (factorData.containsKey("status") && "NO_DATA".equals(factorData.get("status"))) {
             return "NO_DATA";
@@ -295,46 +261,28 @@ public class TrustAnalysisService {
         }
     }
 
-    private void analyzeHistoricalContext(String deviceId, TrustAnalysisDto analysis) {
+    private void analyzeHistoricalContext(String deviceId, TrustHistoryScan scan, TrustAnalysisDto analysis) {
         try {
-            // Get 7-day and 30-day history for averages
-            Instant cutoff7d = Instant.now().minusSeconds(7 * 24 * 3600);
-            Instant cutoff30d = Instant.now().minusSeconds(30 * 24 * 3600);
-            
-            List<TrustScoreHistory> history7d = trustHistoryRepo
-                .findByDeviceIdAndTimestampAfterOrderByTimestampDesc(deviceId, cutoff7d);
-            List<TrustScoreHistory> history30d = trustHistoryRepo
-                .findByDeviceIdAndTimestampAfterOrderByTimestampDesc(deviceId, cutoff30d);
-            
-            if (!history7d.isEmpty()) {
-                double avg7d = history7d.stream()
-                    .mapToDouble(TrustScoreHistory::getNewScore)
-                    .average()
-                    .orElse(analysis.getCurrentTrustScore());
+            // 7-day and 30-day averages
+            if (scan.weekRows > 0) {
+                double avg7d = scan.weekScoreSum / scan.weekRows;
                 analysis.setAverageTrustScore7Days(Math.round(avg7d * 100.0) / 100.0);
             }
             
-            if (!history30d.isEmpty()) {
-                double avg30d = history30d.stream()
-                    .mapToDouble(TrustScoreHistory::getNewScore)
-                    .average()
-                    .orElse(analysis.getCurrentTrustScore());
+            if (scan.monthRows > 0) {
+                double avg30d = scan.monthScoreSum / scan.monthRows;
                 analysis.setAverageTrustScore30Days(Math.round(avg30d * 100.0) / 100.0);
             }
             
-            // Determine trend from recent history
-            if (!history7d.isEmpty()) {
-                List<TrustScoreHistory> recent5 = history7d.stream().limit(5).collect(Collectors.toList());
-                double avgChange = recent5.stream()
-                    .mapToDouble(TrustScoreHistory::getScoreChange)
-                    .average()
-                    .orElse(0.0);
+            // Determine trend from the most recent changes of the week
+            if (scan.weekRows > 0) {
+                double avgChange = scan.trendChangeSum / scan.trendRows;
                 
                 if (avgChange > 2) analysis.setTrendDirection("IMPROVING");
                 else if (avgChange < -2) analysis.setTrendDirection("DEGRADING");
                 else analysis.setTrendDirection("STABLE");
                 
-                analysis.setTrustScoreChanges24h(recent5.size());
+                analysis.setTrustScoreChanges24h(scan.trendRows);
             }
             
         } catch (Exception e) {
@@ -342,7 +290,8 @@ public class TrustAnalysisService {
         }
     }
 
-    private void performRiskAssessment(String deviceId, TrustAnalysisDto analysis, double currentTrustScore) {
+    private void performRiskAssessment(String deviceId, TrustHistoryScan scan,
+                                       TrustAnalysisDto analysis, double currentTrustScore) {
         List<String> riskIndicators = new ArrayList<>();
         List<String> positiveIndicators = new ArrayList<>();
         
@@ -394,15 +343,8 @@ public class TrustAnalysisService {
             }
             
             // Check for recent critical events
-            Instant cutoff = Instant.now().minusSeconds(24 * 3600);
-            List<TrustScoreHistory> criticalEvents = trustHistoryRepo
-                .findByDeviceIdAndTimestampAfterOrderByTimestampDesc(deviceId, cutoff)
-                .stream()
-                .filter(h -> "CRITICAL".equals(h.getSeverity()) || "HIGH".equals(h.getSeverity()))
-                .collect(Collectors.toList());
-                
-            if (!criticalEvents.isEmpty()) {
-                riskIndicators.add("Recent critical trust score events detected (" + criticalEvents.size() + ")");
+            if (scan.criticalEvents24h > 0) {
+                riskIndicators.add("Recent critical trust score events detected (" + scan.criticalEvents24h + ")");
                 if ("LOW".equals(riskLevel) || "MEDIUM".equals(riskLevel)) {
                     riskLevel = "HIGH";
                 }
@@ -490,44 +432,25 @@ public class TrustAnalysisService {
         }
     }
 
-    private void calculatePerformanceMetricsFromHistory(String deviceId, TrustAnalysisDto analysis) {
+    private void calculatePerformanceMetricsFromHistory(String deviceId, TrustHistoryScan scan,
+                                                        TrustAnalysisDto analysis) {
         Map<String, Integer> complianceMetrics = new HashMap<>();
         Map<String, Integer> reliabilityMetrics = new HashMap<>();
         
         try {
-            Instant cutoff = Instant.now().minusSeconds(7 * 24 * 3600); // 7 days
-            
-            List<TrustScoreHistory> weekHistory = trustHistoryRepo
-                .findByDeviceIdAndTimestampAfterOrderByTimestampDesc(deviceId, cutoff);
-            
-            if (!weekHistory.isEmpty()) {
+            // 7-day window
+            if (scan.weekRows > 0) {
                 // Compliance metrics from history
-                long compliantCount = weekHistory.stream()
-                    .mapToLong(h -> h.isCompliancePassed() ? 1L : 0L)
-                    .sum();
-                int complianceRate = (int) Math.round((double) compliantCount / weekHistory.size() * 100);
-                complianceMetrics.put("policyCompliance", complianceRate);
+                complianceMetrics.put("policyCompliance", wholePercent(scan.weekCompliant, scan.weekRows));
                 
                 // Identity reliability
-                long identitySuccessCount = weekHistory.stream()
-                    .mapToLong(h -> h.isIdentityPassed() ? 1L : 0L)
-                    .sum();
-                int identityReliability = (int) Math.round((double) identitySuccessCount / weekHistory.size() * 100);
-                reliabilityMetrics.put("identityReliability", identityReliability);
+                reliabilityMetrics.put("identityReliability", wholePercent(scan.weekIdentityPassed, scan.weekRows));
                 
                 // Behavioral stability (inverse of anomaly detection)
-                long normalBehaviorCount = weekHistory.stream()
-                    .mapToLong(h -> h.isAnomalyDetected() ? 0L : 1L)
-                    .sum();
-                int behavioralStability = (int) Math.round((double) normalBehaviorCount / weekHistory.size() * 100);
-                reliabilityMetrics.put("behavioralStability", behavioralStability);
+                reliabilityMetrics.put("behavioralStability", wholePercent(scan.weekNormalBehavior, scan.weekRows));
                 
                 // Context stability
-                long contextStableCount = weekHistory.stream()
-                    .mapToLong(h -> h.isContextPassed() ? 1L : 0L)
-                    .sum();
-                int contextStability = (int) Math.round((double) contextStableCount / weekHistory.size() * 100);
-                reliabilityMetrics.put("contextStability", contextStability);
+                reliabilityMetrics.put("contextStability", wholePercent(scan.weekContextPassed, scan.weekRows));
             }
             
             analysis.setComplianceMetrics(complianceMetrics);
@@ -538,6 +461,10 @@ public class TrustAnalysisService {
         }
     }
 
+    private static int wholePercent(long count, long total) {
+        return (int) Math.round((double) count / total * 100);
+    }
+
     private String formatFactorRisk(String factor) {
         return switch (factor) {
             case "identity" -> "Identity verification";
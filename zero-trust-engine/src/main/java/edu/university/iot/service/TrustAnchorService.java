@@ -0,0 +1,449 @@
+package edu.university.iot.service;
+
+import edu.university.iot.config.AnchoringConfig;
+import edu.university.iot.model.TrustAnchorBatch;
+import edu.university.iot.model.TrustScoreHistory;
+import edu.university.iot.model.dtoModel.InclusionProofDto;
+import edu.university.iot.repository.TrustAnchorBatchRepository;
+import edu.university.iot.repository.TrustScoreHistoryRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.web3j.abi.FunctionEncoder;
+import org.web3j.abi.datatypes.Function;
+import org.web3j.abi.datatypes.generated.Bytes32;
+import org.web3j.abi.datatypes.generated.Uint256;
+import org.web3j.crypto.Credentials;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.methods.request.Transaction;
+import org.web3j.protocol.core.methods.response.EthCall;
+import org.web3j.protocol.core.methods.response.EthSendTransaction;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+import org.web3j.tx.ClientTransactionManager;
+import org.web3j.tx.RawTransactionManager;
+import org.web3j.tx.TransactionManager;
+import org.web3j.utils.Numeric;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Seals trust score history rows into Merkle batches and anchors each batch
+ * root on the TrustRecord contract with a single transaction.
+ *
+ * Rows are assigned to a batch in the same database transaction that stores
+ * the batch, so every row belongs to exactly one root. Submission happens
+ * afterwards; batches whose transaction failed or was dropped are resubmitted
+ * on the next run, except when the contract already holds a different root for
+ * the batch id: such a batch can never be anchored and is parked as REJECTED.
+ * Each batch also stores the ids and leaf hashes of its rows,
+ * so inclusion proofs for the rows that remain can be built after retention
+ * has deleted others of the same batch.
+ */
+@Service
+public class TrustAnchorService {
+
+    private static final Logger log = LoggerFactory.getLogger(TrustAnchorService.class);
+
+    // A submitted transaction without a receipt after this long is resubmitted
+    private static final Duration RECEIPT_TIMEOUT = Duration.ofMinutes(10);
+
+    // Revert reason of TrustRecord.anchorRoot when the batch id holds another root
+    private static final String ROOT_CONFLICT = "batch already anchored with a different root";
+
+    // Stored leaf: history id plus keccak-256 leaf hash
+    private static final int HASH_BYTES = 32;
+    private static final int LEAF_ENTRY_BYTES = Long.BYTES + HASH_BYTES;
+
+    private final TrustScoreHistoryRepository historyRepo;
+    private final TrustAnchorBatchRepository batchRepo;
+    private final Web3j web3j;
+    private final AnchoringConfig config;
+    private final TransactionTemplate txTemplate;
+
+    private final ReentrantLock runLock = new ReentrantLock();
+
+    private volatile TransactionManager transactionManager;
+
+    public TrustAnchorService(TrustScoreHistoryRepository historyRepo,
+                              TrustAnchorBatchRepository batchRepo,
+                              @Lazy Web3j web3j,
+                              AnchoringConfig config,
+                              PlatformTransactionManager platformTxManager) {
+        this.historyRepo = historyRepo;
+        this.batchRepo = batchRepo;
+        this.web3j = web3j;
+        this.config = config;
+        this.txTemplate = new TransactionTemplate(platformTxManager);
+    }
+
+    @Scheduled(fixedDelayString = "${anchoring.interval-ms:60000}")
+    public void scheduledAnchor() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        try {
+            anchorPending();
+        } catch (Exception e) {
+            log.error("Trust anchoring run failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Confirms outstanding transactions, resubmits failed batches and seals
+     * every unanchored history row into new batches.
+     *
+     * @return summary of the run
+     */
+    public Map<String, Object> anchorPending() {
+        runLock.lock();
+        try {
+            return anchorPendingLocked();
+        } finally {
+            runLock.unlock();
+        }
+    }
+
+    private Map<String, Object> anchorPendingLocked() {
+        if (config.getContractAddress() == null || config.getContractAddress().isBlank()) {
+            throw new IllegalStateException("anchoring.contract-address is not configured");
+        }
+
+        int confirmed = confirmSubmitted();
+        int resubmitted = 0;
+        int rejected = 0;
+        for (TrustAnchorBatch batch : batchRepo.findByStatusInOrderByIdAsc(
+                List.of(TrustAnchorBatch.Status.SEALED, TrustAnchorBatch.Status.FAILED))) {
+            submit(batch);
+            resubmitted++;
+            if (batch.getStatus() == TrustAnchorBatch.Status.REJECTED) {
+                rejected++;
+            }
+        }
+
+        int sealed = 0;
+        int leaves = 0;
+        int batchSize = Math.max(1, config.getMaxBatchSize());
+        while (true) {
+            List<TrustScoreHistory> rows =
+                    historyRepo.findByAnchorBatchIdIsNullOrderByIdAsc(PageRequest.of(0, batchSize));
+            if (rows.isEmpty()) {
+                break;
+            }
+            TrustAnchorBatch batch = seal(rows);
+            if (batch == null) {
+                // Lost the rows to another run; whatever is left is picked up next time
+                break;
+            }
+            submit(batch);
+            sealed++;
+            leaves += rows.size();
+            if (rows.size() < batchSize) {
+                break;
+            }
+        }
+
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("confirmedBatches", confirmed);
+        summary.put("resubmittedBatches", resubmitted);
+        summary.put("rejectedBatches", rejected);
+        summary.put("sealedBatches", sealed);
+        summary.put("anchoredRows", leaves);
+        return summary;
+    }
+
+    public List<TrustAnchorBatch> getRecentBatches() {
+        return batchRepo.findTop50ByOrderByIdDesc();
+    }
+
+    /**
+     * Builds the Merkle inclusion proof for a history row, or empty if the row
+     * does not exist or has not been sealed into a batch yet.
+     */
+    public Optional<InclusionProofDto> getInclusionProof(Long historyId) {
+        Optional<TrustScoreHistory> row = historyRepo.findById(historyId);
+        if (row.isEmpty() || row.get().getAnchorBatchId() == null) {
+            return Optional.empty();
+        }
+
+        Long batchId = row.get().getAnchorBatchId();
+        TrustAnchorBatch batch = batchRepo.findById(batchId)
+                .orElseThrow(() -> new IllegalStateException("Anchor batch " + batchId + " is missing"));
+        byte[] leaf = leafData(row.get());
+
+        MerkleTree tree;
+        int index = -1;
+        if (batch.getLeaves() != null) {
+            ByteBuffer stored = ByteBuffer.wrap(batch.getLeaves());
+            List<byte[]> hashes = new ArrayList<>(stored.remaining() / LEAF_ENTRY_BYTES);
+            while (stored.remaining() >= LEAF_ENTRY_BYTES) {
+                if (stored.getLong() == historyId) {
+                    index = hashes.size();
+                }
+                byte[] hash = new byte[HASH_BYTES];
+                stored.get(hash);
+                hashes.add(hash);
+            }
+            tree = MerkleTree.fromLeafHashes(hashes);
+        } else {
+            // Batch sealed before leaves were stored: rebuild from the rows still in the table
+            List<TrustScoreHistory> rows = historyRepo.findByAnchorBatchIdOrderByIdAsc(batchId);
+            for (int i = 0; i < rows.size(); i++) {
+                if (rows.get(i).getId().equals(historyId)) {
+                    index = i;
+                    break;
+                }
+            }
+            tree = new MerkleTree(rows.stream().map(TrustAnchorService::leafData).collect(Collectors.toList()));
+        }
+        if (index < 0) {
+            throw new IllegalStateException("History row " + historyId + " is not a leaf of anchor batch " + batchId);
+        }
+
+        List<MerkleTree.ProofStep> steps = tree.getProof(index);
+        byte[] storedRoot = Numeric.hexStringToByteArray(batch.getMerkleRoot());
+
+        InclusionProofDto dto = new InclusionProofDto();
+        dto.setHistoryId(historyId);
+        dto.setDeviceId(row.get().getDeviceId());
+        dto.setBatchId(batchId);
+        dto.setLeafIndex(index);
+        dto.setLeafCount(tree.getLeafCount());
+        dto.setLeafData(new String(leaf, StandardCharsets.UTF_8));
+        dto.setLeafHash(Numeric.toHexString(tree.getLeafHash(index)));
+        dto.setProof(steps.stream()
+                .map(s -> new InclusionProofDto.ProofStepDto(
+                        Numeric.toHexString(s.getHash()), s.isLeft() ? "LEFT" : "RIGHT"))
+                .collect(Collectors.toList()));
+        dto.setMerkleRoot(batch.getMerkleRoot());
+        dto.setBatchStatus(batch.getStatus().name());
+        dto.setTransactionHash(batch.getTransactionHash());
+        dto.setBlockNumber(batch.getBlockNumber());
+        // Fails if the row, or a row rebuilt for an older batch, was modified or deleted after sealing
+        dto.setVerified(Arrays.equals(tree.getRoot(), storedRoot)
+                && MerkleTree.verify(leaf, steps, storedRoot));
+        return Optional.of(dto);
+    }
+
+    /**
+     * Canonical leaf encoding of a history row. Only fields that are fixed at
+     * insert time are included, so the leaf can be recomputed later.
+     */
+    static byte[] leafData(TrustScoreHistory h) {
+        String leaf = h.getId()
+                + "|" + h.getDeviceId()
+                + "|" + h.getOldScore()
+                + "|" + h.getNewScore()
+                + "|" + (h.getTimestamp() != null ? h.getTimestamp().toEpochMilli() : 0)
+                + "|" + flag(h.isIdentityPassed())
+                + flag(h.isContextPassed())
+                + flag(h.isFirmwareValid())
+                + flag(h.isAnomalyDetected())
+                + flag(h.isCompliancePassed());
+        return leaf.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static char flag(Boolean value) {
+        return value == null ? '-' : (value ? '1' : '0');
+    }
+
+    /**
+     * Stores a batch for the rows and assigns them to it, or returns null and
+     * rolls back if another run has sealed some of the rows in the meantime.
+     */
+    private TrustAnchorBatch seal(List<TrustScoreHistory> rows) {
+        List<byte[]> leafData = rows.stream().map(TrustAnchorService::leafData).collect(Collectors.toList());
+        MerkleTree tree = new MerkleTree(leafData);
+        List<Long> ids = rows.stream().map(TrustScoreHistory::getId).collect(Collectors.toList());
+
+        ByteBuffer leaves = ByteBuffer.allocate(ids.size() * LEAF_ENTRY_BYTES);
+        for (int i = 0; i < ids.size(); i++) {
+            leaves.putLong(ids.get(i)).put(tree.getLeafHash(i));
+        }
+
+        TrustAnchorBatch batch = txTemplate.execute(status -> {
+            TrustAnchorBatch sealed = new TrustAnchorBatch(
+                    Numeric.toHexString(tree.getRoot()), rows.size(),
+                    ids.get(0), ids.get(ids.size() - 1));
+            sealed.setLeaves(leaves.array());
+            TrustAnchorBatch b = batchRepo.save(sealed);
+            int assigned = historyRepo.assignAnchorBatch(b.getId(), ids);
+            if (assigned != ids.size()) {
+                // Another node sealed some of these rows first; drop the batch and its assignments
+                status.setRollbackOnly();
+                log.info("Another run sealed {} of history rows {}..{} first; retrying on the next run",
+                        ids.size() - assigned, ids.get(0), ids.get(ids.size() - 1));
+                return null;
+            }
+            return b;
+        });
+        if (batch == null) {
+            return null;
+        }
+
+        log.info("Sealed anchor batch {} with {} rows (history {}..{}), root {}",
+                batch.getId(), batch.getLeafCount(), batch.getFirstHistoryId(),
+                batch.getLastHistoryId(), batch.getMerkleRoot());
+        return batch;
+    }
+
+    private void submit(TrustAnchorBatch batch) {
+        batch.setSubmitAttempts(batch.getSubmitAttempts() + 1);
+        try {
+            String data = FunctionEncoder.encode(new Function("anchorRoot",
+                    Arrays.asList(
+                            new Uint256(BigInteger.valueOf(batch.getId())),
+                            new Bytes32(Numeric.hexStringToByteArray(batch.getMerkleRoot())),
+                            new Uint256(BigInteger.valueOf(batch.getLeafCount()))),
+                    Collections.emptyList()));
+
+            EthSendTransaction sent = transactionManager().sendTransaction(
+                    config.getGasPrice(), config.getGasLimit(),
+                    config.getContractAddress(), data, BigInteger.ZERO);
+
+            if (sent.hasError()) {
+                throw new IOException(sent.getError().getMessage());
+            }
+
+            batch.setTransactionHash(sent.getTransactionHash());
+            batch.setStatus(TrustAnchorBatch.Status.SUBMITTED);
+            batch.setSubmittedAt(Instant.now());
+            batch.setErrorMessage(null);
+            log.info("Submitted anchor batch {} in transaction {}", batch.getId(), sent.getTransactionHash());
+        } catch (Exception e) {
+            // Nodes that simulate the call before sending report the revert here
+            if (e.getMessage() != null && e.getMessage().contains(ROOT_CONFLICT)) {
+                reject(batch, e.getMessage());
+            } else {
+                batch.setStatus(TrustAnchorBatch.Status.FAILED);
+                batch.setErrorMessage(truncate(e.getMessage()));
+                log.warn("Failed to submit anchor batch {} (attempt {}): {}",
+                        batch.getId(), batch.getSubmitAttempts(), e.getMessage());
+            }
+        }
+        batchRepo.save(batch);
+    }
+
+    /**
+     * Parks a batch that can never be anchored; its rows stay sealed into it.
+     */
+    private void reject(TrustAnchorBatch batch, String reason) {
+        batch.setStatus(TrustAnchorBatch.Status.REJECTED);
+        batch.setErrorMessage(truncate(reason));
+        log.error("Anchor batch {} can never be anchored and is no longer retried: {}", batch.getId(), reason);
+    }
+
+    /**
+     * Root the contract holds for the batch id when it differs from the
+     * batch's own, or null if the id is free or holds the same root.
+     */
+    private String conflictingRoot(TrustAnchorBatch batch) throws IOException {
+        String data = FunctionEncoder.encode(new Function("anchors",
+                Collections.singletonList(new Uint256(BigInteger.valueOf(batch.getId()))),
+                Collections.emptyList()));
+        EthCall call = web3j.ethCall(
+                Transaction.createEthCallTransaction(config.getFromAddress(), config.getContractAddress(), data),
+                DefaultBlockParameterName.LATEST).send();
+        if (call.hasError()) {
+            throw new IOException(call.getError().getMessage());
+        }
+        // The first word of the returned Anchor struct is its root
+        byte[] result = Numeric.hexStringToByteArray(call.getValue());
+        if (result.length < HASH_BYTES) {
+            return null;
+        }
+        byte[] root = Arrays.copyOf(result, HASH_BYTES);
+        if (Arrays.equals(root, new byte[HASH_BYTES])
+                || Arrays.equals(root, Numeric.hexStringToByteArray(batch.getMerkleRoot()))) {
+            return null;
+        }
+        return Numeric.toHexString(root);
+    }
+
+    private int confirmSubmitted() {
+        int confirmed = 0;
+        for (TrustAnchorBatch batch : batchRepo.findByStatusInOrderByIdAsc(
+                List.of(TrustAnchorBatch.Status.SUBMITTED))) {
+            try {
+                Optional<TransactionReceipt> receipt = web3j
+                        .ethGetTransactionReceipt(batch.getTransactionHash())
+                        .send()
+                        .getTransactionReceipt();
+
+                if (receipt.isPresent()) {
+                    if (receipt.get().isStatusOK()) {
+                        batch.setStatus(TrustAnchorBatch.Status.CONFIRMED);
+                        batch.setBlockNumber(receipt.get().getBlockNumber().longValue());
+                        batch.setConfirmedAt(Instant.now());
+                        confirmed++;
+                    } else {
+                        String conflict = conflictingRoot(batch);
+                        if (conflict != null) {
+                            reject(batch, "Transaction reverted: " + ROOT_CONFLICT + " (" + conflict + ")");
+                        } else {
+                            batch.setStatus(TrustAnchorBatch.Status.FAILED);
+                            batch.setErrorMessage("Transaction reverted: " + receipt.get().getStatus());
+                        }
+                    }
+                    batchRepo.save(batch);
+                } else if (batch.getSubmittedAt() != null
+                        && batch.getSubmittedAt().plus(RECEIPT_TIMEOUT).isBefore(Instant.now())) {
+                    batch.setStatus(TrustAnchorBatch.Status.FAILED);
+                    batch.setErrorMessage("No receipt after " + RECEIPT_TIMEOUT.toMinutes() + " minutes");
+                    batchRepo.save(batch);
+                }
+            } catch (Exception e) {
+                log.warn("Could not fetch receipt for anchor batch {}: {}", batch.getId(), e.getMessage());
+            }
+        }
+        return confirmed;
+    }
+
+    private TransactionManager transactionManager() throws IOException {
+        TransactionManager tm = transactionManager;
+        if (tm != null) {
+            return tm;
+        }
+
+        if (config.getPrivateKey() != null && !config.getPrivateKey().isBlank()) {
+            tm = new RawTransactionManager(web3j, Credentials.create(config.getPrivateKey()), config.getChainId());
+        } else {
+            String from = config.getFromAddress();
+            if (from == null || from.isBlank()) {
+                // Ganache exposes unlocked accounts; use the first one
+                List<String> accounts = web3j.ethAccounts().send().getAccounts();
+                if (accounts == null || accounts.isEmpty()) {
+                    throw new IOException("Node has no unlocked accounts; set anchoring.private-key");
+                }
+                from = accounts.get(0);
+            }
+            tm = new ClientTransactionManager(web3j, from);
+        }
+        transactionManager = tm;
+        return tm;
+    }
+
+    private static String truncate(String message) {
+        if (message == null) return null;
+        return message.length() > 1000 ? message.substring(0, 1000) : message;
+    }
+}
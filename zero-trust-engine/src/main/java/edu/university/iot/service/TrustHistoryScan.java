@@ -0,0 +1,135 @@
+package edu.university.iot.service;
+
+import edu.university.iot.model.TrustScoreHistory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Every aggregate TrustAnalysisService needs from a device's history, computed
+ * in one pass over the 30-day window.
+ *
+ * Rows must be ordered newest first. The "factor window" is the last 24 hours,
+ * or the five most recent rows when nothing happened in the last 24 hours.
+ */
+final class TrustHistoryScan {
+
+    static final Duration FACTOR_WINDOW = Duration.ofHours(24);
+    static final Duration WEEK = Duration.ofDays(7);
+    static final Duration MONTH = Duration.ofDays(30);
+    static final int FALLBACK_ROWS = 5;
+    static final int TREND_ROWS = 5;
+
+    // Factor window
+    long factorRows;
+    long identityFailures;
+    long contextFailures;
+    long firmwareFailures;
+    long anomalies;
+    long complianceViolations;
+    final Set<String> locations = new LinkedHashSet<>();
+    Instant lastCheck;
+
+    // Critical/high severity changes in the last 24 hours
+    long criticalEvents24h;
+
+    // 7-day window
+    long weekRows;
+    double weekScoreSum;
+    long weekCompliant;
+    long weekIdentityPassed;
+    long weekNormalBehavior;
+    long weekContextPassed;
+
+    // Most recent changes inside the 7-day window (trend)
+    int trendRows;
+    double trendChangeSum;
+
+    // 30-day window
+    long monthRows;
+    double monthScoreSum;
+
+    private TrustHistoryScan() {}
+
+    /**
+     * Scans rows (newest first, all within the 30-day window) in a single loop.
+     */
+    static TrustHistoryScan of(List<TrustScoreHistory> newestFirst, Instant now) {
+        TrustHistoryScan scan = new TrustHistoryScan();
+        Instant dayCutoff = now.minus(FACTOR_WINDOW);
+        Instant weekCutoff = now.minus(WEEK);
+
+        boolean noRecentRows = !newestFirst.isEmpty() && !isAfter(newestFirst.get(0), dayCutoff);
+
+        for (int i = 0; i < newestFirst.size(); i++) {
+            TrustScoreHistory h = newestFirst.get(i);
+            boolean inDay = isAfter(h, dayCutoff);
+            boolean inWeek = isAfter(h, weekCutoff);
+            double newScore = h.getNewScore() != null ? h.getNewScore() : 0.0;
+
+            if (inDay || (noRecentRows && i < FALLBACK_ROWS)) {
+                scan.addFactorRow(h);
+            }
+            if (inDay && isCriticalOrHigh(h)) {
+                scan.criticalEvents24h++;
+            }
+
+            if (inWeek) {
+                scan.weekRows++;
+                scan.weekScoreSum += newScore;
+                if (passed(h.isCompliancePassed())) scan.weekCompliant++;
+                if (passed(h.isIdentityPassed())) scan.weekIdentityPassed++;
+                if (!passed(h.isAnomalyDetected())) scan.weekNormalBehavior++;
+                if (passed(h.isContextPassed())) scan.weekContextPassed++;
+
+                if (scan.trendRows < TREND_ROWS) {
+                    scan.trendRows++;
+                    scan.trendChangeSum += h.getScoreChange() != null ? h.getScoreChange() : 0.0;
+                }
+            }
+
+            scan.monthRows++;
+            scan.monthScoreSum += newScore;
+        }
+        return scan;
+    }
+
+    /**
+     * Factor window fed from rows outside the 30-day window (newest first),
+     * used when the device has no recent history at all.
+     */
+    static TrustHistoryScan ofFallback(List<TrustScoreHistory> newestFirst) {
+        TrustHistoryScan scan = new TrustHistoryScan();
+        for (int i = 0; i < newestFirst.size() && i < FALLBACK_ROWS; i++) {
+            scan.addFactorRow(newestFirst.get(i));
+        }
+        return scan;
+    }
+
+    private void addFactorRow(TrustScoreHistory h) {
+        if (factorRows++ == 0) {
+            lastCheck = h.getTimestamp();
+        }
+        if (!passed(h.isIdentityPassed())) identityFailures++;
+        if (!passed(h.isContextPassed())) contextFailures++;
+        if (!passed(h.isFirmwareValid())) firmwareFailures++;
+        if (passed(h.isAnomalyDetected())) anomalies++;
+        if (!passed(h.isCompliancePassed())) complianceViolations++;
+        if (h.getLocationAtChange() != null) locations.add(h.getLocationAtChange());
+    }
+
+    private static boolean isAfter(TrustScoreHistory h, Instant cutoff) {
+        return h.getTimestamp() != null && h.getTimestamp().isAfter(cutoff);
+    }
+
+    private static boolean isCriticalOrHigh(TrustScoreHistory h) {
+        return "CRITICAL".equals(h.getSeverity()) || "HIGH".equals(h.getSeverity());
+    }
+
+    private static boolean passed(Boolean value) {
+        return Boolean.TRUE.equals(value);
+    }
+}
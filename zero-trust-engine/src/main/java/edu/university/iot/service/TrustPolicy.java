@@ -0,0 +1,313 @@
+package edu.university.iot.service;
+
+import edu.university.iot.entity.DeviceRegistry;
+import edu.university.iot.model.dtoModel.TrustPolicyDto;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiled, immutable trust policy.
+ *
+ * Each profile's weights are folded into a 32-entry table holding the score
+ * change for every combination of the five factor verdicts, so scoring an
+ * event is one array load plus a clamp. Profiles are found by a scan over a
+ * short array, and compliance rules are plain fields; nothing is looked up in
+ * maps or by reflection per event. A new policy replaces the old one as a
+ * whole, see {@link TrustPolicyService}.
+ */
+public final class TrustPolicy {
+
+    // Verdict bits; a set ANOMALY bit means an anomaly was detected
+    public static final int IDENTITY = 1;
+    public static final int CONTEXT = 1 << 1;
+    public static final int FIRMWARE = 1 << 2;
+    public static final int ANOMALY = 1 << 3;
+    public static final int COMPLIANCE = 1 << 4;
+    public static final int VERDICT_COMBINATIONS = 32;
+
+    private final String version;
+    private final String[] profileNames;
+    private final Profile[] profiles;
+    private final Profile defaultProfile;
+    private final int defaultIndex;
+    private final TrustPolicyDto source;
+
+    // All profiles' delta tables back to back, plus thresholds, for columnar scoring
+    private final double[] deltaTable;
+    private final double[] thresholds;
+
+    private TrustPolicy(String version, String[] profileNames, Profile[] profiles,
+                        int defaultIndex, TrustPolicyDto source) {
+        this.version = version;
+        this.profileNames = profileNames;
+        this.profiles = profiles;
+        this.defaultIndex = defaultIndex;
+        this.defaultProfile = profiles[defaultIndex];
+        this.source = source;
+
+        this.deltaTable = new double[profiles.length * VERDICT_COMBINATIONS];
+        this.thresholds = new double[profiles.length];
+        for (int p = 0; p < profiles.length; p++) {
+            System.arraycopy(profiles[p].deltaByVerdicts, 0, deltaTable, p * VERDICT_COMBINATIONS,
+                             VERDICT_COMBINATIONS);
+            thresholds[p] = profiles[p].trustedThreshold;
+        }
+    }
+
+    /**
+     * Validates a policy definition and compiles it.
+     *
+     * @throws IllegalArgumentException if the definition is incomplete or out of range
+     */
+    public static TrustPolicy compile(TrustPolicyDto definition) {
+        Map<String, TrustPolicyDto.ProfileDto> definitions = definition.getProfiles();
+        if (definitions == null || definitions.isEmpty()) {
+            throw new IllegalArgumentException("Trust policy defines no profiles");
+        }
+        String defaultName = definition.getDefaultProfile();
+        if (defaultName == null || !definitions.containsKey(defaultName)) {
+            throw new IllegalArgumentException("Default profile '" + defaultName + "' is not defined");
+        }
+
+        String[] names = new String[definitions.size()];
+        Profile[] compiled = new Profile[definitions.size()];
+        int fallback = -1;
+        int i = 0;
+        for (Map.Entry<String, TrustPolicyDto.ProfileDto> entry : definitions.entrySet()) {
+            if (entry.getValue() == null) {
+                throw new IllegalArgumentException("Profile " + entry.getKey() + " is empty");
+            }
+            names[i] = entry.getKey();
+            compiled[i] = new Profile(entry.getKey(), entry.getValue());
+            if (entry.getKey().equals(defaultName)) {
+                fallback = i;
+            }
+            i++;
+        }
+        String version = definition.getVersion() != null ? definition.getVersion() : "unversioned";
+        return new TrustPolicy(version, names, compiled, fallback, definition);
+    }
+
+    /**
+     * Rules for a device profile as reported in telemetry; unknown or missing
+     * profiles get the default profile.
+     */
+    public Profile profileFor(String profileName) {
+        return profiles[profileIndex(profileName)];
+    }
+
+    /** Position of the profile in {@link #getDeltaTable()} blocks; unknown names map to the default. */
+    public int profileIndex(String profileName) {
+        if (profileName != null) {
+            for (int i = 0; i < profileNames.length; i++) {
+                if (profileNames[i].equals(profileName)) {
+                    return i;
+                }
+            }
+        }
+        return defaultIndex;
+    }
+
+    public Profile getProfile(int index) {
+        return profiles[index];
+    }
+
+    /**
+     * Packs the five verdicts into the bit mask used to index delta tables.
+     */
+    public static int verdictMask(boolean identityPass, boolean contextPass, boolean firmwareValid,
+                                  boolean anomalyDetected, boolean compliancePassed) {
+        return (identityPass ? IDENTITY : 0)
+                | (contextPass ? CONTEXT : 0)
+                | (firmwareValid ? FIRMWARE : 0)
+                | (anomalyDetected ? ANOMALY : 0)
+                | (compliancePassed ? COMPLIANCE : 0);
+    }
+
+    /**
+     * Score change per profile and verdict mask, at {@code profileIndex * 32 + mask}.
+     * Shared, do not modify.
+     */
+    double[] getDeltaTable() {
+        return deltaTable;
+    }
+
+    /** Trusted threshold per profile index. Shared, do not modify. */
+    double[] getThresholds() {
+        return thresholds;
+    }
+
+    public Profile getDefaultProfile() {
+        return defaultProfile;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    /** Names of the compiled profiles, default profile included. */
+    public List<String> getProfileNames() {
+        return List.of(profileNames);
+    }
+
+    /** The definition this policy was compiled from. */
+    public TrustPolicyDto getSource() {
+        return source;
+    }
+
+    /**
+     * Scoring and compliance rules of one device profile.
+     */
+    public static final class Profile {
+        private final String name;
+        private final double trustedThreshold;
+        private final double baselineScore;
+        private final double[] deltaByVerdicts = new double[VERDICT_COMBINATIONS];
+
+        private final double identityReward, identityPenalty;
+        private final double contextReward, contextPenalty;
+        private final double firmwareReward, firmwarePenalty;
+        private final double anomalyReward, anomalyPenalty;
+        private final double complianceReward, compliancePenalty;
+
+        private final boolean requireCurrentPatch;
+        private final String[] currentPatchStatuses;
+        private final boolean requireExpectedFirmware;
+
+        private Profile(String name, TrustPolicyDto.ProfileDto dto) {
+            this.name = name;
+            this.trustedThreshold = range(name, "trustedThreshold", dto.getTrustedThreshold());
+            this.baselineScore = range(name, "baselineScore", dto.getBaselineScore());
+
+            identityReward = weight(name, "identity.reward", dto.getIdentity(), true);
+            identityPenalty = weight(name, "identity.penalty", dto.getIdentity(), false);
+            contextReward = weight(name, "context.reward", dto.getContext(), true);
+            contextPenalty = weight(name, "context.penalty", dto.getContext(), false);
+            firmwareReward = weight(name, "firmware.reward", dto.getFirmware(), true);
+            firmwarePenalty = weight(name, "firmware.penalty", dto.getFirmware(), false);
+            anomalyReward = weight(name, "anomaly.reward", dto.getAnomaly(), true);
+            anomalyPenalty = weight(name, "anomaly.penalty", dto.getAnomaly(), false);
+            complianceReward = weight(name, "compliance.reward", dto.getCompliance(), true);
+            compliancePenalty = weight(name, "compliance.penalty", dto.getCompliance(), false);
+
+            for (int mask = 0; mask < deltaByVerdicts.length; mask++) {
+                deltaByVerdicts[mask] = identityDelta((mask & IDENTITY) != 0)
+                        + contextDelta((mask & CONTEXT) != 0)
+                        + firmwareDelta((mask & FIRMWARE) != 0)
+                        + anomalyDelta((mask & ANOMALY) != 0)
+                        + complianceDelta((mask & COMPLIANCE) != 0);
+            }
+
+            TrustPolicyDto.ComplianceRulesDto rules = dto.getComplianceRules() != null
+                    ? dto.getComplianceRules() : new TrustPolicyDto.ComplianceRulesDto();
+            this.requireCurrentPatch = rules.isRequireCurrentPatch();
+            List<String> statuses = rules.getCurrentPatchStatuses() != null
+                    ? rules.getCurrentPatchStatuses() : List.of();
+            this.currentPatchStatuses = statuses.toArray(new String[0]);
+            this.requireExpectedFirmware = rules.isRequireExpectedFirmware();
+        }
+
+        /**
+         * Score after one event, clamped to 0-100. {@code anomalyDetected} is
+         * true when an anomaly was found; the other verdicts are true on pass.
+         */
+        public double score(double oldScore, boolean identityPass, boolean contextPass, boolean firmwareValid,
+                            boolean anomalyDetected, boolean compliancePassed) {
+            int mask = verdictMask(identityPass, contextPass, firmwareValid, anomalyDetected, compliancePassed);
+            double score = oldScore + deltaByVerdicts[mask];
+            return score < 0 ? 0 : (score > 100 ? 100 : score);
+        }
+
+        public boolean isTrusted(double score) {
+            return score >= trustedThreshold;
+        }
+
+        /** True if the patch status counts as current under this profile. */
+        public boolean isPatchCurrent(String patchStatus) {
+            for (String status : currentPatchStatuses) {
+                if (status.equalsIgnoreCase(patchStatus)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Appends this profile's compliance violations for the device and
+         * returns true if there were none. {@code firmwareMatches} says whether
+         * the reported firmware is the version the device is expected to run.
+         */
+        public boolean checkCompliance(DeviceRegistry device, String patchStatus, boolean firmwareMatches,
+                                       StringBuilder violations) {
+            boolean compliant = true;
+            if (requireCurrentPatch && !device.isAllowOutdatedPatch() && !isPatchCurrent(patchStatus)) {
+                compliant = false;
+                violations.append("Patch outdated; ");
+            }
+            if (requireExpectedFirmware && !firmwareMatches) {
+                compliant = false;
+                violations.append("Firmware mismatch; ");
+            }
+            return compliant;
+        }
+
+        public double identityDelta(boolean pass) { return pass ? identityReward : -identityPenalty; }
+        public double contextDelta(boolean pass) { return pass ? contextReward : -contextPenalty; }
+        public double firmwareDelta(boolean valid) { return valid ? firmwareReward : -firmwarePenalty; }
+        public double anomalyDelta(boolean detected) { return detected ? -anomalyPenalty : anomalyReward; }
+        public double complianceDelta(boolean pass) { return pass ? complianceReward : -compliancePenalty; }
+
+        public String getName() { return name; }
+        public double getTrustedThreshold() { return trustedThreshold; }
+        public double getBaselineScore() { return baselineScore; }
+
+        /** Rewards and penalties keyed like the trust score breakdown. */
+        public Map<String, Object> getFactorWeights() {
+            Map<String, Object> weights = new LinkedHashMap<>();
+            weights.put("identityReward", identityReward);
+            weights.put("identityPenalty", identityPenalty);
+            weights.put("contextReward", contextReward);
+            weights.put("contextPenalty", contextPenalty);
+            weights.put("firmwareReward", firmwareReward);
+            weights.put("firmwarePenalty", firmwarePenalty);
+            weights.put("anomalyReward", anomalyReward);
+            weights.put("anomalyPenalty", anomalyPenalty);
+            weights.put("complianceReward", complianceReward);
+            weights.put("compliancePenalty", compliancePenalty);
+            return weights;
+        }
+
+        /** Penalty per factor, the weight each factor carries in trust analysis. */
+        public Map<String, Double> getPenaltyWeights() {
+            Map<String, Double> weights = new LinkedHashMap<>();
+            weights.put("identity", identityPenalty);
+            weights.put("context", contextPenalty);
+            weights.put("firmware", firmwarePenalty);
+            weights.put("anomaly", anomalyPenalty);
+            weights.put("compliance", compliancePenalty);
+            return weights;
+        }
+
+        private static double range(String profile, String field, double value) {
+            if (Double.isNaN(value) || value < 0 || value > 100) {
+                throw new IllegalArgumentException(
+                        "Profile " + profile + ": " + field + " must be between 0 and 100, was " + value);
+            }
+            return value;
+        }
+
+        private static double weight(String profile, String field, TrustPolicyDto.WeightDto weight, boolean reward) {
+            if (weight == null) {
+                throw new IllegalArgumentException("Profile " + profile + ": " + field + " is missing");
+            }
+            double value = reward ? weight.getReward() : weight.getPenalty();
+            if (Double.isNaN(value) || value < 0 || value > 100) {
+                throw new IllegalArgumentException(
+                        "Profile " + profile + ": " + field + " must be between 0 and 100, was " + value);
+            }
+            return value;
+        }
+    }
+}
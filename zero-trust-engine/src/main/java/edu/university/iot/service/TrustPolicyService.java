@@ -0,0 +1,130 @@
+package edu.university.iot.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.university.iot.config.TrustPolicyConfig;
+import edu.university.iot.model.dtoModel.TrustPolicyDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Holds the active trust policy and replaces it at runtime.
+ *
+ * Readers take the current compiled policy with a single volatile read and
+ * use that instance for the whole event, so a swap never mixes the weights of
+ * two policies. A new definition is compiled and validated before it is
+ * published; an invalid one is rejected and the running policy stays active.
+ */
+@Service
+public class TrustPolicyService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TrustPolicyService.class);
+
+    private final TrustPolicyConfig config;
+    private final ResourceLoader resourceLoader;
+    private final AnalyticsResultCache resultCache;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicReference<TrustPolicy> current = new AtomicReference<>();
+
+    // Serialises reloads; reads never take it
+    private final ReentrantLock reloadLock = new ReentrantLock();
+    private volatile long loadedModified = -1;
+
+    public TrustPolicyService(TrustPolicyConfig config, ResourceLoader resourceLoader,
+                              AnalyticsResultCache resultCache) {
+        this.config = config;
+        this.resourceLoader = resourceLoader;
+        this.resultCache = resultCache;
+        reload();
+    }
+
+    public TrustPolicy current() {
+        return current.get();
+    }
+
+    /**
+     * Re-reads the configured policy location and activates it.
+     *
+     * @throws IllegalArgumentException if the policy is invalid; the running policy stays active
+     */
+    public TrustPolicy reload() {
+        reloadLock.lock();
+        try {
+            Resource resource = resourceLoader.getResource(config.getLocation());
+            long modified = lastModified(resource);
+            TrustPolicyDto definition;
+            try (InputStream in = resource.getInputStream()) {
+                definition = objectMapper.readValue(in, TrustPolicyDto.class);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot read trust policy from " + config.getLocation(), e);
+            }
+            TrustPolicy policy = activate(definition);
+            loadedModified = modified;
+            return policy;
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    /**
+     * Activates a policy definition supplied at runtime (not written back to the policy file).
+     *
+     * @throws IllegalArgumentException if the definition is invalid
+     */
+    public TrustPolicy apply(TrustPolicyDto definition) {
+        reloadLock.lock();
+        try {
+            return activate(definition);
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    /**
+     * Reloads a file-based policy when the file has changed since it was loaded.
+     */
+    @Scheduled(fixedDelayString = "${trust.policy.refresh-interval-ms:10000}")
+    public void refreshIfChanged() {
+        if (config.getRefreshIntervalMs() <= 0) {
+            return;
+        }
+        long modified = lastModified(resourceLoader.getResource(config.getLocation()));
+        if (modified <= 0 || modified == loadedModified) {
+            return;
+        }
+        try {
+            reload();
+        } catch (RuntimeException e) {
+            // Do not retry until the file changes again
+            loadedModified = modified;
+            logger.warn("Ignoring changed trust policy at {}: {}", config.getLocation(), e.getMessage());
+        }
+    }
+
+    private TrustPolicy activate(TrustPolicyDto definition) {
+        TrustPolicy policy = TrustPolicy.compile(definition);
+        TrustPolicy previous = current.getAndSet(policy);
+        // Cached analytics were computed against the previous thresholds
+        resultCache.clear();
+        logger.info("Trust policy {} active (profiles {}){}", policy.getVersion(), policy.getProfileNames(),
+                    previous != null ? ", replacing " + previous.getVersion() : "");
+        return policy;
+    }
+
+    private static long lastModified(Resource resource) {
+        try {
+            return resource.isFile() ? resource.lastModified() : 0;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
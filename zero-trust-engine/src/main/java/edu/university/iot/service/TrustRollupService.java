@@ -0,0 +1,473 @@
+package edu.university.iot.service;
+
+import edu.university.iot.config.RollupConfig;
+import edu.university.iot.model.RollupWatermark;
+import edu.university.iot.model.TrustScoreHistory;
+import edu.university.iot.model.TrustScoreRollup;
+import edu.university.iot.model.TrustScoreRollup.Granularity;
+import edu.university.iot.repository.RollupWatermarkRepository;
+import edu.university.iot.repository.TrustScoreHistoryRepository;
+import edu.university.iot.repository.TrustScoreRollupRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Maintains per-device hourly and daily aggregates of trust_score_history.
+ *
+ * A scheduled job folds rows past a persisted id watermark into the rollup
+ * table; the rollup rows and the new watermark are written in the same
+ * transaction, so each history row is counted exactly once. Reads combine the
+ * rollups with the few rows that are newer than the watermark.
+ *
+ * Ids are assigned at insert but become visible at commit, so a row can show
+ * up after the watermark has passed its id. Ids missing from a page are kept
+ * with the watermark and re-checked on later runs until they appear or the
+ * gap timeout decides their insert was rolled back.
+ */
+@Service
+public class TrustRollupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TrustRollupService.class);
+
+    static final String WATERMARK = "trust_score_history";
+
+    private final TrustScoreHistoryRepository historyRepo;
+    private final TrustScoreRollupRepository rollupRepo;
+    private final RollupWatermarkRepository watermarkRepo;
+    private final RollupConfig config;
+    private final TransactionTemplate txTemplate;
+
+    private final ReentrantLock runLock = new ReentrantLock();
+
+    // Set while a backfill runs: per granularity, the first bucket being
+    // rebuilt, and the watermark before the rebuild. Rows in earlier buckets
+    // up to that watermark are already counted in the kept rollups.
+    private Map<Granularity, Instant> rebuildFrom = Map.of();
+    private long rebuildWatermark;
+
+    public TrustRollupService(TrustScoreHistoryRepository historyRepo,
+                              TrustScoreRollupRepository rollupRepo,
+                              RollupWatermarkRepository watermarkRepo,
+                              RollupConfig config,
+                              PlatformTransactionManager transactionManager) {
+        this.historyRepo = historyRepo;
+        this.rollupRepo = rollupRepo;
+        this.watermarkRepo = watermarkRepo;
+        this.config = config;
+        this.txTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(fixedDelayString = "${rollup.interval-ms:60000}")
+    public void scheduledRollup() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        try {
+            catchUp();
+        } catch (Exception e) {
+            logger.error("Trust score rollup failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Folds committed history rows past the watermark, and rows that were
+     * missing when it passed them and have committed since, into the rollups.
+     *
+     * @return number of history rows processed
+     */
+    public long catchUp() {
+        runLock.lock();
+        try {
+            return catchUpLocked();
+        } finally {
+            runLock.unlock();
+        }
+    }
+
+    private long catchUpLocked() {
+        Integer late = txTemplate.execute(status -> rollupPendingGaps());
+        long total = late != null ? late : 0;
+        int processed;
+        do {
+            Integer count = txTemplate.execute(status -> rollupNextPage());
+            processed = count != null ? count : 0;
+            total += processed;
+            // A short page means we reached the end
+        } while (processed >= Math.max(1, config.getBatchSize()));
+
+        if (total > 0) {
+            logger.info("Rolled up {} trust score history rows", total);
+        }
+        return total;
+    }
+
+    /**
+     * Rebuilds the rollups for all history still in the database.
+     *
+     * Only buckets that start at or after the earliest remaining history row
+     * are rebuilt. Older rollups, including the one the earliest row falls
+     * into, are kept, so aggregates outlive raw rows removed by retention.
+     */
+    public Map<String, Object> backfill() {
+        runLock.lock();
+        try {
+            return backfillLocked();
+        } finally {
+            rebuildFrom = Map.of();
+            runLock.unlock();
+        }
+    }
+
+    private Map<String, Object> backfillLocked() {
+        Instant earliest = historyRepo.findEarliestTimestamp();
+        Map<Granularity, Instant> from = new EnumMap<>(Granularity.class);
+        if (earliest != null) {
+            for (Granularity granularity : Granularity.values()) {
+                from.put(granularity, granularity.firstBucketFrom(earliest));
+            }
+        }
+        Long previous = txTemplate.execute(status -> {
+            from.forEach(rollupRepo::deleteFromBucket);
+            RollupWatermark watermark = lockWatermark();
+            long lastSourceId = watermark.getLastSourceId();
+            watermark.setLastSourceId(0);
+            watermark.setPendingGaps(null);
+            watermark.setUpdatedAt(Instant.now());
+            watermarkRepo.save(watermark);
+            return lastSourceId;
+        });
+
+        rebuildFrom = from;
+        rebuildWatermark = previous != null ? previous : 0;
+        long rows = catchUpLocked();
+        Map<String, Object> result = new HashMap<>();
+        result.put("rebuiltFrom", from);
+        result.put("rowsProcessed", rows);
+        return result;
+    }
+
+    /**
+     * Aggregate of a device's history from {@code since} (aligned down to the
+     * hour) until now, including rows the job has not folded in yet.
+     */
+    public TrustScoreRollup summarize(String deviceId, Instant since) {
+        Instant from = Granularity.HOURLY.bucketOf(since);
+        TrustScoreRollup summary = new TrustScoreRollup(deviceId, Granularity.HOURLY, from);
+        for (TrustScoreRollup rollup : getRollups(deviceId, Granularity.HOURLY, from)) {
+            summary.merge(rollup);
+        }
+        for (TrustScoreHistory h : unrolledRows(deviceId, from)) {
+            summary.add(h);
+        }
+        return summary;
+    }
+
+    /**
+     * Stored rollup buckets of one device from {@code since} onwards.
+     */
+    public List<TrustScoreRollup> getRollups(String deviceId, Granularity granularity, Instant since) {
+        return rollupRepo.findByDeviceIdAndGranularityAndBucketStartGreaterThanEqualOrderByBucketStartAsc(
+            deviceId, granularity, granularity.bucketOf(since));
+    }
+
+    /**
+     * Degrading changes per local hour of day, from the hourly rollups plus
+     * any rows not yet rolled up.
+     */
+    public Map<Integer, Long> degradingChangesByHourOfDay(String deviceId, Instant since, ZoneId zone) {
+        Instant from = Granularity.HOURLY.bucketOf(since);
+        Map<Integer, Long> byHour = new HashMap<>();
+        for (TrustScoreRollup rollup : getRollups(deviceId, Granularity.HOURLY, from)) {
+            if (rollup.getDegradingCount() > 0) {
+                byHour.merge(rollup.getBucketStart().atZone(zone).getHour(), rollup.getDegradingCount(), Long::sum);
+            }
+        }
+        for (TrustScoreHistory h : unrolledRows(deviceId, from)) {
+            if (h.getScoreChange() != null && h.getScoreChange() < 0) {
+                byHour.merge(h.getTimestamp().atZone(zone).getHour(), 1L, Long::sum);
+            }
+        }
+        return byHour;
+    }
+
+    /**
+     * Devices with at least {@code threshold} changes since the cutoff, busiest first.
+     */
+    public List<Map<String, Object>> getDevicesWithFrequentChanges(Instant since, long threshold) {
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (Object[] row : rollupRepo.findDevicesWithFrequentChanges(
+                Granularity.HOURLY, Granularity.HOURLY.bucketOf(since), threshold)) {
+            Map<String, Object> entry = new HashMap<>();
+            entry.put("deviceId", row[0]);
+            entry.put("changeCount", ((Number) row[1]).longValue());
+            result.add(entry);
+        }
+        return result;
+    }
+
+    public long getWatermark() {
+        return watermarkRepo.findById(WATERMARK).map(RollupWatermark::getLastSourceId).orElse(0L);
+    }
+
+    // === PRIVATE HELPER METHODS ===
+
+    private List<TrustScoreHistory> unrolledRows(String deviceId, Instant from) {
+        return historyRepo.findByDeviceIdAndIdGreaterThanAndTimestampGreaterThanEqual(
+            deviceId, getWatermark(), from);
+    }
+
+    /**
+     * Folds in rows whose ids were missing when the watermark passed them and
+     * have committed since.
+     */
+    private int rollupPendingGaps() {
+        RollupWatermark watermark = lockWatermark();
+        PendingGaps gaps = PendingGaps.parse(watermark.getPendingGaps());
+        if (gaps.isEmpty()) {
+            return 0;
+        }
+
+        List<TrustScoreHistory> rows = new ArrayList<>();
+        for (TrustScoreHistory h : historyRepo.findAllById(gaps.ids())) {
+            gaps.remove(h.getId());
+            addFoldable(rows, h);
+        }
+        long expired = gaps.expire(Instant.now().minusSeconds(config.getGapTimeoutSeconds()).getEpochSecond());
+        if (expired > 0) {
+            logger.debug("Gave up on {} missing trust score history ids as rolled back", expired);
+        }
+
+        for (Granularity granularity : Granularity.values()) {
+            applyDeltas(granularity, rows);
+        }
+        watermark.setPendingGaps(gaps.format());
+        watermark.setUpdatedAt(Instant.now());
+        watermarkRepo.save(watermark);
+        return rows.size();
+    }
+
+    private int rollupNextPage() {
+        RollupWatermark watermark = lockWatermark();
+        List<TrustScoreHistory> page = historyRepo.findByIdGreaterThanOrderByIdAsc(
+            watermark.getLastSourceId(), PageRequest.of(0, Math.max(1, config.getBatchSize())));
+        if (page.isEmpty()) {
+            return 0;
+        }
+
+        // An id skipped here belongs to an insert that is still open or was
+        // rolled back. A transaction writes its rows within the gap timeout of
+        // stamping them, so before a row stamped more than twice the timeout
+        // ago no open transaction can hold an id any more.
+        Instant now = Instant.now();
+        Instant recent = now.minusSeconds(2 * config.getGapTimeoutSeconds());
+        PendingGaps gaps = PendingGaps.parse(watermark.getPendingGaps());
+        long expected = watermark.getLastSourceId() + 1;
+        List<TrustScoreHistory> rows = new ArrayList<>(page.size());
+        for (TrustScoreHistory h : page) {
+            if (h.getId() > expected && (h.getTimestamp() == null || h.getTimestamp().isAfter(recent))) {
+                gaps.add(expected, h.getId() - 1, now.getEpochSecond());
+            }
+            expected = h.getId() + 1;
+            addFoldable(rows, h);
+        }
+        long dropped = gaps.trim(Math.max(0, config.getMaxPendingGaps()));
+        if (dropped > 0) {
+            logger.warn("Stopped tracking {} missing trust score history ids; rows that commit later are " +
+                        "not rolled up until the next backfill", dropped);
+        }
+
+        for (Granularity granularity : Granularity.values()) {
+            applyDeltas(granularity, rows);
+        }
+
+        watermark.setLastSourceId(page.get(page.size() - 1).getId());
+        watermark.setPendingGaps(gaps.format());
+        watermark.setUpdatedAt(now);
+        watermarkRepo.save(watermark);
+        return page.size();
+    }
+
+    private static void addFoldable(List<TrustScoreHistory> rows, TrustScoreHistory h) {
+        if (h.getTimestamp() == null) {
+            // No bucket to fold it into; step over it rather than stall the watermark
+            logger.warn("Skipping trust score history row {} without a timestamp", h.getId());
+            return;
+        }
+        rows.add(h);
+    }
+
+    private void applyDeltas(Granularity granularity, List<TrustScoreHistory> rows) {
+        Map<String, TrustScoreRollup> deltas = new HashMap<>();
+        Instant from = rebuildFrom.get(granularity);
+        for (TrustScoreHistory h : rows) {
+            Instant bucket = granularity.bucketOf(h.getTimestamp());
+            if (from != null && bucket.isBefore(from) && h.getId() <= rebuildWatermark) {
+                continue;
+            }
+            deltas.computeIfAbsent(key(h.getDeviceId(), bucket),
+                    k -> new TrustScoreRollup(h.getDeviceId(), granularity, bucket))
+                  .add(h);
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        Set<String> deviceIds = new HashSet<>();
+        Set<Instant> buckets = new HashSet<>();
+        for (TrustScoreRollup delta : deltas.values()) {
+            deviceIds.add(delta.getDeviceId());
+            buckets.add(delta.getBucketStart());
+        }
+
+        Map<String, TrustScoreRollup> existing = new HashMap<>();
+        for (TrustScoreRollup rollup : rollupRepo.findByGranularityAndDeviceIdInAndBucketStartIn(
+                granularity, deviceIds, buckets)) {
+            existing.put(key(rollup.getDeviceId(), rollup.getBucketStart()), rollup);
+        }
+
+        List<TrustScoreRollup> toSave = new ArrayList<>(deltas.size());
+        for (Map.Entry<String, TrustScoreRollup> delta : deltas.entrySet()) {
+            TrustScoreRollup current = existing.get(delta.getKey());
+            if (current == null) {
+                toSave.add(delta.getValue());
+            } else {
+                current.merge(delta.getValue());
+                toSave.add(current);
+            }
+        }
+        rollupRepo.saveAll(toSave);
+    }
+
+    private RollupWatermark lockWatermark() {
+        return watermarkRepo.lockById(WATERMARK).orElseGet(() -> new RollupWatermark(WATERMARK));
+    }
+
+    private static String key(String deviceId, Instant bucket) {
+        return deviceId + '@' + bucket.getEpochSecond();
+    }
+
+    /**
+     * Ids missing below the watermark, as ranges with the epoch second each
+     * was first seen missing, stored as {@code from-to@seenAt} separated by
+     * commas.
+     */
+    static final class PendingGaps {
+
+        // from -> {to, seenAt}
+        private final TreeMap<Long, long[]> ranges = new TreeMap<>();
+
+        static PendingGaps parse(String text) {
+            PendingGaps gaps = new PendingGaps();
+            if (text == null || text.isBlank()) {
+                return gaps;
+            }
+            for (String entry : text.split(",")) {
+                int dash = entry.indexOf('-');
+                int at = entry.indexOf('@');
+                if (dash <= 0 || at <= dash) {
+                    logger.warn("Ignoring malformed rollup gap entry '{}'", entry);
+                    continue;
+                }
+                gaps.add(Long.parseLong(entry.substring(0, dash)),
+                         Long.parseLong(entry.substring(dash + 1, at)),
+                         Long.parseLong(entry.substring(at + 1)));
+            }
+            return gaps;
+        }
+
+        String format() {
+            if (ranges.isEmpty()) {
+                return null;
+            }
+            StringJoiner joiner = new StringJoiner(",");
+            ranges.forEach((from, range) -> joiner.add(from + "-" + range[0] + "@" + range[1]));
+            return joiner.toString();
+        }
+
+        boolean isEmpty() {
+            return ranges.isEmpty();
+        }
+
+        long size() {
+            long size = 0;
+            for (Map.Entry<Long, long[]> range : ranges.entrySet()) {
+                size += range.getValue()[0] - range.getKey() + 1;
+            }
+            return size;
+        }
+
+        void add(long from, long to, long seenAt) {
+            if (from <= to) {
+                ranges.put(from, new long[] {to, seenAt});
+            }
+        }
+
+        List<Long> ids() {
+            List<Long> ids = new ArrayList<>();
+            ranges.forEach((from, range) -> {
+                for (long id = from; id <= range[0]; id++) {
+                    ids.add(id);
+                }
+            });
+            return ids;
+        }
+
+        void remove(long id) {
+            Map.Entry<Long, long[]> range = ranges.floorEntry(id);
+            if (range == null || range.getValue()[0] < id) {
+                return;
+            }
+            long from = range.getKey();
+            long to = range.getValue()[0];
+            long seenAt = range.getValue()[1];
+            ranges.remove(from);
+            add(from, id - 1, seenAt);
+            add(id + 1, to, seenAt);
+        }
+
+        /**
+         * Drops ranges first seen before {@code seenBefore}; returns the number of ids dropped.
+         */
+        long expire(long seenBefore) {
+            long dropped = 0;
+            Iterator<Map.Entry<Long, long[]>> it = ranges.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Long, long[]> range = it.next();
+                if (range.getValue()[1] < seenBefore) {
+                    dropped += range.getValue()[0] - range.getKey() + 1;
+                    it.remove();
+                }
+            }
+            return dropped;
+        }
+
+        /**
+         * Drops the lowest ids until at most {@code max} remain; returns the number dropped.
+         */
+        long trim(long max) {
+            long excess = size() - max;
+            long dropped = 0;
+            while (excess > 0 && !ranges.isEmpty()) {
+                Map.Entry<Long, long[]> first = ranges.pollFirstEntry();
+                long count = first.getValue()[0] - first.getKey() + 1;
+                if (count > excess) {
+                    add(first.getKey() + excess, first.getValue()[0], first.getValue()[1]);
+                    count = excess;
+                }
+                excess -= count;
+                dropped += count;
+            }
+            return dropped;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package edu.university.iot.service;
 
 import edu.university.iot.entity.DeviceRegistry;
 import edu.university.iot.model.TrustScoreHistory;
+import edu.university.iot.model.TrustScoreRollup;
 import edu.university.iot.model.dtoModel.TrustChangeAnalysisDto;
 import edu.university.iot.model.dtoModel.TrustScoreTimelineDto;
 import edu.university.iot.repository.DeviceRegistryRepository;
@@ -28,11 +29,14 @@ public class TrustScoreHistoryService {
 
     private final TrustScoreHistoryRepository historyRepo;
     private final DeviceRegistryRepository registryRepo;
+    private final TrustRollupService rollupService;
 
     public TrustScoreHistoryService(TrustScoreHistoryRepository historyRepo,
-                                  DeviceRegistryRepository registryRepo) {
+                                  DeviceRegistryRepository registryRepo,
+                                  TrustRollupService rollupService) {
         this.historyRepo = historyRepo;
         this.registryRepo = registryRepo;
+        this.rollupService = rollupService;
     }
 
     /**
@@ -45,55 +49,102 @@ public class TrustScoreHistoryService {
                                      Map<String, Boolean> factorResults,
                                      Map<String, Object> telemetryContext) {
         try {
-            // Only record if there's a meaningful change (> 0.5 points)
-            if (Math.abs(newScore - oldScore) < 0.5) {
-                return;
+            TrustScoreHistory history = buildTrustScoreChange(deviceId, oldScore, newScore,
+                                                              factorResults, telemetryContext);
+            if (history != null) {
+                saveTrustScoreChange(history);
             }
+        } catch (Exception e) {
+            logger.error("Failed to record trust score change for device [{}]: {}", 
+                        deviceId, e.getMessage(), e);
+        }
+    }
 
-            TrustScoreHistory history = new TrustScoreHistory();
-            history.setDeviceId(deviceId);
-            history.setOldScore(oldScore);
-            history.setNewScore(newScore);
-            history.setScoreChange(newScore - oldScore);
-            history.setTimestamp(Instant.now());
-
-            // Extract factor results
-            history.setIdentityPassed(factorResults.getOrDefault("identity", false));
-            history.setContextPassed(factorResults.getOrDefault("context", false));
-            history.setFirmwareValid(factorResults.getOrDefault("firmware", false));
-            history.setAnomalyDetected(factorResults.getOrDefault("anomaly", false));
-            history.setCompliancePassed(factorResults.getOrDefault("compliance", false));
-
-            // Build change reason
-            String changeReason = buildChangeReason(factorResults, newScore > oldScore);
-            history.setChangeReason(changeReason);
-
-            // Extract telemetry context
-            if (telemetryContext != null) {
-                history.setLocationAtChange((String) telemetryContext.get("location"));
-                history.setIpAddressAtChange((String) telemetryContext.get("ipAddress"));
-                
-                Double cpu = (Double) telemetryContext.get("cpuUsage");
-                Double memory = (Double) telemetryContext.get("memoryUsage");
-                Double network = (Double) telemetryContext.get("networkTrafficVolume");
-                
-                history.setCpuUsageAtChange(cpu);
-                history.setMemoryUsageAtChange(memory);
-                history.setNetworkTrafficAtChange(network);
-            }
+    /**
+     * Saves a history row built by {@link #buildTrustScoreChange}
+     */
+    @Transactional
+    public void saveTrustScoreChange(TrustScoreHistory history) {
+        historyRepo.save(history);
 
-            // Determine severity
-            history.setSeverity(determineSeverity(newScore, oldScore));
+        logger.info("Trust score change recorded for device [{}]: {} -> {} ({})", 
+                   history.getDeviceId(), history.getOldScore(), history.getNewScore(),
+                   history.getChangeReason());
+    }
 
-            historyRepo.save(history);
+    /**
+     * Builds the unsaved history row for a trust score change, or returns null
+     * if the change is too small to record
+     */
+    public TrustScoreHistory buildTrustScoreChange(String deviceId,
+                                                   double oldScore,
+                                                   double newScore,
+                                                   Map<String, Boolean> factorResults,
+                                                   Map<String, Object> telemetryContext) {
+        byte severity = BatchTrustScorer.severity(Math.abs(newScore - oldScore));
+        return buildTrustScoreChange(deviceId, oldScore, newScore,
+                                     factorResults.getOrDefault("identity", false),
+                                     factorResults.getOrDefault("context", false),
+                                     factorResults.getOrDefault("firmware", false),
+                                     factorResults.getOrDefault("anomaly", false),
+                                     factorResults.getOrDefault("compliance", false),
+                                     severity, telemetryContext);
+    }
 
-            logger.info("Trust score change recorded for device [{}]: {} -> {} ({})", 
-                       deviceId, oldScore, newScore, changeReason);
+    /**
+     * Same as above with the verdicts and the severity code already computed,
+     * as the batch scorer does; returns null for {@link BatchTrustScorer#NONE}
+     */
+    public TrustScoreHistory buildTrustScoreChange(String deviceId,
+                                                   double oldScore,
+                                                   double newScore,
+                                                   boolean identityPassed,
+                                                   boolean contextPassed,
+                                                   boolean firmwareValid,
+                                                   boolean anomalyDetected,
+                                                   boolean compliancePassed,
+                                                   byte severity,
+                                                   Map<String, Object> telemetryContext) {
+        // Only record if there's a meaningful change (> 0.5 points)
+        if (severity == BatchTrustScorer.NONE) {
+            return null;
+        }
 
-        } catch (Exception e) {
-            logger.error("Failed to record trust score change for device [{}]: {}", 
-                        deviceId, e.getMessage(), e);
+        TrustScoreHistory history = new TrustScoreHistory();
+        history.setDeviceId(deviceId);
+        history.setOldScore(oldScore);
+        history.setNewScore(newScore);
+        history.setScoreChange(newScore - oldScore);
+        history.setTimestamp(Instant.now());
+
+        // Extract factor results
+        history.setIdentityPassed(identityPassed);
+        history.setContextPassed(contextPassed);
+        history.setFirmwareValid(firmwareValid);
+        history.setAnomalyDetected(anomalyDetected);
+        history.setCompliancePassed(compliancePassed);
+
+        // Build change reason
+        history.setChangeReason(buildChangeReason(identityPassed, contextPassed, firmwareValid,
+                                                  anomalyDetected, compliancePassed, newScore > oldScore));
+
+        // Extract telemetry context
+        if (telemetryContext != null) {
+            history.setLocationAtChange((String) telemetryContext.get("location"));
+            history.setIpAddressAtChange((String) telemetryContext.get("ipAddress"));
+            
+            Double cpu = (Double) telemetryContext.get("cpuUsage");
+            Double memory = (Double) telemetryContext.get("memoryUsage");
+            Double network = (Double) telemetryContext.get("networkTrafficVolume");
+            
+            history.setCpuUsageAtChange(cpu);
+            history.setMemoryUsageAtChange(memory);
+            history.setNetworkTrafficAtChange(network);
         }
+
+        // Determine severity
+        history.setSeverity(BatchTrustScorer.severityName(severity));
+        return history;
     }
 
     /**
@@ -108,43 +159,41 @@ public class TrustScoreHistoryService {
             LocalDateTime cutoff = LocalDateTime.now().minusHours(hours);
             Instant cutoffInstant = cutoff.atZone(ZoneId.systemDefault()).toInstant();
 
-            List<TrustScoreHistory> recentChanges = historyRepo
-                .findByDeviceIdAndTimestampAfterOrderByTimestampDesc(deviceId, cutoffInstant);
+            // Counts come from the hourly rollups; only the handful of rows
+            // needed for trend and critical events are read raw
+            TrustScoreRollup summary = rollupService.summarize(deviceId, cutoffInstant);
 
-            if (recentChanges.isEmpty()) {
+            if (summary.getChangeCount() == 0) {
                 analysis.setTotalChanges(0);
                 analysis.setSummary("No significant trust score changes in the specified period");
                 return analysis;
             }
 
             // Basic statistics
-            analysis.setTotalChanges(recentChanges.size());
-            
-            double totalChange = recentChanges.stream()
-                .mapToDouble(TrustScoreHistory::getScoreChange)
-                .sum();
-            analysis.setNetScoreChange(totalChange);
-
-            long improvingChanges = recentChanges.stream()
-                .mapToLong(h -> h.getScoreChange() > 0 ? 1L : 0L)
-                .sum();
-            analysis.setImprovingChanges((int) improvingChanges);
-            analysis.setDegradingChanges(recentChanges.size() - (int) improvingChanges);
+            analysis.setTotalChanges((int) summary.getChangeCount());
+            analysis.setNetScoreChange(summary.getNetChange());
+            analysis.setImprovingChanges((int) summary.getImprovingCount());
+            analysis.setDegradingChanges((int) summary.getDegradingCount());
 
             // Factor analysis
-            analysis.setFactorImpacts(analyzeFacorImpacts(recentChanges));
+            analysis.setFactorImpacts(analyzeFacorImpacts(summary));
+
+            List<TrustScoreHistory> latestChanges = historyRepo
+                .findTop5ByDeviceIdAndTimestampAfterOrderByTimestampDesc(deviceId, cutoffInstant);
 
             // Trend analysis
-            analysis.setTrend(determineTrend(recentChanges));
+            analysis.setTrend(determineTrend(summary.getChangeCount(), latestChanges));
 
             // Recent critical events
-            analysis.setCriticalEvents(findCriticalEvents(recentChanges));
+            analysis.setCriticalEvents(findCriticalEvents(historyRepo
+                .findTop5ByDeviceIdAndTimestampAfterAndSeverityInOrderByTimestampDesc(
+                    deviceId, cutoffInstant, List.of("CRITICAL", "HIGH"))));
 
             // Pattern detection
-            analysis.setPatterns(detectPatterns(recentChanges));
+            analysis.setPatterns(detectPatterns(deviceId, cutoffInstant));
 
             // Risk assessment
-            analysis.setRiskLevel(assessCurrentRisk(deviceId, recentChanges));
+            analysis.setRiskLevel(assessCurrentRisk(deviceId, latestChanges, summary.getCriticalCount()));
 
             // Summary
             analysis.setSummary(generateSummary(analysis));
@@ -248,62 +297,41 @@ public class TrustScoreHistoryService {
 
     // === PRIVATE HELPER METHODS ===
 
-    private String buildChangeReason(Map<String, Boolean> factors, boolean improved) {
+    private String buildChangeReason(boolean identity, boolean context, boolean firmware,
+                                     boolean anomaly, boolean compliance, boolean improved) {
         List<String> reasons = new ArrayList<>();
         
         if (improved) {
-            if (factors.getOrDefault("identity", false)) reasons.add("Identity verified");
-            if (factors.getOrDefault("context", false)) reasons.add("Context stable");
-            if (factors.getOrDefault("firmware", false)) reasons.add("Firmware compliant");
-            if (!factors.getOrDefault("anomaly", true)) reasons.add("No anomalies detected");
-            if (factors.getOrDefault("compliance", false)) reasons.add("Policy compliant");
+            if (identity) reasons.add("Identity verified");
+            if (context) reasons.add("Context stable");
+            if (firmware) reasons.add("Firmware compliant");
+            if (!anomaly) reasons.add("No anomalies detected");
+            if (compliance) reasons.add("Policy compliant");
         } else {
-            if (!factors.getOrDefault("identity", true)) reasons.add("Identity verification failed");
-            if (!factors.getOrDefault("context", true)) reasons.add("Context change detected");
-            if (!factors.getOrDefault("firmware", true)) reasons.add("Firmware non-compliant");
-            if (factors.getOrDefault("anomaly", false)) reasons.add("Anomalies detected");
-            if (!factors.getOrDefault("compliance", true)) reasons.add("Policy violations");
+            if (!identity) reasons.add("Identity verification failed");
+            if (!context) reasons.add("Context change detected");
+            if (!firmware) reasons.add("Firmware non-compliant");
+            if (anomaly) reasons.add("Anomalies detected");
+            if (!compliance) reasons.add("Policy violations");
         }
         
         return reasons.isEmpty() ? "General trust adjustment" : String.join(", ", reasons);
     }
 
-    private String determineSeverity(double newScore, double oldScore) {
-        double change = Math.abs(newScore - oldScore);
-        
-        if (change >= 20) return "CRITICAL";
-        if (change >= 10) return "HIGH";
-        if (change >= 5) return "MEDIUM";
-        return "LOW";
-    }
-
-    private Map<String, Integer> analyzeFacorImpacts(List<TrustScoreHistory> changes) {
+    private Map<String, Integer> analyzeFacorImpacts(TrustScoreRollup summary) {
         Map<String, Integer> impacts = new HashMap<>();
-        impacts.put("identityFailures", 0);
-        impacts.put("contextChanges", 0);
-        impacts.put("firmwareIssues", 0);
-        impacts.put("anomalies", 0);
-        impacts.put("complianceViolations", 0);
-
-        for (TrustScoreHistory change : changes) {
-            if (!change.isIdentityPassed()) impacts.merge("identityFailures", 1, Integer::sum);
-            if (!change.isContextPassed()) impacts.merge("contextChanges", 1, Integer::sum);
-            if (!change.isFirmwareValid()) impacts.merge("firmwareIssues", 1, Integer::sum);
-            if (change.isAnomalyDetected()) impacts.merge("anomalies", 1, Integer::sum);
-            if (!change.isCompliancePassed()) impacts.merge("complianceViolations", 1, Integer::sum);
-        }
-
+        impacts.put("identityFailures", (int) summary.getIdentityFailures());
+        impacts.put("contextChanges", (int) summary.getContextFailures());
+        impacts.put("firmwareIssues", (int) summary.getFirmwareFailures());
+        impacts.put("anomalies", (int) summary.getAnomalies());
+        impacts.put("complianceViolations", (int) summary.getComplianceFailures());
         return impacts;
     }
 
-    private String determineTrend(List<TrustScoreHistory> changes) {
-        if (changes.size() < 3) return "INSUFFICIENT_DATA";
+    private String determineTrend(long totalChanges, List<TrustScoreHistory> recent) {
+        if (totalChanges < 3) return "INSUFFICIENT_DATA";
 
         // Look at recent 5 changes
-        List<TrustScoreHistory> recent = changes.stream()
-            .limit(5)
-            .collect(Collectors.toList());
-
         double avgChange = recent.stream()
             .mapToDouble(TrustScoreHistory::getScoreChange)
             .average()
@@ -314,10 +342,8 @@ public class TrustScoreHistoryService {
         return "STABLE";
     }
 
-    private List<String> findCriticalEvents(List<TrustScoreHistory> changes) {
-        return changes.stream()
-            .filter(h -> "CRITICAL".equals(h.getSeverity()) || "HIGH".equals(h.getSeverity()))
-            .limit(5)
+    private List<String> findCriticalEvents(List<TrustScoreHistory> criticalChanges) {
+        return criticalChanges.stream()
             .map(h -> String.format("%s: %s (%.1f points)", 
                    h.getTimestamp().toString().substring(0, 19), 
                    h.getChangeReason(), 
@@ -325,31 +351,20 @@ public class TrustScoreHistoryService {
             .collect(Collectors.toList());
     }
 
-    private List<String> detectPatterns(List<TrustScoreHistory> changes) {
+    private List<String> detectPatterns(String deviceId, Instant cutoff) {
         List<String> patterns = new ArrayList<>();
 
         // Check for recurring location-based issues
-        Map<String, Long> locationIssues = changes.stream()
-            .filter(h -> h.getLocationAtChange() != null && h.getScoreChange() < 0)
-            .collect(Collectors.groupingBy(
-                TrustScoreHistory::getLocationAtChange, 
-                Collectors.counting()
-            ));
-
-        locationIssues.entrySet().stream()
-            .filter(entry -> entry.getValue() >= 3)
-            .forEach(entry -> patterns.add(
-                String.format("Recurring issues at %s (%d occurrences)", 
-                             entry.getKey(), entry.getValue())
-            ));
+        for (Object[] row : historyRepo.countDegradingChangesByLocation(deviceId, cutoff)) {
+            long count = ((Number) row[1]).longValue();
+            if (count >= 3) {
+                patterns.add(String.format("Recurring issues at %s (%d occurrences)", row[0], count));
+            }
+        }
 
         // Check for time-based patterns
-        Map<Integer, Long> hourlyIssues = changes.stream()
-            .filter(h -> h.getScoreChange() < 0)
-            .collect(Collectors.groupingBy(
-                h -> h.getTimestamp().atZone(ZoneId.systemDefault()).getHour(),
-                Collectors.counting()
-            ));
+        Map<Integer, Long> hourlyIssues = rollupService
+            .degradingChangesByHourOfDay(deviceId, cutoff, ZoneId.systemDefault());
 
         hourlyIssues.entrySet().stream()
             .filter(entry -> entry.getValue() >= 3)
@@ -361,7 +376,7 @@ public class TrustScoreHistoryService {
         return patterns;
     }
 
-    private String assessCurrentRisk(String deviceId, List<TrustScoreHistory> recentChanges) {
+    private String assessCurrentRisk(String deviceId, List<TrustScoreHistory> recentChanges, long criticalEvents) {
         try {
             DeviceRegistry device = registryRepo.findById(deviceId).orElse(null);
             if (device == null) return "UNKNOWN";
@@ -375,11 +390,6 @@ public class TrustScoreHistoryService {
                 .mapToLong(h -> h.getScoreChange() < 0 ? 1L : 0L)
                 .sum();
 
-            // Critical events factor
-            long criticalEvents = recentChanges.stream()
-                .mapToLong(h -> "CRITICAL".equals(h.getSeverity()) ? 1L : 0L)
-                .sum();
-
             if (currentScore < 30 || criticalEvents > 0) return "CRITICAL";
             if (currentScore < 50 || recentDegradations >= 3) return "HIGH";
             if (currentScore < 70 || recentDegradations >= 2) return "MEDIUM";
@@ -2,6 +2,7 @@
 package edu.university.iot.service;
 
 import edu.university.iot.entity.DeviceRegistry;
+import edu.university.iot.model.TrustScoreHistory;
 import edu.university.iot.repository.DeviceRegistryRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -9,6 +10,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Service
@@ -22,21 +24,15 @@ public class TrustScoreService {
     @Autowired
     private TrustScoreHistoryService historyService;
 
-    // Thresholds and weights
-    private static final double TRUSTED_THRESHOLD = 70.0;
-    private static final double IDENTITY_PENALTY = 5.0;
-    private static final double IDENTITY_REWARD = 1.0;
-    private static final double CONTEXT_PENALTY = 2.0;
-    private static final double CONTEXT_REWARD = 0.5;
-    private static final double FIRMWARE_PENALTY = 5.0;
-    private static final double FIRMWARE_REWARD = 1.0;
-    private static final double ANOMALY_PENALTY = 10.0;
-    private static final double ANOMALY_REWARD = 2.0;
-    private static final double COMPLIANCE_PENALTY = 10.0;
-    private static final double COMPLIANCE_REWARD = 2.0;
+    // Thresholds and weights per device profile
+    @Autowired
+    private TrustPolicyService policyService;
+
+    @Autowired
+    private AnalyticsResultCache resultCache;
 
     /**
-     * Enhanced adjustTrust method with detailed history tracking and telemetry context
+     * Adjusts trust without telemetry context; history rows carry no location or resource data
      */
     public void adjustTrust(String deviceId,
                             boolean identityPass,
@@ -44,11 +40,28 @@ public class TrustScoreService {
                             boolean firmwareValid,
                             boolean anomalyDetected,
                             boolean compliancePassed) {
-        // Get current telemetry from thread-local storage or pass as parameter
-        Map<String, Object> telemetryContext = getCurrentTelemetryContext();
-        
         adjustTrustWithContext(deviceId, identityPass, contextPass, firmwareValid, 
-                              anomalyDetected, compliancePassed, telemetryContext);
+                              anomalyDetected, compliancePassed, null);
+    }
+
+    /**
+     * Adjusts trust from the verdicts collected in a pipeline context and
+     * returns the context with the resulting score. Identity only counts as
+     * passed when the context check passed too.
+     */
+    public PipelineContext adjustTrust(PipelineContext context) {
+        boolean contextPass = context.getVerdict(PipelineContext.Factor.CONTEXT);
+        DeviceRegistry device = applyAdjustment(context.getDeviceId(),
+                context.getVerdict(PipelineContext.Factor.IDENTITY) && contextPass,
+                contextPass,
+                context.getVerdict(PipelineContext.Factor.FIRMWARE),
+                context.getVerdict(PipelineContext.Factor.ANOMALY),
+                context.getVerdict(PipelineContext.Factor.COMPLIANCE),
+                context.getTelemetry());
+        if (device == null) {
+            return context;
+        }
+        return context.withTrustOutcome(device.getTrustScore(), device.isTrusted());
     }
 
     /**
@@ -61,57 +74,72 @@ public class TrustScoreService {
                                      boolean anomalyDetected,
                                      boolean compliancePassed,
                                      Map<String, Object> telemetryContext) {
+        applyAdjustment(deviceId, identityPass, contextPass, firmwareValid,
+                        anomalyDetected, compliancePassed, telemetryContext);
+    }
+
+    private DeviceRegistry applyAdjustment(String deviceId,
+                                           boolean identityPass,
+                                           boolean contextPass,
+                                           boolean firmwareValid,
+                                           boolean anomalyDetected,
+                                           boolean compliancePassed,
+                                           Map<String, Object> telemetryContext) {
         
         DeviceRegistry device = registryRepo.findById(deviceId).orElse(null);
         if (device == null) {
             logger.warn("Device [{}] not found for trust adjustment", deviceId);
-            return;
+            return null;
         }
+        applyToDevice(device, identityPass, contextPass, firmwareValid,
+                      anomalyDetected, compliancePassed, telemetryContext);
+        return device;
+    }
 
-        double oldScore = device.getTrustScore() != null ? device.getTrustScore() : 50.0;
-        double score = oldScore;
-
-        // Store factor results for history tracking
-        Map<String, Boolean> factorResults = new HashMap<>();
-        factorResults.put("identity", identityPass);
-        factorResults.put("context", contextPass);
-        factorResults.put("firmware", firmwareValid);
-        factorResults.put("anomaly", anomalyDetected);
-        factorResults.put("compliance", compliancePassed);
-
-        // Calculate adjustments with detailed logging
-        double identityAdjustment = identityPass ? IDENTITY_REWARD : -IDENTITY_PENALTY;
-        double contextAdjustment = contextPass ? CONTEXT_REWARD : -CONTEXT_PENALTY;
-        double firmwareAdjustment = firmwareValid ? FIRMWARE_REWARD : -FIRMWARE_PENALTY;
-        double anomalyAdjustment = anomalyDetected ? -ANOMALY_PENALTY : ANOMALY_REWARD;
-        double complianceAdjustment = compliancePassed ? COMPLIANCE_REWARD : -COMPLIANCE_PENALTY;
-
-        // Apply adjustments
-        score += identityAdjustment + contextAdjustment + firmwareAdjustment + 
-                anomalyAdjustment + complianceAdjustment;
-
-        // Clamp 0-100
-        score = Math.max(0, Math.min(score, 100));
+    private void applyToDevice(DeviceRegistry device,
+                               boolean identityPass,
+                               boolean contextPass,
+                               boolean firmwareValid,
+                               boolean anomalyDetected,
+                               boolean compliancePassed,
+                               Map<String, Object> telemetryContext) {
+        String deviceId = device.getDeviceId();
+        TrustPolicy.Profile profile = policyService.current().profileFor(
+            telemetryContext != null ? (String) telemetryContext.get("deviceProfile") : null);
+        double oldScore = device.getTrustScore() != null ? device.getTrustScore() : profile.getBaselineScore();
+
+        // Apply adjustments, clamped 0-100
+        double score = profile.score(oldScore, identityPass, contextPass, firmwareValid,
+                                     anomalyDetected, compliancePassed);
 
         // Update device registry
         device.setTrustScore(score);
         boolean wasTrusted = device.isTrusted();
-        boolean isTrusted = score >= TRUSTED_THRESHOLD;
+        boolean isTrusted = profile.isTrusted(score);
         device.setTrusted(isTrusted);
 
-        registryRepo.save(device);
-
         // Record detailed history if significant change
-        if (Math.abs(score - oldScore) >= 0.5) {
-            historyService.recordTrustScoreChange(deviceId, oldScore, score, 
-                                                factorResults, telemetryContext);
+        TrustScoreHistory history = historyService.buildTrustScoreChange(deviceId, oldScore, score,
+                identityPass, contextPass, firmwareValid, anomalyDetected, compliancePassed,
+                BatchTrustScorer.severity(Math.abs(score - oldScore)), telemetryContext);
+        registryRepo.save(device);
+        if (history != null) {
+            try {
+                historyService.saveTrustScoreChange(history);
+            } catch (Exception e) {
+                logger.error("Failed to record trust score change for device [{}]: {}",
+                             deviceId, e.getMessage(), e);
+            }
         }
 
         // Enhanced logging
-        logger.info("Device [{}] trust adjustment: {:.1f} -> {:.1f} " +
-                   "(identity: {:.1f}, context: {:.1f}, firmware: {:.1f}, anomaly: {:.1f}, compliance: {:.1f})",
-                   deviceId, oldScore, score, identityAdjustment, contextAdjustment, 
-                   firmwareAdjustment, anomalyAdjustment, complianceAdjustment);
+        if (logger.isInfoEnabled()) {
+            logger.info("Device [{}] trust adjustment: {:.1f} -> {:.1f} " +
+                       "(identity: {:.1f}, context: {:.1f}, firmware: {:.1f}, anomaly: {:.1f}, compliance: {:.1f})",
+                       deviceId, oldScore, score, profile.identityDelta(identityPass),
+                       profile.contextDelta(contextPass), profile.firmwareDelta(firmwareValid),
+                       profile.anomalyDelta(anomalyDetected), profile.complianceDelta(compliancePassed));
+        }
 
         // Log trust status changes
         if (wasTrusted && !isTrusted) {
@@ -123,6 +151,38 @@ public class TrustScoreService {
         }
     }
 
+    /**
+     * Applies a score computed by {@link BatchTrustScorer} for the event in
+     * {@code context}: sets the registry entry in memory and collects the
+     * history row if the change is large enough. Registry changes are written
+     * when the caller's transaction flushes.
+     */
+    public PipelineContext applyScored(DeviceRegistry device, PipelineContext context,
+                                       double oldScore, double newScore, boolean trusted, byte severity,
+                                       List<TrustScoreHistory> historySink) {
+        boolean wasTrusted = device.isTrusted();
+        device.setTrustScore(newScore);
+        device.setTrusted(trusted);
+
+        if (severity != BatchTrustScorer.NONE) {
+            boolean contextPass = context.getVerdict(PipelineContext.Factor.CONTEXT);
+            historySink.add(historyService.buildTrustScoreChange(device.getDeviceId(), oldScore, newScore,
+                    context.getVerdict(PipelineContext.Factor.IDENTITY) && contextPass,
+                    contextPass,
+                    context.getVerdict(PipelineContext.Factor.FIRMWARE),
+                    context.getVerdict(PipelineContext.Factor.ANOMALY),
+                    context.getVerdict(PipelineContext.Factor.COMPLIANCE),
+                    severity, context.getTelemetry()));
+        }
+
+        if (wasTrusted && !trusted) {
+            logger.warn("⚠️ Device [{}] lost trusted status: {} -> {}", device.getDeviceId(), oldScore, newScore);
+        } else if (!wasTrusted && trusted) {
+            logger.info("✅ Device [{}] regained trusted status: {} -> {}", device.getDeviceId(), oldScore, newScore);
+        }
+        return context.withTrustOutcome(newScore, trusted);
+    }
+
     /**
      * Get current trust score for a device
      */
@@ -156,22 +216,12 @@ public class TrustScoreService {
         breakdown.put("deviceId", deviceId);
         breakdown.put("currentScore", device.getTrustScore());
         breakdown.put("isTrusted", device.isTrusted());
-        breakdown.put("threshold", TRUSTED_THRESHOLD);
-        
+
         // Add factor weights for transparency
-        Map<String, Object> factorWeights = new HashMap<>();
-        factorWeights.put("identityReward", IDENTITY_REWARD);
-        factorWeights.put("identityPenalty", IDENTITY_PENALTY);
-        factorWeights.put("contextReward", CONTEXT_REWARD);
-        factorWeights.put("contextPenalty", CONTEXT_PENALTY);
-        factorWeights.put("firmwareReward", FIRMWARE_REWARD);
-        factorWeights.put("firmwarePenalty", FIRMWARE_PENALTY);
-        factorWeights.put("anomalyReward", ANOMALY_REWARD);
-        factorWeights.put("anomalyPenalty", ANOMALY_PENALTY);
-        factorWeights.put("complianceReward", COMPLIANCE_REWARD);
-        factorWeights.put("compliancePenalty", COMPLIANCE_PENALTY);
-        
-        breakdown.put("factorWeights", factorWeights);
+        TrustPolicy policy = policyService.current();
+        breakdown.put("threshold", policy.getDefaultProfile().getTrustedThreshold());
+        breakdown.put("factorWeights", policy.getDefaultProfile().getFactorWeights());
+        breakdown.put("policyVersion", policy.getVersion());
         breakdown.put("lastUpdated", System.currentTimeMillis());
         
         return breakdown;
@@ -187,17 +237,15 @@ public class TrustScoreService {
                                          boolean anomalyDetected,
                                          boolean compliancePassed) {
         double currentScore = getTrustScore(deviceId);
-        
-        double identityAdjustment = identityPass ? IDENTITY_REWARD : -IDENTITY_PENALTY;
-        double contextAdjustment = contextPass ? CONTEXT_REWARD : -CONTEXT_PENALTY;
-        double firmwareAdjustment = firmwareValid ? FIRMWARE_REWARD : -FIRMWARE_PENALTY;
-        double anomalyAdjustment = anomalyDetected ? -ANOMALY_PENALTY : ANOMALY_REWARD;
-        double complianceAdjustment = compliancePassed ? COMPLIANCE_REWARD : -COMPLIANCE_PENALTY;
-
-        double simulatedScore = currentScore + identityAdjustment + contextAdjustment + 
-                               firmwareAdjustment + anomalyAdjustment + complianceAdjustment;
+        return policyService.current().getDefaultProfile().score(
+            currentScore, identityPass, contextPass, firmwareValid, anomalyDetected, compliancePassed);
+    }
 
-        return Math.max(0, Math.min(simulatedScore, 100));
+    /**
+     * Trust threshold of the default device profile
+     */
+    public double getTrustedThreshold() {
+        return policyService.current().getDefaultProfile().getTrustedThreshold();
     }
 
     /**
@@ -213,7 +261,7 @@ public class TrustScoreService {
         double oldScore = device.getTrustScore() != null ? device.getTrustScore() : 0.0;
         
         device.setTrustScore(baselineScore);
-        device.setTrusted(baselineScore >= TRUSTED_THRESHOLD);
+        device.setTrusted(policyService.current().getDefaultProfile().isTrusted(baselineScore));
         registryRepo.save(device);
 
         // Record the manual reset in history
@@ -230,6 +278,7 @@ public class TrustScoreService {
 
         historyService.recordTrustScoreChange(deviceId, oldScore, baselineScore, 
                                             factorResults, resetContext);
+        resultCache.invalidateDevice(deviceId);
 
         logger.info("Trust score reset for device [{}]: {:.1f} -> {:.1f}", 
                    deviceId, oldScore, baselineScore);
@@ -256,7 +305,7 @@ public class TrustScoreService {
             stats.put("trustedDevices", trustedDevices);
             stats.put("untrustedDevices", allDevices.size() - trustedDevices);
             stats.put("averageTrustScore", allDevices.isEmpty() ? 0.0 : totalTrust / allDevices.size());
-            stats.put("trustThreshold", TRUSTED_THRESHOLD);
+            stats.put("trustThreshold", getTrustedThreshold());
             
         } catch (Exception e) {
             logger.error("Error calculating system trust statistics: {}", e.getMessage());
@@ -265,19 +314,4 @@ public class TrustScoreService {
         
         return stats;
     }
-
-    // Thread-local storage for telemetry context (to be set by TelemetryProcessorService)
-    private static final ThreadLocal<Map<String, Object>> telemetryContext = new ThreadLocal<>();
-
-    public static void setCurrentTelemetryContext(Map<String, Object> context) {
-        telemetryContext.set(context);
-    }
-
-    public static Map<String, Object> getCurrentTelemetryContext() {
-        return telemetryContext.get();
-    }
-
-    public static void clearCurrentTelemetryContext() {
-        telemetryContext.remove();
-    }
 }
\ No newline at end of file
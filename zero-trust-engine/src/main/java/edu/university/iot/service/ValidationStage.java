@@ -0,0 +1,251 @@
+package edu.university.iot.service;
+
+import edu.university.iot.config.PipelineConfig;
+import edu.university.iot.entity.DeviceRegistry;
+import edu.university.iot.model.AnomalyLog;
+import edu.university.iot.model.ComplianceLog;
+import edu.university.iot.model.FirmwareLog;
+import edu.university.iot.model.IdentityLog;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Evaluates all trust factors for one or more messages and joins their verdicts.
+ *
+ * Identity, firmware, anomaly and compliance only depend on the telemetry
+ * and the already loaded registry entry, so they are evaluated concurrently
+ * without touching the database. Their log rows are saved afterwards on the
+ * calling thread, inside its transaction, in message and factor order, so
+ * results are the same as a sequential run. The context check keeps
+ * per-device state; it runs on the calling thread, in message order, and its
+ * state only moves when the caller's transaction commits.
+ */
+@Service
+public class ValidationStage {
+
+    private final LocationService contextService;
+    private final IdentityVerificationService identityService;
+    private final FirmwareService firmwareService;
+    private final AnomalyDetectorService anomalyService;
+    private final ComplianceService complianceService;
+    private final PipelineConfig config;
+    private final ExecutorService executor;
+
+    public ValidationStage(LocationService contextService,
+                           IdentityVerificationService identityService,
+                           FirmwareService firmwareService,
+                           AnomalyDetectorService anomalyService,
+                           ComplianceService complianceService,
+                           PipelineConfig config,
+                           @Qualifier("validatorExecutor") ExecutorService executor) {
+        this.contextService = contextService;
+        this.identityService = identityService;
+        this.firmwareService = firmwareService;
+        this.anomalyService = anomalyService;
+        this.complianceService = complianceService;
+        this.config = config;
+        this.executor = executor;
+    }
+
+    /**
+     * Evaluates every factor for one message.
+     *
+     * @param device registry entry loaded by the caller, or null if unknown
+     */
+    public PipelineContext evaluate(PipelineContext ctx, DeviceRegistry device) {
+        return evaluateAll(List.of(ctx), Collections.singletonMap(ctx.getDeviceId(), device)).get(0);
+    }
+
+    /**
+     * Evaluates every factor for a batch of messages, fanning the stateless
+     * factors of all messages out together, and saves their log rows.
+     *
+     * @param devices registry entries by device id; missing ids count as unknown devices
+     * @return contexts with verdicts and timings, in the order given
+     */
+    public List<PipelineContext> evaluateAll(List<PipelineContext> contexts, Map<String, DeviceRegistry> devices) {
+        List<PipelineContext> results = new ArrayList<>(contexts.size());
+        for (Evaluation evaluation : assessAll(contexts, devices)) {
+            assessContext(evaluation);
+            if (evaluation.error != null) {
+                throw evaluation.error;
+            }
+            evaluation.assessments.forEach(Assessment::record);
+            results.add(evaluation.context);
+        }
+        return results;
+    }
+
+    /**
+     * Evaluates the stateless factors like {@link #evaluateAll} but saves
+     * nothing: each evaluation carries its unsaved log rows for the caller to
+     * write in bulk, and a failing message only fails its own evaluation. The
+     * context verdict is added by {@link #assessContext} once the caller knows
+     * the message is to be applied.
+     */
+    public List<Evaluation> assessAll(List<PipelineContext> contexts, Map<String, DeviceRegistry> devices) {
+        List<Evaluation> evaluations = new ArrayList<>(contexts.size());
+
+        for (PipelineContext ctx : contexts) {
+            Evaluation evaluation = new Evaluation(ctx);
+            evaluation.assessments = assess(ctx.getTelemetry(), devices.get(ctx.getDeviceId()));
+            evaluations.add(evaluation);
+        }
+
+        if (config.isParallelValidators()) {
+            awaitAll(evaluations);
+        } else {
+            evaluations.forEach(e -> e.assessments.forEach(Assessment::runInline));
+        }
+
+        for (Evaluation evaluation : evaluations) {
+            for (Assessment<?> assessment : evaluation.assessments) {
+                if (evaluation.error != null) {
+                    break;
+                }
+                if (assessment.error != null) {
+                    evaluation.error = assessment.error;
+                    break;
+                }
+                evaluation.context = evaluation.context
+                        .withVerdict(assessment.factor, assessment.verdict())
+                        .withTiming(assessment.factor.getKey(), assessment.elapsedNanos);
+            }
+        }
+        return evaluations;
+    }
+
+    /**
+     * Adds the context verdict to an evaluation, inside the transaction that
+     * applies the message. Messages of one device must be passed in order.
+     */
+    public void assessContext(Evaluation evaluation) {
+        if (evaluation.error != null) {
+            return;
+        }
+        try {
+            long start = System.nanoTime();
+            boolean contextUnchanged = contextService.validateContextOnCommit(evaluation.context.getTelemetry());
+            evaluation.context = evaluation.context.withVerdict(PipelineContext.Factor.CONTEXT, contextUnchanged)
+                    .withTiming(PipelineContext.Factor.CONTEXT.getKey(), System.nanoTime() - start);
+        } catch (RuntimeException e) {
+            evaluation.error = e;
+        }
+    }
+
+    private List<Assessment<?>> assess(Map<String, Object> telemetry, DeviceRegistry device) {
+        List<Assessment<?>> list = new ArrayList<>(4);
+        list.add(new Assessment<>(PipelineContext.Factor.IDENTITY,
+                () -> identityService.assessIdentity(telemetry, device != null),
+                IdentityLog::isIdentityVerified, identityService::record));
+        list.add(new Assessment<>(PipelineContext.Factor.FIRMWARE,
+                () -> firmwareService.assessFirmware(telemetry, device),
+                FirmwareLog::isFirmwareValid, firmwareService::record));
+        list.add(new Assessment<>(PipelineContext.Factor.ANOMALY,
+                () -> anomalyService.assessAnomaly(telemetry, device),
+                AnomalyLog::isAnomalyDetected, anomalyService::record));
+        list.add(new Assessment<>(PipelineContext.Factor.COMPLIANCE,
+                () -> complianceService.assessCompliance(telemetry, device),
+                ComplianceLog::isCompliant, complianceService::record));
+        return list;
+    }
+
+    private void awaitAll(List<Evaluation> evaluations) {
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (Evaluation evaluation : evaluations) {
+            for (Assessment<?> assessment : evaluation.assessments) {
+                futures.add(CompletableFuture.runAsync(assessment::runInline, executor));
+            }
+        }
+        // Assessments capture their own failures, so this only waits
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+    }
+
+    /**
+     * Outcome of evaluating one message: the context with all verdicts, or the
+     * first error raised by one of its validators.
+     */
+    public static final class Evaluation {
+        private PipelineContext context;
+        private List<Assessment<?>> assessments = Collections.emptyList();
+        private RuntimeException error;
+
+        private Evaluation(PipelineContext context) {
+            this.context = context;
+        }
+
+        public PipelineContext getContext() {
+            return context;
+        }
+
+        public RuntimeException getError() {
+            return error;
+        }
+
+        public boolean isFailed() {
+            return error != null;
+        }
+
+        /** Unsaved log row produced for the factor, or null if the message failed. */
+        public <L> L getLog(PipelineContext.Factor factor, Class<L> type) {
+            if (error != null) {
+                return null;
+            }
+            for (Assessment<?> assessment : assessments) {
+                if (assessment.factor == factor) {
+                    return type.cast(assessment.log);
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * One factor evaluation: computes an unsaved log row and reads the verdict from it.
+     */
+    private static final class Assessment<L> {
+        private final PipelineContext.Factor factor;
+        private final Supplier<L> evaluator;
+        private final Predicate<L> verdictOf;
+        private final Consumer<L> recorder;
+        private volatile L log;
+        private volatile RuntimeException error;
+        private volatile long elapsedNanos;
+
+        Assessment(PipelineContext.Factor factor, Supplier<L> evaluator,
+                   Predicate<L> verdictOf, Consumer<L> recorder) {
+            this.factor = factor;
+            this.evaluator = evaluator;
+            this.verdictOf = verdictOf;
+            this.recorder = recorder;
+        }
+
+        void runInline() {
+            long start = System.nanoTime();
+            try {
+                log = evaluator.get();
+            } catch (RuntimeException e) {
+                error = e;
+            }
+            elapsedNanos = System.nanoTime() - start;
+        }
+
+        boolean verdict() {
+            return verdictOf.test(log);
+        }
+
+        void record() {
+            recorder.accept(log);
+        }
+    }
+}
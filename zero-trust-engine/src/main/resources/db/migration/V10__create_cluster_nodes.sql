@@ -0,0 +1,9 @@
+-- Membership of engine nodes in clustering mode
+CREATE TABLE cluster_nodes (
+    node_id VARCHAR(100) PRIMARY KEY,
+    address VARCHAR(200),
+    consumer_group VARCHAR(100),
+    virtual_nodes INT NOT NULL,
+    started_at DATETIME(6) NOT NULL,
+    last_heartbeat DATETIME(6) NOT NULL
+);
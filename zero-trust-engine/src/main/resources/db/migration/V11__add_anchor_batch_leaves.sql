@@ -0,0 +1,3 @@
+-- Leaf ids and hashes of each anchor batch, so inclusion proofs survive
+-- retention deleting trust_score_history rows of the batch
+ALTER TABLE trust_anchor_batches ADD COLUMN leaves MEDIUMBLOB;
@@ -0,0 +1,3 @@
+-- Ids skipped by the rollup job because they were not yet committed, kept
+-- so later runs can fold them in once they are
+ALTER TABLE rollup_watermarks ADD COLUMN pending_gaps TEXT;
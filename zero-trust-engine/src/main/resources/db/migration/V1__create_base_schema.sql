@@ -0,0 +1,138 @@
+-- Tables as they were before versioned migrations, so that Flyway can build a
+-- new database from scratch. Databases created by spring.jpa.hibernate.ddl-auto
+-- already have them and are baselined at version 2 instead.
+
+CREATE TABLE device_registry (
+    device_id VARCHAR(255) PRIMARY KEY,
+    trusted BIT,
+    certificate_required BIT,
+    certificate_valid BIT,
+    firmware_valid BIT,
+    expected_firmware_version VARCHAR(255),
+    expected_patch_status VARCHAR(255),
+    allow_outdated_patch BIT,
+    max_cpu_usage FLOAT(53),
+    max_memory_usage FLOAT(53),
+    max_network_traffic FLOAT(53),
+    trust_score FLOAT(53),
+    quarantined BIT,
+    quarantine_reason VARCHAR(255),
+    quarantine_timestamp DATETIME(6)
+);
+
+CREATE TABLE device_message (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    device_id VARCHAR(255),
+    certificate_valid BIT NOT NULL,
+    patch_status VARCHAR(255),
+    firmware_version VARCHAR(255),
+    ip_address VARCHAR(255),
+    location VARCHAR(255),
+    cpu_usage FLOAT(53) NOT NULL,
+    memory_usage FLOAT(53) NOT NULL,
+    network_traffic_volume FLOAT(53) NOT NULL,
+    anomaly_score FLOAT(53) NOT NULL,
+    malware_signature_detected BIT NOT NULL,
+    session_duration INT NOT NULL,
+    `timestamp` DATETIME(6),
+    lat FLOAT(53),
+    lng FLOAT(53),
+    subnet VARCHAR(255),
+    suspicious_activity_score INT NOT NULL,
+    consecutive_anomalies INT NOT NULL,
+    device_profile VARCHAR(255)
+);
+
+CREATE TABLE anomaly_log (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    device_id VARCHAR(255),
+    cpu_usage FLOAT(53) NOT NULL,
+    memory_usage FLOAT(53) NOT NULL,
+    network_traffic_volume FLOAT(53) NOT NULL,
+    anomaly_detected BIT NOT NULL,
+    reason VARCHAR(255),
+    `timestamp` DATETIME(6)
+);
+
+CREATE TABLE compliance_log (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    device_id VARCHAR(255),
+    compliant BIT NOT NULL,
+    violations VARCHAR(255),
+    `timestamp` DATETIME(6)
+);
+
+-- patch_status is added by V2
+CREATE TABLE firmware_logs (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    device_id VARCHAR(255),
+    firmware_version VARCHAR(255),
+    valid BIT NOT NULL,
+    `timestamp` DATETIME(6)
+);
+
+CREATE TABLE identity_log (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    device_id VARCHAR(255),
+    certificate_valid BIT NOT NULL,
+    identity_verified BIT NOT NULL,
+    `timestamp` DATETIME(6)
+);
+
+CREATE TABLE device_sessions (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    device_id VARCHAR(255) NOT NULL,
+    session_id VARCHAR(255) NOT NULL,
+    start_time DATETIME(6) NOT NULL,
+    last_activity_time DATETIME(6) NOT NULL,
+    status VARCHAR(255) NOT NULL,
+    CONSTRAINT uk_device_sessions_session_id UNIQUE (session_id)
+);
+
+CREATE TABLE location_network_changes (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    device_id VARCHAR(255) NOT NULL,
+    old_location VARCHAR(255),
+    new_location VARCHAR(255),
+    old_ip_address VARCHAR(255),
+    new_ip_address VARCHAR(255),
+    `timestamp` DATETIME(6) NOT NULL,
+    old_latitude FLOAT(53),
+    old_longitude FLOAT(53),
+    new_latitude FLOAT(53),
+    new_longitude FLOAT(53)
+);
+
+CREATE TABLE quarantine_log (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    device_id VARCHAR(255) NOT NULL,
+    reason VARCHAR(255) NOT NULL,
+    `timestamp` DATETIME(6) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    error_message VARCHAR(255)
+);
+
+CREATE TABLE trust_score_history (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    device_id VARCHAR(50) NOT NULL,
+    old_score FLOAT(53) NOT NULL,
+    new_score FLOAT(53) NOT NULL,
+    score_change FLOAT(53) NOT NULL,
+    `timestamp` DATETIME(6) NOT NULL,
+    change_reason VARCHAR(500),
+    severity VARCHAR(20),
+    identity_passed BIT,
+    context_passed BIT,
+    firmware_valid BIT,
+    anomaly_detected BIT,
+    compliance_passed BIT,
+    location_at_change VARCHAR(100),
+    ip_address_at_change VARCHAR(50),
+    cpu_usage_at_change FLOAT(53),
+    memory_usage_at_change FLOAT(53),
+    network_traffic_at_change FLOAT(53)
+);
+
+CREATE INDEX idx_trust_history_device_timestamp ON trust_score_history (device_id, `timestamp`);
+CREATE INDEX idx_trust_history_timestamp ON trust_score_history (`timestamp`);
+CREATE INDEX idx_trust_history_severity ON trust_score_history (severity);
@@ -0,0 +1,16 @@
+CREATE TABLE quarantine_commands (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    device_id VARCHAR(255) NOT NULL,
+    reason VARCHAR(255) NOT NULL,
+    quarantine_log_id BIGINT,
+    status VARCHAR(20) NOT NULL,
+    attempts INT NOT NULL DEFAULT 0,
+    next_attempt_at DATETIME(6) NOT NULL,
+    created_at DATETIME(6) NOT NULL,
+    completed_at DATETIME(6),
+    last_error VARCHAR(1000),
+    version BIGINT
+);
+
+CREATE INDEX idx_quarantine_cmd_status_next ON quarantine_commands (status, next_attempt_at);
+CREATE INDEX idx_quarantine_cmd_device ON quarantine_commands (device_id);
@@ -0,0 +1,20 @@
+CREATE TABLE trust_anchor_batches (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    merkle_root VARCHAR(66) NOT NULL,
+    leaf_count INT NOT NULL,
+    first_history_id BIGINT NOT NULL,
+    last_history_id BIGINT NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    transaction_hash VARCHAR(66),
+    block_number BIGINT,
+    submit_attempts INT NOT NULL DEFAULT 0,
+    error_message VARCHAR(1000),
+    created_at DATETIME(6) NOT NULL,
+    submitted_at DATETIME(6),
+    confirmed_at DATETIME(6)
+);
+
+CREATE INDEX idx_anchor_batch_status ON trust_anchor_batches (status);
+
+ALTER TABLE trust_score_history ADD COLUMN anchor_batch_id BIGINT;
+CREATE INDEX idx_trust_history_anchor_batch ON trust_score_history (anchor_batch_id);
@@ -0,0 +1,85 @@
+-- Range-partition the high-volume log tables on their timestamp column.
+--
+-- MySQL requires the partitioning column in every unique key, so the primary
+-- keys become (id, timestamp). Rows from before the day the migration runs
+-- land in p_history; newer rows go to p_future until RetentionService splits
+-- daily partitions out of it (it keeps retention.precreate-days empty
+-- partitions ahead of today) and drops partitions that fall out of each
+-- table's retention window, p_history included.
+--
+-- Partition bounds must be literals, so the statements are built with the
+-- current UTC date and run as prepared statements.
+
+SET @history_bound = DATE_FORMAT(UTC_DATE(), '%Y-%m-%d 00:00:00');
+
+UPDATE device_message SET `timestamp` = UTC_TIMESTAMP(6) WHERE `timestamp` IS NULL;
+ALTER TABLE device_message
+    MODIFY `timestamp` DATETIME(6) NOT NULL,
+    DROP PRIMARY KEY,
+    ADD PRIMARY KEY (id, `timestamp`);
+SET @ddl = CONCAT('ALTER TABLE device_message PARTITION BY RANGE COLUMNS(`timestamp`) (',
+                  'PARTITION p_history VALUES LESS THAN (''', @history_bound, '''), ',
+                  'PARTITION p_future VALUES LESS THAN (MAXVALUE))');
+PREPARE partition_stmt FROM @ddl;
+EXECUTE partition_stmt;
+DEALLOCATE PREPARE partition_stmt;
+
+UPDATE anomaly_log SET `timestamp` = UTC_TIMESTAMP(6) WHERE `timestamp` IS NULL;
+ALTER TABLE anomaly_log
+    MODIFY `timestamp` DATETIME(6) NOT NULL,
+    DROP PRIMARY KEY,
+    ADD PRIMARY KEY (id, `timestamp`);
+SET @ddl = CONCAT('ALTER TABLE anomaly_log PARTITION BY RANGE COLUMNS(`timestamp`) (',
+                  'PARTITION p_history VALUES LESS THAN (''', @history_bound, '''), ',
+                  'PARTITION p_future VALUES LESS THAN (MAXVALUE))');
+PREPARE partition_stmt FROM @ddl;
+EXECUTE partition_stmt;
+DEALLOCATE PREPARE partition_stmt;
+
+UPDATE compliance_log SET `timestamp` = UTC_TIMESTAMP(6) WHERE `timestamp` IS NULL;
+ALTER TABLE compliance_log
+    MODIFY `timestamp` DATETIME(6) NOT NULL,
+    DROP PRIMARY KEY,
+    ADD PRIMARY KEY (id, `timestamp`);
+SET @ddl = CONCAT('ALTER TABLE compliance_log PARTITION BY RANGE COLUMNS(`timestamp`) (',
+                  'PARTITION p_history VALUES LESS THAN (''', @history_bound, '''), ',
+                  'PARTITION p_future VALUES LESS THAN (MAXVALUE))');
+PREPARE partition_stmt FROM @ddl;
+EXECUTE partition_stmt;
+DEALLOCATE PREPARE partition_stmt;
+
+UPDATE firmware_logs SET `timestamp` = UTC_TIMESTAMP(6) WHERE `timestamp` IS NULL;
+ALTER TABLE firmware_logs
+    MODIFY `timestamp` DATETIME(6) NOT NULL,
+    DROP PRIMARY KEY,
+    ADD PRIMARY KEY (id, `timestamp`);
+SET @ddl = CONCAT('ALTER TABLE firmware_logs PARTITION BY RANGE COLUMNS(`timestamp`) (',
+                  'PARTITION p_history VALUES LESS THAN (''', @history_bound, '''), ',
+                  'PARTITION p_future VALUES LESS THAN (MAXVALUE))');
+PREPARE partition_stmt FROM @ddl;
+EXECUTE partition_stmt;
+DEALLOCATE PREPARE partition_stmt;
+
+UPDATE identity_log SET `timestamp` = UTC_TIMESTAMP(6) WHERE `timestamp` IS NULL;
+ALTER TABLE identity_log
+    MODIFY `timestamp` DATETIME(6) NOT NULL,
+    DROP PRIMARY KEY,
+    ADD PRIMARY KEY (id, `timestamp`);
+SET @ddl = CONCAT('ALTER TABLE identity_log PARTITION BY RANGE COLUMNS(`timestamp`) (',
+                  'PARTITION p_history VALUES LESS THAN (''', @history_bound, '''), ',
+                  'PARTITION p_future VALUES LESS THAN (MAXVALUE))');
+PREPARE partition_stmt FROM @ddl;
+EXECUTE partition_stmt;
+DEALLOCATE PREPARE partition_stmt;
+
+UPDATE trust_score_history SET `timestamp` = UTC_TIMESTAMP(6) WHERE `timestamp` IS NULL;
+ALTER TABLE trust_score_history
+    MODIFY `timestamp` DATETIME(6) NOT NULL,
+    DROP PRIMARY KEY,
+    ADD PRIMARY KEY (id, `timestamp`);
+SET @ddl = CONCAT('ALTER TABLE trust_score_history PARTITION BY RANGE COLUMNS(`timestamp`) (',
+                  'PARTITION p_history VALUES LESS THAN (''', @history_bound, '''), ',
+                  'PARTITION p_future VALUES LESS THAN (MAXVALUE))');
+PREPARE partition_stmt FROM @ddl;
+EXECUTE partition_stmt;
+DEALLOCATE PREPARE partition_stmt;
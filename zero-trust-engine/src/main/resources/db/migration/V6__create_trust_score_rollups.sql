@@ -0,0 +1,29 @@
+CREATE TABLE trust_score_rollups (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    device_id VARCHAR(255) NOT NULL,
+    granularity VARCHAR(10) NOT NULL,
+    bucket_start DATETIME(6) NOT NULL,
+    change_count BIGINT NOT NULL DEFAULT 0,
+    improving_count BIGINT NOT NULL DEFAULT 0,
+    net_change DOUBLE NOT NULL DEFAULT 0,
+    min_score DOUBLE,
+    max_score DOUBLE,
+    last_score DOUBLE,
+    last_change_at DATETIME(6),
+    identity_failures BIGINT NOT NULL DEFAULT 0,
+    context_failures BIGINT NOT NULL DEFAULT 0,
+    firmware_failures BIGINT NOT NULL DEFAULT 0,
+    anomalies BIGINT NOT NULL DEFAULT 0,
+    compliance_failures BIGINT NOT NULL DEFAULT 0,
+    high_count BIGINT NOT NULL DEFAULT 0,
+    critical_count BIGINT NOT NULL DEFAULT 0,
+    CONSTRAINT uk_trust_rollup_bucket UNIQUE (device_id, granularity, bucket_start)
+);
+
+CREATE INDEX idx_trust_rollup_granularity_bucket ON trust_score_rollups (granularity, bucket_start);
+
+CREATE TABLE rollup_watermarks (
+    name VARCHAR(64) PRIMARY KEY,
+    last_source_id BIGINT NOT NULL,
+    updated_at DATETIME(6)
+);
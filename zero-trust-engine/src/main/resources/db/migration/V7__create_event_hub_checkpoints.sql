@@ -0,0 +1,30 @@
+CREATE TABLE event_hub_checkpoints (
+    id VARCHAR(400) PRIMARY KEY,
+    fully_qualified_namespace VARCHAR(200) NOT NULL,
+    event_hub_name VARCHAR(100) NOT NULL,
+    consumer_group VARCHAR(100) NOT NULL,
+    partition_id VARCHAR(32) NOT NULL,
+    offset_value BIGINT,
+    sequence_number BIGINT,
+    updated_at DATETIME(6) NOT NULL
+);
+
+CREATE INDEX idx_checkpoint_hub_group ON event_hub_checkpoints (fully_qualified_namespace, event_hub_name, consumer_group);
+
+CREATE TABLE event_hub_ownership (
+    id VARCHAR(400) PRIMARY KEY,
+    fully_qualified_namespace VARCHAR(200) NOT NULL,
+    event_hub_name VARCHAR(100) NOT NULL,
+    consumer_group VARCHAR(100) NOT NULL,
+    partition_id VARCHAR(32) NOT NULL,
+    owner_id VARCHAR(100),
+    last_modified_time BIGINT,
+    etag VARCHAR(36) NOT NULL
+);
+
+CREATE INDEX idx_ownership_hub_group ON event_hub_ownership (fully_qualified_namespace, event_hub_name, consumer_group);
+
+-- Position of the last applied event per device, used to skip replayed events
+ALTER TABLE device_registry
+    ADD COLUMN last_event_partition VARCHAR(32),
+    ADD COLUMN last_event_sequence BIGINT;
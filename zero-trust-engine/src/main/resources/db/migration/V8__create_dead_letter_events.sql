@@ -0,0 +1,19 @@
+CREATE TABLE dead_letter_events (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    device_id VARCHAR(255),
+    partition_id VARCHAR(32),
+    sequence_number BIGINT,
+    enqueued_time DATETIME(6),
+    payload MEDIUMTEXT,
+    error_class VARCHAR(255) NOT NULL,
+    last_error VARCHAR(1000),
+    status VARCHAR(20) NOT NULL,
+    attempts INT NOT NULL DEFAULT 0,
+    next_attempt_at DATETIME(6) NOT NULL,
+    created_at DATETIME(6) NOT NULL,
+    resolved_at DATETIME(6),
+    version BIGINT
+);
+
+CREATE INDEX idx_dead_letter_status_next ON dead_letter_events (status, next_attempt_at);
+CREATE INDEX idx_dead_letter_device ON dead_letter_events (device_id);
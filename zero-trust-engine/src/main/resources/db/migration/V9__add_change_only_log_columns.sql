@@ -0,0 +1,4 @@
+-- Change-only logging: a row may stand for several identical checks
+ALTER TABLE identity_log ADD COLUMN repeat_count INT NOT NULL DEFAULT 1, ADD COLUMN first_seen_at DATETIME(6);
+ALTER TABLE firmware_logs ADD COLUMN repeat_count INT NOT NULL DEFAULT 1, ADD COLUMN first_seen_at DATETIME(6);
+ALTER TABLE compliance_log ADD COLUMN repeat_count INT NOT NULL DEFAULT 1, ADD COLUMN first_seen_at DATETIME(6);
@@ -0,0 +1,204 @@
+package edu.university.iot.service;
+
+import edu.university.iot.model.dtoModel.TrustPolicyDto;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Batch scoring over primitive arrays against scoring one event at a time
+ * with the same policy.
+ */
+class BatchTrustScorerTest {
+
+    @Test
+    void severityMatchesHistoryThresholds() {
+        double[] changes = {0.0, 0.49, 0.5, 4.99, 5.0, 9.99, 10.0, 19.99, 20.0, 100.0};
+        for (double change : changes) {
+            byte severity = BatchTrustScorer.severity(change);
+            assertEquals(change >= 0.5 ? baselineSeverity(change) : null, BatchTrustScorer.severityName(severity),
+                         "severity of " + change);
+        }
+    }
+
+    @Test
+    void scoreColumnsMatchesPerEventScoring() {
+        TrustPolicy policy = policy();
+        double[] deltaTable = policy.getDeltaTable();
+        Random random = new Random(43);
+        int n = 1000;
+        double[] oldScores = new double[n];
+        double[] deltas = new double[n];
+        double[] thresholds = new double[n];
+        int[] profiles = new int[n];
+        int[] masks = new int[n];
+        for (int i = 0; i < n; i++) {
+            profiles[i] = random.nextInt(policy.getProfileNames().size());
+            masks[i] = random.nextInt(TrustPolicy.VERDICT_COMBINATIONS);
+            oldScores[i] = random.nextInt(201) * 0.5;
+            deltas[i] = deltaTable[profiles[i] * TrustPolicy.VERDICT_COMBINATIONS + masks[i]];
+            thresholds[i] = policy.getThresholds()[profiles[i]];
+        }
+
+        double[] newScores = new double[n];
+        boolean[] trusted = new boolean[n];
+        byte[] severity = new byte[n];
+        BatchTrustScorer.scoreColumns(oldScores, deltas, thresholds, newScores, trusted, severity, n);
+
+        for (int i = 0; i < n; i++) {
+            TrustPolicy.Profile profile = policy.getProfile(profiles[i]);
+            double scored = score(profile, oldScores[i], masks[i]);
+            assertEquals(scored, newScores[i], "new score, row " + i);
+            assertEquals(profile.isTrusted(scored), trusted[i], "trusted, row " + i);
+            assertEquals(BatchTrustScorer.severity(Math.abs(scored - oldScores[i])), severity[i]);
+        }
+    }
+
+    @Test
+    void scoreSequencesMatchesPerEventScoring() {
+        TrustPolicy policy = policy();
+        Random random = new Random(42);
+        int devices = 300;
+        Batch batch = randomBatch(policy, random, devices, 30, 0.5);
+        boolean[] startBlocked = new boolean[devices];
+        for (int d = 0; d < devices; d++) {
+            startBlocked[d] = random.nextInt(10) == 0;
+        }
+
+        BatchTrustScorer.Result result = BatchTrustScorer.scoreSequences(
+            policy, batch.offsets, batch.masks, batch.profiles, batch.startScores, startBlocked);
+
+        assertEquals(batch.masks.length, result.size());
+        for (int d = 0; d < devices; d++) {
+            double score = batch.startScores[d];
+            boolean blocked = startBlocked[d];
+            for (int row = batch.offsets[d]; row < batch.offsets[d + 1]; row++) {
+                assertEquals(!blocked, result.isApplied(row), "applied, row " + row);
+                if (blocked) {
+                    continue;
+                }
+                TrustPolicy.Profile profile = policy.getProfile(batch.profiles[row]);
+                double scored = score(profile, score, batch.masks[row]);
+                assertEquals(score, result.getOldScore(row), "old score, row " + row);
+                assertEquals(scored, result.getNewScore(row), "new score, row " + row);
+                assertEquals(profile.isTrusted(scored), result.isTrusted(row), "trusted, row " + row);
+                double change = Math.abs(scored - score);
+                assertEquals(change >= 0.5 ? baselineSeverity(change) : null,
+                             BatchTrustScorer.severityName(result.getSeverity(row)), "severity, row " + row);
+                score = scored;
+                // The pipeline quarantines the device and skips its remaining events
+                blocked = !profile.isTrusted(scored);
+            }
+        }
+    }
+
+    @Test
+    @Tag("benchmark")
+    void timesBatchScoringAgainstPerEventScoring() {
+        TrustPolicy policy = policy();
+        int devices = 10_000;
+        Batch batch = randomBatch(policy, new Random(7), devices, 200, 0.9);
+        int rows = batch.masks.length;
+        boolean[] startBlocked = new boolean[devices];
+
+        // As the pipeline scored before batch scoring: profile by name, factor map, one event at a time
+        String[] profileNames = policy.getProfileNames().toArray(new String[0]);
+        double perEvent = TimingHarness.nanosPerOperation(rows, () -> {
+            double[] newScores = new double[rows];
+            String[] severities = new String[rows];
+            for (int d = 0; d < devices; d++) {
+                double score = batch.startScores[d];
+                for (int row = batch.offsets[d]; row < batch.offsets[d + 1]; row++) {
+                    TrustPolicy.Profile profile = policy.profileFor(profileNames[batch.profiles[row]]);
+                    int mask = batch.masks[row];
+                    Map<String, Boolean> factorResults = new HashMap<>();
+                    factorResults.put("identity", (mask & TrustPolicy.IDENTITY) != 0);
+                    factorResults.put("context", (mask & TrustPolicy.CONTEXT) != 0);
+                    factorResults.put("firmware", (mask & TrustPolicy.FIRMWARE) != 0);
+                    factorResults.put("anomaly", (mask & TrustPolicy.ANOMALY) != 0);
+                    factorResults.put("compliance", (mask & TrustPolicy.COMPLIANCE) != 0);
+                    double scored = profile.score(score, factorResults.get("identity"), factorResults.get("context"),
+                                                  factorResults.get("firmware"), factorResults.get("anomaly"),
+                                                  factorResults.get("compliance"));
+                    newScores[row] = scored;
+                    severities[row] = baselineSeverity(Math.abs(scored - score));
+                    score = scored;
+                    if (!profile.isTrusted(scored)) {
+                        break;
+                    }
+                }
+            }
+            return (long) newScores[0] + (severities[rows - 1] != null ? 1 : 0);
+        });
+        double batched = TimingHarness.nanosPerOperation(rows, () -> {
+            BatchTrustScorer.Result result = BatchTrustScorer.scoreSequences(
+                policy, batch.offsets, batch.masks, batch.profiles, batch.startScores, startBlocked);
+            return result.getSeverity(rows - 1) + (long) result.getNewScore(0);
+        });
+        TimingHarness.report("Batch trust scoring per event (" + rows + " rows)", perEvent, batched);
+    }
+
+    // === HELPERS ===
+
+    /** Rows of device d are [offsets[d], offsets[d + 1]). */
+    private record Batch(int[] offsets, int[] masks, int[] profiles, double[] startScores) {
+    }
+
+    /**
+     * Random events per device; {@code passRate} of them pass every factor,
+     * the rest get a random verdict mask.
+     */
+    private static Batch randomBatch(TrustPolicy policy, Random random, int devices, int maxEvents,
+                                     double passRate) {
+        int[] offsets = new int[devices + 1];
+        double[] startScores = new double[devices];
+        for (int d = 0; d < devices; d++) {
+            offsets[d + 1] = offsets[d] + 1 + random.nextInt(maxEvents);
+            startScores[d] = 60 + random.nextInt(81) * 0.5;
+        }
+        int rows = offsets[devices];
+        int[] masks = new int[rows];
+        int[] profiles = new int[rows];
+        int allPass = TrustPolicy.IDENTITY | TrustPolicy.CONTEXT | TrustPolicy.FIRMWARE | TrustPolicy.COMPLIANCE;
+        int profileCount = policy.getProfileNames().size();
+        for (int d = 0; d < devices; d++) {
+            int profile = random.nextInt(profileCount);
+            for (int row = offsets[d]; row < offsets[d + 1]; row++) {
+                masks[row] = random.nextDouble() < passRate ? allPass
+                    : random.nextInt(TrustPolicy.VERDICT_COMBINATIONS);
+                profiles[row] = profile;
+            }
+        }
+        return new Batch(offsets, masks, profiles, startScores);
+    }
+
+    private static TrustPolicy policy() {
+        TrustPolicyDto definition = new TrustPolicyDto();
+        definition.getProfiles().put("DEFAULT", new TrustPolicyDto.ProfileDto());
+        TrustPolicyDto.ProfileDto camera = new TrustPolicyDto.ProfileDto();
+        camera.setTrustedThreshold(80.0);
+        camera.setAnomaly(new TrustPolicyDto.WeightDto(1.0, 25.0));
+        definition.getProfiles().put("CAMERA", camera);
+        return TrustPolicy.compile(definition);
+    }
+
+    /** One event through the profile's per-event scoring. */
+    private static double score(TrustPolicy.Profile profile, double oldScore, int mask) {
+        return profile.score(oldScore, (mask & TrustPolicy.IDENTITY) != 0, (mask & TrustPolicy.CONTEXT) != 0,
+                             (mask & TrustPolicy.FIRMWARE) != 0, (mask & TrustPolicy.ANOMALY) != 0,
+                             (mask & TrustPolicy.COMPLIANCE) != 0);
+    }
+
+    /** Severity as TrustScoreHistoryService determined it per event. */
+    private static String baselineSeverity(double change) {
+        if (change >= 20) return "CRITICAL";
+        if (change >= 10) return "HIGH";
+        if (change >= 5) return "MEDIUM";
+        return "LOW";
+    }
+}
@@ -0,0 +1,229 @@
+package edu.university.iot.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.ToLongFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Key placement and the share arithmetic of the ring: statistically with the
+ * real hash and the default 128 virtual nodes, and exactly with points placed
+ * by hand.
+ */
+class ConsistentHashRingTest {
+
+    private static final int VIRTUAL_NODES = 128;
+    private static final int KEYS = 100_000;
+    private static final double ONE_POINT = 0x1p-64;
+
+    @Test
+    void sharesFollowVirtualNodeWeights() {
+        Map<String, Integer> members = new TreeMap<>();
+        members.put("node-a", VIRTUAL_NODES);
+        members.put("node-b", 2 * VIRTUAL_NODES);
+        members.put("node-c", 3 * VIRTUAL_NODES);
+        members.put("node-d", 2 * VIRTUAL_NODES);
+        ConsistentHashRing ring = new ConsistentHashRing(members);
+
+        Map<String, Integer> keys = countOwners(ring);
+        double total = 0.0;
+        for (Map.Entry<String, Integer> member : members.entrySet()) {
+            String node = member.getKey();
+            double weight = member.getValue() / (8.0 * VIRTUAL_NODES);
+            double share = ring.share(node);
+            assertEquals(weight, share, weight * 0.25, node + " share");
+            // Keys land in proportion to the arcs, not just the weights
+            assertEquals(share, keys.get(node) / (double) KEYS, 0.01, node + " keys");
+            total += share;
+        }
+        assertEquals(1.0, total, 1e-9);
+    }
+
+    @Test
+    void addingANodeMovesAboutOneNthOfTheKeys() {
+        ConsistentHashRing before = new ConsistentHashRing(equalMembers(10));
+        Map<String, Integer> grown = equalMembers(10);
+        grown.put("node-10", VIRTUAL_NODES);
+        ConsistentHashRing after = new ConsistentHashRing(grown);
+
+        double moved = after.movedShare(before);
+        assertEquals(1.0 / 11, moved, 0.3 / 11);
+        assertEquals(moved, before.movedShare(after), 1e-12);
+        // Every moved key went to the new node
+        assertEquals(moved, after.gainedShare(before, "node-10"), 1e-12);
+        assertEquals(after.share("node-10"), moved, 1e-12);
+        assertEquals(0.0, after.gainedShare(before, "node-3"));
+
+        int movedKeys = 0;
+        for (int k = 0; k < KEYS; k++) {
+            String key = "device-" + k;
+            String owner = after.ownerOf(key);
+            if (!owner.equals(before.ownerOf(key))) {
+                assertEquals("node-10", owner, key);
+                movedKeys++;
+            }
+        }
+        assertEquals(moved, movedKeys / (double) KEYS, 0.01);
+    }
+
+    @Test
+    void removingANodeMovesOnlyItsKeys() {
+        ConsistentHashRing before = new ConsistentHashRing(equalMembers(10));
+        Map<String, Integer> shrunk = equalMembers(10);
+        shrunk.remove("node-3");
+        ConsistentHashRing after = new ConsistentHashRing(shrunk);
+
+        double moved = after.movedShare(before);
+        assertEquals(before.share("node-3"), moved, 1e-12);
+        assertEquals(0.1, moved, 0.03);
+
+        double gained = 0.0;
+        for (String node : shrunk.keySet()) {
+            gained += after.gainedShare(before, node);
+        }
+        assertEquals(moved, gained, 1e-12);
+
+        for (int k = 0; k < KEYS; k++) {
+            String key = "device-" + k;
+            String owner = before.ownerOf(key);
+            if (!owner.equals("node-3")) {
+                assertEquals(owner, after.ownerOf(key), key);
+            }
+        }
+    }
+
+    @Test
+    void arcsAreMeasuredUnsignedAcrossTheWrap() {
+        // Two adjacent points: the second owns one position, the first the rest of the ring
+        ConsistentHashRing adjacent = ring(Map.of("x", 1, "y", 1), Map.of("x#0", 0L, "y#0", 1L));
+        assertEquals(ONE_POINT, adjacent.share("y"));
+        assertEquals(1.0, adjacent.share("x"), 1e-15);
+        assertEquals("x", adjacent.ownerOf("key:0"));
+        assertEquals("y", adjacent.ownerOf("key:1"));
+        assertEquals("x", adjacent.ownerOf("key:2"));
+        assertEquals("x", adjacent.ownerOf("key:" + Long.MIN_VALUE));
+        assertEquals("x", adjacent.ownerOf("key:-1"));
+
+        // Points at both ends of the signed range
+        ConsistentHashRing ends = ring(Map.of("a", 1, "b", 1, "c", 1, "d", 1),
+                                       Map.of("a#0", Long.MIN_VALUE, "b#0", -1L, "c#0", 0L, "d#0", Long.MAX_VALUE));
+        assertEquals(ONE_POINT, ends.share("a"));
+        assertEquals(ONE_POINT, ends.share("c"));
+        assertEquals(0.5, ends.share("b"), 1e-15);
+        assertEquals(0.5, ends.share("d"), 1e-15);
+        assertEquals("a", ends.ownerOf("key:" + Long.MIN_VALUE));
+        assertEquals("b", ends.ownerOf("key:" + (Long.MIN_VALUE + 1)));
+        assertEquals("d", ends.ownerOf("key:" + Long.MAX_VALUE));
+
+        ConsistentHashRing single = ring(Map.of("only", 1), Map.of("only#0", 42L));
+        assertEquals(1.0, single.share("only"));
+        assertEquals("only", single.ownerOf("key:" + Long.MAX_VALUE));
+    }
+
+    @Test
+    void collidingPointsGoToTheSmallerNodeId() {
+        Map<String, Long> positions = Map.of("a#0", 100L, "b#0", 100L, "b#1", 200L);
+        Map<String, Integer> bFirst = new LinkedHashMap<>();
+        bFirst.put("b", 2);
+        bFirst.put("a", 1);
+        Map<String, Integer> aFirst = new LinkedHashMap<>();
+        aFirst.put("a", 1);
+        aFirst.put("b", 2);
+
+        for (Map<String, Integer> members : List.of(bFirst, aFirst)) {
+            ConsistentHashRing ring = ring(members, positions);
+            assertEquals("a", ring.ownerOf("key:100"));
+            assertEquals("b", ring.ownerOf("key:101"));
+            assertEquals("a", ring.ownerOf("key:201"));
+            assertEquals(100 * ONE_POINT, ring.share("b"));
+            assertEquals(List.of("a", "b"), List.copyOf(ring.getMembers().keySet()));
+        }
+    }
+
+    @Test
+    void movedAndGainedSharesAreExact() {
+        Map<String, Long> positions = Map.of("a#0", 0L, "b#0", 1_000L, "c#0", 500L);
+        ConsistentHashRing before = ring(Map.of("a", 1, "b", 1), positions);
+        ConsistentHashRing after = ring(Map.of("a", 1, "b", 1, "c", 1), positions);
+
+        // (0, 500] moves from b to c; a keeps everything it had
+        assertEquals(500 * ONE_POINT, after.movedShare(before));
+        assertEquals(500 * ONE_POINT, before.movedShare(after));
+        assertEquals(500 * ONE_POINT, after.gainedShare(before, "c"));
+        assertEquals(0.0, after.gainedShare(before, "b"));
+        assertEquals(0.0, after.gainedShare(before, "a"));
+        assertEquals(500 * ONE_POINT, before.gainedShare(after, "b"));
+        assertEquals(0.0, after.movedShare(ring(Map.of("a", 1, "b", 1, "c", 1), positions)));
+    }
+
+    @Test
+    void emptyRingsOwnNothing() {
+        ConsistentHashRing empty = new ConsistentHashRing(new HashMap<>());
+        Map<String, Integer> members = new HashMap<>();
+        members.put("idle", 0);
+        members.put("unknown", null);
+        members.put("node-a", VIRTUAL_NODES);
+        ConsistentHashRing ring = new ConsistentHashRing(members);
+
+        assertTrue(empty.isEmpty());
+        assertNull(empty.ownerOf("device-1"));
+        assertEquals(0.0, empty.share("node-a"));
+        assertEquals(List.of("node-a"), List.copyOf(ring.getMembers().keySet()));
+        assertEquals("node-a", ring.ownerOf("device-1"));
+
+        assertEquals(1.0, ring.movedShare(empty));
+        assertEquals(1.0, empty.movedShare(ring));
+        assertEquals(0.0, empty.movedShare(new ConsistentHashRing(Map.of())));
+        assertEquals(1.0, ring.gainedShare(empty, "node-a"), 1e-12);
+        assertEquals(0.0, empty.gainedShare(ring, "node-a"));
+    }
+
+    @Test
+    void layoutDependsOnlyOnMembership() {
+        Map<String, Integer> forward = new LinkedHashMap<>();
+        Map<String, Integer> backward = new LinkedHashMap<>();
+        for (int i = 0; i < 5; i++) {
+            forward.put("node-" + i, VIRTUAL_NODES);
+            backward.put("node-" + (4 - i), VIRTUAL_NODES);
+        }
+        ConsistentHashRing a = new ConsistentHashRing(forward);
+        ConsistentHashRing b = new ConsistentHashRing(backward);
+        assertEquals(0.0, a.movedShare(b));
+        for (int k = 0; k < 1_000; k++) {
+            assertEquals(a.ownerOf("device-" + k), b.ownerOf("device-" + k));
+        }
+    }
+
+    // === HELPERS ===
+
+    private static Map<String, Integer> equalMembers(int nodes) {
+        Map<String, Integer> members = new TreeMap<>();
+        for (int i = 0; i < nodes; i++) {
+            members.put("node-" + i, VIRTUAL_NODES);
+        }
+        return members;
+    }
+
+    private static Map<String, Integer> countOwners(ConsistentHashRing ring) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (int k = 0; k < KEYS; k++) {
+            counts.merge(ring.ownerOf("device-" + k), 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    /**
+     * Ring with virtual nodes at the given positions; a key "key:n" hashes to n.
+     */
+    private static ConsistentHashRing ring(Map<String, Integer> members, Map<String, Long> positions) {
+        ToLongFunction<String> hasher = s -> s.startsWith("key:") ? Long.parseLong(s.substring(4))
+                                                                   : positions.get(s);
+        return new ConsistentHashRing(members, hasher);
+    }
+}
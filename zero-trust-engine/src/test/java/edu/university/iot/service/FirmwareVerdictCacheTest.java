@@ -0,0 +1,119 @@
+package edu.university.iot.service;
+
+import edu.university.iot.entity.DeviceRegistry;
+import edu.university.iot.model.dtoModel.TrustPolicyDto;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Reuse and invalidation of the per-device firmware and compliance verdict.
+ */
+class FirmwareVerdictCacheTest {
+
+    private final FirmwareVerdictCache cache = new FirmwareVerdictCache(new FirmwareVersions());
+    private final TrustPolicy.Profile strict = profile(true);
+
+    @Test
+    void sameReportReusesTheVerdict() {
+        DeviceRegistry device = device("2.0.3", "Up-to-date");
+
+        FirmwareVerdictCache.Verdict first = cache.verdict(device, "2.0.3", "Up-to-date", strict);
+        assertTrue(first.isFirmwareValid());
+        assertTrue(first.isCompliant());
+        assertEquals("", first.getViolations());
+
+        // Fresh strings with the same text, as each message brings
+        assertSame(first, cache.verdict(device, new String("2.0.3"), new String("Up-to-date"), strict));
+        // The registry row is loaded again for each message; equal expectations still match
+        assertSame(first, cache.verdict(device("2.0.3", "Up-to-date"), "2.0.3", "Up-to-date", strict));
+    }
+
+    @Test
+    void changedReportIsEvaluatedAgain() {
+        DeviceRegistry device = device("2.0.3", "Up-to-date");
+        FirmwareVerdictCache.Verdict current = cache.verdict(device, "2.0.3", "Up-to-date", strict);
+
+        FirmwareVerdictCache.Verdict older = cache.verdict(device, "2.0.2", "Up-to-date", strict);
+        assertNotSame(current, older);
+        assertFalse(older.isFirmwareValid());
+        assertFalse(older.isCompliant());
+        assertEquals("Firmware mismatch;", older.getViolations());
+
+        FirmwareVerdictCache.Verdict unpatched = cache.verdict(device, "2.0.3", "Outdated", strict);
+        assertFalse(unpatched.isFirmwareValid());
+        assertEquals("Patch outdated;", unpatched.getViolations());
+    }
+
+    @Test
+    void equivalentVersionIsValidButNotAnExactMatch() {
+        DeviceRegistry device = device("1.2.0", "Up-to-date");
+
+        FirmwareVerdictCache.Verdict verdict = cache.verdict(device, "1.2", "Up-to-date", strict);
+        assertTrue(verdict.isFirmwareValid());
+        // Compliance wants the expected string itself
+        assertFalse(verdict.isCompliant());
+        assertEquals("Firmware mismatch;", verdict.getViolations());
+    }
+
+    @Test
+    void registryExpectationChangeInvalidatesTheVerdict() {
+        DeviceRegistry device = device("2.0.3", "Up-to-date");
+        FirmwareVerdictCache.Verdict before = cache.verdict(device, "2.0.3", "Up-to-date", strict);
+
+        // Same registry object, updated in place as a JPA entity would be
+        device.setExpectedFirmwareVersion("2.1.0");
+        FirmwareVerdictCache.Verdict raised = cache.verdict(device, "2.0.3", "Up-to-date", strict);
+        assertNotSame(before, raised);
+        assertFalse(raised.isFirmwareValid());
+        assertFalse(raised.isCompliant());
+        assertSame(raised, cache.verdict(device, "2.0.3", "Up-to-date", strict));
+
+        device.setExpectedFirmwareVersion("2.0.3");
+        device.setExpectedPatchStatus("Patched-2026-01");
+        FirmwareVerdictCache.Verdict newPatch = cache.verdict(device, "2.0.3", "Up-to-date", strict);
+        assertNotSame(raised, newPatch);
+        assertFalse(newPatch.isFirmwareValid());
+
+        device.setAllowOutdatedPatch(true);
+        FirmwareVerdictCache.Verdict allowed = cache.verdict(device, "2.0.3", "Up-to-date", strict);
+        assertNotSame(newPatch, allowed);
+        assertTrue(allowed.isFirmwareValid());
+    }
+
+    @Test
+    void policyProfileSwapInvalidatesTheVerdict() {
+        DeviceRegistry device = device("2.0.3", "Up-to-date");
+        FirmwareVerdictCache.Verdict strictVerdict = cache.verdict(device, "2.0.4", "Up-to-date", strict);
+        assertTrue(strictVerdict.isFirmwareValid());
+        assertFalse(strictVerdict.isCompliant());
+
+        TrustPolicy.Profile lenient = profile(false);
+        FirmwareVerdictCache.Verdict lenientVerdict = cache.verdict(device, "2.0.4", "Up-to-date", lenient);
+        assertNotSame(strictVerdict, lenientVerdict);
+        assertTrue(lenientVerdict.isCompliant());
+
+        // A recompiled policy gives new profile instances even with the same rules
+        FirmwareVerdictCache.Verdict recompiled = cache.verdict(device, "2.0.4", "Up-to-date", profile(true));
+        assertNotSame(strictVerdict, recompiled);
+        assertFalse(recompiled.isCompliant());
+    }
+
+    // === HELPERS ===
+
+    private static DeviceRegistry device(String expectedVersion, String expectedPatch) {
+        DeviceRegistry device = new DeviceRegistry("device-1");
+        device.setExpectedFirmwareVersion(expectedVersion);
+        device.setExpectedPatchStatus(expectedPatch);
+        device.setAllowOutdatedPatch(false);
+        return device;
+    }
+
+    private static TrustPolicy.Profile profile(boolean requireExpectedFirmware) {
+        TrustPolicyDto.ProfileDto profile = new TrustPolicyDto.ProfileDto();
+        profile.getComplianceRules().setRequireExpectedFirmware(requireExpectedFirmware);
+        TrustPolicyDto definition = new TrustPolicyDto();
+        definition.getProfiles().put("DEFAULT", profile);
+        return TrustPolicy.compile(definition).getDefaultProfile();
+    }
+}
@@ -0,0 +1,155 @@
+package edu.university.iot.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Packing and comparison of firmware versions, against the string comparison
+ * FirmwareService used before versions were interned.
+ */
+class FirmwareVersionsTest {
+
+    private final FirmwareVersions versions = new FirmwareVersions();
+
+    @Test
+    void majorIsLimitedToFifteenBits() {
+        assertEquals(0x7FFFL << 48, FirmwareVersions.pack("32767"));
+        assertEquals(FirmwareVersions.UNPARSEABLE, FirmwareVersions.pack("32768"));
+        assertEquals(FirmwareVersions.UNPARSEABLE, FirmwareVersions.pack("65535.0"));
+
+        // Still numeric, so it compares component by component
+        assertTrue(version("32768").isAtLeast(version("32767.9")));
+        assertFalse(version("32767.9").isAtLeast(version("32768")));
+    }
+
+    @Test
+    void minorComponentsOverflowingSixteenBitsAreUnparseable() {
+        assertEquals((1L << 48) | (0xFFFFL << 32), FirmwareVersions.pack("1.65535"));
+        assertEquals(FirmwareVersions.UNPARSEABLE, FirmwareVersions.pack("1.65536"));
+        assertEquals(FirmwareVersions.UNPARSEABLE, FirmwareVersions.pack("1.2.3.99999999999999999999"));
+
+        assertFalse(version("1.65536").isParseable());
+        assertTrue(version("1.65536").isAtLeast(version("1.65535")));
+        assertFalse(version("1.65535").isAtLeast(version("1.65536")));
+        assertTrue(version("1.2.3.99999999999999999999").isAtLeast(version("1.2.3.99999999999999999998")));
+    }
+
+    @Test
+    void moreThanFourComponentsCompareByComponent() {
+        assertEquals((1L << 48) | (2L << 32) | (3L << 16) | 4L, FirmwareVersions.pack("1.2.3.4"));
+        assertEquals(FirmwareVersions.UNPARSEABLE, FirmwareVersions.pack("1.2.3.4.5"));
+
+        assertTrue(version("1.2.3.4.5").isAtLeast(version("1.2.3.4")));
+        assertFalse(version("1.2.3.4").isAtLeast(version("1.2.3.4.5")));
+        assertTrue(version("1.2.3.4.0").isAtLeast(version("1.2.3.4")));
+        assertTrue(version("1.2.3.4").isAtLeast(version("1.2.3.4.0")));
+        assertTrue(version("1.2.3.5").isAtLeast(version("1.2.3.4.9")));
+    }
+
+    @Test
+    void leadingTrailingAndDoubledDotsOnlyMatchThemselves() {
+        for (String malformed : new String[] {".1.2", "1.2.", "1..2", ".", "", "1.2-beta", "v1.2", " 1.2"}) {
+            assertEquals(FirmwareVersions.UNPARSEABLE, FirmwareVersions.pack(malformed), malformed);
+            assertFalse(FirmwareVersions.isNumeric(malformed), malformed);
+            assertTrue(version(malformed).isAtLeast(version(malformed)), malformed);
+            assertFalse(version(malformed).isAtLeast(version("0")), malformed);
+            assertFalse(version("99").isAtLeast(version(malformed)), malformed);
+        }
+        assertFalse(version("1.2.").isAtLeast(version("1.2")));
+    }
+
+    @Test
+    void leadingZerosAreIgnored() {
+        assertEquals(FirmwareVersions.pack("1.2.3"), FirmwareVersions.pack("01.002.0003"));
+        assertTrue(version("1.02").isAtLeast(version("1.2")));
+        assertTrue(version("1.2").isAtLeast(version("1.02")));
+        assertTrue(version("1.010").isAtLeast(version("1.9")));
+
+        // Past the packed range as well
+        assertEquals(0, FirmwareVersions.compareNumeric("1.2.3.4.00005", "1.2.3.4.5"));
+        assertEquals(0, FirmwareVersions.compareNumeric("0000000000000000000070000", "70000"));
+        assertTrue(FirmwareVersions.compareNumeric("1.0000099999", "1.100000") < 0);
+    }
+
+    @Test
+    void missingComponentsCountAsZero() {
+        assertEquals(FirmwareVersions.pack("1.2.0"), FirmwareVersions.pack("1.2"));
+        assertEquals(FirmwareVersions.pack("1.2.0.0"), FirmwareVersions.pack("1.2"));
+        assertTrue(version("1.2").isAtLeast(version("1.2.0")));
+        assertTrue(version("1.2.0").isAtLeast(version("1.2")));
+        assertFalse(version("1.2").isAtLeast(version("1.2.0.1")));
+    }
+
+    @Test
+    void internReturnsCanonicalInstances() {
+        FirmwareVersions.Version first = versions.intern("2.0.3");
+        assertSame(first, versions.intern(new String("2.0.3")));
+        assertEquals("2.0.3", first.getText());
+
+        String patch = versions.internPatchStatus("Up-to-date");
+        assertSame(patch, versions.internPatchStatus(new String("Up-to-date")));
+        assertNull(versions.internPatchStatus(null));
+
+        FirmwareVersions.Version missing = versions.intern(null);
+        assertFalse(missing.isParseable());
+        assertFalse(missing.isAtLeast(missing));
+        assertFalse(version("1.0").isAtLeast(missing));
+    }
+
+    @Test
+    void matchesBaselineComparisonOnNumericVersions() {
+        Random random = new Random(44);
+        for (int i = 0; i < 20_000; i++) {
+            String a = randomVersion(random);
+            String b = random.nextInt(10) == 0 ? a + ".0" : randomVersion(random);
+            assertEquals(baselineCompare(a, b) >= 0, version(a).isAtLeast(version(b)), a + " >= " + b);
+            assertEquals(baselineCompare(b, a) >= 0, version(b).isAtLeast(version(a)), b + " >= " + a);
+        }
+    }
+
+    // === HELPERS ===
+
+    private FirmwareVersions.Version version(String text) {
+        return versions.intern(text);
+    }
+
+    /**
+     * One to six components, mostly small, sometimes past 15 or 16 bits or
+     * with leading zeros; small values make equal prefixes common.
+     */
+    private static String randomVersion(Random random) {
+        StringBuilder version = new StringBuilder();
+        int components = 1 + random.nextInt(6);
+        for (int i = 0; i < components; i++) {
+            if (i > 0) {
+                version.append('.');
+            }
+            int component = switch (random.nextInt(8)) {
+                case 0 -> 30_000 + random.nextInt(40_000);
+                case 1 -> random.nextInt(1_000_000);
+                default -> random.nextInt(4);
+            };
+            if (random.nextInt(10) == 0) {
+                version.append('0');
+            }
+            version.append(component);
+        }
+        return version.toString();
+    }
+
+    /** FirmwareService.compareVersions before versions were interned. */
+    private static int baselineCompare(String v1, String v2) {
+        String[] p1 = v1.split("\\."), p2 = v2.split("\\.");
+        int len = Math.max(p1.length, p2.length);
+        for (int i = 0; i < len; i++) {
+            int x = i < p1.length ? Integer.parseInt(p1[i]) : 0;
+            int y = i < p2.length ? Integer.parseInt(p2[i]) : 0;
+            if (x != y)
+                return x - y;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,170 @@
+package edu.university.iot.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Roots and inclusion proofs of the anchoring Merkle tree for trees of every
+ * small size, including the odd sizes that promote a node unchanged.
+ */
+class MerkleTreeTest {
+
+    private static final int[] SIZES = {1, 2, 3, 4, 5, 6, 7, 8, 9, 15, 16, 17, 31, 32, 33, 100, 128};
+
+    @Test
+    void singleLeafIsItsOwnRoot() {
+        byte[] data = leaf(0);
+        MerkleTree tree = new MerkleTree(List.of(data));
+
+        assertTrue(Arrays.equals(MerkleTree.hashLeaf(data), tree.getRoot()));
+        assertTrue(tree.getProof(0).isEmpty());
+        assertTrue(MerkleTree.verify(data, tree.getProof(0), tree.getRoot()));
+    }
+
+    @Test
+    void smallTreesHashAsDocumented() {
+        byte[] h0 = MerkleTree.hashLeaf(leaf(0));
+        byte[] h1 = MerkleTree.hashLeaf(leaf(1));
+        byte[] h2 = MerkleTree.hashLeaf(leaf(2));
+
+        assertTrue(Arrays.equals(MerkleTree.hashNode(h0, h1), tree(2).getRoot()));
+        // The odd third leaf is promoted and paired one level up
+        assertTrue(Arrays.equals(MerkleTree.hashNode(MerkleTree.hashNode(h0, h1), h2), tree(3).getRoot()));
+
+        List<MerkleTree.ProofStep> proof = tree(3).getProof(2);
+        assertEquals(1, proof.size());
+        assertTrue(proof.get(0).isLeft());
+        assertTrue(Arrays.equals(MerkleTree.hashNode(h0, h1), proof.get(0).getHash()));
+    }
+
+    @Test
+    void everyLeafProofVerifies() {
+        for (int size : SIZES) {
+            MerkleTree tree = tree(size);
+            assertEquals(size, tree.getLeafCount());
+            for (int i = 0; i < size; i++) {
+                assertTrue(MerkleTree.verify(leaf(i), tree.getProof(i), tree.getRoot()), "leaf " + i + " of " + size);
+            }
+        }
+    }
+
+    @Test
+    void powerOfTwoTreesHaveFullLengthProofs() {
+        for (int size : new int[] {2, 4, 8, 16, 32, 128}) {
+            MerkleTree tree = tree(size);
+            int depth = Integer.numberOfTrailingZeros(size);
+            for (int i = 0; i < size; i++) {
+                List<MerkleTree.ProofStep> proof = tree.getProof(i);
+                assertEquals(depth, proof.size(), "proof length of leaf " + i + " of " + size);
+                // The sibling at each level sits on the left exactly when the leaf index has that bit set
+                for (int level = 0; level < depth; level++) {
+                    assertEquals(((i >> level) & 1) == 1, proof.get(level).isLeft());
+                }
+            }
+        }
+
+        // The last leaf of 5 is promoted twice and only meets a sibling at the top
+        assertEquals(1, tree(5).getProof(4).size());
+        assertEquals(3, tree(5).getProof(0).size());
+    }
+
+    @Test
+    void tamperedLeafIsRejected() {
+        for (int size : SIZES) {
+            MerkleTree tree = tree(size);
+            for (int i = 0; i < size; i++) {
+                byte[] tampered = leaf(i);
+                tampered[tampered.length - 1] ^= 1;
+                assertFalse(MerkleTree.verify(tampered, tree.getProof(i), tree.getRoot()), "leaf " + i + " of " + size);
+                if (size > 1) {
+                    // A genuine leaf with another leaf's proof
+                    int other = (i + 1) % size;
+                    assertFalse(MerkleTree.verify(leaf(other), tree.getProof(i), tree.getRoot()));
+                }
+            }
+        }
+    }
+
+    @Test
+    void tamperedSiblingIsRejected() {
+        for (int size : SIZES) {
+            MerkleTree tree = tree(size);
+            for (int i = 0; i < size; i++) {
+                List<MerkleTree.ProofStep> proof = tree.getProof(i);
+                for (int step = 0; step < proof.size(); step++) {
+                    byte[] hash = proof.get(step).getHash();
+                    hash[0] ^= (byte) 0x80;
+                    List<MerkleTree.ProofStep> flippedHash = replace(proof, step,
+                        new MerkleTree.ProofStep(hash, proof.get(step).isLeft()));
+                    assertFalse(MerkleTree.verify(leaf(i), flippedHash, tree.getRoot()),
+                                "sibling " + step + " of leaf " + i + " of " + size);
+
+                    List<MerkleTree.ProofStep> flippedSide = replace(proof, step,
+                        new MerkleTree.ProofStep(proof.get(step).getHash(), !proof.get(step).isLeft()));
+                    assertFalse(MerkleTree.verify(leaf(i), flippedSide, tree.getRoot()));
+                }
+                if (!proof.isEmpty()) {
+                    assertFalse(MerkleTree.verify(leaf(i), proof.subList(0, proof.size() - 1), tree.getRoot()));
+                }
+            }
+        }
+    }
+
+    @Test
+    void innerNodeCannotPassAsLeaf() {
+        MerkleTree tree = tree(2);
+        byte[] pair = new byte[64];
+        System.arraycopy(tree.getLeafHash(0), 0, pair, 0, 32);
+        System.arraycopy(tree.getLeafHash(1), 0, pair, 32, 32);
+        assertFalse(MerkleTree.verify(pair, List.of(), tree.getRoot()));
+    }
+
+    @Test
+    void storedLeafHashesRebuildTheSameTree() {
+        for (int size : SIZES) {
+            MerkleTree tree = tree(size);
+            List<byte[]> hashes = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                hashes.add(tree.getLeafHash(i));
+            }
+            MerkleTree rebuilt = MerkleTree.fromLeafHashes(hashes);
+            assertTrue(Arrays.equals(tree.getRoot(), rebuilt.getRoot()), "size " + size);
+            assertTrue(MerkleTree.verify(leaf(size - 1), rebuilt.getProof(size - 1), tree.getRoot()));
+        }
+    }
+
+    @Test
+    void rejectsEmptyTreesAndOutOfRangeLeaves() {
+        assertThrows(IllegalArgumentException.class, () -> new MerkleTree(List.of()));
+        MerkleTree tree = tree(3);
+        assertThrows(IndexOutOfBoundsException.class, () -> tree.getProof(3));
+        assertThrows(IndexOutOfBoundsException.class, () -> tree.getProof(-1));
+    }
+
+    // === HELPERS ===
+
+    private static byte[] leaf(int i) {
+        return ("trust-record-" + i).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static MerkleTree tree(int size) {
+        List<byte[]> leaves = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            leaves.add(leaf(i));
+        }
+        return new MerkleTree(leaves);
+    }
+
+    private static List<MerkleTree.ProofStep> replace(List<MerkleTree.ProofStep> proof, int index,
+                                                      MerkleTree.ProofStep step) {
+        List<MerkleTree.ProofStep> copy = new ArrayList<>(proof);
+        copy.set(index, step);
+        return copy;
+    }
+}
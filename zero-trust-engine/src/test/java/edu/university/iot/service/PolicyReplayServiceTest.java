@@ -0,0 +1,189 @@
+package edu.university.iot.service;
+
+import edu.university.iot.model.dtoModel.PolicyReplayDto;
+import edu.university.iot.model.dtoModel.TrustPolicyDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The parallel replay against replaying each device one row at a time, on
+ * synthetic history already loaded into columns.
+ */
+class PolicyReplayServiceTest {
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @AfterEach
+    void shutdownPool() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void samePolicyReplaysWithoutDifferences() {
+        TrustPolicy policy = policy(70.0, 10.0);
+        History history = randomHistory(new Random(1), 500, 40);
+
+        PolicyReplayDto dto = PolicyReplayService.compare(pool, history.columns, policy, policy);
+
+        assertEquals(0, dto.getTrustFlips());
+        assertEquals(0, dto.getDifferingQuarantines());
+        assertEquals(0, dto.getAffectedDevices());
+        assertEquals(dto.getActiveQuarantines(), dto.getCandidateQuarantines());
+        assertEquals(0, dto.getNewlyQuarantinedDevices());
+        assertEquals(0, dto.getNoLongerQuarantinedDevices());
+    }
+
+    @Test
+    void parallelReplayMatchesSequentialReplay() {
+        TrustPolicy active = policy(70.0, 10.0);
+        TrustPolicy candidate = policy(75.0, 15.0);
+        // Enough rows that the fork-join task splits several times
+        History history = randomHistory(new Random(2), 3000, 80);
+
+        PolicyReplayDto dto = PolicyReplayService.compare(pool, history.columns, active, candidate);
+        Reference expected = sequentialReplay(history, active, candidate);
+
+        assertTrue(expected.trustFlips > 0, "candidate should change some outcomes");
+        assertEquals(expected.activeQuarantines, dto.getActiveQuarantines());
+        assertEquals(expected.candidateQuarantines, dto.getCandidateQuarantines());
+        assertEquals(expected.activeQuarantinedDevices, dto.getActiveQuarantinedDevices());
+        assertEquals(expected.candidateQuarantinedDevices, dto.getCandidateQuarantinedDevices());
+        assertEquals(expected.differingQuarantines, dto.getDifferingQuarantines());
+        assertEquals(expected.trustFlips, dto.getTrustFlips());
+        assertEquals(expected.affectedDevices, dto.getAffectedDevices());
+        assertEquals(expected.newlyQuarantined, dto.getNewlyQuarantinedDevices());
+        assertEquals(expected.noLongerQuarantined, dto.getNoLongerQuarantinedDevices());
+        assertTrue(dto.getNewlyQuarantinedSample().size() <= 20);
+    }
+
+    @Test
+    @Tag("benchmark")
+    void timesParallelReplayAgainstSequentialReplay() {
+        TrustPolicy active = policy(70.0, 10.0);
+        TrustPolicy candidate = policy(75.0, 15.0);
+        History history = randomHistory(new Random(3), 20_000, 200);
+        int rows = history.columns.rowCount();
+
+        // One worker per CPU, as the service sizes its pool by default
+        int cpus = Runtime.getRuntime().availableProcessors();
+        ForkJoinPool machinePool = new ForkJoinPool(cpus);
+        try {
+            double sequential = TimingHarness.nanosPerOperation(rows,
+                () -> sequentialReplay(history, active, candidate).trustFlips);
+            double parallel = TimingHarness.nanosPerOperation(rows,
+                () -> PolicyReplayService.compare(machinePool, history.columns, active, candidate).getTrustFlips());
+            TimingHarness.report("Policy replay per history row (" + rows + " rows, " + cpus + " workers)",
+                                 sequential, parallel);
+        } finally {
+            machinePool.shutdownNow();
+        }
+    }
+
+    // === HELPERS ===
+
+    /** Columns as the service loads them, plus the same rows for the reference replay. */
+    private record History(PolicyReplayService.HistoryColumns columns, int[] offsets, int[] masks,
+                           double[] startScores) {
+    }
+
+    private static History randomHistory(Random random, int devices, int maxRows) {
+        PolicyReplayService.HistoryColumns columns = new PolicyReplayService.HistoryColumns();
+        int[] offsets = new int[devices + 1];
+        double[] startScores = new double[devices];
+        for (int d = 0; d < devices; d++) {
+            offsets[d + 1] = offsets[d] + 1 + random.nextInt(maxRows);
+            startScores[d] = 50 + random.nextInt(101) * 0.5;
+        }
+        int allPass = TrustPolicy.IDENTITY | TrustPolicy.CONTEXT | TrustPolicy.FIRMWARE | TrustPolicy.COMPLIANCE;
+        int[] masks = new int[offsets[devices]];
+        for (int d = 0; d < devices; d++) {
+            for (int row = offsets[d]; row < offsets[d + 1]; row++) {
+                masks[row] = random.nextInt(4) != 0 ? allPass : random.nextInt(TrustPolicy.VERDICT_COMBINATIONS);
+                // History keeps the score before each change; the replay only uses the first one
+                columns.add(String.format("device-%05d", d), startScores[d], masks[row]);
+            }
+        }
+        columns.finish();
+        return new History(columns, offsets, masks, startScores);
+    }
+
+    private static TrustPolicy policy(double threshold, double anomalyPenalty) {
+        TrustPolicyDto.ProfileDto profile = new TrustPolicyDto.ProfileDto();
+        profile.setTrustedThreshold(threshold);
+        profile.setAnomaly(new TrustPolicyDto.WeightDto(2.0, anomalyPenalty));
+        TrustPolicyDto definition = new TrustPolicyDto();
+        definition.getProfiles().put("DEFAULT", profile);
+        return TrustPolicy.compile(definition);
+    }
+
+    private static final class Reference {
+        long activeQuarantines;
+        long candidateQuarantines;
+        int activeQuarantinedDevices;
+        int candidateQuarantinedDevices;
+        long differingQuarantines;
+        long trustFlips;
+        int affectedDevices;
+        int newlyQuarantined;
+        int noLongerQuarantined;
+    }
+
+    /**
+     * One device and one row at a time through the per-event scoring of each policy.
+     */
+    private static Reference sequentialReplay(History history, TrustPolicy active, TrustPolicy candidate) {
+        TrustPolicy.Profile activeProfile = active.getDefaultProfile();
+        TrustPolicy.Profile candidateProfile = candidate.getDefaultProfile();
+        Reference reference = new Reference();
+        for (int d = 0; d < history.startScores.length; d++) {
+            double activeScore = history.startScores[d];
+            double candidateScore = history.startScores[d];
+            boolean activeTrusted = activeProfile.isTrusted(activeScore);
+            boolean candidateTrusted = candidateProfile.isTrusted(candidateScore);
+            boolean activeQuarantined = false;
+            boolean candidateQuarantined = false;
+            boolean affected = false;
+            for (int row = history.offsets[d]; row < history.offsets[d + 1]; row++) {
+                int mask = history.masks[row];
+                activeScore = score(activeProfile, activeScore, mask);
+                candidateScore = score(candidateProfile, candidateScore, mask);
+                boolean activeNow = activeProfile.isTrusted(activeScore);
+                boolean candidateNow = candidateProfile.isTrusted(candidateScore);
+                boolean activeQuarantine = activeTrusted && !activeNow;
+                boolean candidateQuarantine = candidateTrusted && !candidateNow;
+                if (activeQuarantine) reference.activeQuarantines++;
+                if (candidateQuarantine) reference.candidateQuarantines++;
+                if (activeQuarantine != candidateQuarantine) {
+                    reference.differingQuarantines++;
+                    affected = true;
+                }
+                if (activeNow != candidateNow) {
+                    reference.trustFlips++;
+                    affected = true;
+                }
+                activeQuarantined |= activeQuarantine;
+                candidateQuarantined |= candidateQuarantine;
+                activeTrusted = activeNow;
+                candidateTrusted = candidateNow;
+            }
+            if (activeQuarantined) reference.activeQuarantinedDevices++;
+            if (candidateQuarantined) reference.candidateQuarantinedDevices++;
+            if (affected) reference.affectedDevices++;
+            if (candidateQuarantined && !activeQuarantined) reference.newlyQuarantined++;
+            if (activeQuarantined && !candidateQuarantined) reference.noLongerQuarantined++;
+        }
+        return reference;
+    }
+
+    private static double score(TrustPolicy.Profile profile, double oldScore, int mask) {
+        return profile.score(oldScore, (mask & TrustPolicy.IDENTITY) != 0, (mask & TrustPolicy.CONTEXT) != 0,
+                             (mask & TrustPolicy.FIRMWARE) != 0, (mask & TrustPolicy.ANOMALY) != 0,
+                             (mask & TrustPolicy.COMPLIANCE) != 0);
+    }
+}
@@ -0,0 +1,576 @@
+package edu.university.iot.service;
+
+import edu.university.iot.config.AnalyticsCacheConfig;
+import edu.university.iot.config.QuarantineConfig;
+import edu.university.iot.model.QuarantineCommand;
+import edu.university.iot.model.QuarantineLog;
+import edu.university.iot.repository.DeviceRegistryRepository;
+import edu.university.iot.repository.QuarantineCommandRepository;
+import edu.university.iot.repository.QuarantineLogRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Pageable;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The quarantine queue drained against LocalDeviceIdentityGateway, with the
+ * command and log tables kept in memory. Saves check and bump the version as
+ * JPA does, so competing claims and stale workers behave as they would against
+ * the database.
+ */
+class QuarantineCommandExecutorTest {
+
+    private final CommandTable commands = new CommandTable();
+    private final LogTable logs = new LogTable();
+    private final LocalDeviceIdentityGateway hub = new LocalDeviceIdentityGateway();
+    private final List<QuarantineCommandExecutor> executors = new ArrayList<>();
+
+    @AfterEach
+    void shutdownExecutors() throws InterruptedException {
+        for (QuarantineCommandExecutor executor : executors) {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void disablesDeviceAndRecordsSuccess() {
+        long id = enqueue("device-1");
+        QuarantineCommandExecutor executor = executor(hub, config());
+
+        executor.pollAndDispatch();
+        awaitIdle(executor);
+
+        QuarantineCommand command = commands.get(id);
+        assertEquals(QuarantineCommand.Status.DONE, command.getStatus());
+        assertEquals(1, command.getAttempts());
+        assertNotNull(command.getCompletedAt());
+        assertNull(command.getLastError());
+        assertEquals(QuarantineLog.Status.SUCCESS, logs.get(command.getQuarantineLogId()).getStatus());
+        assertTrue(hub.isDisabled("device-1"));
+    }
+
+    @Test
+    void claimHidesCommandFromOtherPollersUntilLeaseExpires() throws InterruptedException {
+        long id = enqueue("device-1");
+        QuarantineConfig config = config();
+        BlockingGateway stuck = new BlockingGateway(hub);
+        QuarantineCommandExecutor first = executor(stuck, config);
+        CountingGateway counting = new CountingGateway(hub);
+        QuarantineCommandExecutor second = executor(counting, config);
+
+        Instant before = Instant.now();
+        first.pollAndDispatch();
+        assertTrue(stuck.entered.await(5, TimeUnit.SECONDS));
+
+        QuarantineCommand claimed = commands.get(id);
+        assertEquals(1, claimed.getAttempts());
+        assertFalse(claimed.getNextAttemptAt().isBefore(before.plusMillis(config.getLeaseMs())));
+        second.pollAndDispatch();
+        awaitIdle(second);
+        assertEquals(0, counting.calls.get());
+
+        // The first worker hangs past its lease; another poller takes the command over
+        commands.advancePastNextAttempts();
+        second.pollAndDispatch();
+        awaitIdle(second);
+        assertEquals(1, counting.calls.get());
+        assertEquals(QuarantineCommand.Status.DONE, commands.get(id).getStatus());
+        assertEquals(2, commands.get(id).getAttempts());
+
+        // The stale worker finishes with ALREADY_DISABLED; its save loses and the log keeps SUCCESS
+        stuck.release.countDown();
+        awaitIdle(first);
+        assertEquals(QuarantineCommand.Status.DONE, commands.get(id).getStatus());
+        assertEquals(QuarantineLog.Status.SUCCESS, logs.get(commands.get(id).getQuarantineLogId()).getStatus());
+    }
+
+    @Test
+    void dispatchIsBoundedByBatchSize() {
+        for (int i = 0; i < 12; i++) {
+            enqueue("device-" + i);
+        }
+        QuarantineConfig config = config();
+        config.setBatchSize(5);
+        BlockingGateway stuck = new BlockingGateway(hub);
+        QuarantineCommandExecutor executor = executor(stuck, config);
+
+        executor.pollAndDispatch();
+        executor.pollAndDispatch();
+        assertEquals(5, commands.countWhere(c -> c.getAttempts() == 1));
+        assertEquals(5, executor.getQueueStatistics().get("inFlight"));
+
+        stuck.release.countDown();
+        for (int poll = 0; poll < 3; poll++) {
+            awaitIdle(executor);
+            executor.pollAndDispatch();
+        }
+        awaitIdle(executor);
+        assertEquals(12L, commands.repository.countByStatus(QuarantineCommand.Status.DONE));
+        assertEquals(12, hub.getDisabledDevices().size());
+    }
+
+    @Test
+    void backoffGrowsExponentiallyWithJitterUpToTheCap() {
+        QuarantineConfig config = config();
+        config.setInitialBackoffMs(1_000);
+        config.setMaxBackoffMs(8_000);
+        QuarantineCommandExecutor executor = executor(hub, config);
+
+        long[] bases = {1_000, 1_000, 2_000, 4_000, 8_000, 8_000, 8_000};
+        for (int attempts = 0; attempts < bases.length; attempts++) {
+            for (int sample = 0; sample < 200; sample++) {
+                assertWithin(bases[attempts], executor.backoffMillis(attempts), "attempt " + attempts);
+            }
+        }
+        assertWithin(8_000, executor.backoffMillis(Integer.MAX_VALUE), "attempt MAX_VALUE");
+
+        // A shift that overflows falls back to the cap instead of going negative
+        config.setInitialBackoffMs(1L << 40);
+        config.setMaxBackoffMs(1L << 50);
+        assertWithin(1L << 50, executor.backoffMillis(40), "overflowing attempt");
+    }
+
+    @Test
+    void failedAttemptIsRetriedAfterItsBackoff() {
+        long id = enqueue("device-1");
+        QuarantineConfig config = config();
+        config.setInitialBackoffMs(1_000);
+        FlakyGateway flaky = new FlakyGateway(hub, 2);
+        QuarantineCommandExecutor executor = executor(flaky, config);
+
+        Instant before = Instant.now();
+        executor.pollAndDispatch();
+        awaitIdle(executor);
+        QuarantineCommand command = commands.get(id);
+        assertEquals(QuarantineCommand.Status.PENDING, command.getStatus());
+        assertEquals(1, command.getAttempts());
+        assertTrue(command.getLastError().startsWith("IOException"), command.getLastError());
+        assertFalse(command.getNextAttemptAt().isBefore(before.plusMillis(1_000)));
+        assertEquals(QuarantineLog.Status.PENDING, logs.get(command.getQuarantineLogId()).getStatus());
+
+        // Not due yet
+        executor.pollAndDispatch();
+        awaitIdle(executor);
+        assertEquals(1, flaky.calls.get());
+
+        before = Instant.now();
+        commands.advancePastNextAttempts();
+        executor.pollAndDispatch();
+        awaitIdle(executor);
+        command = commands.get(id);
+        assertEquals(2, command.getAttempts());
+        assertFalse(command.getNextAttemptAt().isBefore(before.plusMillis(2_000)));
+
+        commands.advancePastNextAttempts();
+        executor.pollAndDispatch();
+        awaitIdle(executor);
+        command = commands.get(id);
+        assertEquals(QuarantineCommand.Status.DONE, command.getStatus());
+        assertEquals(3, command.getAttempts());
+        assertNull(command.getLastError());
+        assertEquals(QuarantineLog.Status.SUCCESS, logs.get(command.getQuarantineLogId()).getStatus());
+        assertTrue(hub.isDisabled("device-1"));
+    }
+
+    @Test
+    void givesUpAfterMaxAttempts() {
+        long id = enqueue("device-1");
+        QuarantineConfig config = config();
+        config.setMaxAttempts(3);
+        FlakyGateway failing = new FlakyGateway(hub, Integer.MAX_VALUE);
+        QuarantineCommandExecutor executor = executor(failing, config);
+
+        for (int round = 0; round < 5; round++) {
+            executor.pollAndDispatch();
+            awaitIdle(executor);
+            commands.advancePastNextAttempts();
+        }
+
+        QuarantineCommand command = commands.get(id);
+        assertEquals(3, failing.calls.get());
+        assertEquals(QuarantineCommand.Status.FAILED, command.getStatus());
+        assertEquals(3, command.getAttempts());
+        assertTrue(command.getLastError().contains("injected failure"), command.getLastError());
+        QuarantineLog entry = logs.get(command.getQuarantineLogId());
+        assertEquals(QuarantineLog.Status.FAILED, entry.getStatus());
+        assertEquals(command.getLastError(), entry.getErrorMessage());
+        assertFalse(hub.isDisabled("device-1"));
+    }
+
+    @Test
+    void unknownDeviceFailsWithoutRetrying() {
+        long id = enqueue("device-1");
+        CountingGateway missing = new CountingGateway(deviceId -> DeviceIdentityGateway.DisableOutcome.NOT_FOUND);
+        QuarantineCommandExecutor executor = executor(missing, config());
+
+        for (int round = 0; round < 3; round++) {
+            executor.pollAndDispatch();
+            awaitIdle(executor);
+            commands.advancePastNextAttempts();
+        }
+
+        QuarantineCommand command = commands.get(id);
+        assertEquals(1, missing.calls.get());
+        assertEquals(QuarantineCommand.Status.FAILED, command.getStatus());
+        assertEquals("Device not found in IoT Hub", command.getLastError());
+        assertEquals(QuarantineLog.Status.FAILED, logs.get(command.getQuarantineLogId()).getStatus());
+    }
+
+    @Test
+    void duplicateCommandsForOneDeviceDisableItOnce() {
+        // Two transactions that both saw no pending command can each queue one
+        long first = enqueue("device-1");
+        long second = enqueue("device-1");
+        CountingGateway counting = new CountingGateway(hub);
+        QuarantineCommandExecutor executor = executor(counting, config());
+
+        executor.pollAndDispatch();
+        awaitIdle(executor);
+
+        assertEquals(2, counting.calls.get());
+        assertEquals(1, counting.disabled.get());
+        assertEquals(QuarantineCommand.Status.DONE, commands.get(first).getStatus());
+        assertEquals(QuarantineCommand.Status.DONE, commands.get(second).getStatus());
+        List<QuarantineLog.Status> outcomes = new ArrayList<>(List.of(
+            logs.get(commands.get(first).getQuarantineLogId()).getStatus(),
+            logs.get(commands.get(second).getQuarantineLogId()).getStatus()));
+        outcomes.sort(Comparator.naturalOrder());
+        assertEquals(List.of(QuarantineLog.Status.SUCCESS, QuarantineLog.Status.ALREADY_QUARANTINED), outcomes);
+    }
+
+    @Test
+    void quarantineServiceKeepsOnePendingCommandPerDevice() {
+        QuarantineService service = quarantineService();
+        QuarantineCommandExecutor executor = executor(hub, config());
+
+        service.quarantineDevice("device-1", "first alert");
+        service.quarantineDevice("device-1", "second alert");
+        service.quarantineDevice("device-2", "other device");
+
+        assertEquals(2L, commands.repository.countByStatus(QuarantineCommand.Status.PENDING));
+        assertEquals(3, logs.all().size());
+        assertEquals(QuarantineLog.Status.ALREADY_QUARANTINED, logs.all().get(1).getStatus());
+        assertEquals("second alert", logs.all().get(1).getReason());
+
+        executor.pollAndDispatch();
+        awaitIdle(executor);
+        assertEquals(QuarantineLog.Status.SUCCESS, logs.all().get(0).getStatus());
+        assertTrue(hub.isDisabled("device-1"));
+        assertTrue(hub.isDisabled("device-2"));
+
+        // Once the first command is done a new quarantine queues again; IoT Hub already has it disabled
+        service.quarantineDevice("device-1", "third alert");
+        assertEquals(1L, commands.repository.countByStatus(QuarantineCommand.Status.PENDING));
+        executor.pollAndDispatch();
+        awaitIdle(executor);
+        assertEquals(QuarantineLog.Status.ALREADY_QUARANTINED, logs.all().get(3).getStatus());
+        assertEquals(3L, commands.repository.countByStatus(QuarantineCommand.Status.DONE));
+    }
+
+    @Test
+    void concurrentPollersDisableEveryDeviceOnce() throws InterruptedException {
+        int devices = 300;
+        for (int i = 0; i < devices; i++) {
+            enqueue(String.format("device-%03d", i));
+        }
+        CountingGateway counting = new CountingGateway(hub);
+        QuarantineConfig config = config();
+        config.setBatchSize(20);
+
+        List<Thread> pollers = new ArrayList<>();
+        List<QuarantineCommandExecutor> polling = new ArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+        for (int p = 0; p < 4; p++) {
+            QuarantineCommandExecutor executor = executor(counting, config);
+            polling.add(executor);
+            Thread poller = new Thread(() -> {
+                try {
+                    start.await();
+                    while (commands.repository.countByStatus(QuarantineCommand.Status.PENDING) > 0
+                           && System.nanoTime() < deadline) {
+                        executor.pollAndDispatch();
+                        Thread.sleep(1);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            pollers.add(poller);
+            poller.start();
+        }
+        start.countDown();
+        for (Thread poller : pollers) {
+            poller.join();
+        }
+        polling.forEach(QuarantineCommandExecutorTest::awaitIdle);
+
+        assertEquals(devices, commands.repository.countByStatus(QuarantineCommand.Status.DONE));
+        assertEquals(devices, hub.getDisabledDevices().size());
+        // Losing claims are dropped before dispatch, so no device reaches IoT Hub twice
+        assertEquals(devices, counting.calls.get());
+        assertEquals(devices, counting.disabled.get());
+        assertEquals(devices, commands.countWhere(c -> c.getAttempts() == 1));
+    }
+
+    // === HELPERS ===
+
+    private static QuarantineConfig config() {
+        QuarantineConfig config = new QuarantineConfig();
+        config.setGateway("local");
+        config.setWorkerThreads(4);
+        return config;
+    }
+
+    private QuarantineCommandExecutor executor(DeviceIdentityGateway gateway, QuarantineConfig config) {
+        QuarantineCommandExecutor executor =
+            new QuarantineCommandExecutor(commands.repository, logs.repository, gateway, config, false);
+        executors.add(executor);
+        return executor;
+    }
+
+    private QuarantineService quarantineService() {
+        // No registry rows: the service only touches the registry for devices it knows
+        DeviceRegistryRepository registry = proxy(DeviceRegistryRepository.class, (method, args) -> {
+            if (method.getName().equals("findById")) {
+                return Optional.empty();
+            }
+            throw new UnsupportedOperationException(method.getName());
+        });
+        return new QuarantineService(registry, logs.repository, commands.repository,
+                                     new AnalyticsResultCache(new AnalyticsCacheConfig()));
+    }
+
+    /** A pending log row and its command, as QuarantineService writes them. */
+    private long enqueue(String deviceId) {
+        QuarantineLog entry = logs.repository.save(new QuarantineLog(deviceId, "test", QuarantineLog.Status.PENDING));
+        return commands.repository.save(new QuarantineCommand(deviceId, "test", entry.getId())).getId();
+    }
+
+    private static void awaitIdle(QuarantineCommandExecutor executor) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!Integer.valueOf(0).equals(executor.getQueueStatistics().get("inFlight"))) {
+            assertTrue(System.nanoTime() < deadline, "quarantine workers did not finish");
+            Thread.onSpinWait();
+        }
+    }
+
+    private static void assertWithin(long base, long delay, String message) {
+        assertTrue(delay >= base && delay <= base + base / 5, message + ": " + delay + " ms for base " + base);
+    }
+
+    private interface Handler {
+        Object handle(Method method, Object[] args);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                return method.getName().equals("toString") ? type.getSimpleName() : method.invoke(handler, args);
+            }
+            return handler.handle(method, args);
+        });
+    }
+
+    /** quarantine_commands by id; rows are copied in and out so callers hold detached entities. */
+    private static final class CommandTable {
+        private final Map<Long, QuarantineCommand> rows = new TreeMap<>();
+        private long nextId = 1;
+        final QuarantineCommandRepository repository = proxy(QuarantineCommandRepository.class, this::handle);
+
+        private synchronized Object handle(Method method, Object[] args) {
+            switch (method.getName()) {
+                case "save":
+                    return save((QuarantineCommand) args[0]);
+                case "findDue": {
+                    QuarantineCommand.Status status = (QuarantineCommand.Status) args[0];
+                    Instant now = (Instant) args[1];
+                    return rows.values().stream()
+                        .filter(c -> c.getStatus() == status && !c.getNextAttemptAt().isAfter(now))
+                        .sorted(Comparator.comparing(QuarantineCommand::getNextAttemptAt))
+                        .limit(((Pageable) args[2]).getPageSize())
+                        .map(CommandTable::copy)
+                        .toList();
+                }
+                case "findFirstByDeviceIdAndStatus":
+                    return rows.values().stream()
+                        .filter(c -> c.getDeviceId().equals(args[0]) && c.getStatus() == args[1])
+                        .findFirst()
+                        .map(CommandTable::copy);
+                case "countByStatus":
+                    return rows.values().stream().filter(c -> c.getStatus() == args[0]).count();
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        }
+
+        private QuarantineCommand save(QuarantineCommand command) {
+            QuarantineCommand row = copy(command);
+            if (row.getId() == null) {
+                row.setId(nextId++);
+                row.setVersion(0L);
+            } else {
+                Long current = rows.get(row.getId()).getVersion();
+                if (!current.equals(row.getVersion())) {
+                    throw new OptimisticLockingFailureException(
+                        "quarantine command " + row.getId() + " is at version " + current);
+                }
+                row.setVersion(current + 1);
+            }
+            rows.put(row.getId(), row);
+            return copy(row);
+        }
+
+        synchronized QuarantineCommand get(long id) {
+            return copy(rows.get(id));
+        }
+
+        synchronized int countWhere(Predicate<QuarantineCommand> filter) {
+            return (int) rows.values().stream().filter(filter).count();
+        }
+
+        /** The clock moves past every backoff and lease; versions are untouched. */
+        synchronized void advancePastNextAttempts() {
+            rows.values().forEach(c -> c.setNextAttemptAt(Instant.EPOCH));
+        }
+
+        private static QuarantineCommand copy(QuarantineCommand c) {
+            QuarantineCommand copy = new QuarantineCommand();
+            copy.setId(c.getId());
+            copy.setDeviceId(c.getDeviceId());
+            copy.setReason(c.getReason());
+            copy.setQuarantineLogId(c.getQuarantineLogId());
+            copy.setStatus(c.getStatus());
+            copy.setAttempts(c.getAttempts());
+            copy.setNextAttemptAt(c.getNextAttemptAt());
+            copy.setCreatedAt(c.getCreatedAt());
+            copy.setCompletedAt(c.getCompletedAt());
+            copy.setLastError(c.getLastError());
+            copy.setVersion(c.getVersion());
+            return copy;
+        }
+    }
+
+    /** quarantine_log by id, in insertion order. */
+    private static final class LogTable {
+        private final Map<Long, QuarantineLog> rows = new TreeMap<>();
+        final QuarantineLogRepository repository = proxy(QuarantineLogRepository.class, this::handle);
+
+        private synchronized Object handle(Method method, Object[] args) {
+            switch (method.getName()) {
+                case "save": {
+                    QuarantineLog row = copy((QuarantineLog) args[0]);
+                    if (row.getId() == null) {
+                        row.setId(rows.size() + 1L);
+                    }
+                    rows.put(row.getId(), row);
+                    return copy(row);
+                }
+                case "findById":
+                    return Optional.ofNullable(rows.get((Long) args[0])).map(LogTable::copy);
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        }
+
+        synchronized QuarantineLog get(long id) {
+            return copy(rows.get(id));
+        }
+
+        synchronized List<QuarantineLog> all() {
+            return rows.values().stream().map(LogTable::copy).toList();
+        }
+
+        private static QuarantineLog copy(QuarantineLog entry) {
+            QuarantineLog copy = new QuarantineLog(entry.getDeviceId(), entry.getReason(), entry.getStatus());
+            copy.setId(entry.getId());
+            copy.setTimestamp(entry.getTimestamp());
+            copy.setErrorMessage(entry.getErrorMessage());
+            return copy;
+        }
+    }
+
+    /** Counts calls and DISABLED outcomes before handing them on. */
+    private static final class CountingGateway implements DeviceIdentityGateway {
+        private final DeviceIdentityGateway delegate;
+        final AtomicInteger calls = new AtomicInteger();
+        final AtomicInteger disabled = new AtomicInteger();
+
+        CountingGateway(DeviceIdentityGateway delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public DisableOutcome disableDevice(String deviceId) throws IOException {
+            calls.incrementAndGet();
+            DisableOutcome outcome = delegate.disableDevice(deviceId);
+            if (outcome == DisableOutcome.DISABLED) {
+                disabled.incrementAndGet();
+            }
+            return outcome;
+        }
+    }
+
+    /** Throws for the first {@code failures} calls, then hands on. */
+    private static final class FlakyGateway implements DeviceIdentityGateway {
+        private final DeviceIdentityGateway delegate;
+        private final int failures;
+        final AtomicInteger calls = new AtomicInteger();
+
+        FlakyGateway(DeviceIdentityGateway delegate, int failures) {
+            this.delegate = delegate;
+            this.failures = failures;
+        }
+
+        @Override
+        public DisableOutcome disableDevice(String deviceId) throws IOException {
+            if (calls.incrementAndGet() <= failures) {
+                throw new IOException("injected failure " + calls.get());
+            }
+            return delegate.disableDevice(deviceId);
+        }
+    }
+
+    /** Holds every call until released, like an IoT Hub call that hangs. */
+    private static final class BlockingGateway implements DeviceIdentityGateway {
+        private final DeviceIdentityGateway delegate;
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        BlockingGateway(DeviceIdentityGateway delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public DisableOutcome disableDevice(String deviceId) throws IOException {
+            entered.countDown();
+            try {
+                if (!release.await(10, TimeUnit.SECONDS)) {
+                    throw new IOException("not released");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted", e);
+            }
+            return delegate.disableDevice(deviceId);
+        }
+    }
+}
@@ -0,0 +1,429 @@
+package edu.university.iot.service;
+
+import edu.university.iot.config.EventLogConfig;
+import edu.university.iot.config.TelemetryArchiveConfig;
+import edu.university.iot.entity.CoordinateData;
+import edu.university.iot.entity.DeviceMessage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Archive, purge and query against an in-memory device_message table: every
+ * query must return the same rows before and after the rows move to segments.
+ */
+class TelemetryArchiveServiceTest {
+
+    private static final LocalDate TODAY = LocalDate.now(ZoneOffset.UTC);
+    private static final Instant FROM = TODAY.minusDays(12).atStartOfDay(ZoneOffset.UTC).toInstant();
+    private static final Instant TO = TODAY.plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+
+    @TempDir
+    Path directory;
+
+    private final DeviceMessageTable table = new DeviceMessageTable();
+
+    @Test
+    void queriesReturnTheSameRowsAfterArchiveAndPurge() {
+        fillTable(new Random(46), 12);
+        Map<String, List<List<Object>>> before = queryAll(service(), 100_000);
+        Map<String, List<List<Object>>> newestBefore = queryAll(service(), 25);
+        Map<String, Map<String, Object>> summariesBefore = summarizeAll(service());
+        int rowsBefore = table.rows.size();
+
+        TelemetryArchiveService archive = service();
+        Map<String, Object> result = archive.archive();
+
+        // Days older than archive-after-days are archived and gone from MySQL; recent ones stay
+        LocalDate cutoff = TODAY.minusDays(7);
+        assertEquals(4, result.size(), "archived days: " + result.keySet());
+        long archived = 0;
+        for (Object day : result.values()) {
+            Map<?, ?> summary = (Map<?, ?>) day;
+            assertEquals(summary.get("rowsArchived"), summary.get("rowsPurged"));
+            archived += (Long) summary.get("rowsArchived");
+        }
+        assertEquals(rowsBefore - archived, table.rows.size());
+        assertTrue(table.rows.values().stream().noneMatch(m -> dayOf(m).isBefore(cutoff)));
+
+        assertEquals(before, queryAll(archive, 100_000));
+        assertEquals(newestBefore, queryAll(archive, 25));
+        assertSummariesEqual(summariesBefore, summarizeAll(archive));
+
+        // A restarted service finds the same days through the manifests
+        TelemetryArchiveService restarted = service();
+        restarted.loadManifests();
+        assertEquals(before, queryAll(restarted, 100_000));
+        assertTrue(restarted.archive().isEmpty());
+    }
+
+    @Test
+    void rowCommittedLateBelowArchivedIdsIsNeitherHiddenNorPurged() {
+        fillTable(new Random(47), 10);
+        TelemetryArchiveService archive = service();
+        archive.archive();
+
+        // Inserted before the archive run but committed after it, e.g. by a dead-letter replay
+        LocalDate archivedDay = TODAY.minusDays(9);
+        long lateId = table.deleted.firstKey();
+        while (table.deleted.containsKey(lateId) || table.rows.containsKey(lateId)) {
+            lateId++;
+        }
+        assertTrue(lateId < table.deleted.lastKey());
+        DeviceMessage late = TelemetrySegmentTest.message("device-000", lateId,
+            archivedDay.atStartOfDay(ZoneOffset.UTC).toInstant().plusSeconds(45));
+        table.insert(late);
+
+        List<List<Object>> found = describe(archive.findMessages("device-000", FROM, TO, 100_000));
+        assertTrue(found.contains(TelemetrySegmentTest.describe(late)), "late row is hidden");
+
+        TelemetryArchiveService restarted = service();
+        restarted.loadManifests();
+        restarted.archive();
+        assertTrue(table.rows.containsKey(late.getId()), "late row was purged without being archived");
+        assertEquals(found, describe(restarted.findMessages("device-000", FROM, TO, 100_000)));
+    }
+
+    @Test
+    void idRangesRoundTripAndContainExactlyTheirIds() {
+        long[] ids = {9, 3, 4, 5, 12, 1, 10, 11, 20};
+        TelemetryArchiveService.IdRanges ranges = TelemetryArchiveService.IdRanges.of(ids, ids.length);
+        assertEquals("1-1,3-5,9-12,20-20", ranges.format());
+        for (long id = 0; id <= 21; id++) {
+            boolean expected = id == 1 || (id >= 3 && id <= 5) || (id >= 9 && id <= 12) || id == 20;
+            assertEquals(expected, ranges.contains(id), "id " + id);
+        }
+        assertEquals(ranges.format(), TelemetryArchiveService.IdRanges.parse(ranges.format()).format());
+        assertEquals("", TelemetryArchiveService.IdRanges.of(new long[0], 0).format());
+        assertFalse(TelemetryArchiveService.IdRanges.parse("").contains(1));
+        assertThrows(NumberFormatException.class, () -> TelemetryArchiveService.IdRanges.parse("5-9,7-12"));
+        assertTrue(TelemetryArchiveService.IdRanges.upTo(40).contains(40));
+        assertFalse(TelemetryArchiveService.IdRanges.upTo(40).contains(41));
+    }
+
+    // === HELPERS ===
+
+    private TelemetryArchiveService service() {
+        TelemetryArchiveConfig config = new TelemetryArchiveConfig();
+        config.setEnabled(true);
+        config.setDirectory(directory.toString());
+        config.setArchiveAfterDays(7);
+        config.setBuckets(4);
+        config.setMaxDaysPerRun(30);
+        // Small batches so each purge takes several deletes
+        config.setDeleteBatchSize(7);
+        return new TelemetryArchiveService(new JdbcTemplate(table.dataSource()), config,
+                                           new TelemetryEventLog(new EventLogConfig(), new DeviceMessageParser()));
+    }
+
+    /**
+     * Rows of the last {@code days} days with ids in insert order, as the
+     * devices report concurrently.
+     */
+    private void fillTable(Random random, int days) {
+        Map<String, List<DeviceMessage>> devices = TelemetrySegmentTest.randomDevices(random, 12, 60);
+        long id = 1;
+        for (int day = days - 1; day >= 0; day--) {
+            Instant start = TODAY.minusDays(day).atStartOfDay(ZoneOffset.UTC).toInstant();
+            List<DeviceMessage> rows = new ArrayList<>();
+            for (List<DeviceMessage> template : devices.values()) {
+                for (DeviceMessage m : template.subList(0, 1 + random.nextInt(template.size()))) {
+                    DeviceMessage copy = copy(m);
+                    copy.setTimestamp(start.plus(Duration.between(template.get(0).getTimestamp(), m.getTimestamp())));
+                    rows.add(copy);
+                }
+            }
+            rows.sort(Comparator.comparing(DeviceMessage::getTimestamp));
+            for (DeviceMessage m : rows) {
+                m.setId(id);
+                id += 1 + random.nextInt(2);
+                table.insert(m);
+            }
+        }
+    }
+
+    private Map<String, List<List<Object>>> queryAll(TelemetryArchiveService service, int limit) {
+        Map<String, List<List<Object>>> result = new TreeMap<>();
+        for (String deviceId : table.deviceIds()) {
+            result.put(deviceId, describe(service.findMessages(deviceId, FROM, TO, limit)));
+        }
+        return result;
+    }
+
+    private Map<String, Map<String, Object>> summarizeAll(TelemetryArchiveService service) {
+        Map<String, Map<String, Object>> result = new TreeMap<>();
+        for (String deviceId : table.deviceIds()) {
+            result.put(deviceId, service.summarize(deviceId, FROM, TO));
+        }
+        return result;
+    }
+
+    private static void assertSummariesEqual(Map<String, Map<String, Object>> expected,
+                                             Map<String, Map<String, Object>> actual) {
+        assertEquals(expected.keySet(), actual.keySet());
+        for (String deviceId : expected.keySet()) {
+            Map<String, Object> e = expected.get(deviceId);
+            Map<String, Object> a = actual.get(deviceId);
+            for (String key : List.of("messages", "firstMessage", "lastMessage", "maxCpuUsage", "maxAnomalyScore",
+                                      "malwareDetections", "invalidCertificates", "locations", "ipAddresses",
+                                      "firmwareVersions")) {
+                assertEquals(e.get(key), a.get(key), deviceId + " " + key);
+            }
+            // Sums run in a different order once rows come from two sources
+            assertEquals((Double) e.get("averageCpuUsage"), (Double) a.get("averageCpuUsage"), 1e-9);
+            long messages = (Long) e.get("messages");
+            assertEquals(messages, (Long) a.get("fromDatabase") + (Long) a.get("fromArchive"));
+        }
+    }
+
+    private static List<List<Object>> describe(List<DeviceMessage> messages) {
+        List<List<Object>> result = new ArrayList<>();
+        for (DeviceMessage m : messages) {
+            result.add(TelemetrySegmentTest.describe(m));
+        }
+        return result;
+    }
+
+    private static LocalDate dayOf(DeviceMessage m) {
+        return m.getTimestamp().atOffset(ZoneOffset.UTC).toLocalDate();
+    }
+
+    private static DeviceMessage copy(DeviceMessage m) {
+        DeviceMessage c = TelemetrySegmentTest.message(m.getDeviceId(), m.getId(), m.getTimestamp());
+        c.setLocation(m.getLocation());
+        c.setIpAddress(m.getIpAddress());
+        c.setFirmwareVersion(m.getFirmwareVersion());
+        c.setCertificateValid(m.isCertificateValid());
+        c.setMalwareSignatureDetected(m.isMalwareSignatureDetected());
+        c.setCpuUsage(m.getCpuUsage());
+        c.setMemoryUsage(m.getMemoryUsage());
+        c.setNetworkTrafficVolume(m.getNetworkTrafficVolume());
+        c.setAnomalyScore(m.getAnomalyScore());
+        c.setSessionDuration(m.getSessionDuration());
+        c.setSuspiciousActivityScore(m.getSuspiciousActivityScore());
+        c.setConsecutiveAnomalies(m.getConsecutiveAnomalies());
+        c.setCoordinates(m.getCoordinates());
+        return c;
+    }
+
+    /**
+     * device_message in memory, behind just enough JDBC for the statements
+     * TelemetryArchiveService issues.
+     */
+    private static final class DeviceMessageTable {
+        final TreeMap<Long, DeviceMessage> rows = new TreeMap<>();
+        final TreeMap<Long, DeviceMessage> deleted = new TreeMap<>();
+
+        void insert(DeviceMessage m) {
+            rows.put(m.getId(), m);
+        }
+
+        /** Devices of all rows ever inserted, purged ones included. */
+        List<String> deviceIds() {
+            return Stream.concat(rows.values().stream(), deleted.values().stream())
+                         .map(DeviceMessage::getDeviceId).distinct().sorted().toList();
+        }
+
+        DataSource dataSource() {
+            return proxy(DataSource.class, (method, args) ->
+                method.getName().equals("getConnection") ? connection() : null);
+        }
+
+        private Connection connection() {
+            return proxy(Connection.class, (method, args) -> switch (method.getName()) {
+                case "prepareStatement" -> statement((String) args[0]);
+                case "createStatement" -> statement(null);
+                default -> null;
+            });
+        }
+
+        private PreparedStatement statement(String preparedSql) {
+            Map<Integer, Object> params = new HashMap<>();
+            return proxy(PreparedStatement.class, (method, args) -> {
+                String name = method.getName();
+                if (name.startsWith("set") && args.length >= 2 && args[0] instanceof Integer index) {
+                    params.put(index, args[1] instanceof Timestamp ts ? ts.toInstant() : args[1]);
+                    return null;
+                }
+                return switch (name) {
+                    case "executeQuery" -> resultSet(execute(preparedSql != null ? preparedSql : (String) args[0],
+                                                             params));
+                    case "executeUpdate" -> delete(preparedSql, params);
+                    default -> null;
+                };
+            });
+        }
+
+        private List<Object[]> execute(String sql, Map<Integer, Object> p) {
+            if (sql.startsWith("SELECT MIN(")) {
+                Instant cutoff = (Instant) p.get(1);
+                return single(rows.values().stream().map(DeviceMessage::getTimestamp).filter(t -> t.isBefore(cutoff))
+                                  .min(Comparator.naturalOrder()).map(Timestamp::from).orElse(null));
+            }
+            if (sql.startsWith("SELECT MAX(id)")) {
+                return single(rows.isEmpty() ? null : rows.lastKey());
+            }
+            if (sql.contains("WHERE id > ?")) {
+                long after = (Long) p.get(1);
+                return columns(rows.tailMap(after, false).values());
+            }
+            if (sql.contains("ORDER BY CAST(device_id AS BINARY)")) {
+                Predicate<DeviceMessage> inWindow = window((Instant) p.get(1), (Instant) p.get(2));
+                return columns(rows.values().stream().filter(inWindow)
+                                   .sorted(Comparator.comparing(DeviceMessage::getDeviceId)
+                                                     .thenComparing(DeviceMessage::getTimestamp)
+                                                     .thenComparing(DeviceMessage::getId))
+                                   .toList());
+            }
+            if (sql.contains("device_id = ?")) {
+                String deviceId = (String) p.get(1);
+                Predicate<DeviceMessage> inWindow = window((Instant) p.get(2), (Instant) p.get(3));
+                List<DeviceMessage> matching = rows.values().stream()
+                    .filter(m -> m.getDeviceId().equals(deviceId)).filter(inWindow)
+                    .sorted(Comparator.comparing(DeviceMessage::getTimestamp)
+                                      .thenComparing(DeviceMessage::getId).reversed())
+                    .toList();
+                int limit = sql.contains("LIMIT ?") ? (Integer) p.get(4) : Integer.MAX_VALUE;
+                return columns(matching.subList(0, Math.min(limit, matching.size())));
+            }
+            throw new IllegalArgumentException("Unexpected query " + sql);
+        }
+
+        private int delete(String sql, Map<Integer, Object> p) {
+            if (!sql.startsWith("DELETE FROM device_message") || !sql.contains("id BETWEEN ? AND ?")) {
+                throw new IllegalArgumentException("Unexpected update " + sql);
+            }
+            int limit = Integer.parseInt(sql.substring(sql.lastIndexOf("LIMIT ") + 6).trim());
+            Predicate<DeviceMessage> inWindow = window((Instant) p.get(1), (Instant) p.get(2));
+            int count = 0;
+            Iterator<DeviceMessage> it = rows.subMap((Long) p.get(3), true, (Long) p.get(4), true).values().iterator();
+            while (it.hasNext() && count < limit) {
+                DeviceMessage m = it.next();
+                if (inWindow.test(m)) {
+                    deleted.put(m.getId(), m);
+                    it.remove();
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        private static Predicate<DeviceMessage> window(Instant from, Instant to) {
+            return m -> !m.getTimestamp().isBefore(from) && m.getTimestamp().isBefore(to);
+        }
+
+        private static List<Object[]> single(Object value) {
+            List<Object[]> result = new ArrayList<>();
+            result.add(new Object[] {value});
+            return result;
+        }
+
+        /** In the column order of TelemetryArchiveService.COLUMNS. */
+        private static List<Object[]> columns(Iterable<DeviceMessage> messages) {
+            List<Object[]> result = new ArrayList<>();
+            for (DeviceMessage m : messages) {
+                CoordinateData c = m.getCoordinates();
+                result.add(new Object[] {
+                    m.getId(), m.getDeviceId(), Timestamp.from(m.getTimestamp()), m.isCertificateValid(),
+                    m.getPatchStatus(), m.getFirmwareVersion(), m.getIpAddress(), m.getLocation(),
+                    m.getCpuUsage(), m.getMemoryUsage(), m.getNetworkTrafficVolume(), m.getAnomalyScore(),
+                    m.isMalwareSignatureDetected(), m.getSessionDuration(),
+                    c != null ? c.getLat() : null, c != null ? c.getLng() : null, c != null ? c.getSubnet() : null,
+                    m.getSuspiciousActivityScore(), m.getConsecutiveAnomalies(), m.getDeviceProfile()
+                });
+            }
+            return result;
+        }
+
+        private static ResultSet resultSet(List<Object[]> result) {
+            int[] row = {-1};
+            Object[] last = {null};
+            ResultSetMetaData metaData = proxy(ResultSetMetaData.class, (method, args) ->
+                method.getName().equals("getColumnCount") ? result.isEmpty() ? 1 : result.get(0).length : null);
+            return proxy(ResultSet.class, (method, args) -> {
+                switch (method.getName()) {
+                    case "next":
+                        return ++row[0] < result.size();
+                    case "wasNull":
+                        return last[0] == null;
+                    case "getMetaData":
+                        return metaData;
+                    default:
+                        break;
+                }
+                if (!method.getName().startsWith("get") || args == null || !(args[0] instanceof Integer)) {
+                    return null;
+                }
+                Object value = result.get(row[0])[(Integer) args[0] - 1];
+                last[0] = value;
+                if (value == null) {
+                    return null;
+                }
+                return switch (method.getName()) {
+                    case "getLong" -> ((Number) value).longValue();
+                    case "getInt" -> ((Number) value).intValue();
+                    case "getDouble" -> ((Number) value).doubleValue();
+                    default -> value;
+                };
+            });
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> T proxy(Class<T> type, Handler handler) {
+            InvocationHandler invocation = (self, method, args) -> {
+                if (method.getDeclaringClass() == Object.class) {
+                    return switch (method.getName()) {
+                        case "equals" -> self == args[0];
+                        case "hashCode" -> System.identityHashCode(self);
+                        default -> type.getSimpleName() + " fake";
+                    };
+                }
+                Object value = handler.handle(method, args);
+                return value != null ? value : defaultValue(method.getReturnType());
+            };
+            return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, invocation);
+        }
+
+        private static Object defaultValue(Class<?> type) {
+            if (type == boolean.class) return false;
+            if (type == int.class) return 0;
+            if (type == long.class) return 0L;
+            if (type == double.class) return 0.0;
+            if (type == float.class) return 0.0f;
+            if (type == short.class) return (short) 0;
+            if (type == byte.class) return (byte) 0;
+            return null;
+        }
+
+        private interface Handler {
+            Object handle(Method method, Object[] args) throws Exception;
+        }
+    }
+}
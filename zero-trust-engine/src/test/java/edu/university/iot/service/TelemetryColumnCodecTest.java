@@ -0,0 +1,212 @@
+package edu.university.iot.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Round trips of each archive column encoding, including the edge values of
+ * varints, zigzag and the Gorilla XOR windows.
+ */
+class TelemetryColumnCodecTest {
+
+    private static final long[] EDGE_LONGS = {
+        0, 1, -1, 63, -64, 64, -65, 127, 128, Integer.MAX_VALUE, Integer.MIN_VALUE,
+        1L << 62, -(1L << 62), Long.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE - 1, Long.MIN_VALUE + 1
+    };
+
+    @Test
+    void varintsAndZigZagRoundTripEdgeValues() {
+        TelemetryColumnCodec.Encoder out = new TelemetryColumnCodec.Encoder(16);
+        for (long value : EDGE_LONGS) {
+            out.writeVarLong(value);
+            out.writeZigZag(value);
+        }
+        TelemetryColumnCodec.Decoder in = new TelemetryColumnCodec.Decoder(out.toByteBuffer());
+        for (long value : EDGE_LONGS) {
+            assertEquals(value, in.readVarLong(), "varint " + value);
+            assertEquals(value, in.readZigZag(), "zigzag " + value);
+        }
+    }
+
+    @Test
+    void zigZagKeepsSmallNegativeValuesShort() {
+        TelemetryColumnCodec.Encoder out = new TelemetryColumnCodec.Encoder(16);
+        out.writeZigZag(-1);
+        out.writeZigZag(63);
+        out.writeZigZag(-64);
+        assertEquals(3, out.size());
+        out.writeZigZag(64);
+        assertEquals(5, out.size());
+    }
+
+    @Test
+    void timestampsRoundTripRegularAndIrregularIntervals() {
+        long[] regular = new long[500];
+        long[] irregular = new long[500];
+        Random random = new Random(46);
+        for (int i = 0; i < regular.length; i++) {
+            regular[i] = 1_767_225_600_000_000L + i * 30_000_000L;
+            irregular[i] = i == 0 ? -5_000_000L : irregular[i - 1] + random.nextInt(90_000_000);
+        }
+        long[][] cases = {
+            regular, irregular, {}, {42}, {7, 3}, {Long.MIN_VALUE / 4, 0, Long.MAX_VALUE / 4}
+        };
+        for (long[] values : cases) {
+            long[] decoded = roundTripTimestamps(values);
+            for (int i = 0; i < values.length; i++) {
+                assertEquals(values[i], decoded[i], "timestamp " + i + " of " + values.length);
+            }
+        }
+
+        // A fixed interval costs one byte per row after the first two
+        TelemetryColumnCodec.Encoder out = new TelemetryColumnCodec.Encoder(16);
+        TelemetryColumnCodec.encodeTimestamps(out, regular, regular.length);
+        assertTrue(out.size() < regular.length + 16, "regular timestamps took " + out.size() + " bytes");
+    }
+
+    @Test
+    void deltasRoundTripUnorderedValues() {
+        long[] values = {5, 3, 3, 1_000_000, -7, 0, Long.MAX_VALUE, Long.MIN_VALUE, 12};
+        TelemetryColumnCodec.Encoder out = new TelemetryColumnCodec.Encoder(16);
+        TelemetryColumnCodec.encodeDeltas(out, values, values.length);
+        long[] decoded = new long[values.length];
+        TelemetryColumnCodec.decodeDeltas(new TelemetryColumnCodec.Decoder(out.toByteBuffer()), decoded,
+                                          decoded.length);
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(values[i], decoded[i], "delta value " + i);
+        }
+    }
+
+    @Test
+    void runsRoundTripAndCollapseRepeats() {
+        int[] codes = {0, 0, 0, 4, 4, 1, 0, 0, 200_000, 200_000, 3};
+        int[] decoded = roundTripRuns(codes);
+        for (int i = 0; i < codes.length; i++) {
+            assertEquals(codes[i], decoded[i], "code " + i);
+        }
+
+        int[] constant = new int[10_000];
+        TelemetryColumnCodec.Encoder out = new TelemetryColumnCodec.Encoder(16);
+        TelemetryColumnCodec.encodeRuns(out, constant, constant.length);
+        assertEquals(3, out.size());
+        assertEquals(0, roundTripRuns(constant)[9_999]);
+    }
+
+    @Test
+    void corruptRunLengthIsRejected() {
+        TelemetryColumnCodec.Encoder out = new TelemetryColumnCodec.Encoder(16);
+        out.writeVarLong(1);
+        out.writeVarLong(5);
+        ByteBuffer bytes = out.toByteBuffer();
+        assertThrows(IllegalStateException.class,
+            () -> TelemetryColumnCodec.decodeRuns(new TelemetryColumnCodec.Decoder(bytes), new int[3], 3));
+    }
+
+    @Test
+    void gorillaRoundTripsSpecialDoublesBitForBit() {
+        double[] values = {
+            0.0, -0.0, 0.0, Double.NaN, Double.NaN, 1.0, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+            Double.MIN_VALUE, -Double.MIN_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE, Double.MIN_NORMAL,
+            Double.longBitsToDouble(0x7FF8_0000_0000_0001L), 42.5, 42.5, 42.5, 0.1, 0.2, 0.30000000000000004
+        };
+        assertBitsRoundTrip(values);
+    }
+
+    @Test
+    void gorillaHandlesFullAndReusedXorWindows() {
+        // Sign bit and lowest bit both flip: 64 meaningful bits, written as 0 in the 6-bit length
+        double a = Double.longBitsToDouble(0x0000_0000_0000_0001L);
+        double b = Double.longBitsToDouble(0x8000_0000_0000_0000L);
+        // More than 31 leading zeros are stored as 31
+        double c = Double.longBitsToDouble(0x8000_0000_0000_0003L);
+        // Fits inside the previous window and reuses it
+        double d = Double.longBitsToDouble(0x8000_0000_0000_0001L);
+        assertBitsRoundTrip(new double[] {a, b, a, b, c, d, c, d, d, a});
+    }
+
+    @Test
+    void gorillaRoundTripsRandomSeries() {
+        Random random = new Random(4646);
+        for (int series = 0; series < 50; series++) {
+            double[] values = new double[1 + random.nextInt(300)];
+            for (int i = 0; i < values.length; i++) {
+                switch (random.nextInt(5)) {
+                    case 0 -> values[i] = i > 0 ? values[i - 1] : 0.0;
+                    case 1 -> values[i] = random.nextInt(100) + 0.5;
+                    case 2 -> values[i] = Double.longBitsToDouble(random.nextLong());
+                    case 3 -> values[i] = random.nextDouble() * 1e-300;
+                    default -> values[i] = random.nextGaussian() * 1e6;
+                }
+            }
+            assertBitsRoundTrip(values);
+        }
+    }
+
+    @Test
+    void columnsReadBackToBack() {
+        long[] timestamps = {1_000, 2_000, 3_500};
+        double[] doubles = {1.5, -0.0, Double.NaN};
+        int[] codes = {2, 2, 9};
+        TelemetryColumnCodec.Encoder out = new TelemetryColumnCodec.Encoder(16);
+        TelemetryColumnCodec.encodeTimestamps(out, timestamps, 3);
+        TelemetryColumnCodec.encodeGorilla(out, doubles, 3);
+        TelemetryColumnCodec.encodeRuns(out, codes, 3);
+        TelemetryColumnCodec.encodeGorilla(out, doubles, 3);
+
+        TelemetryColumnCodec.Decoder in = new TelemetryColumnCodec.Decoder(out.toByteBuffer());
+        long[] decodedTimestamps = new long[3];
+        double[] first = new double[3];
+        int[] decodedCodes = new int[3];
+        double[] second = new double[3];
+        TelemetryColumnCodec.decodeTimestamps(in, decodedTimestamps, 3);
+        TelemetryColumnCodec.decodeGorilla(in, first, 3);
+        TelemetryColumnCodec.decodeRuns(in, decodedCodes, 3);
+        TelemetryColumnCodec.decodeGorilla(in, second, 3);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(timestamps[i], decodedTimestamps[i]);
+            assertEquals(codes[i], decodedCodes[i]);
+            assertEquals(Double.doubleToRawLongBits(doubles[i]), Double.doubleToRawLongBits(first[i]));
+            assertEquals(Double.doubleToRawLongBits(doubles[i]), Double.doubleToRawLongBits(second[i]));
+        }
+    }
+
+    // === HELPERS ===
+
+    private static long[] roundTripTimestamps(long[] values) {
+        TelemetryColumnCodec.Encoder out = new TelemetryColumnCodec.Encoder(16);
+        TelemetryColumnCodec.encodeTimestamps(out, values, values.length);
+        long[] decoded = new long[values.length];
+        TelemetryColumnCodec.decodeTimestamps(new TelemetryColumnCodec.Decoder(out.toByteBuffer()), decoded,
+                                              decoded.length);
+        return decoded;
+    }
+
+    private static int[] roundTripRuns(int[] codes) {
+        TelemetryColumnCodec.Encoder out = new TelemetryColumnCodec.Encoder(16);
+        TelemetryColumnCodec.encodeRuns(out, codes, codes.length);
+        int[] decoded = new int[codes.length];
+        TelemetryColumnCodec.decodeRuns(new TelemetryColumnCodec.Decoder(out.toByteBuffer()), decoded,
+                                        decoded.length);
+        return decoded;
+    }
+
+    /** Compares raw bits, so NaN payloads and the sign of zero must survive. */
+    private static void assertBitsRoundTrip(double[] values) {
+        TelemetryColumnCodec.Encoder out = new TelemetryColumnCodec.Encoder(16);
+        TelemetryColumnCodec.encodeGorilla(out, values, values.length);
+        // A trailing marker shows the decoder consumed exactly the encoded bytes
+        out.writeVarLong(0x5A);
+        TelemetryColumnCodec.Decoder in = new TelemetryColumnCodec.Decoder(out.toByteBuffer());
+        double[] decoded = new double[values.length];
+        TelemetryColumnCodec.decodeGorilla(in, decoded, decoded.length);
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(Double.doubleToRawLongBits(values[i]), Double.doubleToRawLongBits(decoded[i]),
+                         "value " + i + " (" + values[i] + ")");
+        }
+        assertEquals(0x5A, in.readVarLong());
+    }
+}
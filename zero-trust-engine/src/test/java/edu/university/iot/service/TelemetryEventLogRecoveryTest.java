@@ -0,0 +1,244 @@
+package edu.university.iot.service;
+
+import edu.university.iot.config.EventLogConfig;
+import edu.university.iot.entity.DeviceMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Crash recovery and group commit of {@link TelemetryEventLog}, against real
+ * segment files in a temporary directory.
+ */
+class TelemetryEventLogRecoveryTest {
+
+    private static final Instant T0 = Instant.parse("2026-01-01T00:00:00Z");
+
+    @TempDir
+    Path directory;
+
+    private final List<TelemetryEventLog> opened = new ArrayList<>();
+
+    @AfterEach
+    void closeLogs() {
+        opened.forEach(TelemetryEventLog::close);
+    }
+
+    @Test
+    void cutsTornTailRecordOnReopen() throws IOException {
+        TelemetryEventLog log = open(1L << 20);
+        log.append(List.of(event("dev-1", "0", 1, 0), event("dev-1", "0", 2, 1)));
+        long end = log.getDurableOffset();
+        log.close();
+
+        // A crash in the middle of a write leaves a partial record behind
+        Path segment = onlySegment();
+        byte[] whole = Files.readAllBytes(segment);
+        appendBytes(segment, slice(whole, 0, 20));
+
+        TelemetryEventLog reopened = open(1L << 20);
+        assertEquals(end, reopened.getDurableOffset());
+        assertEquals(end, Files.size(segment));
+        assertEquals(20L, reopened.getStatistics().get("recoveredTruncatedBytes"));
+        assertEquals(List.of(1L, 2L), sequences(reopened));
+
+        // Appends continue on the record boundary
+        reopened.append(List.of(event("dev-1", "0", 3, 2)));
+        assertEquals(List.of(1L, 2L, 3L), sequences(reopened));
+    }
+
+    @Test
+    void cutsAtFirstRecordWithBadCrc() throws IOException {
+        TelemetryEventLog log = open(1L << 20);
+        log.append(List.of(event("dev-1", "0", 1, 0), event("dev-1", "0", 2, 1), event("dev-1", "0", 3, 2)));
+        List<Long> offsets = offsets(log);
+        log.close();
+
+        // Corrupt the checksum of the second record; the third is intact but follows it
+        Path segment = onlySegment();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer crc = ByteBuffer.allocate(4);
+            channel.read(crc, offsets.get(1) + 4);
+            crc.flip();
+            int corrupted = crc.getInt() ^ 0x1;
+            channel.write(ByteBuffer.allocate(4).putInt(0, corrupted), offsets.get(1) + 4);
+        }
+
+        TelemetryEventLog reopened = open(1L << 20);
+        assertEquals(offsets.get(1).longValue(), Files.size(segment));
+        assertEquals(offsets.get(1).longValue(), reopened.getDurableOffset());
+        assertEquals(List.of(1L), sequences(reopened));
+    }
+
+    @Test
+    void durableOffsetNeverPassesForcedOffsetUnderConcurrentAppends() throws Exception {
+        TelemetryEventLog log = open(1L << 20);
+        int appenders = 8;
+        int batchesEach = 50;
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicLong violations = new AtomicLong();
+
+        Thread monitor = new Thread(() -> {
+            while (!done.get()) {
+                // Durable first: the forced offset only grows, so reading it second is conservative
+                long durable = log.getDurableOffset();
+                long forced = log.getForcedOffset();
+                if (durable > forced) {
+                    violations.incrementAndGet();
+                }
+            }
+        });
+        monitor.start();
+
+        ExecutorService executor = Executors.newFixedThreadPool(appenders);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int a = 0; a < appenders; a++) {
+            String partition = String.valueOf(a);
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int b = 0; b < batchesEach; b++) {
+                    log.append(List.of(event("dev-" + partition, partition, b, b)));
+                    // Acknowledged means durable
+                    assertTrue(log.getDurableOffset() <= log.getForcedOffset());
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        done.set(true);
+        monitor.join();
+
+        assertEquals(0, violations.get());
+        Map<String, Object> stats = log.getStatistics();
+        assertEquals((long) appenders * batchesEach, stats.get("appendedRecords"));
+        assertTrue((long) stats.get("syncs") <= (long) appenders * batchesEach);
+        assertEquals(appenders * batchesEach, sequences(log).size());
+        assertEquals(log.getDurableOffset(), log.getForcedOffset());
+    }
+
+    @Test
+    void reopensAfterRoll() throws IOException {
+        TelemetryEventLog log = open(600);
+        for (int i = 0; i < 20; i++) {
+            log.append(List.of(event("dev-" + (i % 3), "0", i, i)));
+        }
+        long end = log.getDurableOffset();
+        int segments = (int) log.getStatistics().get("segments");
+        assertTrue(segments > 1, "expected the log to roll");
+        log.close();
+
+        TelemetryEventLog reopened = open(600);
+        assertEquals(end, reopened.getDurableOffset());
+        assertEquals(segments, reopened.getStatistics().get("segments"));
+        assertEquals(0L, reopened.getStatistics().get("recoveredTruncatedBytes"));
+        assertEquals(range(0, 20), sequences(reopened));
+        assertEquals(7, reopened.read("dev-0", T0, T0.plusSeconds(3600), 100).size());
+        assertEquals(19L, reopened.latest("dev-1").orElseThrow().getTimestamp().getEpochSecond()
+                          - T0.getEpochSecond());
+
+        reopened.append(List.of(event("dev-0", "0", 20, 20)));
+        assertEquals(range(0, 21), sequences(reopened));
+    }
+
+    @Test
+    void dropsRedeliveredRecordsOnRead() throws IOException {
+        TelemetryEventLog log = open(1L << 20);
+        // The second batch is a retry of the first after its transaction rolled back
+        log.append(List.of(event("dev-1", "0", 1, 0), event("dev-1", "0", 2, 1)));
+        log.append(List.of(event("dev-1", "0", 1, 0), event("dev-1", "0", 2, 1), event("dev-1", "0", 3, 2)));
+        // Same sequence number on another partition is a different event
+        log.append(List.of(event("dev-1", "1", 1, 3)));
+
+        List<DeviceMessage> messages = log.read("dev-1", T0, T0.plusSeconds(60), 100);
+        assertEquals(List.of(0L, 1L, 2L, 3L), messages.stream()
+            .map(m -> m.getTimestamp().getEpochSecond() - T0.getEpochSecond()).toList());
+        assertEquals(6, sequences(log).size(), "replay hands over every stored record");
+    }
+
+    // === HELPERS ===
+
+    private TelemetryEventLog open(long segmentBytes) {
+        EventLogConfig config = new EventLogConfig();
+        config.setEnabled(true);
+        config.setDirectory(directory.toString());
+        config.setSegmentBytes(segmentBytes);
+        config.setIndexInterval(4);
+        TelemetryEventLog log = new TelemetryEventLog(config, new DeviceMessageParser());
+        log.open();
+        opened.add(log);
+        return log;
+    }
+
+    private static TelemetryEvent event(String deviceId, String partition, long sequence, int second) {
+        DeviceMessage message = new DeviceMessage();
+        message.setDeviceId(deviceId);
+        message.setLocation("Library-Floor1");
+        message.setCpuUsage(10.0 + sequence);
+        message.setTimestamp(T0.plusSeconds(second));
+        return TelemetryEvent.fromEventHub(message, partition, sequence, message.getTimestamp());
+    }
+
+    private static List<Long> sequences(TelemetryEventLog log) {
+        List<Long> sequences = new ArrayList<>();
+        log.replay(0, Integer.MAX_VALUE, (offset, partition, sequence, message) -> sequences.add(sequence));
+        return sequences;
+    }
+
+    private static List<Long> offsets(TelemetryEventLog log) {
+        List<Long> offsets = new ArrayList<>();
+        log.replay(0, Integer.MAX_VALUE, (offset, partition, sequence, message) -> offsets.add(offset));
+        return offsets;
+    }
+
+    private static List<Long> range(long from, long to) {
+        List<Long> values = new ArrayList<>();
+        for (long i = from; i < to; i++) {
+            values.add(i);
+        }
+        return values;
+    }
+
+    private Path onlySegment() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> logs = files.filter(EventLogSegment::isLogFile).toList();
+            assertEquals(1, logs.size());
+            return logs.get(0);
+        }
+    }
+
+    private static byte[] slice(byte[] bytes, int from, int length) {
+        byte[] slice = new byte[length];
+        System.arraycopy(bytes, from, slice, 0, length);
+        return slice;
+    }
+
+    private static void appendBytes(Path file, byte[] bytes) throws IOException {
+        Files.write(file, bytes, StandardOpenOption.APPEND);
+    }
+}
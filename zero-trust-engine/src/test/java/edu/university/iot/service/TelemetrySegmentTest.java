@@ -0,0 +1,188 @@
+package edu.university.iot.service;
+
+import edu.university.iot.entity.CoordinateData;
+import edu.university.iot.entity.DeviceMessage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Segment files written device by device and read back per device, against
+ * real files in a temporary directory.
+ */
+class TelemetrySegmentTest {
+
+    private static final Instant DAY = Instant.parse("2026-01-01T00:00:00Z");
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsBackEveryDeviceUnchanged() throws IOException {
+        Map<String, List<DeviceMessage>> devices = randomDevices(new Random(46), 40, 200);
+        Path file = write(devices);
+
+        TelemetrySegment.Reader reader = TelemetrySegment.Reader.open(file);
+        assertEquals(devices.keySet(), reader.deviceIds());
+        assertEquals(devices.values().stream().mapToInt(List::size).sum(), reader.getRowCount());
+        for (Map.Entry<String, List<DeviceMessage>> device : devices.entrySet()) {
+            List<DeviceMessage> read = reader.read(device.getKey(), DAY, DAY.plusSeconds(86_400));
+            assertRowsEqual(device.getValue(), read);
+        }
+        assertTrue(reader.read("no-such-device", DAY, DAY.plusSeconds(86_400)).isEmpty());
+    }
+
+    @Test
+    void readReturnsOnlyRowsInsideTheWindow() throws IOException {
+        Map<String, List<DeviceMessage>> devices = randomDevices(new Random(7), 3, 500);
+        TelemetrySegment.Reader reader = TelemetrySegment.Reader.open(write(devices));
+
+        Instant from = DAY.plusSeconds(3_600);
+        Instant to = DAY.plusSeconds(7_200);
+        for (Map.Entry<String, List<DeviceMessage>> device : devices.entrySet()) {
+            List<DeviceMessage> expected = new ArrayList<>();
+            for (DeviceMessage m : device.getValue()) {
+                if (!m.getTimestamp().isBefore(from) && m.getTimestamp().isBefore(to)) {
+                    expected.add(m);
+                }
+            }
+            assertRowsEqual(expected, reader.read(device.getKey(), from, to));
+        }
+        // Windows outside a device's time range are skipped from the directory
+        String any = devices.keySet().iterator().next();
+        assertTrue(reader.read(any, DAY.minusSeconds(60), DAY).isEmpty());
+        assertTrue(reader.read(any, DAY.plusSeconds(86_400), DAY.plusSeconds(90_000)).isEmpty());
+    }
+
+    @Test
+    void keepsNullsCoordinatesAndSubMillisecondTimestamps() throws IOException {
+        DeviceMessage bare = message("dev-1", 1, DAY.plusNanos(123_456_000));
+        bare.setLocation(null);
+        bare.setIpAddress(null);
+        bare.setFirmwareVersion(null);
+        bare.setPatchStatus(null);
+        bare.setDeviceProfile(null);
+        bare.setCoordinates(null);
+        DeviceMessage placed = message("dev-1", 2, DAY.plusSeconds(1));
+        placed.setCoordinates(new CoordinateData(-0.0, Double.NaN, null));
+        DeviceMessage located = message("dev-1", 3, DAY.plusSeconds(2));
+        located.setCoordinates(new CoordinateData(52.2, 0.12, "10.0.1.0/24"));
+
+        Map<String, List<DeviceMessage>> devices = new LinkedHashMap<>();
+        devices.put("dev-1", List.of(bare, placed, located));
+        TelemetrySegment.Reader reader = TelemetrySegment.Reader.open(write(devices));
+
+        List<DeviceMessage> read = reader.read("dev-1", DAY, DAY.plusSeconds(60));
+        assertRowsEqual(devices.get("dev-1"), read);
+        assertNull(read.get(0).getCoordinates());
+        assertNull(read.get(0).getLocation());
+        CoordinateData coordinates = read.get(1).getCoordinates();
+        assertEquals(Double.doubleToRawLongBits(-0.0), Double.doubleToRawLongBits(coordinates.getLat()));
+        assertTrue(Double.isNaN(coordinates.getLng()));
+    }
+
+    @Test
+    void rejectsFilesThatAreNotSegments() throws IOException {
+        Path file = directory.resolve("garbage.seg");
+        Files.write(file, new byte[64]);
+        assertThrows(IOException.class, () -> TelemetrySegment.Reader.open(file));
+    }
+
+    // === HELPERS ===
+
+    private Path write(Map<String, List<DeviceMessage>> devices) throws IOException {
+        Path file = directory.resolve("bucket-000.seg");
+        try (TelemetrySegment.Writer writer = new TelemetrySegment.Writer(file)) {
+            for (Map.Entry<String, List<DeviceMessage>> device : devices.entrySet()) {
+                writer.writeDevice(device.getKey(), device.getValue());
+            }
+            writer.finish();
+        }
+        return file;
+    }
+
+    /** Devices reporting every 30 s with jitter, a few locations and firmware versions each. */
+    static Map<String, List<DeviceMessage>> randomDevices(Random random, int devices, int maxRows) {
+        Map<String, List<DeviceMessage>> result = new LinkedHashMap<>();
+        long id = 1;
+        for (int d = 0; d < devices; d++) {
+            String deviceId = String.format("device-%03d", d);
+            List<DeviceMessage> rows = new ArrayList<>();
+            Instant timestamp = DAY.plusMillis(random.nextInt(60_000));
+            int count = 1 + random.nextInt(maxRows);
+            for (int i = 0; i < count; i++) {
+                DeviceMessage m = message(deviceId, id, timestamp);
+                // Ids of one device are not consecutive when devices report concurrently
+                id += 1 + random.nextInt(5);
+                m.setLocation(random.nextInt(10) == 0 ? "Lab-2" : "Library-Floor1");
+                m.setFirmwareVersion(random.nextInt(20) == 0 ? "2.1.0" : "2.0.3");
+                m.setCertificateValid(random.nextInt(50) != 0);
+                m.setMalwareSignatureDetected(random.nextInt(100) == 0);
+                m.setCpuUsage(random.nextInt(4) == 0 && i > 0 ? rows.get(i - 1).getCpuUsage()
+                                                               : Math.round(random.nextDouble() * 1000) / 10.0);
+                m.setMemoryUsage(random.nextDouble() * 100);
+                m.setNetworkTrafficVolume(random.nextInt(3) == 0 ? 0.0 : random.nextGaussian() * 500);
+                m.setAnomalyScore(random.nextDouble());
+                m.setSessionDuration(random.nextInt(3_600));
+                m.setSuspiciousActivityScore(random.nextInt(5) - 2);
+                m.setConsecutiveAnomalies(random.nextInt(3));
+                if (random.nextInt(3) != 0) {
+                    m.setCoordinates(new CoordinateData(51.5 + random.nextDouble(), -0.1 + random.nextDouble(),
+                                                        "10.0." + random.nextInt(4) + ".0/24"));
+                }
+                rows.add(m);
+                timestamp = timestamp.plusMillis(30_000 + random.nextInt(2_000) - 1_000);
+            }
+            result.put(deviceId, rows);
+        }
+        return result;
+    }
+
+    static DeviceMessage message(String deviceId, long id, Instant timestamp) {
+        DeviceMessage m = new DeviceMessage();
+        m.setId(id);
+        m.setDeviceId(deviceId);
+        m.setTimestamp(timestamp);
+        m.setLocation("Library-Floor1");
+        m.setIpAddress("10.0.0." + (deviceId.hashCode() & 0x7F));
+        m.setFirmwareVersion("2.0.3");
+        m.setPatchStatus("UP_TO_DATE");
+        m.setDeviceProfile("SENSOR");
+        m.setCertificateValid(true);
+        return m;
+    }
+
+    static void assertRowsEqual(List<DeviceMessage> expected, List<DeviceMessage> actual) {
+        assertEquals(expected.size(), actual.size(), "row count");
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(describe(expected.get(i)), describe(actual.get(i)), "row " + i);
+        }
+    }
+
+    /** Every stored field, doubles by their raw bits. */
+    static List<Object> describe(DeviceMessage m) {
+        CoordinateData c = m.getCoordinates();
+        return List.of(m.getId(), m.getDeviceId(), m.getTimestamp(), String.valueOf(m.getLocation()),
+                       String.valueOf(m.getIpAddress()), String.valueOf(m.getFirmwareVersion()),
+                       String.valueOf(m.getPatchStatus()), String.valueOf(m.getDeviceProfile()),
+                       m.isCertificateValid(), m.isMalwareSignatureDetected(),
+                       Double.doubleToRawLongBits(m.getCpuUsage()), Double.doubleToRawLongBits(m.getMemoryUsage()),
+                       Double.doubleToRawLongBits(m.getNetworkTrafficVolume()),
+                       Double.doubleToRawLongBits(m.getAnomalyScore()),
+                       m.getSessionDuration(), m.getSuspiciousActivityScore(), m.getConsecutiveAnomalies(),
+                       c == null ? "no coordinates"
+                                 : List.of(Double.doubleToRawLongBits(c.getLat()),
+                                           Double.doubleToRawLongBits(c.getLng()), String.valueOf(c.getSubnet())));
+    }
+}
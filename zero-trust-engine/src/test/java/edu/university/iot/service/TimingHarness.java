@@ -0,0 +1,54 @@
+package edu.university.iot.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Minimal timing loop for comparing two implementations inside a unit test.
+ *
+ * Each body runs for a number of warm-up rounds so the JIT has compiled it,
+ * then for several measured rounds; the fastest round is reported, which is
+ * the least disturbed by GC and other tests. Bodies return a checksum that is
+ * accumulated so the JIT cannot drop the work. Numbers are logged, not
+ * asserted: they depend on the machine running the build. Tests using it are
+ * tagged {@code benchmark} and only run with {@code mvn test -Pbenchmark}.
+ */
+final class TimingHarness {
+
+    private static final Logger logger = LoggerFactory.getLogger(TimingHarness.class);
+
+    private static final int WARM_UP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 5;
+
+    private static volatile long sink;
+
+    private TimingHarness() {
+    }
+
+    /**
+     * Nanoseconds per operation of the fastest measured round.
+     *
+     * @param operations operations performed by one call of the body
+     */
+    static double nanosPerOperation(long operations, LongSupplier body) {
+        long checksum = 0;
+        for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+            checksum += body.getAsLong();
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            long start = System.nanoTime();
+            checksum += body.getAsLong();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        sink += checksum;
+        return (double) best / operations;
+    }
+
+    static void report(String name, double baselineNanos, double candidateNanos) {
+        logger.info("{}: baseline {} ns/op, new {} ns/op ({}x)", name, String.format("%.1f", baselineNanos),
+                    String.format("%.1f", candidateNanos), String.format("%.1f", baselineNanos / candidateNanos));
+    }
+}
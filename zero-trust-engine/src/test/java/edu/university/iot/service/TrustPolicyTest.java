@@ -0,0 +1,153 @@
+package edu.university.iot.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.university.iot.model.dtoModel.TrustPolicyDto;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The shipped trust policy against the constants TrustScoreService scored
+ * with before weights moved into trust-policy.json.
+ */
+class TrustPolicyTest {
+
+    // Baseline constants from TrustScoreService
+    private static final double TRUSTED_THRESHOLD = 70.0;
+    private static final double IDENTITY_PENALTY = 5.0;
+    private static final double IDENTITY_REWARD = 1.0;
+    private static final double CONTEXT_PENALTY = 2.0;
+    private static final double CONTEXT_REWARD = 0.5;
+    private static final double FIRMWARE_PENALTY = 5.0;
+    private static final double FIRMWARE_REWARD = 1.0;
+    private static final double ANOMALY_PENALTY = 10.0;
+    private static final double ANOMALY_REWARD = 2.0;
+    private static final double COMPLIANCE_PENALTY = 10.0;
+    private static final double COMPLIANCE_REWARD = 2.0;
+
+    private static final double[] OLD_SCORES = {0.0, 3.0, 29.5, 50.0, 69.5, 70.0, 75.0, 96.5, 100.0};
+
+    @Test
+    void deltaTableReproducesBaselineForEveryVerdictMask() throws IOException {
+        TrustPolicy policy = shippedPolicy();
+        TrustPolicy.Profile profile = policy.getDefaultProfile();
+        double[] deltaTable = policy.getDeltaTable();
+        assertEquals(TrustPolicy.VERDICT_COMBINATIONS, deltaTable.length);
+
+        for (int mask = 0; mask < TrustPolicy.VERDICT_COMBINATIONS; mask++) {
+            boolean identity = (mask & TrustPolicy.IDENTITY) != 0;
+            boolean context = (mask & TrustPolicy.CONTEXT) != 0;
+            boolean firmware = (mask & TrustPolicy.FIRMWARE) != 0;
+            boolean anomaly = (mask & TrustPolicy.ANOMALY) != 0;
+            boolean compliance = (mask & TrustPolicy.COMPLIANCE) != 0;
+            assertEquals(mask, TrustPolicy.verdictMask(identity, context, firmware, anomaly, compliance));
+            assertEquals(baselineDelta(identity, context, firmware, anomaly, compliance), deltaTable[mask],
+                         "delta for mask " + mask);
+
+            for (double oldScore : OLD_SCORES) {
+                double expected = baselineScore(oldScore, identity, context, firmware, anomaly, compliance);
+                double actual = profile.score(oldScore, identity, context, firmware, anomaly, compliance);
+                assertEquals(expected, actual, "score from " + oldScore + " for mask " + mask);
+                assertEquals(expected >= TRUSTED_THRESHOLD, profile.isTrusted(actual));
+            }
+        }
+        assertEquals(TRUSTED_THRESHOLD, policy.getThresholds()[0]);
+    }
+
+    @Test
+    void unknownProfileFallsBackToDefault() throws IOException {
+        TrustPolicy policy = shippedPolicy();
+        assertSame(policy.getDefaultProfile(), policy.profileFor("NO-SUCH-PROFILE"));
+        assertSame(policy.getDefaultProfile(), policy.profileFor(null));
+    }
+
+    @Test
+    void rejectsPolicyWithoutDefaultProfile() {
+        TrustPolicyDto definition = new TrustPolicyDto();
+        definition.getProfiles().put("SENSOR", new TrustPolicyDto.ProfileDto());
+        assertThrows(IllegalArgumentException.class, () -> TrustPolicy.compile(definition));
+    }
+
+    @Test
+    @Tag("benchmark")
+    void timesCompiledScoringAgainstBaseline() throws IOException {
+        TrustPolicy.Profile profile = shippedPolicy().getDefaultProfile();
+        int events = 1 << 20;
+        int[] masks = new int[events];
+        Random random = new Random(41);
+        for (int i = 0; i < events; i++) {
+            masks[i] = random.nextInt(TrustPolicy.VERDICT_COMBINATIONS);
+        }
+
+        double baseline = TimingHarness.nanosPerOperation(events, () -> {
+            double score = 50.0;
+            long trusted = 0;
+            for (int mask : masks) {
+                score = baselineAdjust(score, mask);
+                trusted += score >= TRUSTED_THRESHOLD ? 1 : 0;
+            }
+            return trusted + (long) score;
+        });
+        double compiled = TimingHarness.nanosPerOperation(events, () -> {
+            double score = 50.0;
+            long trusted = 0;
+            for (int mask : masks) {
+                score = profile.score(score, (mask & TrustPolicy.IDENTITY) != 0, (mask & TrustPolicy.CONTEXT) != 0,
+                                      (mask & TrustPolicy.FIRMWARE) != 0, (mask & TrustPolicy.ANOMALY) != 0,
+                                      (mask & TrustPolicy.COMPLIANCE) != 0);
+                trusted += profile.isTrusted(score) ? 1 : 0;
+            }
+            return trusted + (long) score;
+        });
+        TimingHarness.report("Trust scoring per event", baseline, compiled);
+    }
+
+    // === HELPERS ===
+
+    private static TrustPolicy shippedPolicy() throws IOException {
+        try (InputStream in = TrustPolicyTest.class.getResourceAsStream("/trust-policy.json")) {
+            assertNotNull(in, "trust-policy.json is not on the classpath");
+            return TrustPolicy.compile(new ObjectMapper().readValue(in, TrustPolicyDto.class));
+        }
+    }
+
+    private static double baselineDelta(boolean identityPass, boolean contextPass, boolean firmwareValid,
+                                        boolean anomalyDetected, boolean compliancePassed) {
+        double identityAdjustment = identityPass ? IDENTITY_REWARD : -IDENTITY_PENALTY;
+        double contextAdjustment = contextPass ? CONTEXT_REWARD : -CONTEXT_PENALTY;
+        double firmwareAdjustment = firmwareValid ? FIRMWARE_REWARD : -FIRMWARE_PENALTY;
+        double anomalyAdjustment = anomalyDetected ? -ANOMALY_PENALTY : ANOMALY_REWARD;
+        double complianceAdjustment = compliancePassed ? COMPLIANCE_REWARD : -COMPLIANCE_PENALTY;
+        return identityAdjustment + contextAdjustment + firmwareAdjustment
+               + anomalyAdjustment + complianceAdjustment;
+    }
+
+    private static double baselineScore(double oldScore, boolean identityPass, boolean contextPass,
+                                        boolean firmwareValid, boolean anomalyDetected, boolean compliancePassed) {
+        double score = oldScore;
+        score += baselineDelta(identityPass, contextPass, firmwareValid, anomalyDetected, compliancePassed);
+        return Math.max(0, Math.min(score, 100));
+    }
+
+    /**
+     * One event as the baseline adjustTrustWithContext scored it, factor map included.
+     */
+    private static double baselineAdjust(double oldScore, int mask) {
+        Map<String, Boolean> factorResults = new HashMap<>();
+        factorResults.put("identity", (mask & TrustPolicy.IDENTITY) != 0);
+        factorResults.put("context", (mask & TrustPolicy.CONTEXT) != 0);
+        factorResults.put("firmware", (mask & TrustPolicy.FIRMWARE) != 0);
+        factorResults.put("anomaly", (mask & TrustPolicy.ANOMALY) != 0);
+        factorResults.put("compliance", (mask & TrustPolicy.COMPLIANCE) != 0);
+        return baselineScore(oldScore, factorResults.get("identity"), factorResults.get("context"),
+                             factorResults.get("firmware"), factorResults.get("anomaly"),
+                             factorResults.get("compliance"));
+    }
+}